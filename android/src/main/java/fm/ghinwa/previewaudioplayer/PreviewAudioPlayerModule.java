@@ -1,27 +1,56 @@
 package fm.ghinwa.previewaudioplayer;
 
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
 import android.support.annotation.Nullable;
+import android.util.SparseIntArray;
 
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Callback;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import fm.ghinwa.previewaudioplayer.implementation.PreviewAudioPlayerManager;
-import fm.ghinwa.previewaudioplayer.implementation.listener.OnFFmpegPrepareStatusListener;
-import fm.ghinwa.previewaudioplayer.implementation.listener.OnFfmpegCommandStatusListener;
-import fm.ghinwa.previewaudioplayer.implementation.player.OnCompletionListener;
-import fm.ghinwa.previewaudioplayer.implementation.player.OnPlaybackCompletedListener;
-import fm.ghinwa.previewaudioplayer.implementation.player.ProgressUpdateListener;
+import fm.ghinwa.previewaudioplayer.implementation.PreviewSession;
+import fm.ghinwa.previewaudioplayer.implementation.export.DescriptorSegmentedOutput;
+import fm.ghinwa.previewaudioplayer.implementation.export.DirectorySegmentedOutput;
+import fm.ghinwa.previewaudioplayer.implementation.export.EncodingContainer;
+import fm.ghinwa.previewaudioplayer.implementation.export.EncodingProfile;
+import fm.ghinwa.previewaudioplayer.implementation.export.ExportJobState;
+import fm.ghinwa.previewaudioplayer.implementation.export.ExportJobStatus;
+import fm.ghinwa.previewaudioplayer.implementation.export.ExportPriority;
+import fm.ghinwa.previewaudioplayer.implementation.export.ExportSegment;
+import fm.ghinwa.previewaudioplayer.implementation.export.SegmentedExportOutput;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnExportJobStatusListener;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnExportSegmentListener;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnPrepareStatusListener;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnSessionCommandListener;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnSessionEventListener;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnWaveformStatusListener;
+import fm.ghinwa.previewaudioplayer.implementation.loudness.LoudnessGains;
+import fm.ghinwa.previewaudioplayer.implementation.metrics.LatencyHistogram;
+import fm.ghinwa.previewaudioplayer.implementation.player.DriftStatistics;
+import fm.ghinwa.previewaudioplayer.implementation.player.OnSeekCompletionListener;
+import fm.ghinwa.previewaudioplayer.implementation.player.PlaybackEngineType;
+import fm.ghinwa.previewaudioplayer.implementation.util.FileUtils;
 import fm.ghinwa.previewaudioplayer.implementation.util.TimeUnitConverterUtil;
+import fm.ghinwa.previewaudioplayer.implementation.waveform.Waveform;
 
-public class PreviewAudioPlayerModule extends ReactContextBaseJavaModule implements ProgressUpdateListener, OnPlaybackCompletedListener {
+public class PreviewAudioPlayerModule extends ReactContextBaseJavaModule implements OnSessionEventListener {
 
     private static final String MODULE_NAME = "PreviewAudioPlayerManager";
 
@@ -30,15 +59,125 @@ public class PreviewAudioPlayerModule extends ReactContextBaseJavaModule impleme
 
     private static final String PREVIEW_AUDIO_PLAYER_PLAYBACK_FINISHED_EVENT_NAME = "previewAudioPlayerPlaybackFinished";
 
+    private static final String PREVIEW_AUDIO_PLAYER_LOOP_ITERATION_EVENT_NAME = "previewAudioPlayerLoopIteration";
+    private static final String LOOP_ITERATION_KEY = "iteration";
+
+    private static final String PREVIEW_AUDIO_PLAYER_SESSION_DEMOTED_EVENT_NAME = "previewAudioPlayerSessionDemoted";
+
+    private static final String SESSION_ID_KEY = "sessionId";
+    private static final String UNKNOWN_SESSION_MESSAGE = "Unknown preview session: ";
+
+    private static final String PREVIEW_AUDIO_PLAYER_EXPORT_PROGRESS_EVENT_NAME = "previewAudioPlayerExportProgress";
+    private static final String PREVIEW_AUDIO_PLAYER_EXPORT_PROGRESS_KEY = "progress";
+    private static final String PREVIEW_AUDIO_PLAYER_EXPORT_REMAINING_TIME_KEY = "remainingTime";
+
+    private static final String PREVIEW_AUDIO_PLAYER_EXPORT_FINISHED_EVENT_NAME = "previewAudioPlayerExportFinished";
+
+    private static final String EXPORT_JOB_ID_KEY = "jobId";
+    private static final String EXPORT_JOB_STATE_KEY = "state";
+    private static final String EXPORT_JOB_OUTPUT_FILE_PATH_KEY = "outputFilePath";
+    private static final String EXPORT_JOB_ERROR_KEY = "error";
+
+    private static final String PREVIEW_AUDIO_PLAYER_EXPORT_SEGMENT_EVENT_NAME = "previewAudioPlayerExportSegment";
+    private static final String EXPORT_SEGMENT_INDEX_KEY = "index";
+    private static final String EXPORT_SEGMENT_PATH_KEY = "path";
+    private static final String EXPORT_SEGMENT_OFFSET_KEY = "offset";
+    private static final String EXPORT_SEGMENT_SIZE_KEY = "size";
+    private static final String EXPORT_SEGMENT_START_TIME_KEY = "startTime";
+    private static final String EXPORT_SEGMENT_DURATION_KEY = "duration";
+
+    private static final String SEGMENTED_OUTPUT_DIRECTORY_KEY = "directory";
+    private static final String SEGMENTED_OUTPUT_URI_KEY = "uri";
+    private static final String SEGMENTED_OUTPUT_SEGMENT_DURATION_KEY = "segmentDuration";
+    private static final String SEGMENTED_OUTPUT_URI_MODE = "w";
+
+    private static final String EXPORT_PRIORITY_USER_FACING = "userFacing";
+    private static final String EXPORT_PRIORITY_BACKGROUND = "background";
+
+    private static final String ENCODING_PROFILE_PRESET_KEY = "preset";
+    private static final String ENCODING_PROFILE_SAMPLE_RATE_KEY = "sampleRate";
+    private static final String ENCODING_PROFILE_CHANNEL_COUNT_KEY = "channelCount";
+    private static final String ENCODING_PROFILE_BIT_RATE_KEY = "bitRate";
+    private static final String ENCODING_PROFILE_CONTAINER_KEY = "container";
+
+    private static final String ENCODING_PRESET_SHARE_SMALL = "share-small";
+    private static final String ENCODING_PRESET_ARCHIVE_HIGH = "archive-high";
+    private static final String ENCODING_PRESET_FAST_DRAFT = "fast-draft";
+
+    private static final String ENCODING_CONTAINER_ADTS = "adts";
+    private static final String ENCODING_CONTAINER_MP4 = "mp4";
+
+    private static final String SEEK_STATUS_COMPLETED = "completed";
+    private static final String SEEK_STATUS_SUPERSEDED = "superseded";
+
+    private static final String PLAYBACK_ENGINE_MEDIA_PLAYER = "mediaPlayer";
+    private static final String PLAYBACK_ENGINE_SOFTWARE_MIXER = "softwareMixer";
+    private static final String TIME_REPORTING_PRESENTED = "presented";
+    private static final String TIME_REPORTING_DECODER = "decoder";
+
+    private static final String SYNC_STATISTICS_SAMPLE_COUNT_KEY = "sampleCount";
+    private static final String SYNC_STATISTICS_CORRECTION_COUNT_KEY = "correctionCount";
+    private static final String SYNC_STATISTICS_LAST_DRIFT_KEY = "lastDrift";
+    private static final String SYNC_STATISTICS_MAX_DRIFT_KEY = "maxDrift";
+    private static final String SYNC_STATISTICS_MEAN_DRIFT_KEY = "meanDrift";
+
+    private static final String LOUDNESS_GAINS_VOCAL_KEY = "vocal";
+    private static final String LOUDNESS_GAINS_BACKGROUND_KEY = "background";
+    private static final String LOUDNESS_GAINS_MEASURED_KEY = "measured";
+
+    private static final String PREVIEW_AUDIO_PLAYER_METRICS_EVENT_NAME = "previewAudioPlayerMetrics";
+    private static final String METRICS_COUNT_KEY = "count";
+    private static final String METRICS_MEAN_KEY = "mean";
+    private static final String METRICS_MIN_KEY = "min";
+    private static final String METRICS_MAX_KEY = "max";
+    private static final String METRICS_P50_KEY = "p50";
+    private static final String METRICS_P90_KEY = "p90";
+    private static final String METRICS_P99_KEY = "p99";
+
+    private static final String WAVEFORM_MINIMUMS_KEY = "minimums";
+    private static final String WAVEFORM_MAXIMUMS_KEY = "maximums";
+
     private static final TimeUnit DEFAULT_JS_TIME_UNIT = TimeUnit.SECONDS;
 
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+
     private final PreviewAudioPlayerManager previewAudioPlayerManager;
 
+    private final AtomicBoolean isProgressEventPending = new AtomicBoolean();
+    private final Runnable progressEventRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isProgressEventPending.set(false);
+            synchronized (latestProgressTimesMillis) {
+                for (int i = 0; i < latestProgressTimesMillis.size(); i++) {
+                    WritableMap writableMap = Arguments.createMap();
+                    float timeInDefaultJsUnit = TimeUnitConverterUtil.toResultTimeUnitFloat(latestProgressTimesMillis.valueAt(i), TimeUnit.MILLISECONDS, DEFAULT_JS_TIME_UNIT);
+                    writableMap.putInt(SESSION_ID_KEY, latestProgressTimesMillis.keyAt(i));
+                    writableMap.putDouble(PREVIEW_AUDIO_PLAYER_PROGRESS_CURRENT_TIME_KEY, timeInDefaultJsUnit);
+                    sendEvent(PREVIEW_AUDIO_PLAYER_PROGRESS_UPDATE_EVENT_NAME, writableMap);
+                }
+                latestProgressTimesMillis.clear();
+            }
+        }
+    };
+
+    // latest undelivered position of each session, guarded by itself
+    private final SparseIntArray latestProgressTimesMillis = new SparseIntArray();
+
+    private final Handler metricsEventHandler = new Handler(Looper.getMainLooper());
+    private long metricsEventIntervalMillis;
+    private final Runnable metricsEventRunnable = new Runnable() {
+        @Override
+        public void run() {
+            sendEvent(PREVIEW_AUDIO_PLAYER_METRICS_EVENT_NAME, createMetricsMap());
+            metricsEventHandler.postDelayed(this, metricsEventIntervalMillis);
+        }
+    };
+
     public PreviewAudioPlayerModule(ReactApplicationContext reactContext) {
         super(reactContext);
         previewAudioPlayerManager = new PreviewAudioPlayerManager(reactContext);
-        previewAudioPlayerManager.setPlayerProgressUpdateListener(this);
-        previewAudioPlayerManager.setOnPlaybackCompletedListener(this);
+        previewAudioPlayerManager.setOnSessionEventListener(this);
     }
 
     @Override
@@ -46,178 +185,835 @@ public class PreviewAudioPlayerModule extends ReactContextBaseJavaModule impleme
         return MODULE_NAME;
     }
 
+    /**
+     * Progress events are emitted from the JS queue thread and at most one batch is pending at a
+     * time, so a busy JS thread only receives the latest position of each session instead of a backlog.
+     */
     @Override
-    public void onPlayerProgressUpdate(int currentTimeMillis) {
-        WritableMap writableMap = Arguments.createMap();
-        float timeInDefaultJsUnit = TimeUnitConverterUtil.toResultTimeUnitFloat(currentTimeMillis, TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
-        writableMap.putDouble(PREVIEW_AUDIO_PLAYER_PROGRESS_CURRENT_TIME_KEY, timeInDefaultJsUnit);
-        sendEvent(PREVIEW_AUDIO_PLAYER_PROGRESS_UPDATE_EVENT_NAME, writableMap);
+    public void onSessionProgressUpdate(int sessionId, int currentTimeMillis) {
+        synchronized (latestProgressTimesMillis) {
+            latestProgressTimesMillis.put(sessionId, currentTimeMillis);
+        }
+        if (isProgressEventPending.compareAndSet(false, true)) {
+            getReactApplicationContext().runOnJSQueueThread(progressEventRunnable);
+        }
     }
 
     @Override
-    public void onPlaybackComplete() {
-        sendEvent(PREVIEW_AUDIO_PLAYER_PLAYBACK_FINISHED_EVENT_NAME, null);
+    public void onSessionPlaybackCompleted(int sessionId) {
+        sendEvent(PREVIEW_AUDIO_PLAYER_PLAYBACK_FINISHED_EVENT_NAME, createSessionMap(sessionId));
     }
 
+    @Override
+    public void onSessionLoopIteration(int sessionId, int iteration) {
+        WritableMap writableMap = createSessionMap(sessionId);
+        writableMap.putInt(LOOP_ITERATION_KEY, iteration);
+        sendEvent(PREVIEW_AUDIO_PLAYER_LOOP_ITERATION_EVENT_NAME, writableMap);
+    }
+
+    @Override
+    public void onSessionDemoted(int sessionId) {
+        sendEvent(PREVIEW_AUDIO_PLAYER_SESSION_DEMOTED_EVENT_NAME, createSessionMap(sessionId));
+    }
+
+    /**
+     * Creates a session and passes (error, sessionId) to the callback once all tracks are prepared.
+     * Every other playback method takes the session id as its first argument.
+     */
     @ReactMethod
     public void prepare(String originalRecordingPath, String processedInputPath,
                         String backgroundAudioFilePathString, int recordingStartTime, final Callback callback) {
+        final int sessionId = previewAudioPlayerManager.createSession(originalRecordingPath, processedInputPath,
+                backgroundAudioFilePathString, recordingStartTime, DEFAULT_JS_TIME_UNIT);
+        previewAudioPlayerManager.prepareSession(sessionId, new OnPrepareStatusListener() {
+            @Override
+            public void onPrepareError(String message) {
+                callback.invoke(message, null);
+            }
+
+            @Override
+            public void onPrepareCompleted() {
+                callback.invoke(null, sessionId);
+            }
+        });
+    }
+
+    /**
+     * Selects playback engine used by subsequent prepare calls.
+     * Accepts "mediaPlayer" (default) or "softwareMixer".
+     */
+    @ReactMethod
+    public void setPlaybackEngine(String playbackEngine, Callback callback) {
+        if (PLAYBACK_ENGINE_SOFTWARE_MIXER.equals(playbackEngine)) {
+            previewAudioPlayerManager.setPlaybackEngineType(PlaybackEngineType.SOFTWARE_MIXER);
+        } else if (PLAYBACK_ENGINE_MEDIA_PLAYER.equals(playbackEngine)) {
+            previewAudioPlayerManager.setPlaybackEngineType(PlaybackEngineType.MEDIA_PLAYER);
+        } else {
+            callback.invoke("Unknown playback engine: " + playbackEngine);
+            return;
+        }
+        callback.invoke();
+    }
+
+    /**
+     * Enables matching volumes of vocal and background to their measured loudness, in playback and
+     * export. Loudness is measured while a track is decoded for the decoded audio cache or for a
+     * waveform, so the gains apply once that happened; until then volumes are used as set and
+     * {@link #getLoudnessGains} reports the tracks as not measured. The MediaPlayer engine decodes
+     * nothing itself, so with it only waveforms measure tracks.
+     *
+     * @param vocalToBackground how many decibels louder than the background the vocal should be
+     */
+    @ReactMethod
+    public void setLoudnessNormalization(boolean enabled, float vocalToBackground, Callback callback) {
+        previewAudioPlayerManager.setLoudnessNormalization(enabled, vocalToBackground);
+        callback.invoke();
+    }
+
+    /**
+     * Enables estimating the vocal offset against the background before sessions are prepared.
+     * The offset is searched within maxOffset seconds in both directions and applied to playback
+     * and export when the match is reliable; prepare takes longer by the time of the analysis.
+     */
+    @ReactMethod
+    public void setAutomaticAlignment(boolean enabled, float maxOffset, Callback callback) {
+        previewAudioPlayerManager.setAutomaticAlignment(enabled, maxOffset, DEFAULT_JS_TIME_UNIT);
+        callback.invoke();
+    }
+
+    /**
+     * Selects which position current time and progress events report.
+     * Accepts "presented" (default), the position being heard with output latency subtracted,
+     * or "decoder", the raw position of the decoders.
+     */
+    @ReactMethod
+    public void setTimeReporting(String timeReporting, Callback callback) {
+        if (TIME_REPORTING_PRESENTED.equals(timeReporting)) {
+            previewAudioPlayerManager.setOutputLatencyCompensated(true);
+        } else if (TIME_REPORTING_DECODER.equals(timeReporting)) {
+            previewAudioPlayerManager.setOutputLatencyCompensated(false);
+        } else {
+            callback.invoke("Unknown time reporting: " + timeReporting);
+            return;
+        }
+        callback.invoke();
+    }
+
+    /**
+     * Sets how many megabytes of decoded background tracks may be kept in the cache directory.
+     * Cached tracks are prepared by the software mixer without decoding them again.
+     */
+    @ReactMethod
+    public void setDecodedAudioCacheSize(float megabytes, Callback callback) {
+        previewAudioPlayerManager.setDecodedAudioCacheSize((long) (megabytes * BYTES_PER_MEGABYTE));
+        callback.invoke();
+    }
+
+    /**
+     * Sets how many megabytes of finished exports may be kept. An export with the same input files
+     * and settings as a kept one returns the kept file without encoding it again.
+     */
+    @ReactMethod
+    public void setExportCacheSize(float megabytes, Callback callback) {
+        previewAudioPlayerManager.setExportCacheSize((long) (megabytes * BYTES_PER_MEGABYTE));
+        callback.invoke();
+    }
+
+    /**
+     * Releases resources associated with the session, its id is not valid afterwards.
+     * It is considered good practice to call this method when you're
+     * done using the session.
+     */
+    @ReactMethod
+    public void release(int sessionId, Callback callback) {
+        if (previewAudioPlayerManager.releaseSession(sessionId)) {
+            callback.invoke();
+        } else {
+            callback.invoke(UNKNOWN_SESSION_MESSAGE + sessionId);
+        }
+    }
+
+    /**
+     * Sets how many decoders and megabytes of decoded audio all sessions may hold together.
+     * Least recently used sessions over the budget are demoted: they keep their position and
+     * settings and are prepared again when played.
+     */
+    @ReactMethod
+    public void setSessionBudget(int maxDecoders, float memoryMegabytes, Callback callback) {
+        if (maxDecoders <= 0 || memoryMegabytes <= 0) {
+            callback.invoke("Session budget must be positive");
+            return;
+        }
+        previewAudioPlayerManager.setSessionBudget(maxDecoders, (long) (memoryMegabytes * BYTES_PER_MEGABYTE));
+        callback.invoke();
+    }
+
+    @Override
+    public void onCatalystInstanceDestroy() {
+        metricsEventHandler.removeCallbacks(metricsEventRunnable);
+        previewAudioPlayerManager.destroy();
+    }
+
+    /**
+     * Sets how many times per second playback progress is checked and the minimal change of
+     * position (in seconds) that is reported with a progress event.
+     */
+    @ReactMethod
+    public void setProgressUpdateRate(float updatesPerSecond, float minimumDelta, Callback callback) {
+        if (updatesPerSecond <= 0) {
+            callback.invoke("Updates per second must be positive");
+            return;
+        }
+        previewAudioPlayerManager.setProgressUpdateRate(updatesPerSecond, minimumDelta, DEFAULT_JS_TIME_UNIT);
+        callback.invoke();
+    }
+
+    @ReactMethod
+    public void playAt(int sessionId, float startTime, final Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            session.playAt(startTime, DEFAULT_JS_TIME_UNIT, createCommandListener(callback));
+        }
+    }
+
+    @ReactMethod
+    public void play(int sessionId, final Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            session.play(createCommandListener(callback));
+        }
+    }
+
+    @ReactMethod
+    public void pause(int sessionId, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            session.pause();
+            callback.invoke();
+        }
+    }
+
+    @ReactMethod
+    public void unPause(int sessionId, final Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            session.unPause(createCommandListener(callback));
+        }
+    }
+
+    @ReactMethod
+    public void stop(int sessionId, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            session.stop();
+            callback.invoke();
+        }
+    }
+
+    /**
+     * Exports the preview window with user facing priority and passes (error, outputFilePath)
+     * to the callback when done. See {@link #createEncodingProfile} for the profile format.
+     */
+    @ReactMethod
+    public void export(int sessionId, @Nullable ReadableMap encodingProfile, final Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session == null) {
+            return;
+        }
         try {
-            previewAudioPlayerManager.prepare(originalRecordingPath, processedInputPath,
-                    backgroundAudioFilePathString, recordingStartTime, DEFAULT_JS_TIME_UNIT, new OnFFmpegPrepareStatusListener() {
+            EncodingProfile profile = createEncodingProfile(encodingProfile);
+            previewAudioPlayerManager.createPreviewFile(session, ExportPriority.USER_FACING, profile, new OnExportJobStatusListener() {
+                @Override
+                public void onExportJobProgress(ExportJobStatus status) {
+                    sendExportProgressEvent(status);
+                }
+
+                @Override
+                public void onExportJobFinished(ExportJobStatus status) {
+                    if (status.getState() == ExportJobState.COMPLETED) {
+                        callback.invoke(null, status.getOutputFilePath());
+                    } else {
+                        callback.invoke(status.getErrorMessage(), null);
+                    }
+                }
+            });
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            callback.invoke(e.getMessage(), null);
+        }
+    }
+
+    /**
+     * Schedules export of the preview window and passes (error, jobId) to the callback right away.
+     * Priority is "userFacing" or "background"; background exports run after, and are interrupted
+     * by, user facing ones. Completion is reported with the export finished event.
+     */
+    @ReactMethod
+    public void startExport(int sessionId, String priority, @Nullable ReadableMap encodingProfile, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session == null) {
+            return;
+        }
+        ExportPriority exportPriority = parseExportPriority(priority);
+        if (exportPriority == null) {
+            callback.invoke("Unknown export priority: " + priority, null);
+            return;
+        }
+        try {
+            EncodingProfile profile = createEncodingProfile(encodingProfile);
+            int jobId = previewAudioPlayerManager.createPreviewFile(session, exportPriority, profile, new OnExportJobStatusListener() {
+                @Override
+                public void onExportJobProgress(ExportJobStatus status) {
+                    sendExportProgressEvent(status);
+                }
+
+                @Override
+                public void onExportJobFinished(ExportJobStatus status) {
+                    sendEvent(PREVIEW_AUDIO_PLAYER_EXPORT_FINISHED_EVENT_NAME, createExportStatusMap(status));
+                }
+            });
+            callback.invoke(null, jobId);
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            callback.invoke(e.getMessage(), null);
+        }
+    }
+
+    /**
+     * Schedules export of the preview window as a sequence of ADTS segments and passes (error, jobId)
+     * to the callback right away. Every segment can be decoded on its own and is announced with the
+     * export segment event as soon as it is flushed; completion is reported with the export finished
+     * event. Output is an object with optional `directory` for segment files, `uri` of a content or
+     * file URI all segments are streamed to as consecutive byte ranges, and `segmentDuration` in
+     * seconds (default 5). Without directory and uri segment files go to a new directory next to
+     * other exports. Segmented exports are not cached and not merged with other exports.
+     */
+    @ReactMethod
+    public void startSegmentedExport(int sessionId, String priority, @Nullable ReadableMap encodingProfile,
+                                     @Nullable ReadableMap output, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session == null) {
+            return;
+        }
+        ExportPriority exportPriority = parseExportPriority(priority);
+        if (exportPriority == null) {
+            callback.invoke("Unknown export priority: " + priority, null);
+            return;
+        }
+        SegmentedExportOutput segmentedOutput = null;
+        try {
+            EncodingProfile profile = createEncodingProfile(encodingProfile);
+            segmentedOutput = createSegmentedOutput(output);
+            int jobId = previewAudioPlayerManager.createSegmentedPreviewFile(session, exportPriority, profile,
+                    segmentedOutput, new OnExportSegmentListener() {
                         @Override
-                        public void onFfmpegPrepareError(String message) {
-                            callback.invoke(message);
+                        public void onExportSegmentWritten(int jobId, ExportSegment segment) {
+                            sendEvent(PREVIEW_AUDIO_PLAYER_EXPORT_SEGMENT_EVENT_NAME, createExportSegmentMap(jobId, segment));
+                        }
+                    }, new OnExportJobStatusListener() {
+                        @Override
+                        public void onExportJobProgress(ExportJobStatus status) {
+                            sendExportProgressEvent(status);
                         }
 
                         @Override
-                        public void onFfmpegPrepareCompleted() {
-                            callback.invoke();
+                        public void onExportJobFinished(ExportJobStatus status) {
+                            sendEvent(PREVIEW_AUDIO_PLAYER_EXPORT_FINISHED_EVENT_NAME, createExportStatusMap(status));
                         }
                     });
-        } catch (IOException e) {
-            callback.invoke(e.getMessage());
+            callback.invoke(null, jobId);
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            if (segmentedOutput != null) {
+                try {
+                    segmentedOutput.release();
+                } catch (IOException releaseException) {
+                    // the export never started, nothing was written
+                }
+            }
+            callback.invoke(e.getMessage(), null);
         }
     }
 
     /**
-     * Releases resources associated with this PreviewPlayer object.
-     * It is considered good practice to call this method when you're
-     * done using the PreviewPlayer.
+     * Passes (error, status) to the callback, where status contains `jobId`, `state` (one of
+     * "queued", "running", "completed", "failed", "cancelled"), `progress`, `remainingTime`,
+     * `outputFilePath` and `error`.
      */
     @ReactMethod
-    public void release() {
-        previewAudioPlayerManager.release();
+    public void getExportStatus(int jobId, Callback callback) {
+        ExportJobStatus status = previewAudioPlayerManager.getExportStatus(jobId);
+        if (status == null) {
+            callback.invoke("Unknown export job: " + jobId, null);
+        } else {
+            callback.invoke(null, createExportStatusMap(status));
+        }
     }
 
+    /**
+     * Cancels running and queued exports. Their export callbacks receive an error and partial
+     * output files are deleted.
+     */
     @ReactMethod
-    public void playAt(float startTime, final Callback callback) {
-        previewAudioPlayerManager.playAt(startTime, DEFAULT_JS_TIME_UNIT, new OnCompletionListener() {
-            @Override
-            public void onComplete() {
-                callback.invoke();
-            }
-        });
+    public void cancelExport(Callback callback) {
+        previewAudioPlayerManager.cancelExports();
+        callback.invoke();
     }
 
+    /**
+     * Cancels a single export job, passes an error to the callback when there is no such unfinished job.
+     */
     @ReactMethod
-    public void play(final Callback callback) {
-        previewAudioPlayerManager.play(new OnCompletionListener() {
-            @Override
-            public void onComplete() {
-                callback.invoke();
-            }
-        });
+    public void cancelExportJob(int jobId, Callback callback) {
+        if (previewAudioPlayerManager.cancelExport(jobId)) {
+            callback.invoke();
+        } else {
+            callback.invoke("Unknown export job: " + jobId);
+        }
     }
 
+    /**
+     * Passes (error, waveform) to the callback, where waveform contains `minimums` and `maximums`
+     * arrays with pixelCount values in range [-1, 1]. Pass endTime of 0 for the end of the track.
+     */
     @ReactMethod
-    public void pause(Callback callback) {
-        previewAudioPlayerManager.pause();
-        callback.invoke();
+    public void getWaveform(String path, float startTime, float endTime, int pixelCount, final Callback callback) {
+        previewAudioPlayerManager.getWaveform(path, startTime, endTime, pixelCount, DEFAULT_JS_TIME_UNIT,
+                new OnWaveformStatusListener() {
+                    @Override
+                    public void onWaveformError(String message) {
+                        callback.invoke(message, null);
+                    }
+
+                    @Override
+                    public void onWaveformCompleted(Waveform waveform) {
+                        WritableArray minimums = Arguments.createArray();
+                        WritableArray maximums = Arguments.createArray();
+                        for (int i = 0; i < waveform.getPixelCount(); i++) {
+                            minimums.pushDouble(waveform.getMinimums()[i]);
+                            maximums.pushDouble(waveform.getMaximums()[i]);
+                        }
+                        WritableMap writableMap = Arguments.createMap();
+                        writableMap.putArray(WAVEFORM_MINIMUMS_KEY, minimums);
+                        writableMap.putArray(WAVEFORM_MAXIMUMS_KEY, maximums);
+                        callback.invoke(null, writableMap);
+                    }
+                });
     }
 
     @ReactMethod
-    public void unPause(final Callback callback) {
-        previewAudioPlayerManager.unPause(new OnCompletionListener() {
-            @Override
-            public void onComplete() {
-                callback.invoke();
-            }
-        });
+    public void playPreview(int sessionId, final Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            session.playPreview(createCommandListener(callback));
+        }
     }
 
     @ReactMethod
-    public void stop(Callback callback) {
-        previewAudioPlayerManager.stop();
-        callback.invoke();
+    public void setPreviewStartTime(int sessionId, float previewStartTime, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            session.setPreviewStartTime(previewStartTime, DEFAULT_JS_TIME_UNIT);
+            callback.invoke();
+        }
+    }
+
+    @ReactMethod
+    public void setPreviewAt(int sessionId, float previewTime, float previewDuration, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            session.setPreviewStartTime(previewTime, DEFAULT_JS_TIME_UNIT);
+            session.setPreviewDuration(previewDuration, DEFAULT_JS_TIME_UNIT);
+            callback.invoke();
+        }
+    }
+
+    /**
+     * When enabled, playPreview repeats the preview window until paused or stopped; each repeat
+     * is reported with a loop iteration event. Windows shorter than a second are not looped.
+     */
+    @ReactMethod
+    public void setPreviewLoop(int sessionId, boolean enabled, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            session.setPreviewLoopEnabled(enabled);
+            callback.invoke();
+        }
+    }
+
+    @ReactMethod
+    public void setExportFadeDuration(int sessionId, float fadeDuration, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            session.setExportFadeDuration(fadeDuration, DEFAULT_JS_TIME_UNIT);
+            callback.invoke();
+        }
+    }
+
+    @ReactMethod
+    public void getPreviewStartTime(int sessionId, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            callback.invoke(null, session.getPreviewStartTime(DEFAULT_JS_TIME_UNIT));
+        }
+    }
+
+    @ReactMethod
+    public void getPreviewDuration(int sessionId, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            callback.invoke(null, session.getPreviewDuration(DEFAULT_JS_TIME_UNIT));
+        }
     }
 
     @ReactMethod
-    public void export(final Callback callback) {
-        previewAudioPlayerManager.createPreviewFile(new OnFfmpegCommandStatusListener() {
+    public void getPlaybackDuration(int sessionId, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            callback.invoke(null, session.getPlaybackDuration(DEFAULT_JS_TIME_UNIT));
+        }
+    }
+
+    @ReactMethod
+    public void seekToTime(int sessionId, float time, final Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session == null) {
+            return;
+        }
+        session.seekTo(time, DEFAULT_JS_TIME_UNIT, new OnSeekCompletionListener() {
             @Override
-            public void onFfmpegCommandError(String message) {
-                callback.invoke(message, null);
+            public void onSeekCompleted() {
+                callback.invoke(null, SEEK_STATUS_COMPLETED);
             }
 
             @Override
-            public void onFfmpegCommandCompleted(String outputFilePath) {
-                callback.invoke(null, outputFilePath);
+            public void onSeekSuperseded() {
+                callback.invoke(null, SEEK_STATUS_SUPERSEDED);
             }
         });
     }
 
     @ReactMethod
-    public void playPreview(final Callback callback) {
-        previewAudioPlayerManager.playPreview(new OnCompletionListener() {
-            @Override
-            public void onComplete() {
-                callback.invoke();
-            }
-        });
+    public void getCurrentTime(int sessionId, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            callback.invoke(null, session.getCurrentTime(DEFAULT_JS_TIME_UNIT));
+        }
     }
 
     @ReactMethod
-    public void setPreviewStartTime(float previewStartTime, Callback callback) {
-        previewAudioPlayerManager.setPreviewStartTime(previewStartTime, DEFAULT_JS_TIME_UNIT);
-        callback.invoke();
+    public void getOutputLatency(int sessionId, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            callback.invoke(null, session.getOutputLatency(DEFAULT_JS_TIME_UNIT));
+        }
     }
 
     @ReactMethod
-    public void setPreviewAt(float previewTime, float previewDuration, Callback callback) {
-        previewAudioPlayerManager.setPreviewStartTime(previewTime, DEFAULT_JS_TIME_UNIT);
-        previewAudioPlayerManager.setPreviewDuration(previewDuration, DEFAULT_JS_TIME_UNIT);
-        callback.invoke();
+    public void getAlignmentOffset(int sessionId, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            callback.invoke(null, session.getAlignmentOffset(DEFAULT_JS_TIME_UNIT));
+        }
     }
 
     @ReactMethod
-    public void getPreviewStartTime(Callback callback) {
-        callback.invoke(
-                previewAudioPlayerManager.getPreviewStartTime(DEFAULT_JS_TIME_UNIT)
-        );
+    public void setVolume(int sessionId, float vocalTrackVolume, float backgroundTrackVolume, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            session.setVolume(vocalTrackVolume, backgroundTrackVolume);
+            callback.invoke();
+        }
     }
 
     @ReactMethod
-    public void getPreviewDuration(Callback callback) {
-        callback.invoke(previewAudioPlayerManager.getPreviewDuration(DEFAULT_JS_TIME_UNIT));
+    public void setDriftThreshold(int sessionId, float threshold, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            session.setDriftThreshold(threshold, DEFAULT_JS_TIME_UNIT);
+            callback.invoke();
+        }
     }
 
+    /**
+     * Passes a map with the linear gains applied on top of the volumes to match loudness of the
+     * vocal track in use and the background, both 1 without normalization, and whether normalization
+     * is held back because one of the tracks was not measured yet.
+     */
     @ReactMethod
-    public void getPlaybackDuration(Callback callback) {
-        callback.invoke(previewAudioPlayerManager.getPlaybackDuration(DEFAULT_JS_TIME_UNIT));
+    public void getLoudnessGains(int sessionId, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session == null) {
+            return;
+        }
+        LoudnessGains loudnessGains = session.getLoudnessGains();
+        WritableMap writableMap = Arguments.createMap();
+        writableMap.putDouble(LOUDNESS_GAINS_VOCAL_KEY, loudnessGains.getVocalGain());
+        writableMap.putDouble(LOUDNESS_GAINS_BACKGROUND_KEY, loudnessGains.getBackgroundGain());
+        writableMap.putBoolean(LOUDNESS_GAINS_MEASURED_KEY, loudnessGains.isMeasured());
+        callback.invoke(null, writableMap);
     }
 
+    /**
+     * Passes a map with drift between vocal and background tracks measured during playback.
+     * Drift values are in seconds, positive when the vocal track is ahead.
+     */
     @ReactMethod
-    public void seekToTime(float time, final Callback callback) {
-        previewAudioPlayerManager.seekToTime(time, DEFAULT_JS_TIME_UNIT, new OnCompletionListener() {
-            @Override
-            public void onComplete() {
-                callback.invoke();
-            }
-        });
+    public void getSyncStatistics(int sessionId, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session == null) {
+            return;
+        }
+        DriftStatistics driftStatistics = session.getDriftStatistics();
+        WritableMap writableMap = Arguments.createMap();
+        writableMap.putInt(SYNC_STATISTICS_SAMPLE_COUNT_KEY, driftStatistics.getSampleCount());
+        writableMap.putInt(SYNC_STATISTICS_CORRECTION_COUNT_KEY, driftStatistics.getCorrectionCount());
+        writableMap.putDouble(SYNC_STATISTICS_LAST_DRIFT_KEY, toDefaultJsTimeUnit(driftStatistics.getLastDriftMillis()));
+        writableMap.putDouble(SYNC_STATISTICS_MAX_DRIFT_KEY, toDefaultJsTimeUnit(driftStatistics.getMaxAbsoluteDriftMillis()));
+        writableMap.putDouble(SYNC_STATISTICS_MEAN_DRIFT_KEY, toDefaultJsTimeUnit(Math.round(driftStatistics.getMeanAbsoluteDriftMillis())));
+        callback.invoke(null, writableMap);
     }
 
+    /**
+     * Passes a map of timing histograms recorded since the module was created or metrics were
+     * reset. Keys are metric names, per track metrics are suffixed with the track, for example
+     * "seekLatency.background". Each histogram has `count` and `mean`, `min`, `max`, `p50`, `p90`
+     * and `p99` in seconds.
+     */
     @ReactMethod
-    public void getCurrentTime(Callback callback) {
-        callback.invoke(previewAudioPlayerManager.getCurrentTime(DEFAULT_JS_TIME_UNIT));
+    public void getMetrics(Callback callback) {
+        callback.invoke(null, createMetricsMap());
     }
 
     @ReactMethod
-    public void setVolume(float vocalTrackVolume, float backgroundTrackVolume, Callback callback) {
-        previewAudioPlayerManager.setVolume(vocalTrackVolume, backgroundTrackVolume);
+    public void resetMetrics(Callback callback) {
+        previewAudioPlayerManager.getMetrics().reset();
         callback.invoke();
     }
 
+    /**
+     * Sends the same map as {@link #getMetrics} with a metrics event every interval seconds,
+     * 0 stops the events.
+     */
     @ReactMethod
-    public void switchToOriginalVocalTrack(Callback callback) {
-        previewAudioPlayerManager.switchToOriginalVocalTrack();
+    public void setMetricsEventInterval(float interval, Callback callback) {
+        metricsEventHandler.removeCallbacks(metricsEventRunnable);
+        metricsEventIntervalMillis = TimeUnitConverterUtil.toResultTimeUnitLong(interval, DEFAULT_JS_TIME_UNIT,
+                TimeUnit.MILLISECONDS);
+        if (metricsEventIntervalMillis > 0) {
+            metricsEventHandler.postDelayed(metricsEventRunnable, metricsEventIntervalMillis);
+        }
         callback.invoke();
     }
 
+    /**
+     * When activeVocalOnly is true only the selected vocal track is decoded and the other one is
+     * kept paused until it is switched to. Switching crossfades the vocal tracks over
+     * crossfadeDuration seconds, 0 switches at once.
+     */
     @ReactMethod
-    public void switchToProcessedVocalTrack(Callback callback) {
-        previewAudioPlayerManager.switchToProcessedVocalTrack();
-        callback.invoke();
+    public void setVocalSwitchMode(int sessionId, boolean activeVocalOnly, float crossfadeDuration, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            session.setVocalSwitchMode(activeVocalOnly, crossfadeDuration, DEFAULT_JS_TIME_UNIT);
+            callback.invoke();
+        }
+    }
+
+    @ReactMethod
+    public void switchToOriginalVocalTrack(int sessionId, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            session.switchToOriginalVocalTrack();
+            callback.invoke();
+        }
+    }
+
+    @ReactMethod
+    public void switchToProcessedVocalTrack(int sessionId, Callback callback) {
+        PreviewSession session = getSession(sessionId, callback);
+        if (session != null) {
+            session.switchToProcessedVocalTrack();
+            callback.invoke();
+        }
+    }
+
+    /**
+     * Passes an error to the callback when there is no session with the id.
+     */
+    @Nullable
+    private PreviewSession getSession(int sessionId, Callback callback) {
+        PreviewSession session = previewAudioPlayerManager.getSession(sessionId);
+        if (session == null) {
+            callback.invoke(UNKNOWN_SESSION_MESSAGE + sessionId);
+        }
+        return session;
+    }
+
+    private static OnSessionCommandListener createCommandListener(final Callback callback) {
+        return new OnSessionCommandListener() {
+            @Override
+            public void onCommandCompleted() {
+                callback.invoke();
+            }
+
+            @Override
+            public void onCommandError(String message) {
+                callback.invoke(message);
+            }
+        };
+    }
+
+    private static WritableMap createSessionMap(int sessionId) {
+        WritableMap writableMap = Arguments.createMap();
+        writableMap.putInt(SESSION_ID_KEY, sessionId);
+        return writableMap;
+    }
+
+    private void sendExportProgressEvent(ExportJobStatus status) {
+        WritableMap writableMap = Arguments.createMap();
+        writableMap.putInt(EXPORT_JOB_ID_KEY, status.getJobId());
+        writableMap.putDouble(PREVIEW_AUDIO_PLAYER_EXPORT_PROGRESS_KEY, status.getProgress());
+        writableMap.putDouble(PREVIEW_AUDIO_PLAYER_EXPORT_REMAINING_TIME_KEY, toJsRemainingTime(status));
+        sendEvent(PREVIEW_AUDIO_PLAYER_EXPORT_PROGRESS_EVENT_NAME, writableMap);
+    }
+
+    /**
+     * Creates an encoding profile from an object with an optional `preset` ("share-small",
+     * "archive-high" or "fast-draft") and optional `sampleRate`, `channelCount`, `bitRate` (bits
+     * per second) and `container` ("adts" or "mp4") fields overriding the preset. Null gives the
+     * default stereo 64 kbps ADTS profile.
+     */
+    private static EncodingProfile createEncodingProfile(@Nullable ReadableMap map) {
+        EncodingProfile profile = EncodingProfile.DEFAULT;
+        if (map == null) {
+            return profile;
+        }
+        if (hasValue(map, ENCODING_PROFILE_PRESET_KEY)) {
+            String preset = map.getString(ENCODING_PROFILE_PRESET_KEY);
+            if (ENCODING_PRESET_SHARE_SMALL.equals(preset)) {
+                profile = EncodingProfile.SHARE_SMALL;
+            } else if (ENCODING_PRESET_ARCHIVE_HIGH.equals(preset)) {
+                profile = EncodingProfile.ARCHIVE_HIGH;
+            } else if (ENCODING_PRESET_FAST_DRAFT.equals(preset)) {
+                profile = EncodingProfile.FAST_DRAFT;
+            } else {
+                throw new IllegalArgumentException("Unknown encoding preset: " + preset);
+            }
+        }
+        if (hasValue(map, ENCODING_PROFILE_SAMPLE_RATE_KEY)) {
+            profile = profile.withSampleRate(map.getInt(ENCODING_PROFILE_SAMPLE_RATE_KEY));
+        }
+        if (hasValue(map, ENCODING_PROFILE_CHANNEL_COUNT_KEY)) {
+            profile = profile.withChannelCount(map.getInt(ENCODING_PROFILE_CHANNEL_COUNT_KEY));
+        }
+        if (hasValue(map, ENCODING_PROFILE_BIT_RATE_KEY)) {
+            profile = profile.withBitRate(map.getInt(ENCODING_PROFILE_BIT_RATE_KEY));
+        }
+        if (hasValue(map, ENCODING_PROFILE_CONTAINER_KEY)) {
+            String container = map.getString(ENCODING_PROFILE_CONTAINER_KEY);
+            if (ENCODING_CONTAINER_ADTS.equals(container)) {
+                profile = profile.withContainer(EncodingContainer.ADTS);
+            } else if (ENCODING_CONTAINER_MP4.equals(container)) {
+                profile = profile.withContainer(EncodingContainer.MP4);
+            } else {
+                throw new IllegalArgumentException("Unknown container: " + container);
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * @return null for an unknown priority
+     */
+    @Nullable
+    private static ExportPriority parseExportPriority(String priority) {
+        if (EXPORT_PRIORITY_USER_FACING.equals(priority)) {
+            return ExportPriority.USER_FACING;
+        } else if (EXPORT_PRIORITY_BACKGROUND.equals(priority)) {
+            return ExportPriority.BACKGROUND;
+        }
+        return null;
+    }
+
+    /**
+     * Creates the output of a segmented export, see {@link #startSegmentedExport} for the format.
+     */
+    private SegmentedExportOutput createSegmentedOutput(@Nullable ReadableMap map) throws IOException {
+        long segmentDurationMillis = SegmentedExportOutput.DEFAULT_SEGMENT_DURATION_MILLIS;
+        if (map != null && hasValue(map, SEGMENTED_OUTPUT_SEGMENT_DURATION_KEY)) {
+            segmentDurationMillis = TimeUnitConverterUtil.toResultTimeUnitLong(
+                    (float) map.getDouble(SEGMENTED_OUTPUT_SEGMENT_DURATION_KEY), DEFAULT_JS_TIME_UNIT, TimeUnit.MILLISECONDS);
+            if (segmentDurationMillis <= 0) {
+                throw new IllegalArgumentException("Segment duration must be positive");
+            }
+        }
+        if (map != null && hasValue(map, SEGMENTED_OUTPUT_URI_KEY)) {
+            String uri = map.getString(SEGMENTED_OUTPUT_URI_KEY);
+            ParcelFileDescriptor fileDescriptor = getReactApplicationContext().getContentResolver()
+                    .openFileDescriptor(Uri.parse(uri), SEGMENTED_OUTPUT_URI_MODE);
+            if (fileDescriptor == null) {
+                throw new IOException("Unable to open " + uri);
+            }
+            return new DescriptorSegmentedOutput(fileDescriptor, uri, segmentDurationMillis);
+        }
+        String directory = map != null && hasValue(map, SEGMENTED_OUTPUT_DIRECTORY_KEY)
+                ? map.getString(SEGMENTED_OUTPUT_DIRECTORY_KEY)
+                : FileUtils.createNewFilePathForFileIfNull(getReactApplicationContext(), FileUtils.FILENAME_MIXED_PREFIX, "");
+        return new DirectorySegmentedOutput(new File(directory), FileUtils.FILENAME_MIXED_PREFIX, segmentDurationMillis);
+    }
+
+    private static WritableMap createExportSegmentMap(int jobId, ExportSegment segment) {
+        WritableMap writableMap = Arguments.createMap();
+        writableMap.putInt(EXPORT_JOB_ID_KEY, jobId);
+        writableMap.putInt(EXPORT_SEGMENT_INDEX_KEY, segment.getIndex());
+        writableMap.putString(EXPORT_SEGMENT_PATH_KEY, segment.getLocation());
+        writableMap.putDouble(EXPORT_SEGMENT_OFFSET_KEY, segment.getOffset());
+        writableMap.putDouble(EXPORT_SEGMENT_SIZE_KEY, segment.getSize());
+        writableMap.putDouble(EXPORT_SEGMENT_START_TIME_KEY, toDefaultJsTimeUnit(segment.getStartTimeMillis()));
+        writableMap.putDouble(EXPORT_SEGMENT_DURATION_KEY, toDefaultJsTimeUnit(segment.getDurationMillis()));
+        return writableMap;
+    }
+
+    private static boolean hasValue(ReadableMap map, String key) {
+        return map.hasKey(key) && !map.isNull(key);
+    }
+
+    private static WritableMap createExportStatusMap(ExportJobStatus status) {
+        WritableMap writableMap = Arguments.createMap();
+        writableMap.putInt(EXPORT_JOB_ID_KEY, status.getJobId());
+        writableMap.putString(EXPORT_JOB_STATE_KEY, status.getState().name().toLowerCase(Locale.US));
+        writableMap.putDouble(PREVIEW_AUDIO_PLAYER_EXPORT_PROGRESS_KEY, status.getProgress());
+        writableMap.putDouble(PREVIEW_AUDIO_PLAYER_EXPORT_REMAINING_TIME_KEY, toJsRemainingTime(status));
+        writableMap.putString(EXPORT_JOB_OUTPUT_FILE_PATH_KEY, status.getOutputFilePath());
+        writableMap.putString(EXPORT_JOB_ERROR_KEY, status.getErrorMessage());
+        return writableMap;
+    }
+
+    private static double toJsRemainingTime(ExportJobStatus status) {
+        return status.getRemainingTimeMillis() < 0 ? -1 : toDefaultJsTimeUnit(status.getRemainingTimeMillis());
+    }
+
+    private WritableMap createMetricsMap() {
+        WritableMap metricsMap = Arguments.createMap();
+        for (Map.Entry<String, LatencyHistogram> entry : previewAudioPlayerManager.getMetrics().snapshot().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            WritableMap histogramMap = Arguments.createMap();
+            histogramMap.putDouble(METRICS_COUNT_KEY, histogram.getCount());
+            histogramMap.putDouble(METRICS_MEAN_KEY, microsToDefaultJsTimeUnit(Math.round(histogram.getMeanMicros())));
+            histogramMap.putDouble(METRICS_MIN_KEY, microsToDefaultJsTimeUnit(histogram.getMinMicros()));
+            histogramMap.putDouble(METRICS_MAX_KEY, microsToDefaultJsTimeUnit(histogram.getMaxMicros()));
+            histogramMap.putDouble(METRICS_P50_KEY, microsToDefaultJsTimeUnit(histogram.getPercentileMicros(0.5)));
+            histogramMap.putDouble(METRICS_P90_KEY, microsToDefaultJsTimeUnit(histogram.getPercentileMicros(0.9)));
+            histogramMap.putDouble(METRICS_P99_KEY, microsToDefaultJsTimeUnit(histogram.getPercentileMicros(0.99)));
+            metricsMap.putMap(entry.getKey(), histogramMap);
+        }
+        return metricsMap;
+    }
+
+    private static float microsToDefaultJsTimeUnit(long timeMicros) {
+        return TimeUnitConverterUtil.toResultTimeUnitFloat(timeMicros, TimeUnit.MICROSECONDS, DEFAULT_JS_TIME_UNIT);
+    }
+
+    private static float toDefaultJsTimeUnit(long timeMillis) {
+        return TimeUnitConverterUtil.toResultTimeUnitFloat(timeMillis, TimeUnit.MILLISECONDS, DEFAULT_JS_TIME_UNIT);
     }
 
     /**
@@ -1,240 +1,568 @@
 package fm.ghinwa.previewaudioplayer.implementation;
 
 import android.content.Context;
-import android.util.Log;
-
-import com.github.hiteshsondhi88.libffmpeg.FFmpeg;
-import com.github.hiteshsondhi88.libffmpeg.FFmpegExecuteResponseHandler;
-import com.github.hiteshsondhi88.libffmpeg.FFmpegLoadBinaryResponseHandler;
+import android.os.Handler;
+import android.os.Looper;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
-import fm.ghinwa.previewaudioplayer.implementation.listener.OnFFmpegPrepareStatusListener;
-import fm.ghinwa.previewaudioplayer.implementation.listener.OnFfmpegCommandStatusListener;
-import fm.ghinwa.previewaudioplayer.implementation.player.OnCompletionListener;
-import fm.ghinwa.previewaudioplayer.implementation.player.OnPlaybackCompletedListener;
+import fm.ghinwa.previewaudioplayer.implementation.analysis.AlignmentAnalyzer;
+import fm.ghinwa.previewaudioplayer.implementation.audio.PcmCache;
+import fm.ghinwa.previewaudioplayer.implementation.export.AudioExporter;
+import fm.ghinwa.previewaudioplayer.implementation.export.CachingExporter;
+import fm.ghinwa.previewaudioplayer.implementation.export.EncodingContainer;
+import fm.ghinwa.previewaudioplayer.implementation.export.EncodingProfile;
+import fm.ghinwa.previewaudioplayer.implementation.export.ExportCache;
+import fm.ghinwa.previewaudioplayer.implementation.export.ExportJobState;
+import fm.ghinwa.previewaudioplayer.implementation.export.ExportJobStatus;
+import fm.ghinwa.previewaudioplayer.implementation.export.ExportPriority;
+import fm.ghinwa.previewaudioplayer.implementation.export.ExportScheduler;
+import fm.ghinwa.previewaudioplayer.implementation.export.ExportSegment;
+import fm.ghinwa.previewaudioplayer.implementation.export.SegmentedExportOutput;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnExportJobStatusListener;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnExportSegmentListener;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnPrepareStatusListener;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnSessionEventListener;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnWaveformStatusListener;
+import fm.ghinwa.previewaudioplayer.implementation.loudness.LoudnessCache;
+import fm.ghinwa.previewaudioplayer.implementation.loudness.OnLoudnessMeasuredListener;
+import fm.ghinwa.previewaudioplayer.implementation.metrics.PreviewMetrics;
+import fm.ghinwa.previewaudioplayer.implementation.player.MediaPlayerPool;
+import fm.ghinwa.previewaudioplayer.implementation.player.PlaybackEngineType;
 import fm.ghinwa.previewaudioplayer.implementation.player.PreviewPlayer;
-import fm.ghinwa.previewaudioplayer.implementation.player.ProgressUpdateListener;
 import fm.ghinwa.previewaudioplayer.implementation.util.FileUtils;
 import fm.ghinwa.previewaudioplayer.implementation.util.Logger;
-
-public class PreviewAudioPlayerManager {
+import fm.ghinwa.previewaudioplayer.implementation.util.TimeUnitConverterUtil;
+import fm.ghinwa.previewaudioplayer.implementation.waveform.Waveform;
+import fm.ghinwa.previewaudioplayer.implementation.waveform.WaveformExtractor;
+
+/**
+ * Owns preview sessions and the resources they share: caches, pooled native players, the export
+ * scheduler and a budget of decoders and memory. Sessions are addressed by the id returned from
+ * prepare; when the budget is exhausted the least recently used sessions are demoted until they
+ * are played again.
+ */
+public class PreviewAudioPlayerManager implements OnLoudnessMeasuredListener {
 
     private static final String TAG = PreviewAudioPlayerManager.class.getSimpleName();
 
-    private static final String FFMPEG_INPUT_PARAMETER = "-i";
-    private static final String FFMPEG_COMPLEX_FILTER_PARAMETER = "-filter_complex";
-    private static final String FFMPEG_OVERWRITE_OUTPUT_FILES_PARAMETER = "-y";
-    private static final String FFMPEG_FIRST_TRACK_VOLUME_PARAMETER = "[0:a]volume=";
-    private static final String FFMPEG_FIRST_TRACK_IDENTIFIER = "[a0]";
-    private static final String FFMPEG_SECOND_TRACK_IDENTIFIER = "[a1]";
-    private static final String FFMPEG_MIX_TRACKS_PARAMETER = FFMPEG_FIRST_TRACK_IDENTIFIER + FFMPEG_SECOND_TRACK_IDENTIFIER + "amix=inputs=2:duration=first";
-    private static final String FFMPEG_BITRATE_PARAMETER = "-b:a";
-    private static final String FFMPEG_BITRATE_VALUE = "64k";
-    private static final String FFMPEG_SECOND_TRACK_VOLUME_PARAMETER = "[1:a]volume=";
-    private static final String FFMPEG_FILTER_END = ";";
-
-    private final PreviewPlayer previewPlayer;
-    private final FFmpeg ffmpeg;
+    private final PcmCache pcmCache;
+    private final LoudnessCache loudnessCache;
+    private final ExportCache exportCache;
+    private final PreviewMetrics metrics = new PreviewMetrics();
+    private final MediaPlayerPool mediaPlayerPool = new MediaPlayerPool();
+    private final ExportScheduler exportScheduler;
+    private final WaveformExtractor waveformExtractor;
+    private final ExecutorService waveformExecutor;
+    private final ExecutorService alignmentExecutor;
+    private final ExecutorService analysisWorkerExecutor;
+    private final AlignmentAnalyzer alignmentAnalyzer;
+    private final Handler handler;
     private final Context context;
-
-    // TODO: 01.02.2017 recordingStartTimeInMillis are not used for now
-
-    private String originalRecordingPath;
-    private String processedInputPath;
-    private String backgroundAudioFilePathString;
-    private boolean isPrepared;
-    private boolean isFfmpegBinaryLoaded = false;
+    private final SessionBudget sessionBudget = new SessionBudget();
+    private final LinkedHashMap<Integer, PreviewSession> sessions = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int nextSessionId = 1;
+    private PlaybackEngineType playbackEngineType = PlaybackEngineType.MEDIA_PLAYER;
+    private boolean isProgressUpdateRateSet;
+    private float progressUpdatesPerSecond;
+    private float progressMinimumDelta;
+    private TimeUnit progressTimeUnit;
+    private boolean isOutputLatencyCompensated = true;
+    private boolean isAutomaticAlignmentEnabled;
+    private int alignmentMaxOffsetMillis = AlignmentAnalyzer.DEFAULT_MAX_OFFSET_MILLIS;
+    private boolean isLoudnessNormalized;
+    private float vocalToBackgroundLoudnessDb;
+    private OnSessionEventListener onSessionEventListener;
 
     public PreviewAudioPlayerManager(Context context) {
         this.context = context;
-        ffmpeg = FFmpeg.getInstance(context.getApplicationContext());
-        previewPlayer = new PreviewPlayer();
+        loudnessCache = new LoudnessCache(context);
+        loudnessCache.setOnLoudnessMeasuredListener(this);
+        pcmCache = new PcmCache(context, loudnessCache);
+        exportCache = new ExportCache(FileUtils.getExportCacheDirectory(context));
+        exportScheduler = new ExportScheduler(
+                new CachingExporter(new AudioExporter(), exportCache),
+                ExportScheduler.DEFAULT_WORKER_COUNT, metrics);
+        waveformExtractor = new WaveformExtractor(context, loudnessCache);
+        waveformExecutor = Executors.newSingleThreadExecutor();
+        alignmentExecutor = Executors.newSingleThreadExecutor();
+        analysisWorkerExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        alignmentAnalyzer = new AlignmentAnalyzer(analysisWorkerExecutor);
+        handler = new Handler(Looper.getMainLooper());
     }
 
-    public void prepare(String originalRecordingPath, String processedInputPath,
-                        String backgroundAudioFilePathString, float recordingStartTime,
-                        TimeUnit sourceTimeUnit, final OnFFmpegPrepareStatusListener onFFmpegPrepareStatusListener)
-            throws IOException {
-
-        this.originalRecordingPath = originalRecordingPath;
-        this.processedInputPath = processedInputPath;
-        this.backgroundAudioFilePathString = backgroundAudioFilePathString;
-
-        previewPlayer.prepare(originalRecordingPath, processedInputPath, backgroundAudioFilePathString, recordingStartTime, sourceTimeUnit);
-
-        if (isFfmpegBinaryLoaded) {
-            onFFmpegPrepareStatusListener.onFfmpegPrepareCompleted();
-        } else {
-            try {
-                ffmpeg.loadBinary(new FFmpegLoadBinaryResponseHandler() {
-                    @Override
-                    public void onFailure() {
-                        Logger.d(TAG, "Error while loading ffmpeg");
-                        onFFmpegPrepareStatusListener.onFfmpegPrepareError("Error while loading ffmpeg");
-                    }
-
-                    @Override
-                    public void onSuccess() {
-                        Logger.d(TAG, "Ffmpeg loaded");
-                        isPrepared = true;
-                        isFfmpegBinaryLoaded = true;
-                        Log.d("test", Thread.currentThread().getName());
-                        onFFmpegPrepareStatusListener.onFfmpegPrepareCompleted();
-                    }
+    /**
+     * Creates a session for the given tracks without preparing it.
+     *
+     * @return id of the new session
+     */
+    public int createSession(String originalRecordingPath, String processedInputPath,
+                             String backgroundAudioFilePathString, float recordingStartTime, TimeUnit sourceTimeUnit) {
+        PreviewPlayer previewPlayer = new PreviewPlayer(metrics, mediaPlayerPool);
+        previewPlayer.setPcmCache(pcmCache);
+        synchronized (this) {
+            previewPlayer.setPlaybackEngineType(playbackEngineType);
+            previewPlayer.setOutputLatencyCompensated(isOutputLatencyCompensated);
+            if (isProgressUpdateRateSet) {
+                previewPlayer.setProgressUpdateRate(progressUpdatesPerSecond, progressMinimumDelta, progressTimeUnit);
+            }
+            PreviewSession session = new PreviewSession(nextSessionId++, previewPlayer, this,
+                    originalRecordingPath, processedInputPath, backgroundAudioFilePathString,
+                    (int) TimeUnitConverterUtil.toResultTimeUnitLong(recordingStartTime, sourceTimeUnit, TimeUnit.MILLISECONDS));
+            session.updateLoudnessGains(loudnessCache, isLoudnessNormalized, vocalToBackgroundLoudnessDb);
+            sessions.put(session.getSessionId(), session);
+            return session.getSessionId();
+        }
+    }
 
-                    @Override
-                    public void onStart() {
-                        //no-op
-                    }
+    /**
+     * Prepares all tracks of the session in parallel without blocking the caller. The listener is
+     * called once, after every track is ready or with an error naming each track that failed;
+     * a session that failed to prepare is released. With automatic alignment enabled the vocal
+     * offset is estimated first; when that fails the session is prepared without an offset.
+     *
+     * @return false when there is no session with the id
+     */
+    public boolean prepareSession(final int sessionId, final OnPrepareStatusListener onPrepareStatusListener) {
+        final PreviewSession session = getSession(sessionId);
+        if (session == null) {
+            return false;
+        }
+        final OnPrepareStatusListener releasingListener = new OnPrepareStatusListener() {
+            @Override
+            public void onPrepareError(String message) {
+                releaseSession(sessionId);
+                onPrepareStatusListener.onPrepareError(message);
+            }
 
+            @Override
+            public void onPrepareCompleted() {
+                onPrepareStatusListener.onPrepareCompleted();
+            }
+        };
+        final int maxOffsetMillis;
+        synchronized (this) {
+            if (!isAutomaticAlignmentEnabled) {
+                session.prepare(releasingListener);
+                return true;
+            }
+            maxOffsetMillis = alignmentMaxOffsetMillis;
+        }
+        alignmentExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long startNanos = System.nanoTime();
+                try {
+                    session.estimateAlignment(alignmentAnalyzer, maxOffsetMillis);
+                } catch (IOException e) {
+                    Logger.e(TAG, "Error while estimating alignment: " + e.getMessage());
+                }
+                metrics.recordNanos(PreviewMetrics.ALIGNMENT_ANALYSIS, System.nanoTime() - startNanos);
+                handler.post(new Runnable() {
                     @Override
-                    public void onFinish() {
-                        //no-op
+                    public void run() {
+                        session.prepare(releasingListener);
                     }
                 });
-            } catch (Exception ex) {
-                onFFmpegPrepareStatusListener.onFfmpegPrepareError(ex.getLocalizedMessage());
             }
+        });
+        return true;
+    }
+
+    /**
+     * Looks the session up and marks it as most recently used.
+     *
+     * @return the session or null when there is no session with the id
+     */
+    public synchronized PreviewSession getSession(int sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    /**
+     * @return false when there was no session with the id
+     */
+    public boolean releaseSession(int sessionId) {
+        PreviewSession session;
+        synchronized (this) {
+            session = sessions.remove(sessionId);
+        }
+        if (session == null) {
+            return false;
         }
+        session.release();
+        return true;
     }
 
-    public void createPreviewFile(final OnFfmpegCommandStatusListener onFfmpegCommandStatusListener) {
-        if (!isPrepared) {
-            onFfmpegCommandStatusListener.onFfmpegCommandError(
-                    "Prepare should be called before creating preview file");
-        } else {
+    /**
+     * Sets how many decoders and how much decoded audio memory all active sessions may hold
+     * together. Sessions over the new budget are demoted right away.
+     */
+    public void setSessionBudget(int maxDecoders, long maxMemoryBytes) {
+        sessionBudget.setLimits(maxDecoders, maxMemoryBytes);
+        demote(selectForDemotion(null, 0, 0));
+    }
 
-            try {
-                final String outputFilePath = FileUtils.createNewFilePathForFileIfNull(context,
-                        FileUtils.FILENAME_MIXED_PREFIX);
+    public synchronized void setOnSessionEventListener(OnSessionEventListener onSessionEventListener) {
+        this.onSessionEventListener = onSessionEventListener;
+    }
 
-                ffmpeg.execute(createFfmpegCommand(outputFilePath), new FFmpegExecuteResponseHandler() {
-                    @Override
-                    public void onSuccess(String message) {
-                        Logger.d(TAG, "Preview file created: " + message);
-                        onFfmpegCommandStatusListener.onFfmpegCommandCompleted(outputFilePath);
-                    }
+    /**
+     * Demotes least recently used sessions so that the session can open its decoders.
+     */
+    void reserveResources(PreviewSession session) {
+        demote(selectForDemotion(session, PreviewPlayer.MAX_DECODER_COUNT, 0));
+    }
 
-                    @Override
-                    public void onProgress(String message) {
-                        Logger.d(TAG, "Creating preview file progress: " + message);
-                    }
+    /**
+     * Demotes least recently used sessions when the prepared session holds more than expected.
+     */
+    void onSessionPrepared(PreviewSession session) {
+        demote(selectForDemotion(session, session.getDecoderCount(), session.getMemoryBytes()));
+    }
 
-                    @Override
-                    public void onFailure(String message) {
-                        Logger.d(TAG, "Error while creating preview file" + message);
-                        onFfmpegCommandStatusListener.onFfmpegCommandError("Error while creating preview file" + message);
-                    }
+    void onSessionProgressUpdate(PreviewSession session, int currentTimeMillis) {
+        OnSessionEventListener listener = getOnSessionEventListener();
+        if (listener != null) {
+            listener.onSessionProgressUpdate(session.getSessionId(), currentTimeMillis);
+        }
+    }
 
-                    @Override
-                    public void onStart() {
-                        //no-op
-                    }
+    void onSessionLoopIteration(PreviewSession session, int iteration) {
+        OnSessionEventListener listener = getOnSessionEventListener();
+        if (listener != null) {
+            listener.onSessionLoopIteration(session.getSessionId(), iteration);
+        }
+    }
 
-                    @Override
-                    public void onFinish() {
-                        //no-op
-                    }
-                });
-            } catch (Exception ex) {
-                onFfmpegCommandStatusListener.onFfmpegCommandError(ex.getLocalizedMessage());
+    void onSessionPlaybackCompleted(PreviewSession session) {
+        OnSessionEventListener listener = getOnSessionEventListener();
+        if (listener != null) {
+            listener.onSessionPlaybackCompleted(session.getSessionId());
+        }
+    }
+
+    /**
+     * Sessions being prepared cannot be demoted, their decoders are added to the requirement.
+     */
+    private synchronized List<PreviewSession> selectForDemotion(PreviewSession requester, int requiredDecoders,
+                                                                long requiredMemoryBytes) {
+        List<PreviewSession> candidates = new ArrayList<>();
+        for (PreviewSession session : sessions.values()) {
+            if (session == requester) {
+                continue;
+            }
+            if (session.isPromoting()) {
+                requiredDecoders += session.getDecoderCount();
+                requiredMemoryBytes += session.getMemoryBytes();
+            } else if (session.isActive()) {
+                candidates.add(session);
             }
         }
+        return sessionBudget.selectForDemotion(candidates, requiredDecoders, requiredMemoryBytes);
     }
 
-    public void play(OnCompletionListener onCompletionListener) {
-        previewPlayer.play(onCompletionListener);
+    private void demote(List<PreviewSession> sessionsToDemote) {
+        OnSessionEventListener listener = getOnSessionEventListener();
+        for (PreviewSession session : sessionsToDemote) {
+            Logger.d(TAG, "Demoting preview session " + session.getSessionId());
+            session.demote();
+            if (listener != null) {
+                listener.onSessionDemoted(session.getSessionId());
+            }
+        }
     }
 
-    private String[] createFfmpegCommand(String outputFilePath) {
-        return new String[]{
-                FFMPEG_INPUT_PARAMETER, backgroundAudioFilePathString,
-                FFMPEG_INPUT_PARAMETER, previewPlayer.isOriginalVocalUsed() ? originalRecordingPath : processedInputPath,
-                FFMPEG_COMPLEX_FILTER_PARAMETER,
-                FFMPEG_FIRST_TRACK_VOLUME_PARAMETER + previewPlayer.getCurrentBackgroundTrackVolume() +
-                        FFMPEG_FIRST_TRACK_IDENTIFIER + FFMPEG_FILTER_END +
-                        FFMPEG_SECOND_TRACK_VOLUME_PARAMETER + previewPlayer.getCurrentVocalVolume() +
-                        FFMPEG_SECOND_TRACK_IDENTIFIER + FFMPEG_FILTER_END + FFMPEG_MIX_TRACKS_PARAMETER,
-                FFMPEG_BITRATE_PARAMETER, FFMPEG_BITRATE_VALUE,
-                FFMPEG_OVERWRITE_OUTPUT_FILES_PARAMETER, outputFilePath
-        };
+    private synchronized OnSessionEventListener getOnSessionEventListener() {
+        return onSessionEventListener;
     }
 
-    public void stop() {
-        previewPlayer.stop();
+    /**
+     * Schedules export of the preview window of the session. An identical export that is still
+     * queued or running is reused. Listener is called on the main thread.
+     *
+     * @return id of the export job
+     * @throws IllegalStateException when the session is not prepared
+     */
+    public int createPreviewFile(PreviewSession session, ExportPriority priority, EncodingProfile encodingProfile,
+                                 final OnExportJobStatusListener onExportJobStatusListener) throws IOException {
+        if (!session.isPrepared()) {
+            throw new IllegalStateException("Prepare should be called before creating preview file");
+        }
+        String outputFilePath = FileUtils.createNewFilePathForFileIfNull(context, FileUtils.FILENAME_MIXED_PREFIX,
+                encodingProfile.getContainer().getFileSuffix());
+        return exportScheduler.submit(session.createExportingConfiguration(encodingProfile), outputFilePath, priority,
+                createMainThreadExportListener(onExportJobStatusListener));
     }
 
-    public void playAt(float startTime, TimeUnit timeUnit, OnCompletionListener onCompletionListener) {
-        previewPlayer.playAt(startTime, timeUnit, onCompletionListener);
+    /**
+     * Schedules export of the preview window of the session as ADTS segments written to the output,
+     * so they can be uploaded while the rest is encoded. The container of the profile is ignored.
+     * Segmented exports are not cached and not merged with other exports. Listeners are called on
+     * the main thread, every segment is announced before the job finishes.
+     *
+     * @return id of the export job
+     * @throws IllegalStateException when the session is not prepared
+     */
+    public int createSegmentedPreviewFile(PreviewSession session, ExportPriority priority, EncodingProfile encodingProfile,
+                                          SegmentedExportOutput output,
+                                          final OnExportSegmentListener onExportSegmentListener,
+                                          OnExportJobStatusListener onExportJobStatusListener) {
+        if (!session.isPrepared()) {
+            throw new IllegalStateException("Prepare should be called before creating preview file");
+        }
+        EncodingProfile segmentedProfile = encodingProfile.withContainer(EncodingContainer.ADTS);
+        return exportScheduler.submitSegmented(session.createExportingConfiguration(segmentedProfile), output, priority,
+                new OnExportSegmentListener() {
+                    @Override
+                    public void onExportSegmentWritten(final int jobId, final ExportSegment segment) {
+                        handler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                onExportSegmentListener.onExportSegmentWritten(jobId, segment);
+                            }
+                        });
+                    }
+                }, createMainThreadExportListener(onExportJobStatusListener));
     }
 
-    public void pause() {
-        previewPlayer.pause();
+    private OnExportJobStatusListener createMainThreadExportListener(
+            final OnExportJobStatusListener onExportJobStatusListener) {
+        return new OnExportJobStatusListener() {
+            @Override
+            public void onExportJobProgress(final ExportJobStatus status) {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onExportJobStatusListener.onExportJobProgress(status);
+                    }
+                });
+            }
+
+            @Override
+            public void onExportJobFinished(final ExportJobStatus status) {
+                if (status.getState() == ExportJobState.COMPLETED) {
+                    Logger.d(TAG, "Preview file created: " + status.getOutputFilePath());
+                } else {
+                    Logger.e(TAG, "Preview file not created: " + status.getErrorMessage());
+                }
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onExportJobStatusListener.onExportJobFinished(status);
+                    }
+                });
+            }
+        };
     }
 
-    public void unPause(OnCompletionListener onCompletionListener) {
-        previewPlayer.unPause(onCompletionListener);
+    /**
+     * @return status of the export job or null when the job is not known
+     */
+    public ExportJobStatus getExportStatus(int jobId) {
+        return exportScheduler.getStatus(jobId);
     }
 
-    public void playPreview(OnCompletionListener onCompletionListener) {
-        previewPlayer.playPreview(onCompletionListener);
+    /**
+     * Cancels the export job. Its listeners receive a cancelled status and the partial output
+     * file is deleted.
+     *
+     * @return false when there was no such unfinished job
+     */
+    public boolean cancelExport(int jobId) {
+        return exportScheduler.cancel(jobId);
     }
 
-    public void setPreviewStartTime(float previewStartTime, TimeUnit defaultJsTimeUnit) {
-        previewPlayer.setPreviewStartTime(previewStartTime, defaultJsTimeUnit);
+    /**
+     * Cancels running and queued exports.
+     */
+    public void cancelExports() {
+        exportScheduler.cancelAll();
     }
 
-    public void setPreviewDuration(float duration, TimeUnit defaultJsTimeUnit) {
-        previewPlayer.setPreviewDuration(duration, defaultJsTimeUnit);
+    /**
+     * Computes min/max waveform of the given time range of an audio file on a background thread.
+     * The file is decoded only the first time, later calls are served from the peak cache.
+     *
+     * @param endTime end of the range, zero or less for the end of the track
+     */
+    public void getWaveform(final String path, float startTime, float endTime, final int pixelCount,
+                            TimeUnit timeUnit, final OnWaveformStatusListener onWaveformStatusListener) {
+        final long startTimeMillis = TimeUnitConverterUtil.toResultTimeUnitLong(startTime, timeUnit, TimeUnit.MILLISECONDS);
+        final long endTimeMillis = TimeUnitConverterUtil.toResultTimeUnitLong(endTime, timeUnit, TimeUnit.MILLISECONDS);
+
+        waveformExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final Waveform waveform = waveformExtractor.getWaveform(path, startTimeMillis, endTimeMillis, pixelCount);
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onWaveformStatusListener.onWaveformCompleted(waveform);
+                        }
+                    });
+                } catch (final IOException e) {
+                    Logger.e(TAG, "Error while computing waveform: " + e.getMessage());
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onWaveformStatusListener.onWaveformError("Error while computing waveform: " + e.getMessage());
+                        }
+                    });
+                }
+            }
+        });
     }
 
-    public float getPreviewStartTime(TimeUnit timeUnit) {
-        return previewPlayer.getPreviewStartTime(timeUnit);
+    /**
+     * Selects the playback engine used by the following prepare calls of all sessions.
+     */
+    public void setPlaybackEngineType(PlaybackEngineType playbackEngineType) {
+        for (PreviewSession session : setPlaybackEngineTypeLocked(playbackEngineType)) {
+            session.getPreviewPlayer().setPlaybackEngineType(playbackEngineType);
+        }
     }
 
-    public float getPreviewDuration(TimeUnit timeUnit) {
-        return previewPlayer.getPreviewDuration(timeUnit);
+    /**
+     * Sets the disk budget for decoded background tracks kept between prepare calls.
+     */
+    public void setDecodedAudioCacheSize(long maxSizeBytes) {
+        pcmCache.setMaxSizeBytes(maxSizeBytes);
     }
 
-    public float getPlaybackDuration(TimeUnit timeUnit) {
-        return previewPlayer.getPlaybackDuration(timeUnit);
+    /**
+     * Sets the disk budget for finished exports that are returned again for identical requests.
+     */
+    public void setExportCacheSize(long maxSizeBytes) {
+        exportCache.setMaxSizeBytes(maxSizeBytes);
     }
 
-    public void seekToTime(float time, TimeUnit timeUnit, OnCompletionListener onCompletionListener) {
-        previewPlayer.seekTo(time, timeUnit, onCompletionListener);
+    /**
+     * Releases all sessions and native resources, called when the module is torn down.
+     */
+    public void destroy() {
+        List<PreviewSession> releasedSessions;
+        synchronized (this) {
+            releasedSessions = new ArrayList<>(sessions.values());
+            sessions.clear();
+        }
+        for (PreviewSession session : releasedSessions) {
+            session.release();
+        }
+        mediaPlayerPool.clear();
+        pcmCache.shutdown();
+        exportScheduler.shutdown();
+        waveformExecutor.shutdownNow();
+        alignmentExecutor.shutdownNow();
+        analysisWorkerExecutor.shutdownNow();
     }
 
-    public float getCurrentTime(TimeUnit timeUnit) {
-        return previewPlayer.getCurrentTime(timeUnit);
+    /**
+     * Histograms of prepare, seek, start, progress check and export timings recorded so far.
+     */
+    public PreviewMetrics getMetrics() {
+        return metrics;
     }
 
-    public void setVolume(float vocalTrackVolume, float backgroundTrackVolume) {
-        previewPlayer.setVolume(vocalTrackVolume, backgroundTrackVolume);
+    /**
+     * Applies to all sessions, present and future.
+     */
+    public void setProgressUpdateRate(float updatesPerSecond, float minimumDelta, TimeUnit timeUnit) {
+        List<PreviewSession> currentSessions;
+        synchronized (this) {
+            isProgressUpdateRateSet = true;
+            progressUpdatesPerSecond = updatesPerSecond;
+            progressMinimumDelta = minimumDelta;
+            progressTimeUnit = timeUnit;
+            currentSessions = new ArrayList<>(sessions.values());
+        }
+        for (PreviewSession session : currentSessions) {
+            session.getPreviewPlayer().setProgressUpdateRate(updatesPerSecond, minimumDelta, timeUnit);
+        }
     }
 
-    public void switchToOriginalVocalTrack() {
-        previewPlayer.switchToOriginalVocalTrack();
+    /**
+     * Selects whether sessions report the presented position or the raw decoder position,
+     * applies to all sessions, present and future.
+     */
+    public void setOutputLatencyCompensated(boolean isOutputLatencyCompensated) {
+        List<PreviewSession> currentSessions;
+        synchronized (this) {
+            this.isOutputLatencyCompensated = isOutputLatencyCompensated;
+            currentSessions = new ArrayList<>(sessions.values());
+        }
+        for (PreviewSession session : currentSessions) {
+            session.getPreviewPlayer().setOutputLatencyCompensated(isOutputLatencyCompensated);
+        }
     }
 
-    public void switchToProcessedVocalTrack() {
-        previewPlayer.switchToProcessedVocalTrack();
+    /**
+     * Selects whether volumes of sessions are adjusted to match loudness of their tracks, applies
+     * to all sessions, present and future, and to their exports. A track is matched once it was
+     * decoded in full, by the decoded audio cache or by waveform extraction; sessions report their
+     * gains as not measured until then.
+     *
+     * @param vocalToBackgroundDb how much louder than the background the vocal should be
+     */
+    public void setLoudnessNormalization(boolean isLoudnessNormalized, float vocalToBackgroundDb) {
+        synchronized (this) {
+            this.isLoudnessNormalized = isLoudnessNormalized;
+            vocalToBackgroundLoudnessDb = vocalToBackgroundDb;
+        }
+        updateLoudnessGains(null);
     }
 
-    public boolean isPrepared() {
-        return isPrepared;
+    /**
+     * Called on the thread that decoded the file, sessions using it are updated on the main thread.
+     */
+    @Override
+    public void onLoudnessMeasured(final String path, double integratedLoudness) {
+        Logger.d(TAG, "Integrated loudness of " + path + ": " + integratedLoudness + " LUFS");
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                updateLoudnessGains(path);
+            }
+        });
     }
 
-    public void release() {
-        previewPlayer.release();
+    /**
+     * @param path file whose loudness changed, null to update all sessions
+     */
+    private void updateLoudnessGains(String path) {
+        List<PreviewSession> currentSessions;
+        boolean isNormalized;
+        float vocalToBackgroundDb;
+        synchronized (this) {
+            currentSessions = new ArrayList<>(sessions.values());
+            isNormalized = isLoudnessNormalized;
+            vocalToBackgroundDb = vocalToBackgroundLoudnessDb;
+        }
+        for (PreviewSession session : currentSessions) {
+            if (path == null || session.usesFile(path)) {
+                session.updateLoudnessGains(loudnessCache, isNormalized, vocalToBackgroundDb);
+            }
+        }
     }
 
-    public void setPlayerProgressUpdateListener(ProgressUpdateListener progressUpdateListener) {
-        previewPlayer.setProgressUpdateListener(progressUpdateListener);
+    /**
+     * Selects whether the vocal offset is estimated before sessions are prepared, applies to the
+     * following prepare calls. The offset is searched within the given maximum in both directions.
+     */
+    public synchronized void setAutomaticAlignment(boolean isAutomaticAlignmentEnabled, float maxOffset, TimeUnit timeUnit) {
+        this.isAutomaticAlignmentEnabled = isAutomaticAlignmentEnabled;
+        alignmentMaxOffsetMillis = (int) TimeUnitConverterUtil.toResultTimeUnitLong(maxOffset, timeUnit, TimeUnit.MILLISECONDS);
     }
 
-    public void setOnPlaybackCompletedListener(OnPlaybackCompletedListener onPlaybackCompletedListener) {
-        previewPlayer.setPlaybackCompletedListener(onPlaybackCompletedListener);
+    private synchronized List<PreviewSession> setPlaybackEngineTypeLocked(PlaybackEngineType playbackEngineType) {
+        this.playbackEngineType = playbackEngineType;
+        return new ArrayList<>(sessions.values());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,565 @@
+package fm.ghinwa.previewaudioplayer.implementation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import fm.ghinwa.previewaudioplayer.implementation.analysis.AlignmentAnalyzer;
+import fm.ghinwa.previewaudioplayer.implementation.analysis.AlignmentEstimate;
+import fm.ghinwa.previewaudioplayer.implementation.export.EncodingProfile;
+import fm.ghinwa.previewaudioplayer.implementation.export.ExportingConfiguration;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnPrepareStatusListener;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnSessionCommandListener;
+import fm.ghinwa.previewaudioplayer.implementation.loudness.LoudnessCache;
+import fm.ghinwa.previewaudioplayer.implementation.loudness.LoudnessGains;
+import fm.ghinwa.previewaudioplayer.implementation.player.DriftStatistics;
+import fm.ghinwa.previewaudioplayer.implementation.player.OnCompletionListener;
+import fm.ghinwa.previewaudioplayer.implementation.player.OnLoopIterationListener;
+import fm.ghinwa.previewaudioplayer.implementation.player.OnPlaybackCompletedListener;
+import fm.ghinwa.previewaudioplayer.implementation.player.OnSeekCompletionListener;
+import fm.ghinwa.previewaudioplayer.implementation.player.PreviewPlayer;
+import fm.ghinwa.previewaudioplayer.implementation.player.ProgressUpdateListener;
+import fm.ghinwa.previewaudioplayer.implementation.util.Logger;
+import fm.ghinwa.previewaudioplayer.implementation.util.TimeUnitConverterUtil;
+
+/**
+ * One prepared preview of a recording, addressed by id. Besides being active, a session can be
+ * demoted by the {@link PreviewAudioPlayerManager} to free decoders for other sessions: its
+ * engine is released while paths, settings and position are kept, and it is prepared again
+ * before the next playback command runs. Seeks and settings of a demoted session are only
+ * remembered.
+ */
+public class PreviewSession implements SessionBudget.Consumer, ProgressUpdateListener, OnPlaybackCompletedListener,
+        OnLoopIterationListener {
+
+    private static final String TAG = PreviewSession.class.getSimpleName();
+
+    private static final TimeUnit DEFAULT_TIME_UNIT = TimeUnit.MILLISECONDS;
+
+    private final int sessionId;
+    private final PreviewPlayer previewPlayer;
+    private final PreviewAudioPlayerManager manager;
+    private final String originalRecordingPath;
+    private final String processedInputPath;
+    private final String backgroundAudioFilePath;
+    private final int recordingStartTimeMillis;
+    private final List<PendingStart> pendingStarts = new ArrayList<>();
+
+    private OnPrepareStatusListener onPrepareStatusListener;
+    private boolean isPrepared;
+    private boolean isActive;
+    private boolean isPromoting;
+    private boolean isReleased;
+    private int restorePositionMillis;
+    private int playbackDurationMillis;
+    private int exportFadeDurationMillis;
+    private int alignmentOffsetMillis;
+
+    PreviewSession(int sessionId, PreviewPlayer previewPlayer, PreviewAudioPlayerManager manager,
+                   String originalRecordingPath, String processedInputPath, String backgroundAudioFilePath,
+                   int recordingStartTimeMillis) {
+        this.sessionId = sessionId;
+        this.previewPlayer = previewPlayer;
+        this.manager = manager;
+        this.originalRecordingPath = originalRecordingPath;
+        this.processedInputPath = processedInputPath;
+        this.backgroundAudioFilePath = backgroundAudioFilePath;
+        this.recordingStartTimeMillis = recordingStartTimeMillis;
+        previewPlayer.setProgressUpdateListener(this);
+        previewPlayer.setPlaybackCompletedListener(this);
+        previewPlayer.setOnLoopIterationListener(this);
+    }
+
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    @Override
+    public void onPlayerProgressUpdate(int currentTimeMillis) {
+        manager.onSessionProgressUpdate(this, currentTimeMillis);
+    }
+
+    @Override
+    public void onPlaybackComplete() {
+        manager.onSessionPlaybackCompleted(this);
+    }
+
+    @Override
+    public void onLoopIteration(int iteration) {
+        manager.onSessionLoopIteration(this, iteration);
+    }
+
+    @Override
+    public int getDecoderCount() {
+        return previewPlayer.getDecoderCount();
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return previewPlayer.getMemoryBytes();
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return previewPlayer.isPlaying();
+    }
+
+    /**
+     * Prepares the session for the first time, the listener is called once all tracks are ready.
+     */
+    void prepare(OnPrepareStatusListener onPrepareStatusListener) {
+        synchronized (this) {
+            this.onPrepareStatusListener = onPrepareStatusListener;
+        }
+        promote();
+    }
+
+    public void play(OnSessionCommandListener onSessionCommandListener) {
+        runStart(new PendingStart(onSessionCommandListener) {
+            @Override
+            void start(OnCompletionListener onCompletionListener) {
+                previewPlayer.play(onCompletionListener);
+            }
+        });
+    }
+
+    public void playAt(final float startTime, final TimeUnit timeUnit, OnSessionCommandListener onSessionCommandListener) {
+        runStart(new PendingStart(onSessionCommandListener) {
+            @Override
+            void start(OnCompletionListener onCompletionListener) {
+                previewPlayer.playAt(startTime, timeUnit, onCompletionListener);
+            }
+        });
+    }
+
+    public void unPause(OnSessionCommandListener onSessionCommandListener) {
+        runStart(new PendingStart(onSessionCommandListener) {
+            @Override
+            void start(OnCompletionListener onCompletionListener) {
+                previewPlayer.unPause(onCompletionListener);
+            }
+        });
+    }
+
+    public void playPreview(OnSessionCommandListener onSessionCommandListener) {
+        runStart(new PendingStart(onSessionCommandListener) {
+            @Override
+            void start(OnCompletionListener onCompletionListener) {
+                previewPlayer.playPreview(onCompletionListener);
+            }
+        });
+    }
+
+    /**
+     * Also drops playback commands waiting for the session to be prepared again.
+     */
+    public void pause() {
+        if (cancelPendingStarts()) {
+            previewPlayer.pause();
+        }
+    }
+
+    public void stop() {
+        synchronized (this) {
+            restorePositionMillis = 0;
+        }
+        if (cancelPendingStarts()) {
+            previewPlayer.stop();
+        }
+    }
+
+    public void seekTo(float time, TimeUnit timeUnit, OnSeekCompletionListener onSeekCompletionListener) {
+        synchronized (this) {
+            if (!isActive) {
+                restorePositionMillis = (int) TimeUnitConverterUtil.toResultTimeUnitLong(time, timeUnit, DEFAULT_TIME_UNIT);
+            }
+        }
+        if (isActive()) {
+            previewPlayer.seekTo(time, timeUnit, onSeekCompletionListener);
+        } else {
+            onSeekCompletionListener.onSeekCompleted();
+        }
+    }
+
+    public float getCurrentTime(TimeUnit timeUnit) {
+        if (isActive()) {
+            return previewPlayer.getCurrentTime(timeUnit);
+        }
+        return TimeUnitConverterUtil.toResultTimeUnitFloat(getRestorePositionMillis(), DEFAULT_TIME_UNIT, timeUnit);
+    }
+
+    /**
+     * @return output latency measured while playing, 0 while demoted
+     */
+    public float getOutputLatency(TimeUnit timeUnit) {
+        if (isActive()) {
+            return previewPlayer.getOutputLatency(timeUnit);
+        }
+        return 0;
+    }
+
+    /**
+     * @return duration of the tracks, the one measured before demotion while demoted
+     */
+    public float getPlaybackDuration(TimeUnit timeUnit) {
+        if (isActive()) {
+            return previewPlayer.getPlaybackDuration(timeUnit);
+        }
+        synchronized (this) {
+            return TimeUnitConverterUtil.toResultTimeUnitFloat(playbackDurationMillis, DEFAULT_TIME_UNIT, timeUnit);
+        }
+    }
+
+    public void setPreviewStartTime(float previewStartTime, TimeUnit timeUnit) {
+        previewPlayer.setPreviewStartTime(previewStartTime, timeUnit);
+    }
+
+    public void setPreviewDuration(float duration, TimeUnit timeUnit) {
+        previewPlayer.setPreviewDuration(duration, timeUnit);
+    }
+
+    /**
+     * Kept while the session is demoted, like the other settings.
+     */
+    public void setPreviewLoopEnabled(boolean isPreviewLoopEnabled) {
+        previewPlayer.setPreviewLoopEnabled(isPreviewLoopEnabled);
+    }
+
+    public float getPreviewStartTime(TimeUnit timeUnit) {
+        return previewPlayer.getPreviewStartTime(timeUnit);
+    }
+
+    public float getPreviewDuration(TimeUnit timeUnit) {
+        return previewPlayer.getPreviewDuration(timeUnit);
+    }
+
+    /**
+     * Sets length of fade-in and fade-out applied to the edges of exported preview window.
+     */
+    public synchronized void setExportFadeDuration(float fadeDuration, TimeUnit timeUnit) {
+        exportFadeDurationMillis = (int) TimeUnitConverterUtil.toResultTimeUnitLong(fadeDuration, timeUnit, DEFAULT_TIME_UNIT);
+    }
+
+    public void setVolume(float vocalTrackVolume, float backgroundTrackVolume) {
+        previewPlayer.setVolume(vocalTrackVolume, backgroundTrackVolume);
+    }
+
+    /**
+     * Matches the tracks to the given loudness difference with the measurements found in the cache,
+     * or goes back to unity gains when normalization is off. Tracks not measured yet keep unity gains
+     * reported as {@link LoudnessGains#NOT_MEASURED}.
+     */
+    void updateLoudnessGains(LoudnessCache loudnessCache, boolean isLoudnessNormalized, float vocalToBackgroundDb) {
+        if (!isLoudnessNormalized) {
+            previewPlayer.setLoudnessGains(LoudnessGains.UNITY, LoudnessGains.UNITY);
+            return;
+        }
+        double backgroundLoudness = loudnessCache.getIntegratedLoudness(backgroundAudioFilePath);
+        previewPlayer.setLoudnessGains(
+                LoudnessGains.match(loudnessCache.getIntegratedLoudness(originalRecordingPath), backgroundLoudness,
+                        vocalToBackgroundDb),
+                LoudnessGains.match(loudnessCache.getIntegratedLoudness(processedInputPath), backgroundLoudness,
+                        vocalToBackgroundDb));
+    }
+
+    /**
+     * @return whether any track of the session is the file at the path
+     */
+    boolean usesFile(String path) {
+        return path.equals(backgroundAudioFilePath) || path.equals(originalRecordingPath)
+                || path.equals(processedInputPath);
+    }
+
+    /**
+     * @return gains applied for loudness of the vocal track in use
+     */
+    public LoudnessGains getLoudnessGains() {
+        return previewPlayer.getLoudnessGains();
+    }
+
+    public void switchToOriginalVocalTrack() {
+        previewPlayer.switchToOriginalVocalTrack();
+    }
+
+    public void switchToProcessedVocalTrack() {
+        previewPlayer.switchToProcessedVocalTrack();
+    }
+
+    public void setVocalSwitchMode(boolean isActiveVocalOnly, float crossfadeDuration, TimeUnit timeUnit) {
+        previewPlayer.setVocalSwitchMode(isActiveVocalOnly, crossfadeDuration, timeUnit);
+    }
+
+    public void setDriftThreshold(float threshold, TimeUnit timeUnit) {
+        previewPlayer.setDriftThreshold(threshold, timeUnit);
+    }
+
+    public DriftStatistics getDriftStatistics() {
+        return previewPlayer.getDriftStatistics();
+    }
+
+    /**
+     * Matches the original vocal against the background and keeps the offset when the match is
+     * reliable. Blocking, it is meant to run before the first prepare; an offset found later is
+     * used from the next time the session is prepared again.
+     */
+    AlignmentEstimate estimateAlignment(AlignmentAnalyzer alignmentAnalyzer, int maxOffsetMillis) throws IOException {
+        AlignmentEstimate estimate = alignmentAnalyzer.estimate(backgroundAudioFilePath, originalRecordingPath,
+                recordingStartTimeMillis, maxOffsetMillis);
+        Logger.d(TAG, "Alignment of session " + sessionId + ": " + estimate.getOffsetMillis()
+                + " ms, confidence " + estimate.getConfidence());
+        if (estimate.isReliable()) {
+            synchronized (this) {
+                alignmentOffsetMillis = estimate.getOffsetMillis();
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * @return offset added to the recording start time, 0 until a reliable one was estimated
+     */
+    public synchronized float getAlignmentOffset(TimeUnit timeUnit) {
+        return TimeUnitConverterUtil.toResultTimeUnitFloat(alignmentOffsetMillis, DEFAULT_TIME_UNIT, timeUnit);
+    }
+
+    /**
+     * @return whether the session was prepared successfully, demoted sessions included
+     */
+    public synchronized boolean isPrepared() {
+        return isPrepared;
+    }
+
+    synchronized boolean isActive() {
+        return isActive;
+    }
+
+    synchronized boolean isPromoting() {
+        return isPromoting;
+    }
+
+    PreviewPlayer getPreviewPlayer() {
+        return previewPlayer;
+    }
+
+    synchronized ExportingConfiguration createExportingConfiguration(EncodingProfile encodingProfile) {
+        return new ExportingConfiguration(backgroundAudioFilePath,
+                previewPlayer.isOriginalVocalUsed() ? originalRecordingPath : processedInputPath,
+                previewPlayer.getEffectiveVocalVolume(), previewPlayer.getEffectiveBackgroundTrackVolume(),
+                getAlignedRecordingStartTimeMillis(),
+                (int) previewPlayer.getPreviewStartTime(DEFAULT_TIME_UNIT),
+                (int) previewPlayer.getPreviewDuration(DEFAULT_TIME_UNIT),
+                exportFadeDurationMillis, encodingProfile);
+    }
+
+    /**
+     * Releases the engine and keeps the position, so the session can be prepared again later.
+     * Sessions being prepared are not demoted.
+     */
+    void demote() {
+        synchronized (this) {
+            if (!isActive || isPromoting) {
+                return;
+            }
+            isActive = false;
+            restorePositionMillis = (int) previewPlayer.getCurrentTime(DEFAULT_TIME_UNIT);
+            playbackDurationMillis = (int) previewPlayer.getPlaybackDuration(DEFAULT_TIME_UNIT);
+        }
+        previewPlayer.release();
+    }
+
+    /**
+     * Releases the session for good, commands waiting for it to be prepared fail.
+     */
+    void release() {
+        List<PendingStart> failedStarts;
+        OnPrepareStatusListener failedPrepareListener;
+        synchronized (this) {
+            isReleased = true;
+            isActive = false;
+            isPromoting = false;
+            failedStarts = new ArrayList<>(pendingStarts);
+            pendingStarts.clear();
+            failedPrepareListener = onPrepareStatusListener;
+            onPrepareStatusListener = null;
+        }
+        previewPlayer.destroy();
+        String message = "Preview session " + sessionId + " was released";
+        if (failedPrepareListener != null) {
+            failedPrepareListener.onPrepareError(message);
+        }
+        for (PendingStart pendingStart : failedStarts) {
+            pendingStart.onSessionCommandListener.onCommandError(message);
+        }
+    }
+
+    private void runStart(PendingStart pendingStart) {
+        boolean isReady;
+        synchronized (this) {
+            isReady = isReleased || isActive && !isPromoting;
+            if (!isReady) {
+                pendingStarts.add(pendingStart);
+            }
+        }
+        if (isReleased()) {
+            pendingStart.onSessionCommandListener.onCommandError("Preview session " + sessionId + " was released");
+        } else if (isReady) {
+            pendingStart.run();
+        } else {
+            promote();
+        }
+    }
+
+    /**
+     * @return whether the engine is active and should handle the command itself
+     */
+    private boolean cancelPendingStarts() {
+        List<PendingStart> cancelledStarts;
+        boolean isEngineActive;
+        synchronized (this) {
+            cancelledStarts = new ArrayList<>(pendingStarts);
+            pendingStarts.clear();
+            isEngineActive = isActive;
+        }
+        for (PendingStart pendingStart : cancelledStarts) {
+            pendingStart.onSessionCommandListener.onCommandCompleted();
+        }
+        return isEngineActive;
+    }
+
+    private synchronized boolean isReleased() {
+        return isReleased;
+    }
+
+    private synchronized int getRestorePositionMillis() {
+        return restorePositionMillis;
+    }
+
+    private synchronized int getAlignedRecordingStartTimeMillis() {
+        return recordingStartTimeMillis + alignmentOffsetMillis;
+    }
+
+    /**
+     * Makes room within the budget, prepares the engine and seeks it back to the position the
+     * session had when it was demoted; pending commands run once that seek is done.
+     */
+    private void promote() {
+        synchronized (this) {
+            if (isPromoting || isActive || isReleased) {
+                return;
+            }
+            isPromoting = true;
+        }
+        manager.reserveResources(this);
+        try {
+            previewPlayer.prepare(originalRecordingPath, processedInputPath, backgroundAudioFilePath,
+                    getAlignedRecordingStartTimeMillis(), DEFAULT_TIME_UNIT, new OnPrepareStatusListener() {
+                        @Override
+                        public void onPrepareError(String message) {
+                            onPromotionFailed(message);
+                        }
+
+                        @Override
+                        public void onPrepareCompleted() {
+                            onPromotionPrepared();
+                        }
+                    });
+        } catch (IOException e) {
+            onPromotionFailed(e.getMessage());
+        }
+    }
+
+    private void onPromotionPrepared() {
+        int positionMillis;
+        synchronized (this) {
+            if (isReleased) {
+                return;
+            }
+            isPrepared = true;
+            isActive = true;
+            positionMillis = restorePositionMillis;
+        }
+        manager.onSessionPrepared(this);
+        if (positionMillis == 0) {
+            onPromotionCompleted();
+            return;
+        }
+        previewPlayer.seekTo(positionMillis, DEFAULT_TIME_UNIT, new OnSeekCompletionListener() {
+            @Override
+            public void onSeekCompleted() {
+                onPromotionCompleted();
+            }
+
+            @Override
+            public void onSeekSuperseded() {
+                onPromotionCompleted();
+            }
+        });
+    }
+
+    private void onPromotionCompleted() {
+        OnPrepareStatusListener completedPrepareListener;
+        List<PendingStart> startsToRun;
+        synchronized (this) {
+            if (isReleased) {
+                return;
+            }
+            isPromoting = false;
+            completedPrepareListener = onPrepareStatusListener;
+            onPrepareStatusListener = null;
+            startsToRun = new ArrayList<>(pendingStarts);
+            pendingStarts.clear();
+        }
+        if (completedPrepareListener != null) {
+            completedPrepareListener.onPrepareCompleted();
+        }
+        for (PendingStart pendingStart : startsToRun) {
+            pendingStart.run();
+        }
+    }
+
+    private void onPromotionFailed(String message) {
+        Logger.e(TAG, message);
+        OnPrepareStatusListener failedPrepareListener;
+        List<PendingStart> failedStarts;
+        synchronized (this) {
+            if (isReleased) {
+                return;
+            }
+            isPromoting = false;
+            failedPrepareListener = onPrepareStatusListener;
+            onPrepareStatusListener = null;
+            failedStarts = new ArrayList<>(pendingStarts);
+            pendingStarts.clear();
+        }
+        if (failedPrepareListener != null) {
+            failedPrepareListener.onPrepareError(message);
+        }
+        for (PendingStart pendingStart : failedStarts) {
+            pendingStart.onSessionCommandListener.onCommandError(message);
+        }
+    }
+
+    /**
+     * Playback command that may have to wait until a demoted session is prepared again.
+     */
+    private abstract static class PendingStart {
+
+        private final OnSessionCommandListener onSessionCommandListener;
+
+        PendingStart(OnSessionCommandListener onSessionCommandListener) {
+            this.onSessionCommandListener = onSessionCommandListener;
+        }
+
+        abstract void start(OnCompletionListener onCompletionListener);
+
+        void run() {
+            start(new OnCompletionListener() {
+                @Override
+                public void onComplete() {
+                    onSessionCommandListener.onCommandCompleted();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package fm.ghinwa.previewaudioplayer.implementation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Global limit of decoders and in-process audio memory held by prepared sessions. When a
+ * session needs more than is left, the least recently used sessions are picked for demotion;
+ * playing sessions are picked only when idle ones do not free enough. A single session that
+ * alone exceeds the limit is still allowed.
+ */
+class SessionBudget {
+
+    static final int DEFAULT_MAX_DECODERS = 6;
+    static final long DEFAULT_MAX_MEMORY_BYTES = 64 * 1024 * 1024;
+
+    interface Consumer {
+
+        int getDecoderCount();
+
+        long getMemoryBytes();
+
+        boolean isPlaying();
+    }
+
+    private int maxDecoders = DEFAULT_MAX_DECODERS;
+    private long maxMemoryBytes = DEFAULT_MAX_MEMORY_BYTES;
+
+    synchronized void setLimits(int maxDecoders, long maxMemoryBytes) {
+        this.maxDecoders = maxDecoders;
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    /**
+     * @param consumers          sessions currently holding resources, least recently used first,
+     *                           not including the requesting one
+     * @param requiredDecoders   decoders the requesting session holds or is about to open
+     * @param requiredMemoryBytes memory the requesting session holds or is about to use
+     * @return sessions to demote, in the order they should be demoted
+     */
+    synchronized <T extends Consumer> List<T> selectForDemotion(List<T> consumers, int requiredDecoders,
+                                                                long requiredMemoryBytes) {
+        int decoders = requiredDecoders;
+        long memoryBytes = requiredMemoryBytes;
+        for (T consumer : consumers) {
+            decoders += consumer.getDecoderCount();
+            memoryBytes += consumer.getMemoryBytes();
+        }
+        List<T> selected = new ArrayList<>();
+        for (int pass = 0; pass < 2; pass++) {
+            boolean isPlayingPass = pass == 1;
+            for (T consumer : consumers) {
+                if (decoders <= maxDecoders && memoryBytes <= maxMemoryBytes) {
+                    return selected;
+                }
+                if (consumer.isPlaying() == isPlayingPass) {
+                    selected.add(consumer);
+                    decoders -= consumer.getDecoderCount();
+                    memoryBytes -= consumer.getMemoryBytes();
+                }
+            }
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,147 @@
+package fm.ghinwa.previewaudioplayer.implementation.analysis;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import fm.ghinwa.previewaudioplayer.implementation.audio.PcmTrackReader;
+
+/**
+ * Estimates how far a vocal is shifted against its background track, typically by the input
+ * latency of the recording device. Onset envelopes of both tracks are computed at a low rate
+ * and cross-correlated over lags within the given maximum offset. Only the first minute of the
+ * vocal is analysed and both tracks are decoded in parallel, so a long take is analysed in
+ * about the time of decoding one minute of audio.
+ * Blocking, must not be called on the main or JS thread.
+ */
+public class AlignmentAnalyzer {
+
+    public static final int DEFAULT_MAX_OFFSET_MILLIS = 500;
+
+    static final int ENVELOPE_SAMPLE_RATE = 8000;
+    static final int HOP_FRAMES = 40;
+    static final double MIN_CONFIDENCE = 6;
+
+    private static final int HOP_MILLIS = HOP_FRAMES * 1000 / ENVELOPE_SAMPLE_RATE;
+    private static final long ANALYSIS_WINDOW_MILLIS = 60000;
+    private static final int FRAMES_PER_CHUNK = 4096;
+    private static final int MONO = 1;
+
+    private final ExecutorService workerExecutor;
+    private final CrossCorrelator crossCorrelator;
+
+    /**
+     * @param workerExecutor runs decoding of the background and the correlation blocks, it should
+     *                       have a thread per core and must not be the executor the caller runs on
+     */
+    public AlignmentAnalyzer(ExecutorService workerExecutor) {
+        this.workerExecutor = workerExecutor;
+        crossCorrelator = new CrossCorrelator(workerExecutor);
+    }
+
+    /**
+     * @param recordingStartTimeMillis position in the background track at which the vocal starts
+     * @param maxOffsetMillis          largest shift that is searched for, in both directions
+     * @throws InterruptedIOException when the thread was interrupted
+     */
+    public AlignmentEstimate estimate(final String backgroundAudioFilePath, String vocalAudioFilePath,
+                                      final int recordingStartTimeMillis, int maxOffsetMillis) throws IOException {
+        final int maxLagHops = Math.max(1, maxOffsetMillis / HOP_MILLIS);
+        PcmTrackReader vocalReader = new PcmTrackReader(vocalAudioFilePath, ENVELOPE_SAMPLE_RATE, MONO);
+        Future<double[]> backgroundEnvelope = null;
+        try {
+            long windowMillis = Math.min(ANALYSIS_WINDOW_MILLIS, TimeUnit.MICROSECONDS.toMillis(vocalReader.getDurationUs()));
+            final int windowHops = (int) (windowMillis / HOP_MILLIS);
+            if (windowHops <= 0) {
+                return AlignmentEstimate.NONE;
+            }
+            backgroundEnvelope = workerExecutor.submit(new Callable<double[]>() {
+                @Override
+                public double[] call() throws IOException {
+                    PcmTrackReader backgroundReader = new PcmTrackReader(backgroundAudioFilePath, ENVELOPE_SAMPLE_RATE, MONO);
+                    try {
+                        backgroundReader.seekTo(TimeUnit.MILLISECONDS.toMicros(recordingStartTimeMillis - maxLagHops * HOP_MILLIS));
+                        return readEnvelope(backgroundReader, windowHops + 2 * maxLagHops);
+                    } finally {
+                        backgroundReader.release();
+                    }
+                }
+            });
+            vocalReader.seekTo(0);
+            double[] vocalEnvelope = readEnvelope(vocalReader, windowHops);
+            double[] correlation = crossCorrelator.correlate(vocalEnvelope, backgroundEnvelope.get(), maxLagHops);
+            return toEstimate(correlation, maxLagHops);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Alignment analysis cancelled");
+        } catch (ExecutionException | RuntimeException e) {
+            throw new IOException("Alignment analysis failed", e);
+        } finally {
+            if (backgroundEnvelope != null) {
+                backgroundEnvelope.cancel(true);
+            }
+            vocalReader.release();
+        }
+    }
+
+    /**
+     * Reads exactly the given number of hops, the envelope is zero past the end of the track.
+     */
+    private static double[] readEnvelope(PcmTrackReader reader, int hopCount) {
+        OnsetEnvelope envelope = new OnsetEnvelope(HOP_FRAMES, hopCount);
+        short[] chunk = new short[FRAMES_PER_CHUNK];
+        long remainingFrames = (long) hopCount * HOP_FRAMES;
+        while (remainingFrames > 0) {
+            int frames = reader.read(chunk, (int) Math.min(FRAMES_PER_CHUNK, remainingFrames));
+            if (frames == PcmTrackReader.END_OF_STREAM) {
+                break;
+            }
+            envelope.add(chunk, frames);
+            remainingFrames -= frames;
+        }
+        double[] values = envelope.toArray();
+        if (values.length < hopCount) {
+            double[] padded = new double[hopCount];
+            System.arraycopy(values, 0, padded, 0, values.length);
+            return padded;
+        }
+        return values;
+    }
+
+    /**
+     * Picks the strongest lag and refines it between hops by fitting a parabola through the peak
+     * and its neighbours.
+     */
+    static AlignmentEstimate toEstimate(double[] correlation, int maxLagHops) {
+        int peakIndex = 0;
+        double sum = 0;
+        for (int i = 0; i < correlation.length; i++) {
+            sum += correlation[i];
+            if (correlation[i] > correlation[peakIndex]) {
+                peakIndex = i;
+            }
+        }
+        double mean = sum / correlation.length;
+        double variance = 0;
+        for (double value : correlation) {
+            variance += (value - mean) * (value - mean);
+        }
+        double deviation = Math.sqrt(variance / correlation.length);
+        double confidence = deviation > 0 ? (correlation[peakIndex] - mean) / deviation : 0;
+
+        double peakLag = peakIndex - maxLagHops;
+        if (peakIndex > 0 && peakIndex < correlation.length - 1) {
+            double previous = correlation[peakIndex - 1];
+            double next = correlation[peakIndex + 1];
+            double curvature = previous - 2 * correlation[peakIndex] + next;
+            if (curvature < 0) {
+                peakLag += 0.5 * (previous - next) / curvature;
+            }
+        }
+        return new AlignmentEstimate((int) Math.round(peakLag * HOP_MILLIS), confidence, confidence >= MIN_CONFIDENCE);
+    }
+}
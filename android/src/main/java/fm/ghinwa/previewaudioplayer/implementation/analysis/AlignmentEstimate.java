@@ -0,0 +1,41 @@
+package fm.ghinwa.previewaudioplayer.implementation.analysis;
+
+/**
+ * Result of matching a vocal against its background track.
+ */
+public class AlignmentEstimate {
+
+    public static final AlignmentEstimate NONE = new AlignmentEstimate(0, 0, false);
+
+    private final int offsetMillis;
+    private final double confidence;
+    private final boolean isReliable;
+
+    AlignmentEstimate(int offsetMillis, double confidence, boolean isReliable) {
+        this.offsetMillis = offsetMillis;
+        this.confidence = confidence;
+        this.isReliable = isReliable;
+    }
+
+    /**
+     * @return time to add to the recording start time so the vocal lines up with the background,
+     * negative when the vocal came in late
+     */
+    public int getOffsetMillis() {
+        return offsetMillis;
+    }
+
+    /**
+     * @return how many standard deviations the best match stands above the average one
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * @return whether the best match stands out enough for the offset to be applied
+     */
+    public boolean isReliable() {
+        return isReliable;
+    }
+}
@@ -0,0 +1,98 @@
+package fm.ghinwa.previewaudioplayer.implementation.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Cross-correlates a signal against a longer one over a bounded range of lags. The signal is
+ * split into blocks that are correlated with FFTs independently and in parallel; the partial
+ * correlations are summed, so the FFT size depends on the block length and the lag range only.
+ */
+class CrossCorrelator {
+
+    static final int DEFAULT_BLOCK_LENGTH = 4096;
+
+    private final ExecutorService executor;
+    private final int blockLength;
+
+    CrossCorrelator(ExecutorService executor) {
+        this(executor, DEFAULT_BLOCK_LENGTH);
+    }
+
+    CrossCorrelator(ExecutorService executor, int blockLength) {
+        this.executor = executor;
+        this.blockLength = blockLength;
+    }
+
+    /**
+     * @param signal   signal of length n
+     * @param searched signal of length n + 2 * maxLag, searched[i + maxLag] lines up with signal[i] at lag 0
+     * @return correlation for lags from -maxLag to maxLag, lag l at index l + maxLag
+     */
+    double[] correlate(final double[] signal, final double[] searched, final int maxLag)
+            throws InterruptedException, ExecutionException {
+        if (searched.length < signal.length + 2 * maxLag) {
+            throw new IllegalArgumentException("Searched signal is shorter than signal plus lag range");
+        }
+        double[] correlation = new double[2 * maxLag + 1];
+        if (signal.length <= blockLength) {
+            add(correlation, correlateBlock(signal, searched, 0, signal.length, maxLag));
+            return correlation;
+        }
+
+        List<Callable<double[]>> blocks = new ArrayList<>();
+        for (int start = 0; start < signal.length; start += blockLength) {
+            final int blockStart = start;
+            final int length = Math.min(blockLength, signal.length - start);
+            blocks.add(new Callable<double[]>() {
+                @Override
+                public double[] call() {
+                    return correlateBlock(signal, searched, blockStart, length, maxLag);
+                }
+            });
+        }
+        for (Future<double[]> block : executor.invokeAll(blocks)) {
+            add(correlation, block.get());
+        }
+        return correlation;
+    }
+
+    /**
+     * Correlation of signal[start, start + length) with searched[start, start + length + 2 * maxLag).
+     * The FFT is long enough that the circular correlation does not wrap for the lags kept.
+     */
+    static double[] correlateBlock(double[] signal, double[] searched, int start, int length, int maxLag) {
+        int searchedLength = length + 2 * maxLag;
+        int size = Fft.nextPowerOfTwo(searchedLength);
+        double[] signalReal = new double[size];
+        double[] signalImaginary = new double[size];
+        double[] searchedReal = new double[size];
+        double[] searchedImaginary = new double[size];
+        System.arraycopy(signal, start, signalReal, 0, length);
+        System.arraycopy(searched, start, searchedReal, 0, searchedLength);
+
+        Fft.transform(signalReal, signalImaginary, false);
+        Fft.transform(searchedReal, searchedImaginary, false);
+        for (int i = 0; i < size; i++) {
+            double real = signalReal[i] * searchedReal[i] + signalImaginary[i] * searchedImaginary[i];
+            double imaginary = signalReal[i] * searchedImaginary[i] - signalImaginary[i] * searchedReal[i];
+            searchedReal[i] = real;
+            searchedImaginary[i] = imaginary;
+        }
+        Fft.transform(searchedReal, searchedImaginary, true);
+
+        double[] correlation = new double[2 * maxLag + 1];
+        System.arraycopy(searchedReal, 0, correlation, 0, correlation.length);
+        return correlation;
+    }
+
+    private static void add(double[] sum, double[] values) {
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += values[i];
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package fm.ghinwa.previewaudioplayer.implementation.analysis;
+
+/**
+ * In-place iterative radix-2 complex FFT.
+ */
+final class Fft {
+
+    private Fft() {
+        throw new AssertionError();
+    }
+
+    /**
+     * @param real      real parts, length must be a power of two
+     * @param imaginary imaginary parts, same length
+     * @param isInverse computes the inverse transform, scaled by 1 / length
+     */
+    static void transform(double[] real, double[] imaginary, boolean isInverse) {
+        int length = real.length;
+        for (int i = 1, j = 0; i < length; i++) {
+            int bit = length >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                double swap = real[i];
+                real[i] = real[j];
+                real[j] = swap;
+                swap = imaginary[i];
+                imaginary[i] = imaginary[j];
+                imaginary[j] = swap;
+            }
+        }
+
+        for (int size = 2; size <= length; size <<= 1) {
+            double angle = (isInverse ? 2 : -2) * Math.PI / size;
+            double stepReal = Math.cos(angle);
+            double stepImaginary = Math.sin(angle);
+            int half = size >> 1;
+            for (int start = 0; start < length; start += size) {
+                double twiddleReal = 1;
+                double twiddleImaginary = 0;
+                for (int k = 0; k < half; k++) {
+                    int even = start + k;
+                    int odd = even + half;
+                    double oddReal = real[odd] * twiddleReal - imaginary[odd] * twiddleImaginary;
+                    double oddImaginary = real[odd] * twiddleImaginary + imaginary[odd] * twiddleReal;
+                    real[odd] = real[even] - oddReal;
+                    imaginary[odd] = imaginary[even] - oddImaginary;
+                    real[even] += oddReal;
+                    imaginary[even] += oddImaginary;
+                    double nextReal = twiddleReal * stepReal - twiddleImaginary * stepImaginary;
+                    twiddleImaginary = twiddleReal * stepImaginary + twiddleImaginary * stepReal;
+                    twiddleReal = nextReal;
+                }
+            }
+        }
+
+        if (isInverse) {
+            for (int i = 0; i < length; i++) {
+                real[i] /= length;
+                imaginary[i] /= length;
+            }
+        }
+    }
+
+    static int nextPowerOfTwo(int value) {
+        int powerOfTwo = 1;
+        while (powerOfTwo < value) {
+            powerOfTwo <<= 1;
+        }
+        return powerOfTwo;
+    }
+}
@@ -0,0 +1,70 @@
+package fm.ghinwa.previewaudioplayer.implementation.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Onset strength of a mono signal: the rise of log energy from one hop to the next, with falls
+ * ignored. Sung notes and drum hits show up as peaks while steady parts stay near zero, which
+ * lets a vocal be matched against its backing track although the two sound nothing alike.
+ */
+class OnsetEnvelope {
+
+    private final int hopFrames;
+
+    private double[] values;
+    private int length;
+    private double hopEnergy;
+    private int hopFrameCount;
+    private double previousLogEnergy;
+
+    /**
+     * @param expectedHops number of hops the buffer is sized for, it grows when more are added
+     */
+    OnsetEnvelope(int hopFrames, int expectedHops) {
+        this.hopFrames = hopFrames;
+        values = new double[Math.max(1, expectedHops)];
+    }
+
+    void add(short[] samples, int count) {
+        for (int i = 0; i < count; i++) {
+            double sample = samples[i];
+            hopEnergy += sample * sample;
+            if (++hopFrameCount == hopFrames) {
+                endHop();
+            }
+        }
+    }
+
+    /**
+     * @return onset strength per complete hop with the mean removed, so loud and quiet
+     * stretches do not bias the correlation
+     */
+    double[] toArray() {
+        double[] envelope = Arrays.copyOf(values, length);
+        double sum = 0;
+        for (double value : envelope) {
+            sum += value;
+        }
+        double mean = length > 0 ? sum / length : 0;
+        for (int i = 0; i < length; i++) {
+            envelope[i] -= mean;
+        }
+        return envelope;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    private void endHop() {
+        double logEnergy = Math.log(hopEnergy / hopFrames + 1);
+        double onset = length > 0 ? Math.max(0, logEnergy - previousLogEnergy) : 0;
+        previousLogEnergy = logEnergy;
+        if (length == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[length++] = onset;
+        hopEnergy = 0;
+        hopFrameCount = 0;
+    }
+}
@@ -0,0 +1,134 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Encodes interleaved 16 bit PCM to AAC LC one chunk at a time and passes the encoded frames to
+ * an {@link AacFrameSink}.
+ */
+public class AacEncoder {
+
+    private static final String AAC_MIME_TYPE = "audio/mp4a-latm";
+    private static final long DEQUEUE_TIMEOUT_US = 10000;
+    private static final int BYTES_PER_SAMPLE = 2;
+
+    private final MediaCodec codec;
+    private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    private final AacFrameSink frameSink;
+    private final int sampleRate;
+    private final int channelCount;
+
+    private ByteBuffer[] inputBuffers;
+    private ByteBuffer[] outputBuffers;
+
+    private long encodedFrames;
+    private boolean isOutputDone;
+
+    public AacEncoder(int sampleRate, int channelCount, int bitRate, AacFrameSink frameSink) throws IOException {
+        if (!AdtsHeader.isSampleRateSupported(sampleRate)) {
+            throw new IOException("Unsupported sample rate: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.frameSink = frameSink;
+
+        MediaFormat format = MediaFormat.createAudioFormat(AAC_MIME_TYPE, sampleRate, channelCount);
+        format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
+
+        MediaCodec encoder = null;
+        try {
+            encoder = MediaCodec.createEncoderByType(AAC_MIME_TYPE);
+            encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            encoder.start();
+        } catch (RuntimeException e) {
+            if (encoder != null) {
+                encoder.release();
+            }
+            throw new IOException("Unable to create AAC encoder", e);
+        }
+        codec = encoder;
+        inputBuffers = codec.getInputBuffers();
+        outputBuffers = codec.getOutputBuffers();
+    }
+
+    /**
+     * Queues frames for encoding, blocking until the codec accepted all of them.
+     * Encoded output is written to the stream as it becomes available.
+     */
+    public void encode(short[] samples, int frames) throws IOException {
+        int sampleCount = frames * channelCount;
+        int offset = 0;
+        while (offset < sampleCount) {
+            int index = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+            if (index >= 0) {
+                ByteBuffer inputBuffer = inputBuffers[index];
+                inputBuffer.clear();
+                int capacitySamples = inputBuffer.remaining() / BYTES_PER_SAMPLE / channelCount * channelCount;
+                int count = Math.min(capacitySamples, sampleCount - offset);
+                inputBuffer.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().put(samples, offset, count);
+                codec.queueInputBuffer(index, 0, count * BYTES_PER_SAMPLE, presentationTimeUs(), 0);
+                encodedFrames += count / channelCount;
+                offset += count;
+            }
+            drainOutput(0);
+        }
+    }
+
+    /**
+     * Signals end of input and writes all remaining encoded frames.
+     */
+    public void finish() throws IOException {
+        int index;
+        do {
+            index = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+            drainOutput(0);
+        } while (index < 0);
+        codec.queueInputBuffer(index, 0, 0, presentationTimeUs(), MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+        while (!isOutputDone) {
+            drainOutput(DEQUEUE_TIMEOUT_US);
+        }
+        frameSink.finish();
+    }
+
+    public void release() {
+        try {
+            codec.stop();
+        } catch (IllegalStateException e) {
+            // codec was never started or already failed, release anyway
+        }
+        codec.release();
+    }
+
+    private void drainOutput(long timeoutUs) throws IOException {
+        while (!isOutputDone) {
+            int index = codec.dequeueOutputBuffer(bufferInfo, timeoutUs);
+            if (index == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                return;
+            } else if (index == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                outputBuffers = codec.getOutputBuffers();
+            } else if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                frameSink.onOutputFormat(codec.getOutputFormat());
+            } else if (index >= 0) {
+                boolean isCodecConfig = (bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+                if (bufferInfo.size > 0 && !isCodecConfig) {
+                    frameSink.writeFrame(outputBuffers[index], bufferInfo);
+                }
+                if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                    isOutputDone = true;
+                }
+                codec.releaseOutputBuffer(index, false);
+            }
+        }
+    }
+
+    private long presentationTimeUs() {
+        return encodedFrames * 1000000L / sampleRate;
+    }
+}
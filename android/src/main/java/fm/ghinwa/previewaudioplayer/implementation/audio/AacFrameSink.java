@@ -0,0 +1,33 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Stores encoded AAC frames produced by {@link AacEncoder} in a container.
+ */
+public interface AacFrameSink {
+
+    /**
+     * Called once with the encoder output format before the first frame.
+     */
+    void onOutputFormat(MediaFormat format) throws IOException;
+
+    /**
+     * Writes one encoded frame, the frame data is between info.offset and info.offset + info.size.
+     */
+    void writeFrame(ByteBuffer frame, MediaCodec.BufferInfo info) throws IOException;
+
+    /**
+     * Completes the file after the last frame.
+     */
+    void finish() throws IOException;
+
+    /**
+     * Frees resources, also when the export failed before {@link #finish()}.
+     */
+    void release() throws IOException;
+}
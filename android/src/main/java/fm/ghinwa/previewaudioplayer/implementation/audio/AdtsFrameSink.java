@@ -0,0 +1,57 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes frames as an ADTS stream, each frame preceded by its header. Owns the output stream.
+ */
+public class AdtsFrameSink implements AacFrameSink {
+
+    private final OutputStream outputStream;
+    private final int sampleRate;
+    private final int channelCount;
+    private final byte[] header = new byte[AdtsHeader.LENGTH];
+
+    private byte[] frameBuffer = new byte[0];
+
+    public AdtsFrameSink(OutputStream outputStream, int sampleRate, int channelCount) {
+        this.outputStream = outputStream;
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+    }
+
+    @Override
+    public void onOutputFormat(MediaFormat format) {
+        // ADTS headers carry everything a decoder needs
+    }
+
+    @Override
+    public void writeFrame(ByteBuffer frame, MediaCodec.BufferInfo info) throws IOException {
+        if (frameBuffer.length < info.size) {
+            frameBuffer = new byte[info.size];
+        }
+        frame.position(info.offset);
+        frame.limit(info.offset + info.size);
+        frame.get(frameBuffer, 0, info.size);
+        frame.clear();
+
+        AdtsHeader.write(header, info.size, sampleRate, channelCount);
+        outputStream.write(header);
+        outputStream.write(frameBuffer, 0, info.size);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        outputStream.flush();
+    }
+
+    @Override
+    public void release() throws IOException {
+        outputStream.close();
+    }
+}
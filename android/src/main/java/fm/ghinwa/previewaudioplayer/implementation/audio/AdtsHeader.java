@@ -0,0 +1,51 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+/**
+ * Builds ADTS headers so raw AAC frames from MediaCodec can be written as a plain .aac stream.
+ */
+public final class AdtsHeader {
+
+    public static final int LENGTH = 7;
+
+    private static final int AAC_PROFILE_LC = 2;
+
+    private static final int[] SAMPLING_FREQUENCIES = {
+            96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350
+    };
+
+    private AdtsHeader() {
+        throw new AssertionError();
+    }
+
+    public static boolean isSampleRateSupported(int sampleRate) {
+        return samplingFrequencyIndex(sampleRate) >= 0;
+    }
+
+    /**
+     * Writes a 7 byte ADTS header (MPEG-4, AAC LC, no CRC) for a frame with the given payload size.
+     */
+    public static void write(byte[] header, int payloadLength, int sampleRate, int channelCount) {
+        int frequencyIndex = samplingFrequencyIndex(sampleRate);
+        if (frequencyIndex < 0) {
+            throw new IllegalArgumentException("Unsupported sample rate: " + sampleRate);
+        }
+        int frameLength = payloadLength + LENGTH;
+
+        header[0] = (byte) 0xFF;
+        header[1] = (byte) 0xF1;
+        header[2] = (byte) (((AAC_PROFILE_LC - 1) << 6) | (frequencyIndex << 2) | (channelCount >> 2));
+        header[3] = (byte) (((channelCount & 3) << 6) | (frameLength >> 11));
+        header[4] = (byte) ((frameLength & 0x7FF) >> 3);
+        header[5] = (byte) (((frameLength & 7) << 5) | 0x1F);
+        header[6] = (byte) 0xFC;
+    }
+
+    private static int samplingFrequencyIndex(int sampleRate) {
+        for (int i = 0; i < SAMPLING_FREQUENCIES.length; i++) {
+            if (SAMPLING_FREQUENCIES[i] == sampleRate) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
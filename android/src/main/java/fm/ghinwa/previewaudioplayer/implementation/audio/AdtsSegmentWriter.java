@@ -0,0 +1,28 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Destination of the segments written by {@link SegmentedAdtsFrameSink}.
+ */
+public interface AdtsSegmentWriter {
+
+    /**
+     * @return stream the frames of the segment are written to, segments are numbered from 0
+     */
+    OutputStream beginSegment(int index) throws IOException;
+
+    /**
+     * Called after the last frame of the segment was written to its stream. Once this returns
+     * the segment must be readable by others.
+     *
+     * @param size number of bytes written to the segment stream
+     */
+    void endSegment(int index, long size, long startTimeUs, long durationUs) throws IOException;
+
+    /**
+     * Frees resources, also when the export failed in the middle of a segment.
+     */
+    void release() throws IOException;
+}
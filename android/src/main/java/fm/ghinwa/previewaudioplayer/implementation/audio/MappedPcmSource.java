@@ -0,0 +1,75 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Reads already decoded PCM from a memory mapped cache file.
+ */
+class MappedPcmSource implements PcmSource {
+
+    private final ShortBuffer samples;
+    private final int sampleRate;
+    private final int channelCount;
+    private final long frameCount;
+
+    private long positionFrames;
+
+    MappedPcmSource(ShortBuffer samples, int sampleRate, int channelCount) {
+        this.samples = samples;
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        frameCount = samples.capacity() / channelCount;
+    }
+
+    @Override
+    public int getOutputSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public int getOutputChannelCount() {
+        return channelCount;
+    }
+
+    @Override
+    public long getDurationUs() {
+        return frameCount * 1000000L / sampleRate;
+    }
+
+    @Override
+    public void seekTo(long timeUs) {
+        positionFrames = timeUs * sampleRate / 1000000L;
+    }
+
+    @Override
+    public int read(short[] destination, int frames) {
+        if (positionFrames >= frameCount) {
+            Arrays.fill(destination, 0, frames * channelCount, (short) 0);
+            return END_OF_STREAM;
+        }
+
+        int written = 0;
+        if (positionFrames < 0) {
+            written = (int) Math.min(frames, -positionFrames);
+            Arrays.fill(destination, 0, written * channelCount, (short) 0);
+        }
+
+        long firstFrame = positionFrames + written;
+        int available = (int) Math.min(frames - written, frameCount - firstFrame);
+        samples.position((int) (firstFrame * channelCount));
+        samples.get(destination, written * channelCount, available * channelCount);
+        written += available;
+
+        if (written < frames) {
+            Arrays.fill(destination, written * channelCount, frames * channelCount, (short) 0);
+        }
+        positionFrames += written;
+        return written;
+    }
+
+    @Override
+    public void release() {
+        //no-op, mapping is released together with the buffer
+    }
+}
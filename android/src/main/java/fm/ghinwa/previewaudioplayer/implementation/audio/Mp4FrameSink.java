@@ -0,0 +1,52 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+import android.annotation.TargetApi;
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Build;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes frames to an MPEG-4 audio file with {@link MediaMuxer}.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+public class Mp4FrameSink implements AacFrameSink {
+
+    private final MediaMuxer muxer;
+
+    private int trackIndex = -1;
+
+    public Mp4FrameSink(String outputFilePath) throws IOException {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            throw new IOException("MP4 output requires Android 4.3 or newer");
+        }
+        muxer = new MediaMuxer(outputFilePath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    }
+
+    @Override
+    public void onOutputFormat(MediaFormat format) {
+        trackIndex = muxer.addTrack(format);
+        muxer.start();
+    }
+
+    @Override
+    public void writeFrame(ByteBuffer frame, MediaCodec.BufferInfo info) throws IOException {
+        if (trackIndex < 0) {
+            throw new IOException("Encoded frame received before output format");
+        }
+        muxer.writeSampleData(trackIndex, frame, info);
+    }
+
+    @Override
+    public void finish() {
+        muxer.stop();
+    }
+
+    @Override
+    public void release() {
+        muxer.release();
+    }
+}
@@ -0,0 +1,268 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+import android.content.Context;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import fm.ghinwa.previewaudioplayer.implementation.loudness.LoudnessCache;
+import fm.ghinwa.previewaudioplayer.implementation.loudness.LoudnessMeter;
+import fm.ghinwa.previewaudioplayer.implementation.util.FileUtils;
+import fm.ghinwa.previewaudioplayer.implementation.util.Logger;
+
+/**
+ * Keeps fully decoded tracks as raw PCM files in the cache directory, so a track that was
+ * prepared before can be played without running the decoder again. Files are memory mapped
+ * when opened, which keeps the samples out of the Java heap and lets the system page them in
+ * and out as needed. The total size is kept under a byte budget by evicting the least recently
+ * used files.
+ * <p>
+ * A track missing from the cache is decoded on a background thread after {@link #prefetch} is called.
+ * Its loudness is measured on the way and stored in the {@link LoudnessCache}.
+ */
+public class PcmCache {
+
+    private static final String TAG = PcmCache.class.getSimpleName();
+
+    public static final long DEFAULT_MAX_SIZE_BYTES = 100 * 1024 * 1024;
+
+    private static final String CACHE_DIRECTORY_NAME = "pcm";
+    private static final String PCM_FILE_SUFFIX = ".pcm";
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private static final int MAGIC = 0x5043414B;
+    private static final int HEADER_SIZE = 12;
+    private static final int BYTES_PER_SAMPLE = 2;
+    private static final int FRAMES_PER_CHUNK = 4096;
+
+    private final Context context;
+    private final LoudnessCache loudnessCache;
+    private final ExecutorService decodeExecutor = Executors.newSingleThreadExecutor();
+    private final LinkedHashMap<String, File> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> pendingKeys = new HashSet<>();
+
+    private long maxSizeBytes = DEFAULT_MAX_SIZE_BYTES;
+    private long sizeBytes;
+    private boolean isIndexLoaded;
+
+    public PcmCache(Context context, LoudnessCache loudnessCache) {
+        this.context = context;
+        this.loudnessCache = loudnessCache;
+    }
+
+    public synchronized void setMaxSizeBytes(long maxSizeBytes) {
+        this.maxSizeBytes = maxSizeBytes;
+        trimToSize();
+    }
+
+    /**
+     * Returns the cached decoded track or null when the track is not cached yet.
+     */
+    public synchronized PcmSource open(String path) {
+        try {
+            loadIndex();
+            String key = FileUtils.createFileCacheKey(path);
+            File pcmFile = entries.get(key);
+            if (pcmFile == null) {
+                return null;
+            }
+            try {
+                return mapPcmFile(pcmFile);
+            } catch (IOException e) {
+                Logger.e(TAG, "Discarding corrupted pcm file " + pcmFile.getName() + ": " + e.getMessage());
+                removeEntry(key);
+                return null;
+            }
+        } catch (IOException e) {
+            Logger.e(TAG, "Pcm cache unavailable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Decodes the track into the cache on a background thread unless it is cached already. Tracks
+     * whose decoded size, estimated from their duration, exceeds the whole budget are not decoded,
+     * they would be evicted right after being written.
+     */
+    public synchronized void prefetch(final String path, int sampleRate, final int channelCount, long durationUs) {
+        if (decodeExecutor.isShutdown()) {
+            return;
+        }
+        long estimatedSizeBytes = HEADER_SIZE + durationUs * sampleRate / 1000000L * channelCount * BYTES_PER_SAMPLE;
+        if (estimatedSizeBytes > maxSizeBytes) {
+            Logger.d(TAG, "Not caching " + path + ", about " + estimatedSizeBytes + " bytes decoded exceed the budget");
+            return;
+        }
+        final String key = FileUtils.createFileCacheKey(path);
+        if (entries.containsKey(key) || !pendingKeys.add(key)) {
+            return;
+        }
+        decodeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    File pcmFile = new File(FileUtils.getCacheDirectory(context, CACHE_DIRECTORY_NAME), key + PCM_FILE_SUFFIX);
+                    double integratedLoudness = decodeToFile(path, channelCount, pcmFile);
+                    addEntry(key, pcmFile);
+                    loudnessCache.put(path, integratedLoudness);
+                } catch (IOException e) {
+                    Logger.e(TAG, "Error while caching decoded " + path + ": " + e.getMessage());
+                } finally {
+                    synchronized (PcmCache.this) {
+                        pendingKeys.remove(key);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Interrupts the running decode, deleting its partial file, and drops queued ones. Called when
+     * the module is torn down, the cache does not decode afterwards.
+     */
+    public synchronized void shutdown() {
+        decodeExecutor.shutdownNow();
+    }
+
+    private synchronized void addEntry(String key, File pcmFile) throws IOException {
+        loadIndex();
+        File previous = entries.put(key, pcmFile);
+        if (previous != null) {
+            sizeBytes -= previous.length();
+        }
+        sizeBytes += pcmFile.length();
+        trimToSize();
+    }
+
+    private void removeEntry(String key) {
+        File pcmFile = entries.remove(key);
+        if (pcmFile != null) {
+            sizeBytes -= pcmFile.length();
+            pcmFile.delete();
+        }
+    }
+
+    /**
+     * Evicted files may still be mapped by a playing engine; the mapping stays valid after deletion.
+     */
+    private void trimToSize() {
+        Iterator<Map.Entry<String, File>> iterator = entries.entrySet().iterator();
+        while (sizeBytes > maxSizeBytes && iterator.hasNext()) {
+            File pcmFile = iterator.next().getValue();
+            sizeBytes -= pcmFile.length();
+            pcmFile.delete();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Picks up files written by previous sessions, oldest first so they are evicted first.
+     */
+    private void loadIndex() throws IOException {
+        if (isIndexLoaded) {
+            return;
+        }
+        File[] files = FileUtils.getCacheDirectory(context, CACHE_DIRECTORY_NAME).listFiles();
+        if (files != null) {
+            Arrays.sort(files, new Comparator<File>() {
+                @Override
+                public int compare(File first, File second) {
+                    return Long.valueOf(first.lastModified()).compareTo(second.lastModified());
+                }
+            });
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(PCM_FILE_SUFFIX)) {
+                    entries.put(name.substring(0, name.length() - PCM_FILE_SUFFIX.length()), file);
+                    sizeBytes += file.length();
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        isIndexLoaded = true;
+        trimToSize();
+    }
+
+    /**
+     * @return integrated loudness of the track
+     */
+    private static double decodeToFile(String path, int channelCount, File pcmFile) throws IOException {
+        PcmDecoder decoder = new PcmDecoder(path);
+        PcmTrackReader reader = new PcmTrackReader(decoder, decoder.getSampleRate(), channelCount);
+        File temporaryFile = new File(pcmFile.getPath() + TEMPORARY_FILE_SUFFIX);
+        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(temporaryFile));
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(reader.getOutputSampleRate()).putInt(channelCount);
+            outputStream.write(header.array());
+            LoudnessMeter loudnessMeter = new LoudnessMeter(reader.getOutputSampleRate(), channelCount);
+
+            short[] chunk = new short[FRAMES_PER_CHUNK * channelCount];
+            ByteBuffer bytes = ByteBuffer.allocate(chunk.length * BYTES_PER_SAMPLE).order(ByteOrder.LITTLE_ENDIAN);
+            int frames;
+            while ((frames = reader.read(chunk, FRAMES_PER_CHUNK)) != PcmSource.END_OF_STREAM) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException("Decoding of " + path + " was interrupted");
+                }
+                bytes.clear();
+                bytes.asShortBuffer().put(chunk, 0, frames * channelCount);
+                outputStream.write(bytes.array(), 0, frames * channelCount * BYTES_PER_SAMPLE);
+                loudnessMeter.add(chunk, frames);
+            }
+            outputStream.close();
+            if (!temporaryFile.renameTo(pcmFile)) {
+                throw new IOException("Unable to store pcm file " + pcmFile.getPath());
+            }
+            return loudnessMeter.getIntegratedLoudness();
+        } catch (RuntimeException e) {
+            throw new IOException("Error while decoding " + path, e);
+        } finally {
+            outputStream.close();
+            temporaryFile.delete();
+            reader.release();
+        }
+    }
+
+    private static PcmSource mapPcmFile(File pcmFile) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(pcmFile, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Unexpected pcm file size " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int magic = buffer.getInt();
+            int sampleRate = buffer.getInt();
+            int channelCount = buffer.getInt();
+            if (magic != MAGIC || sampleRate <= 0 || channelCount <= 0
+                    || (size - HEADER_SIZE) % (channelCount * BYTES_PER_SAMPLE) != 0) {
+                throw new IOException("Invalid pcm file header");
+            }
+            pcmFile.setLastModified(System.currentTimeMillis());
+            ByteBuffer samples = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+            return new MappedPcmSource(samples.asShortBuffer(), sampleRate, channelCount);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+}
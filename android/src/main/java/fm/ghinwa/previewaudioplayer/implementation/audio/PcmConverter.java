@@ -0,0 +1,29 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+/**
+ * Channel mapping helpers for interleaved 16 bit PCM.
+ */
+public final class PcmConverter {
+
+    private PcmConverter() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns the value of outputChannel of the given frame after mapping from sourceChannelCount
+     * to outputChannelCount channels. Mono output averages all source channels, mono source is
+     * duplicated to every output channel and wider sources keep their first channels.
+     */
+    public static int channelSample(short[] frames, int frameIndex, int sourceChannelCount,
+                                    int outputChannel, int outputChannelCount) {
+        int frameOffset = frameIndex * sourceChannelCount;
+        if (outputChannelCount == 1 && sourceChannelCount > 1) {
+            int sum = 0;
+            for (int channel = 0; channel < sourceChannelCount; channel++) {
+                sum += frames[frameOffset + channel];
+            }
+            return sum / sourceChannelCount;
+        }
+        return frames[frameOffset + Math.min(outputChannel, sourceChannelCount - 1)];
+    }
+}
@@ -0,0 +1,202 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decodes the first audio track of a file to interleaved 16 bit PCM in the source format.
+ * Not thread safe, callers are expected to confine an instance to a single thread or lock.
+ */
+public class PcmDecoder {
+
+    public static final int END_OF_STREAM = -1;
+
+    private static final String AUDIO_MIME_PREFIX = "audio/";
+    private static final long DEQUEUE_TIMEOUT_US = 10000;
+    private static final long NO_SEEK_TARGET = -1;
+
+    private final MediaExtractor extractor;
+    private final MediaCodec codec;
+    private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    private final long durationUs;
+
+    private int sampleRate;
+    private int channelCount;
+
+    private ByteBuffer[] inputBuffers;
+    private ByteBuffer[] outputBuffers;
+
+    private short[] pendingSamples = new short[0];
+    private int pendingOffset;
+    private int pendingLength;
+
+    private long seekTargetUs = NO_SEEK_TARGET;
+    private boolean isInputDone;
+    private boolean isOutputDone;
+
+    public PcmDecoder(String path) throws IOException {
+        extractor = new MediaExtractor();
+        extractor.setDataSource(path);
+
+        int trackIndex = selectAudioTrack(extractor);
+        if (trackIndex < 0) {
+            extractor.release();
+            throw new IOException("No audio track found in " + path);
+        }
+        extractor.selectTrack(trackIndex);
+
+        MediaFormat format = extractor.getTrackFormat(trackIndex);
+        sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        channelCount = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+        durationUs = format.containsKey(MediaFormat.KEY_DURATION) ? format.getLong(MediaFormat.KEY_DURATION) : 0;
+
+        MediaCodec decoder = null;
+        try {
+            decoder = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            decoder.configure(format, null, null, 0);
+            decoder.start();
+        } catch (IOException | RuntimeException e) {
+            if (decoder != null) {
+                decoder.release();
+            }
+            extractor.release();
+            throw new IOException("Unable to create decoder for " + path, e);
+        }
+        codec = decoder;
+        inputBuffers = codec.getInputBuffers();
+        outputBuffers = codec.getOutputBuffers();
+    }
+
+    /**
+     * Sample rate of the decoded output. It may change after the first decoded buffer,
+     * e.g. for HE-AAC streams the container reports the core rate only.
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public long getDurationUs() {
+        return durationUs;
+    }
+
+    /**
+     * Moves decoding to the given time. The first frame returned by {@link #read} afterwards
+     * is the one at timeUs, not the preceding sync frame.
+     */
+    public void seekTo(long timeUs) {
+        extractor.seekTo(Math.max(0, timeUs), MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+        codec.flush();
+        isInputDone = false;
+        isOutputDone = false;
+        pendingOffset = 0;
+        pendingLength = 0;
+        seekTargetUs = Math.max(0, timeUs);
+    }
+
+    /**
+     * Reads up to maxFrames interleaved frames into destination starting at offset (in samples).
+     *
+     * @return number of frames read or {@link #END_OF_STREAM}
+     */
+    public int read(short[] destination, int offset, int maxFrames) {
+        while (pendingLength == 0) {
+            if (isOutputDone) {
+                return END_OF_STREAM;
+            }
+            decodeStep();
+        }
+        int frames = Math.min(maxFrames, pendingLength / channelCount);
+        int samples = frames * channelCount;
+        System.arraycopy(pendingSamples, pendingOffset, destination, offset, samples);
+        pendingOffset += samples;
+        pendingLength -= samples;
+        return frames;
+    }
+
+    public void release() {
+        codec.stop();
+        codec.release();
+        extractor.release();
+    }
+
+    private void decodeStep() {
+        if (!isInputDone) {
+            queueInput();
+        }
+
+        int index = codec.dequeueOutputBuffer(bufferInfo, DEQUEUE_TIMEOUT_US);
+        if (index == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+            outputBuffers = codec.getOutputBuffers();
+        } else if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+            MediaFormat outputFormat = codec.getOutputFormat();
+            sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            channelCount = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+        } else if (index >= 0) {
+            if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                isOutputDone = true;
+            }
+            if (bufferInfo.size > 0) {
+                copyOutput(outputBuffers[index]);
+            }
+            codec.releaseOutputBuffer(index, false);
+        }
+    }
+
+    private void queueInput() {
+        int index = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+        if (index < 0) {
+            return;
+        }
+        int size = extractor.readSampleData(inputBuffers[index], 0);
+        if (size < 0) {
+            codec.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            isInputDone = true;
+        } else {
+            codec.queueInputBuffer(index, 0, size, extractor.getSampleTime(), 0);
+            extractor.advance();
+        }
+    }
+
+    private void copyOutput(ByteBuffer outputBuffer) {
+        int samples = bufferInfo.size / 2;
+        if (pendingSamples.length < samples) {
+            pendingSamples = new short[samples];
+        }
+        outputBuffer.position(bufferInfo.offset);
+        outputBuffer.limit(bufferInfo.offset + bufferInfo.size);
+        outputBuffer.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(pendingSamples, 0, samples);
+        outputBuffer.clear();
+
+        pendingOffset = 0;
+        pendingLength = samples;
+
+        if (seekTargetUs != NO_SEEK_TARGET) {
+            long framesToSkip = (seekTargetUs - bufferInfo.presentationTimeUs) * sampleRate / 1000000L;
+            int samplesToSkip = (int) Math.min(samples, Math.max(0, framesToSkip) * channelCount);
+            pendingOffset = samplesToSkip;
+            pendingLength = samples - samplesToSkip;
+            if (pendingLength > 0) {
+                seekTargetUs = NO_SEEK_TARGET;
+            }
+        }
+    }
+
+    private static int selectAudioTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith(AUDIO_MIME_PREFIX)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,96 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+/**
+ * Mixing kernels working on interleaved 16 bit PCM.
+ */
+public final class PcmMixer {
+
+    private PcmMixer() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Mixes background and vocal samples applying the given gains and writes the clipped result
+     * into output. Output may be the same array as one of the inputs.
+     */
+    public static void mix(short[] background, float backgroundGain, short[] vocal, float vocalGain,
+                           short[] output, int sampleCount) {
+        for (int i = 0; i < sampleCount; i++) {
+            output[i] = clip(background[i] * backgroundGain + vocal[i] * vocalGain);
+        }
+    }
+
+    /**
+     * Like {@link #mix} but with a mono vocal that is added to every channel of the background,
+     * which saves upmixing the vocal first. Output may be the background array.
+     */
+    public static void mixMonoVocal(short[] background, float backgroundGain, short[] monoVocal, float vocalGain,
+                                    short[] output, int channelCount, int frames) {
+        for (int frame = 0; frame < frames; frame++) {
+            float vocalSample = monoVocal[frame] * vocalGain;
+            int offset = frame * channelCount;
+            for (int channel = 0; channel < channelCount; channel++) {
+                output[offset + channel] = clip(background[offset + channel] * backgroundGain + vocalSample);
+            }
+        }
+    }
+
+    /**
+     * Applies linear fade-in and fade-out to a chunk of a window of totalFrames frames.
+     *
+     * @param firstFrame index of the first frame of the chunk within the window
+     * @param totalFrames window length in frames, zero or less when unknown (no fade-out is applied)
+     */
+    public static void applyFades(short[] samples, int channelCount, int frames, long firstFrame,
+                                  long totalFrames, long fadeFrames) {
+        if (fadeFrames <= 0) {
+            return;
+        }
+        long fadeOutStart = totalFrames > 0 ? totalFrames - fadeFrames : Long.MAX_VALUE;
+        if (firstFrame >= fadeFrames && firstFrame + frames <= fadeOutStart) {
+            return;
+        }
+        for (int frame = 0; frame < frames; frame++) {
+            long position = firstFrame + frame;
+            float gain = 1f;
+            if (position < fadeFrames) {
+                gain = (float) position / fadeFrames;
+            }
+            if (position >= fadeOutStart) {
+                gain = Math.min(gain, (float) (totalFrames - position) / fadeFrames);
+            }
+            int offset = frame * channelCount;
+            for (int channel = 0; channel < channelCount; channel++) {
+                samples[offset + channel] = (short) (samples[offset + channel] * gain);
+            }
+        }
+    }
+
+    /**
+     * Crossfades linearly from one signal to another over a window of totalFrames frames and
+     * writes the result into output. Output may be the same array as one of the inputs.
+     *
+     * @param firstFrame index of the first frame of the chunk within the crossfade window
+     */
+    public static void crossfade(short[] from, short[] to, short[] output, int channelCount, int frames,
+                                 long firstFrame, long totalFrames) {
+        for (int frame = 0; frame < frames; frame++) {
+            float gain = Math.min(1f, (float) (firstFrame + frame) / totalFrames);
+            int offset = frame * channelCount;
+            for (int channel = 0; channel < channelCount; channel++) {
+                int index = offset + channel;
+                output[index] = clip(from[index] * (1 - gain) + to[index] * gain);
+            }
+        }
+    }
+
+    static short clip(float sample) {
+        if (sample > Short.MAX_VALUE) {
+            return Short.MAX_VALUE;
+        }
+        if (sample < Short.MIN_VALUE) {
+            return Short.MIN_VALUE;
+        }
+        return (short) sample;
+    }
+}
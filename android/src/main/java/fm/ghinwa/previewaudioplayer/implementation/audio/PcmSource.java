@@ -0,0 +1,32 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+/**
+ * Seekable stream of interleaved 16 bit PCM frames in a fixed output format.
+ */
+public interface PcmSource {
+
+    int END_OF_STREAM = PcmDecoder.END_OF_STREAM;
+
+    int getOutputSampleRate();
+
+    int getOutputChannelCount();
+
+    long getDurationUs();
+
+    /**
+     * Moves the source to the given time. Negative times are allowed, the source then returns
+     * silence until the track start is reached.
+     */
+    void seekTo(long timeUs);
+
+    /**
+     * Fills destination with exactly frames output frames. Frames past the end of the track are
+     * filled with silence.
+     *
+     * @return number of frames taken from the track (including leading silence) or
+     * {@link #END_OF_STREAM} when the track has already ended
+     */
+    int read(short[] destination, int frames);
+
+    void release();
+}
@@ -0,0 +1,149 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads a decoded track converted to a fixed output sample rate and channel count.
+ * When the source already matches the output format, frames are copied straight from the decoder.
+ */
+public class PcmTrackReader implements PcmSource {
+
+    private static final int SOURCE_BUFFER_FRAMES = 2048;
+
+    private final PcmDecoder decoder;
+    private final int outputSampleRate;
+    private final int outputChannelCount;
+
+    private short[] sourceFrames = new short[0];
+    private int sourceFrameCount;
+    private double sourcePosition;
+
+    private long leadingSilenceFrames;
+    private boolean isEndOfStream;
+
+    public PcmTrackReader(String path, int outputSampleRate, int outputChannelCount) throws IOException {
+        this(new PcmDecoder(path), outputSampleRate, outputChannelCount);
+    }
+
+    public PcmTrackReader(PcmDecoder decoder, int outputSampleRate, int outputChannelCount) {
+        this.decoder = decoder;
+        this.outputSampleRate = outputSampleRate;
+        this.outputChannelCount = outputChannelCount;
+    }
+
+    @Override
+    public int getOutputSampleRate() {
+        return outputSampleRate;
+    }
+
+    @Override
+    public int getOutputChannelCount() {
+        return outputChannelCount;
+    }
+
+    @Override
+    public long getDurationUs() {
+        return decoder.getDurationUs();
+    }
+
+    @Override
+    public void seekTo(long timeUs) {
+        leadingSilenceFrames = timeUs < 0 ? -timeUs * outputSampleRate / 1000000L : 0;
+        decoder.seekTo(Math.max(0, timeUs));
+        sourceFrameCount = 0;
+        sourcePosition = 0;
+        isEndOfStream = false;
+    }
+
+    @Override
+    public int read(short[] destination, int frames) {
+        int written = 0;
+
+        if (leadingSilenceFrames > 0) {
+            int silence = (int) Math.min(frames, leadingSilenceFrames);
+            Arrays.fill(destination, 0, silence * outputChannelCount, (short) 0);
+            leadingSilenceFrames -= silence;
+            written = silence;
+        }
+
+        while (written < frames && !isEndOfStream) {
+            int read = isPassThrough()
+                    ? decoder.read(destination, written * outputChannelCount, frames - written)
+                    : readConverted(destination, written, frames - written);
+            if (read <= 0) {
+                isEndOfStream = true;
+            } else {
+                written += read;
+            }
+        }
+
+        if (written < frames) {
+            Arrays.fill(destination, written * outputChannelCount, frames * outputChannelCount, (short) 0);
+        }
+        return written == 0 && isEndOfStream ? END_OF_STREAM : written;
+    }
+
+    @Override
+    public void release() {
+        decoder.release();
+    }
+
+    private boolean isPassThrough() {
+        return sourceFrameCount == 0
+                && decoder.getSampleRate() == outputSampleRate
+                && decoder.getChannelCount() == outputChannelCount;
+    }
+
+    /**
+     * Linear interpolation resampler with channel mapping. The last source frame is carried over
+     * between refills so interpolation is continuous across decoder buffers.
+     */
+    private int readConverted(short[] destination, int offsetFrames, int frames) {
+        int sourceChannelCount = decoder.getChannelCount();
+        double step = (double) decoder.getSampleRate() / outputSampleRate;
+        int written = 0;
+
+        while (written < frames) {
+            int index = (int) sourcePosition;
+            if (index + 1 >= sourceFrameCount) {
+                if (!refillSource(sourceChannelCount)) {
+                    break;
+                }
+                continue;
+            }
+            float fraction = (float) (sourcePosition - index);
+            int outputOffset = (offsetFrames + written) * outputChannelCount;
+            for (int channel = 0; channel < outputChannelCount; channel++) {
+                int first = PcmConverter.channelSample(sourceFrames, index, sourceChannelCount, channel, outputChannelCount);
+                int second = PcmConverter.channelSample(sourceFrames, index + 1, sourceChannelCount, channel, outputChannelCount);
+                destination[outputOffset + channel] = (short) (first + (second - first) * fraction);
+            }
+            written++;
+            sourcePosition += step;
+        }
+        return written;
+    }
+
+    private boolean refillSource(int sourceChannelCount) {
+        int capacity = SOURCE_BUFFER_FRAMES * sourceChannelCount;
+        if (sourceFrames.length < capacity) {
+            sourceFrames = Arrays.copyOf(sourceFrames, capacity);
+        }
+
+        int kept = 0;
+        if (sourceFrameCount > 0) {
+            System.arraycopy(sourceFrames, (sourceFrameCount - 1) * sourceChannelCount, sourceFrames, 0, sourceChannelCount);
+            sourcePosition -= sourceFrameCount - 1;
+            kept = 1;
+        }
+        sourceFrameCount = kept;
+
+        int read = decoder.read(sourceFrames, kept * sourceChannelCount, SOURCE_BUFFER_FRAMES - kept);
+        if (read == END_OF_STREAM) {
+            return false;
+        }
+        sourceFrameCount += read;
+        return true;
+    }
+}
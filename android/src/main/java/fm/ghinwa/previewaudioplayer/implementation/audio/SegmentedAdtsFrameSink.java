@@ -0,0 +1,102 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes frames as a sequence of ADTS segments of a fixed number of frames. Every ADTS frame
+ * carries its own header, so each segment can be decoded on its own and the segments joined in
+ * order give the same stream {@link AdtsFrameSink} would write.
+ */
+public class SegmentedAdtsFrameSink implements AacFrameSink {
+
+    /**
+     * Number of PCM frames encoded in one AAC LC frame.
+     */
+    public static final int SAMPLES_PER_AAC_FRAME = 1024;
+
+    private final AdtsSegmentWriter segmentWriter;
+    private final int sampleRate;
+    private final int channelCount;
+    private final int framesPerSegment;
+    private final byte[] header = new byte[AdtsHeader.LENGTH];
+
+    private byte[] frameBuffer = new byte[0];
+    private OutputStream segmentStream;
+    private int segmentIndex;
+    private int segmentFrames;
+    private long segmentSize;
+    private long writtenFrames;
+
+    /**
+     * @param segmentDurationMillis duration of all segments but the last one, rounded to whole AAC frames
+     */
+    public SegmentedAdtsFrameSink(AdtsSegmentWriter segmentWriter, int sampleRate, int channelCount,
+                                  long segmentDurationMillis) {
+        this.segmentWriter = segmentWriter;
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        framesPerSegment = (int) Math.max(1, segmentDurationMillis * sampleRate / 1000L / SAMPLES_PER_AAC_FRAME);
+    }
+
+    @Override
+    public void onOutputFormat(MediaFormat format) {
+        // ADTS headers carry everything a decoder needs
+    }
+
+    @Override
+    public void writeFrame(ByteBuffer frame, MediaCodec.BufferInfo info) throws IOException {
+        if (frameBuffer.length < info.size) {
+            frameBuffer = new byte[info.size];
+        }
+        frame.position(info.offset);
+        frame.limit(info.offset + info.size);
+        frame.get(frameBuffer, 0, info.size);
+        frame.clear();
+
+        if (segmentStream == null) {
+            segmentStream = segmentWriter.beginSegment(segmentIndex);
+        }
+        AdtsHeader.write(header, info.size, sampleRate, channelCount);
+        segmentStream.write(header);
+        segmentStream.write(frameBuffer, 0, info.size);
+        segmentSize += AdtsHeader.LENGTH + info.size;
+        segmentFrames++;
+        if (segmentFrames == framesPerSegment) {
+            endSegment();
+        }
+    }
+
+    /**
+     * Ends the last, possibly shorter segment.
+     */
+    @Override
+    public void finish() throws IOException {
+        if (segmentStream != null) {
+            endSegment();
+        }
+    }
+
+    @Override
+    public void release() throws IOException {
+        segmentWriter.release();
+    }
+
+    private void endSegment() throws IOException {
+        long startTimeUs = framesToUs(writtenFrames);
+        writtenFrames += (long) segmentFrames * SAMPLES_PER_AAC_FRAME;
+        segmentStream = null;
+        segmentWriter.endSegment(segmentIndex, segmentSize, startTimeUs, framesToUs(writtenFrames) - startTimeUs);
+        segmentIndex++;
+        segmentFrames = 0;
+        segmentSize = 0;
+    }
+
+    private long framesToUs(long frames) {
+        return frames * 1000000L / sampleRate;
+    }
+}
@@ -0,0 +1,156 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import fm.ghinwa.previewaudioplayer.implementation.audio.AacEncoder;
+import fm.ghinwa.previewaudioplayer.implementation.audio.AacFrameSink;
+import fm.ghinwa.previewaudioplayer.implementation.audio.AdtsFrameSink;
+import fm.ghinwa.previewaudioplayer.implementation.audio.Mp4FrameSink;
+import fm.ghinwa.previewaudioplayer.implementation.audio.PcmDecoder;
+import fm.ghinwa.previewaudioplayer.implementation.audio.PcmMixer;
+import fm.ghinwa.previewaudioplayer.implementation.audio.PcmTrackReader;
+import fm.ghinwa.previewaudioplayer.implementation.audio.SegmentedAdtsFrameSink;
+
+/**
+ * Mixes background and vocal track and encodes the result to an AAC file in-process.
+ * Inputs are decoded, mixed and encoded in fixed size chunks, so memory use does not depend
+ * on the track length. Only the configured window is decoded and encoded, the vocal track is
+ * aligned to the background the same way as during playback.
+ * The {@link EncodingProfile} decides the cheapest path: the background is resampled only when
+ * the profile asks for a different rate, and a mono vocal is mixed without upmixing it first.
+ * A segmented export writes the same mix as ADTS segments, whatever container the profile asks for.
+ * Export is cancelled by interrupting the exporting thread. Instances hold no state, so one
+ * exporter can be shared by several threads.
+ */
+public class AudioExporter implements Exporter {
+
+    private static final int FRAMES_PER_CHUNK = 1024;
+
+    @Override
+    public String export(ExportingConfiguration configuration, String outputFilePath,
+                       ExportProgressListener progressListener) throws IOException {
+        render(configuration, outputFilePath, null, progressListener);
+        return outputFilePath;
+    }
+
+    @Override
+    public void exportSegments(ExportingConfiguration configuration, SegmentedExportOutput output,
+                               ExportProgressListener progressListener) throws IOException {
+        render(configuration, null, output, progressListener);
+    }
+
+    /**
+     * Writes to the file when segmented output is null, to the segmented output otherwise.
+     */
+    private static void render(ExportingConfiguration configuration, String outputFilePath,
+                               SegmentedExportOutput segmentedOutput,
+                               ExportProgressListener progressListener) throws IOException {
+        EncodingProfile profile = configuration.getEncodingProfile();
+        int channelCount = profile.getChannelCount();
+        PcmDecoder backgroundDecoder = new PcmDecoder(configuration.getBackgroundAudioFilePath());
+        int sampleRate = profile.resolveSampleRate(backgroundDecoder.getSampleRate());
+        PcmTrackReader backgroundReader = new PcmTrackReader(backgroundDecoder, sampleRate, channelCount);
+        PcmTrackReader vocalReader = null;
+        AacFrameSink frameSink = null;
+        AacEncoder encoder = null;
+
+        try {
+            PcmDecoder vocalDecoder = new PcmDecoder(configuration.getVocalAudioFilePath());
+            boolean isMonoVocal = vocalDecoder.getChannelCount() == 1 && channelCount > 1;
+            vocalReader = new PcmTrackReader(vocalDecoder, sampleRate, isMonoVocal ? 1 : channelCount);
+            frameSink = segmentedOutput != null
+                    ? new SegmentedAdtsFrameSink(segmentedOutput, sampleRate, channelCount, segmentedOutput.getSegmentDurationMillis())
+                    : createFrameSink(profile, outputFilePath, sampleRate);
+            encoder = new AacEncoder(sampleRate, channelCount, profile.getBitRate(), frameSink);
+
+            int startTimeMillis = Math.max(0, configuration.getStartTimeMillis());
+            int backgroundStartTimeMillis = configuration.getRecordingStartTimeMillis() + startTimeMillis;
+            backgroundReader.seekTo(TimeUnit.MILLISECONDS.toMicros(backgroundStartTimeMillis));
+            vocalReader.seekTo(TimeUnit.MILLISECONDS.toMicros(startTimeMillis));
+
+            long totalFrames = windowFrames(configuration, backgroundReader, backgroundStartTimeMillis, sampleRate);
+            long fadeFrames = millisToFrames(configuration.getFadeDurationMillis(), sampleRate);
+            long renderedFrames = 0;
+            short[] backgroundChunk = new short[FRAMES_PER_CHUNK * channelCount];
+            short[] vocalChunk = new short[FRAMES_PER_CHUNK * vocalReader.getOutputChannelCount()];
+
+            while (totalFrames <= 0 || renderedFrames < totalFrames) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException("Export cancelled");
+                }
+                int framesToRead = totalFrames > 0
+                        ? (int) Math.min(FRAMES_PER_CHUNK, totalFrames - renderedFrames)
+                        : FRAMES_PER_CHUNK;
+                int frames = backgroundReader.read(backgroundChunk, framesToRead);
+                if (frames == PcmTrackReader.END_OF_STREAM) {
+                    break;
+                }
+                vocalReader.read(vocalChunk, framesToRead);
+                if (isMonoVocal) {
+                    PcmMixer.mixMonoVocal(backgroundChunk, configuration.getBackgroundTrackVolume(),
+                            vocalChunk, configuration.getVocalTrackVolume(),
+                            backgroundChunk, channelCount, frames);
+                } else {
+                    PcmMixer.mix(backgroundChunk, configuration.getBackgroundTrackVolume(),
+                            vocalChunk, configuration.getVocalTrackVolume(),
+                            backgroundChunk, frames * channelCount);
+                }
+                PcmMixer.applyFades(backgroundChunk, channelCount, frames, renderedFrames, totalFrames, fadeFrames);
+                encoder.encode(backgroundChunk, frames);
+                renderedFrames += frames;
+                if (progressListener != null) {
+                    progressListener.onProgress(renderedFrames, totalFrames);
+                }
+            }
+            encoder.finish();
+        } catch (RuntimeException e) {
+            throw new IOException("Error while encoding preview file", e);
+        } finally {
+            if (encoder != null) {
+                encoder.release();
+            }
+            if (frameSink != null) {
+                frameSink.release();
+            } else if (segmentedOutput != null) {
+                segmentedOutput.release();
+            }
+            if (vocalReader != null) {
+                vocalReader.release();
+            }
+            backgroundReader.release();
+        }
+    }
+
+    private static AacFrameSink createFrameSink(EncodingProfile profile, String outputFilePath, int sampleRate)
+            throws IOException {
+        if (profile.getContainer() == EncodingContainer.MP4) {
+            return new Mp4FrameSink(outputFilePath);
+        }
+        return new AdtsFrameSink(new BufferedOutputStream(new FileOutputStream(outputFilePath)),
+                sampleRate, profile.getChannelCount());
+    }
+
+    /**
+     * Returns number of frames in the exported window, or zero when the end is not known up front
+     * and export should continue until the background track ends.
+     */
+    private static long windowFrames(ExportingConfiguration configuration, PcmTrackReader backgroundReader,
+                                     int backgroundStartTimeMillis, int sampleRate) {
+        long remainingMillis = TimeUnit.MICROSECONDS.toMillis(backgroundReader.getDurationUs()) - backgroundStartTimeMillis;
+        if (configuration.getDurationMillis() <= 0) {
+            return remainingMillis > 0 ? millisToFrames(remainingMillis, sampleRate) : 0;
+        }
+        long windowMillis = remainingMillis > 0
+                ? Math.min(configuration.getDurationMillis(), remainingMillis)
+                : configuration.getDurationMillis();
+        return millisToFrames(windowMillis, sampleRate);
+    }
+
+    private static long millisToFrames(long millis, int sampleRate) {
+        return millis * sampleRate / 1000L;
+    }
+}
@@ -0,0 +1,50 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+import java.io.File;
+import java.io.IOException;
+
+import fm.ghinwa.previewaudioplayer.implementation.util.Logger;
+
+/**
+ * Serves exports from the {@link ExportCache} and stores newly rendered ones there. The export is
+ * always written to the suggested output path, a cached one is copied there.
+ */
+public class CachingExporter implements Exporter {
+
+    private static final String TAG = CachingExporter.class.getSimpleName();
+
+    private final Exporter exporter;
+    private final ExportCache exportCache;
+
+    public CachingExporter(Exporter exporter, ExportCache exportCache) {
+        this.exporter = exporter;
+        this.exportCache = exportCache;
+    }
+
+    @Override
+    public String export(ExportingConfiguration configuration, String outputFilePath,
+                         ExportProgressListener progressListener) throws IOException {
+        String key = exportCache.createKey(configuration);
+        try {
+            if (exportCache.copyTo(key, new File(outputFilePath))) {
+                return outputFilePath;
+            }
+        } catch (IOException e) {
+            Logger.e(TAG, "Unable to copy cached export: " + e.getMessage());
+        }
+
+        String writtenFilePath = exporter.export(configuration, outputFilePath, progressListener);
+        try {
+            exportCache.put(key, new File(writtenFilePath));
+        } catch (IOException e) {
+            Logger.e(TAG, "Unable to cache export: " + e.getMessage());
+        }
+        return writtenFilePath;
+    }
+
+    @Override
+    public void exportSegments(ExportingConfiguration configuration, SegmentedExportOutput output,
+                               ExportProgressListener progressListener) throws IOException {
+        exporter.exportSegments(configuration, output, progressListener);
+    }
+}
@@ -0,0 +1,64 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+import android.os.ParcelFileDescriptor;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes all segments one after another to a file descriptor supplied by the caller, for example
+ * one opened for a content URI or the write end of a pipe. Segments are announced as byte ranges
+ * of the stream. The descriptor is closed on release.
+ */
+public class DescriptorSegmentedOutput extends SegmentedExportOutput {
+
+    private final ParcelFileDescriptor fileDescriptor;
+    private final String location;
+    private final OutputStream outputStream;
+
+    private long writtenBytes;
+
+    /**
+     * @param location reported as the location of every segment, for example the URI the descriptor was opened for
+     */
+    public DescriptorSegmentedOutput(ParcelFileDescriptor fileDescriptor, String location, long segmentDurationMillis) {
+        super(segmentDurationMillis);
+        this.fileDescriptor = fileDescriptor;
+        this.location = location;
+        outputStream = new BufferedOutputStream(new FileOutputStream(fileDescriptor.getFileDescriptor()));
+    }
+
+    @Override
+    public String getLocation() {
+        return location;
+    }
+
+    @Override
+    public OutputStream beginSegment(int index) {
+        return outputStream;
+    }
+
+    @Override
+    protected String flushSegment(int index) throws IOException {
+        outputStream.flush();
+        return location;
+    }
+
+    @Override
+    protected long getSegmentOffset(int index, long size) {
+        long offset = writtenBytes;
+        writtenBytes += size;
+        return offset;
+    }
+
+    @Override
+    public void release() throws IOException {
+        try {
+            outputStream.close();
+        } finally {
+            fileDescriptor.close();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Writes every segment to its own file in a directory, named with the prefix and the index.
+ */
+public class DirectorySegmentedOutput extends SegmentedExportOutput {
+
+    private final File directory;
+    private final String fileNamePrefix;
+
+    private FileOutputStream segmentFileStream;
+    private OutputStream segmentStream;
+    private File segmentFile;
+
+    public DirectorySegmentedOutput(File directory, String fileNamePrefix, long segmentDurationMillis) {
+        super(segmentDurationMillis);
+        this.directory = directory;
+        this.fileNamePrefix = fileNamePrefix;
+    }
+
+    @Override
+    public String getLocation() {
+        return directory.getPath();
+    }
+
+    @Override
+    public OutputStream beginSegment(int index) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create export directory " + directory.getPath());
+        }
+        segmentFile = new File(directory, String.format(Locale.US, "%s-%05d%s",
+                fileNamePrefix, index, EncodingContainer.ADTS.getFileSuffix()));
+        segmentFileStream = new FileOutputStream(segmentFile);
+        segmentStream = new BufferedOutputStream(segmentFileStream);
+        return segmentStream;
+    }
+
+    @Override
+    protected String flushSegment(int index) throws IOException {
+        segmentStream.flush();
+        segmentFileStream.getFD().sync();
+        segmentStream.close();
+        segmentStream = null;
+        return segmentFile.getPath();
+    }
+
+    @Override
+    protected long getSegmentOffset(int index, long size) {
+        return 0;
+    }
+
+    /**
+     * An unfinished segment is deleted, announced ones are left to the caller.
+     */
+    @Override
+    public void release() throws IOException {
+        if (segmentStream != null) {
+            segmentStream.close();
+            segmentStream = null;
+            segmentFile.delete();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+/**
+ * File format the encoded AAC stream is stored in.
+ */
+public enum EncodingContainer {
+    /**
+     * Raw AAC frames with ADTS headers, available on every supported platform.
+     */
+    ADTS(".aac"),
+    /**
+     * MPEG-4 audio file, requires Android 4.3 (API 18).
+     */
+    MP4(".m4a");
+
+    private final String fileSuffix;
+
+    EncodingContainer(String fileSuffix) {
+        this.fileSuffix = fileSuffix;
+    }
+
+    public String getFileSuffix() {
+        return fileSuffix;
+    }
+}
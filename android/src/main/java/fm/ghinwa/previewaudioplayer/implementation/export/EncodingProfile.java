@@ -0,0 +1,129 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+import java.util.Locale;
+
+/**
+ * Output format of an export. Sample rate may be left as {@link #SOURCE_SAMPLE_RATE}, in which case
+ * the background track rate is used and the background is not resampled.
+ */
+public final class EncodingProfile {
+
+    public static final int SOURCE_SAMPLE_RATE = 0;
+
+    /**
+     * Stereo 64 kbps AAC at the source rate.
+     */
+    public static final EncodingProfile DEFAULT =
+            new EncodingProfile(SOURCE_SAMPLE_RATE, 2, 64000, EncodingContainer.ADTS);
+    /**
+     * Mono 48 kbps AAC at the source rate, for sending over messaging apps.
+     */
+    public static final EncodingProfile SHARE_SMALL =
+            new EncodingProfile(SOURCE_SAMPLE_RATE, 1, 48000, EncodingContainer.ADTS);
+    /**
+     * Stereo 192 kbps AAC at the source rate in an MP4 file.
+     */
+    public static final EncodingProfile ARCHIVE_HIGH =
+            new EncodingProfile(SOURCE_SAMPLE_RATE, 2, 192000, EncodingContainer.MP4);
+    /**
+     * Mono 32 kbps AAC at 22050 Hz, for drafts where size matters more than quality.
+     */
+    public static final EncodingProfile FAST_DRAFT =
+            new EncodingProfile(22050, 1, 32000, EncodingContainer.ADTS);
+
+    private final int sampleRate;
+    private final int channelCount;
+    private final int bitRate;
+    private final EncodingContainer container;
+
+    /**
+     * @param sampleRate   output sample rate in Hz or {@link #SOURCE_SAMPLE_RATE}
+     * @param channelCount 1 or 2
+     * @param bitRate      AAC bit rate in bits per second
+     */
+    public EncodingProfile(int sampleRate, int channelCount, int bitRate, EncodingContainer container) {
+        if (sampleRate < 0) {
+            throw new IllegalArgumentException("Invalid sample rate: " + sampleRate);
+        }
+        if (channelCount != 1 && channelCount != 2) {
+            throw new IllegalArgumentException("Invalid channel count: " + channelCount);
+        }
+        if (bitRate <= 0) {
+            throw new IllegalArgumentException("Invalid bit rate: " + bitRate);
+        }
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.bitRate = bitRate;
+        this.container = container;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public int getBitRate() {
+        return bitRate;
+    }
+
+    public EncodingContainer getContainer() {
+        return container;
+    }
+
+    /**
+     * Returns the output sample rate for a background track with the given rate.
+     */
+    public int resolveSampleRate(int sourceSampleRate) {
+        return sampleRate == SOURCE_SAMPLE_RATE ? sourceSampleRate : sampleRate;
+    }
+
+    public EncodingProfile withSampleRate(int sampleRate) {
+        return new EncodingProfile(sampleRate, channelCount, bitRate, container);
+    }
+
+    public EncodingProfile withChannelCount(int channelCount) {
+        return new EncodingProfile(sampleRate, channelCount, bitRate, container);
+    }
+
+    public EncodingProfile withBitRate(int bitRate) {
+        return new EncodingProfile(sampleRate, channelCount, bitRate, container);
+    }
+
+    public EncodingProfile withContainer(EncodingContainer container) {
+        return new EncodingProfile(sampleRate, channelCount, bitRate, container);
+    }
+
+    /**
+     * Describes the produced encoding, exports made with different settings must not be reused.
+     */
+    public String getSettingsKey() {
+        return "aac-" + container.name().toLowerCase(Locale.US) + "/" + bitRate + "/" + sampleRate + "/" + channelCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        EncodingProfile that = (EncodingProfile) o;
+        return sampleRate == that.sampleRate
+                && channelCount == that.channelCount
+                && bitRate == that.bitRate
+                && container == that.container;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = sampleRate;
+        result = 31 * result + channelCount;
+        result = 31 * result + bitRate;
+        result = 31 * result + container.hashCode();
+        return result;
+    }
+}
@@ -0,0 +1,310 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import fm.ghinwa.previewaudioplayer.implementation.util.HashUtils;
+
+/**
+ * Keeps finished exports in a directory under a key built from the content of both input files
+ * and every setting that affects the output, so a repeated export returns the existing file.
+ * Each entry has a sidecar file with its length and CRC32 that is checked before the entry is
+ * reused; truncated or modified entries are dropped. Entries are copied in and out, so files
+ * handed to callers are never deleted by eviction. The directory is kept under a size limit by
+ * deleting least recently used entries.
+ */
+public class ExportCache {
+
+    public static final long DEFAULT_MAX_SIZE_BYTES = 200 * 1024 * 1024;
+
+    private static final String CHECKSUM_FILE_SUFFIX = ".crc";
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_CONTENT_HASHES = 64;
+
+    private final File directory;
+    private final Map<String, String> contentHashes = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_CONTENT_HASHES;
+        }
+    };
+
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long maxSizeBytes = DEFAULT_MAX_SIZE_BYTES;
+    private long sizeBytes;
+    private boolean isIndexLoaded;
+
+    public ExportCache(File directory) {
+        this.directory = directory;
+    }
+
+    public synchronized void setMaxSizeBytes(long maxSizeBytes) {
+        this.maxSizeBytes = maxSizeBytes;
+        loadIndex();
+        trimToSize(null);
+    }
+
+    /**
+     * Builds the cache key, which is also the file name of the entry. Input files are hashed by
+     * content; hashes are remembered per path, size and modification time, so unchanged files are
+     * read only once.
+     */
+    public String createKey(ExportingConfiguration configuration) throws IOException {
+        EncodingProfile encodingProfile = configuration.getEncodingProfile();
+        return HashUtils.sha1Hex(getContentHash(configuration.getBackgroundAudioFilePath())
+                + '|' + getContentHash(configuration.getVocalAudioFilePath())
+                + '|' + configuration.getVocalTrackVolume()
+                + '|' + configuration.getBackgroundTrackVolume()
+                + '|' + configuration.getRecordingStartTimeMillis()
+                + '|' + configuration.getStartTimeMillis()
+                + '|' + configuration.getDurationMillis()
+                + '|' + configuration.getFadeDurationMillis()
+                + '|' + encodingProfile.getSettingsKey())
+                + encodingProfile.getContainer().getFileSuffix();
+    }
+
+    /**
+     * Copies the cached export for the key to the output file, so the caller owns a file that a
+     * later eviction cannot delete.
+     *
+     * @return false when there is no valid entry for the key
+     */
+    public synchronized boolean copyTo(String key, File outputFile) throws IOException {
+        File exportFile = get(key);
+        if (exportFile == null) {
+            return false;
+        }
+        copy(exportFile, outputFile);
+        return true;
+    }
+
+    /**
+     * @return the cached export or null when there is no valid entry for the key
+     */
+    synchronized File get(String key) {
+        loadIndex();
+        if (entries.get(key) == null) {
+            return null;
+        }
+        File exportFile = getExportFile(key);
+        if (!isValid(exportFile, getChecksumFile(key))) {
+            remove(key);
+            return null;
+        }
+        exportFile.setLastModified(System.currentTimeMillis());
+        return exportFile;
+    }
+
+    /**
+     * Copies a finished export into the cache. Exports larger than the whole budget are not
+     * stored, and the entry being stored is never the one evicted to make room.
+     *
+     * @return whether the export was stored
+     */
+    public synchronized boolean put(String key, File finishedFile) throws IOException {
+        loadIndex();
+        long length = finishedFile.length();
+        if (length > maxSizeBytes) {
+            return false;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create export cache directory " + directory.getPath());
+        }
+        remove(key);
+        File exportFile = getExportFile(key);
+        File checksumFile = getChecksumFile(key);
+        File temporaryFile = new File(directory, key + TEMPORARY_FILE_SUFFIX);
+        try {
+            writeChecksum(checksumFile, length, copy(finishedFile, temporaryFile));
+            if (!temporaryFile.renameTo(exportFile)) {
+                throw new IOException("Unable to store export " + exportFile.getPath());
+            }
+        } catch (IOException e) {
+            checksumFile.delete();
+            throw e;
+        } finally {
+            temporaryFile.delete();
+        }
+        entries.put(key, length);
+        sizeBytes += length;
+        trimToSize(key);
+        return true;
+    }
+
+    private void remove(String key) {
+        Long length = entries.remove(key);
+        if (length != null) {
+            sizeBytes -= length;
+        }
+        getExportFile(key).delete();
+        getChecksumFile(key).delete();
+    }
+
+    /**
+     * Evicts least recently used entries except the kept one until the budget is met.
+     */
+    private void trimToSize(String keptKey) {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (sizeBytes > maxSizeBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            String key = entry.getKey();
+            if (key.equals(keptKey)) {
+                continue;
+            }
+            sizeBytes -= entry.getValue();
+            iterator.remove();
+            getExportFile(key).delete();
+            getChecksumFile(key).delete();
+        }
+    }
+
+    /**
+     * Picks up entries of previous sessions, oldest first so they are evicted first. The order
+     * of entries used in this session is kept in memory because modification times are coarse.
+     */
+    private void loadIndex() {
+        if (isIndexLoaded) {
+            return;
+        }
+        isIndexLoaded = true;
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                return Long.valueOf(first.lastModified()).compareTo(second.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(TEMPORARY_FILE_SUFFIX)) {
+                file.delete();
+            } else if (isExportFile(file)) {
+                entries.put(file.getName(), file.length());
+                sizeBytes += file.length();
+            }
+        }
+    }
+
+    private static boolean isExportFile(File file) {
+        String name = file.getName();
+        return !name.endsWith(CHECKSUM_FILE_SUFFIX) && !name.endsWith(TEMPORARY_FILE_SUFFIX);
+    }
+
+    private File getExportFile(String key) {
+        return new File(directory, key);
+    }
+
+    private File getChecksumFile(String key) {
+        return new File(directory, key + CHECKSUM_FILE_SUFFIX);
+    }
+
+    private String getContentHash(String path) throws IOException {
+        File file = new File(path);
+        String fileKey = file.getAbsolutePath() + '|' + file.length() + '|' + file.lastModified();
+        synchronized (this) {
+            String contentHash = contentHashes.get(fileKey);
+            if (contentHash != null) {
+                return contentHash;
+            }
+        }
+        MessageDigest digest = HashUtils.newSha1Digest();
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+        } finally {
+            inputStream.close();
+        }
+        String contentHash = HashUtils.toHex(digest.digest());
+        synchronized (this) {
+            contentHashes.put(fileKey, contentHash);
+        }
+        return contentHash;
+    }
+
+    private static boolean isValid(File exportFile, File checksumFile) {
+        try {
+            DataInputStream inputStream = new DataInputStream(new FileInputStream(checksumFile));
+            long expectedLength;
+            long expectedChecksum;
+            try {
+                expectedLength = inputStream.readLong();
+                expectedChecksum = inputStream.readLong();
+            } finally {
+                inputStream.close();
+            }
+            return exportFile.length() == expectedLength && checksum(exportFile) == expectedChecksum;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void writeChecksum(File checksumFile, long length, long checksum) throws IOException {
+        DataOutputStream outputStream = new DataOutputStream(new FileOutputStream(checksumFile));
+        try {
+            outputStream.writeLong(length);
+            outputStream.writeLong(checksum);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * @return CRC32 of the copied content
+     */
+    private static long copy(File source, File target) throws IOException {
+        CRC32 crc = new CRC32();
+        InputStream inputStream = new FileInputStream(source);
+        try {
+            OutputStream outputStream = new FileOutputStream(target);
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int count;
+                while ((count = inputStream.read(buffer)) != -1) {
+                    crc.update(buffer, 0, count);
+                    outputStream.write(buffer, 0, count);
+                }
+            } finally {
+                outputStream.close();
+            }
+        } finally {
+            inputStream.close();
+        }
+        return crc.getValue();
+    }
+
+    private static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                crc.update(buffer, 0, count);
+            }
+        } finally {
+            inputStream.close();
+        }
+        return crc.getValue();
+    }
+}
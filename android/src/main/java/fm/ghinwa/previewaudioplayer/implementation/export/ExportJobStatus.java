@@ -0,0 +1,57 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+/**
+ * Snapshot of an export job.
+ */
+public class ExportJobStatus {
+
+    private final int jobId;
+    private final ExportJobState state;
+    private final float progress;
+    private final long remainingTimeMillis;
+    private final String outputFilePath;
+    private final String errorMessage;
+
+    ExportJobStatus(int jobId, ExportJobState state, float progress, long remainingTimeMillis,
+                    String outputFilePath, String errorMessage) {
+        this.jobId = jobId;
+        this.state = state;
+        this.progress = progress;
+        this.remainingTimeMillis = remainingTimeMillis;
+        this.outputFilePath = outputFilePath;
+        this.errorMessage = errorMessage;
+    }
+
+    public int getJobId() {
+        return jobId;
+    }
+
+    public ExportJobState getState() {
+        return state;
+    }
+
+    /**
+     * @return fraction of the exported window done, in range [0, 1]
+     */
+    public float getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return estimated time until export completes, negative when unknown
+     */
+    public long getRemainingTimeMillis() {
+        return remainingTimeMillis;
+    }
+
+    public String getOutputFilePath() {
+        return outputFilePath;
+    }
+
+    /**
+     * @return error of a failed or cancelled job, null otherwise
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+}
@@ -0,0 +1,10 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+/**
+ * Order in which queued exports are run. User facing exports are run before, and may
+ * interrupt, background pre-renders.
+ */
+public enum ExportPriority {
+    USER_FACING,
+    BACKGROUND
+}
@@ -0,0 +1,12 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+/**
+ * Receives progress of a running export on the exporting thread after each encoded chunk.
+ */
+public interface ExportProgressListener {
+
+    /**
+     * @param totalFrames number of frames in the exported window, zero or less when not known
+     */
+    void onProgress(long renderedFrames, long totalFrames);
+}
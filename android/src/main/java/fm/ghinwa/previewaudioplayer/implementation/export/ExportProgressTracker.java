@@ -0,0 +1,59 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+/**
+ * Turns rendered frame counts into a progress fraction and an estimate of the remaining time,
+ * and limits how often progress is reported. The estimate assumes the rest of the window is
+ * rendered at the average speed so far.
+ */
+public class ExportProgressTracker {
+
+    public static final long UNKNOWN_TIME = -1;
+
+    private final long minimumIntervalMillis;
+
+    private long startTimeMillis;
+    private long lastReportTimeMillis;
+    private float fraction;
+    private long remainingTimeMillis = UNKNOWN_TIME;
+
+    public ExportProgressTracker(long minimumIntervalMillis) {
+        this.minimumIntervalMillis = minimumIntervalMillis;
+    }
+
+    public void start() {
+        startTimeMillis = uptimeMillis();
+        lastReportTimeMillis = startTimeMillis;
+    }
+
+    /**
+     * @return true when progress should be reported now
+     */
+    public boolean update(long renderedFrames, long totalFrames) {
+        long nowMillis = uptimeMillis();
+        if (nowMillis - lastReportTimeMillis < minimumIntervalMillis) {
+            return false;
+        }
+        lastReportTimeMillis = nowMillis;
+        if (totalFrames <= 0 || renderedFrames <= 0) {
+            fraction = 0;
+            remainingTimeMillis = UNKNOWN_TIME;
+            return true;
+        }
+        fraction = Math.min(1f, (float) renderedFrames / totalFrames);
+        long elapsedMillis = nowMillis - startTimeMillis;
+        remainingTimeMillis = Math.max(0, elapsedMillis * (totalFrames - renderedFrames) / renderedFrames);
+        return true;
+    }
+
+    public float getFraction() {
+        return fraction;
+    }
+
+    public long getRemainingTimeMillis() {
+        return remainingTimeMillis;
+    }
+
+    protected long uptimeMillis() {
+        return System.nanoTime() / 1000000L;
+    }
+}
@@ -0,0 +1,431 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnExportJobStatusListener;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnExportSegmentListener;
+import fm.ghinwa.previewaudioplayer.implementation.metrics.PreviewMetrics;
+
+/**
+ * Runs exports on a bounded number of worker threads. A request identical to a queued or running
+ * one is merged into it and gets the same job id. Queued jobs run in {@link ExportPriority} order;
+ * when all workers are busy, a user facing job interrupts a running background job, which is
+ * queued again and restarted later.
+ * <p>
+ * Segmented exports are never merged and never preempted, segments already announced to the
+ * listener are not written again.
+ * <p>
+ * Listeners are called on the worker threads.
+ */
+public class ExportScheduler {
+
+    public static final int DEFAULT_WORKER_COUNT = 2;
+
+    static final String CANCELLED_MESSAGE = "Export cancelled";
+
+    private static final long PROGRESS_INTERVAL_MILLIS = 250;
+    private static final int MAX_FINISHED_JOBS = 32;
+    private static final String WORKER_THREAD_NAME = "PreviewExportWorker";
+
+    private final Exporter exporter;
+    private final PreviewMetrics metrics;
+    private final Object lock = new Object();
+    private final PriorityQueue<Job> queuedJobs = new PriorityQueue<>(11, new Comparator<Job>() {
+        @Override
+        public int compare(Job first, Job second) {
+            int priorityComparison = first.priority.compareTo(second.priority);
+            return priorityComparison != 0 ? priorityComparison : first.jobId - second.jobId;
+        }
+    });
+    private final List<Job> runningJobs = new ArrayList<>();
+    private final Map<ExportingConfiguration, Job> activeJobsByConfiguration = new HashMap<>();
+    private final LinkedHashMap<Integer, Job> jobs = new LinkedHashMap<>();
+    private final int workerCount;
+
+    private int nextJobId = 1;
+    private int startedWorkerCount;
+    private boolean isShutdown;
+
+    public ExportScheduler(Exporter exporter, int workerCount) {
+        this(exporter, workerCount, new PreviewMetrics());
+    }
+
+    /**
+     * @param metrics receives queue time and duration of each completed export
+     */
+    public ExportScheduler(Exporter exporter, int workerCount, PreviewMetrics metrics) {
+        this.exporter = exporter;
+        this.workerCount = workerCount;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Queues an export, or attaches the listener to an identical queued or running export.
+     *
+     * @return id of the job that produces the requested output
+     */
+    public int submit(ExportingConfiguration configuration, String outputFilePath, ExportPriority priority,
+                      OnExportJobStatusListener listener) {
+        synchronized (lock) {
+            if (isShutdown) {
+                throw new IllegalStateException("Export scheduler was shut down");
+            }
+            Job job = activeJobsByConfiguration.get(configuration);
+            if (job != null) {
+                job.listeners.add(listener);
+                if (priority.compareTo(job.priority) < 0) {
+                    raisePriority(job, priority);
+                }
+                return job.jobId;
+            }
+
+            job = new Job(nextJobId++, configuration, outputFilePath, null, priority);
+            job.listeners.add(listener);
+            jobs.put(job.jobId, job);
+            activeJobsByConfiguration.put(configuration, job);
+            enqueue(job);
+            return job.jobId;
+        }
+    }
+
+    /**
+     * Queues an export written as segments to the output. The segment listener is called on the
+     * worker thread for each flushed segment.
+     *
+     * @return id of the new job
+     */
+    public int submitSegmented(ExportingConfiguration configuration, SegmentedExportOutput output,
+                               ExportPriority priority, OnExportSegmentListener segmentListener,
+                               OnExportJobStatusListener listener) {
+        synchronized (lock) {
+            if (isShutdown) {
+                throw new IllegalStateException("Export scheduler was shut down");
+            }
+            Job job = new Job(nextJobId++, configuration, output.getLocation(), output, priority);
+            output.attach(job.jobId, segmentListener);
+            job.listeners.add(listener);
+            jobs.put(job.jobId, job);
+            enqueue(job);
+            return job.jobId;
+        }
+    }
+
+    /**
+     * @return status of the job or null when the id is unknown or the job was finished long ago
+     */
+    public ExportJobStatus getStatus(int jobId) {
+        synchronized (lock) {
+            Job job = jobs.get(jobId);
+            return job != null ? job.createStatus() : null;
+        }
+    }
+
+    /**
+     * Cancels a queued or running job; its listeners receive a cancelled status.
+     *
+     * @return false when there was no such unfinished job
+     */
+    public boolean cancel(int jobId) {
+        Job cancelledJob;
+        synchronized (lock) {
+            Job job = jobs.get(jobId);
+            if (job == null || job.state.isFinished()) {
+                return false;
+            }
+            cancelledJob = cancelLocked(job);
+        }
+        if (cancelledJob != null) {
+            finish(cancelledJob, ExportJobState.CANCELLED, CANCELLED_MESSAGE);
+        }
+        return true;
+    }
+
+    public void cancelAll() {
+        List<Job> cancelledJobs = new ArrayList<>();
+        synchronized (lock) {
+            for (Job job : new ArrayList<>(jobs.values())) {
+                if (!job.state.isFinished()) {
+                    Job cancelledJob = cancelLocked(job);
+                    if (cancelledJob != null) {
+                        cancelledJobs.add(cancelledJob);
+                    }
+                }
+            }
+        }
+        for (Job job : cancelledJobs) {
+            finish(job, ExportJobState.CANCELLED, CANCELLED_MESSAGE);
+        }
+    }
+
+    /**
+     * Cancels all jobs and stops the workers once they are idle.
+     */
+    public void shutdown() {
+        cancelAll();
+        synchronized (lock) {
+            isShutdown = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Queued job is removed right away and returned for notification; a running one is interrupted
+     * and its worker reports the cancellation.
+     */
+    private Job cancelLocked(Job job) {
+        if (job.state == ExportJobState.QUEUED) {
+            queuedJobs.remove(job);
+            job.state = ExportJobState.CANCELLED;
+            return job;
+        }
+        job.isCancelled = true;
+        job.worker.interrupt();
+        return null;
+    }
+
+    private void raisePriority(Job job, ExportPriority priority) {
+        if (job.state == ExportJobState.QUEUED) {
+            queuedJobs.remove(job);
+            job.priority = priority;
+            enqueue(job);
+        } else {
+            job.priority = priority;
+        }
+    }
+
+    private void enqueue(Job job) {
+        job.state = ExportJobState.QUEUED;
+        queuedJobs.add(job);
+        if (startedWorkerCount < workerCount) {
+            startedWorkerCount++;
+            new Thread(new Worker(), WORKER_THREAD_NAME).start();
+        } else if (job.priority == ExportPriority.USER_FACING && runningJobs.size() >= workerCount) {
+            preemptBackgroundJob();
+        }
+        lock.notifyAll();
+    }
+
+    private void preemptBackgroundJob() {
+        for (Job runningJob : runningJobs) {
+            if (runningJob.priority == ExportPriority.BACKGROUND && !runningJob.isPreempted
+                    && runningJob.segmentedOutput == null) {
+                runningJob.isPreempted = true;
+                runningJob.worker.interrupt();
+                return;
+            }
+        }
+    }
+
+    private Job takeNextJob() throws InterruptedException {
+        synchronized (lock) {
+            while (queuedJobs.isEmpty() && !isShutdown) {
+                lock.wait();
+            }
+            if (isShutdown) {
+                return null;
+            }
+            Job job = queuedJobs.poll();
+            job.state = ExportJobState.RUNNING;
+            job.worker = Thread.currentThread();
+            job.isPreempted = false;
+            runningJobs.add(job);
+            return job;
+        }
+    }
+
+    private void runJob(Job job) {
+        ExportJobState state;
+        String errorMessage = null;
+        long startTimeNanos = System.nanoTime();
+        if (!job.isStarted) {
+            job.isStarted = true;
+            metrics.recordNanos(PreviewMetrics.EXPORT_QUEUE_TIME, startTimeNanos - job.submitTimeNanos);
+        }
+        try {
+            job.progressTracker.start();
+            String writtenFilePath = job.outputFilePath;
+            if (job.segmentedOutput != null) {
+                exporter.exportSegments(job.configuration, job.segmentedOutput, job);
+            } else {
+                writtenFilePath = exporter.export(job.configuration, job.outputFilePath, job);
+            }
+            synchronized (lock) {
+                job.writtenFilePath = writtenFilePath;
+            }
+            state = ExportJobState.COMPLETED;
+            metrics.recordNanos(PreviewMetrics.EXPORT_DURATION, System.nanoTime() - startTimeNanos);
+        } catch (InterruptedIOException e) {
+            deletePartialOutput(job);
+            state = ExportJobState.CANCELLED;
+            errorMessage = CANCELLED_MESSAGE;
+        } catch (IOException | RuntimeException e) {
+            deletePartialOutput(job);
+            state = ExportJobState.FAILED;
+            errorMessage = "Error while creating preview file: " + e.getMessage();
+        }
+
+        synchronized (lock) {
+            runningJobs.remove(job);
+            job.worker = null;
+            // interruption may have arrived after the export returned, it must not leak into the next job
+            Thread.interrupted();
+            if (state == ExportJobState.CANCELLED && job.isPreempted && !job.isCancelled) {
+                job.progress = 0;
+                job.remainingTimeMillis = ExportProgressTracker.UNKNOWN_TIME;
+                job.state = ExportJobState.QUEUED;
+                queuedJobs.add(job);
+                lock.notifyAll();
+                return;
+            }
+        }
+        finish(job, state, errorMessage);
+    }
+
+    /**
+     * Segments of a segmented export may already be uploaded, the output deletes only the unfinished one.
+     */
+    private static void deletePartialOutput(Job job) {
+        if (job.segmentedOutput == null) {
+            new File(job.outputFilePath).delete();
+        }
+    }
+
+    private void finish(Job job, ExportJobState state, String errorMessage) {
+        List<OnExportJobStatusListener> listeners;
+        ExportJobStatus status;
+        synchronized (lock) {
+            job.state = state;
+            job.errorMessage = errorMessage;
+            if (state == ExportJobState.COMPLETED) {
+                job.progress = 1;
+                job.remainingTimeMillis = 0;
+            }
+            if (activeJobsByConfiguration.get(job.configuration) == job) {
+                activeJobsByConfiguration.remove(job.configuration);
+            }
+            trimFinishedJobs();
+            listeners = new ArrayList<>(job.listeners);
+            job.listeners.clear();
+            status = job.createStatus();
+        }
+        if (job.segmentedOutput != null) {
+            releaseQuietly(job.segmentedOutput);
+        }
+        for (OnExportJobStatusListener listener : listeners) {
+            listener.onExportJobFinished(status);
+        }
+    }
+
+    /**
+     * The exporter releases the output it wrote to, this covers jobs cancelled before they ran.
+     */
+    private static void releaseQuietly(SegmentedExportOutput output) {
+        try {
+            output.release();
+        } catch (IOException e) {
+            // nothing more can be written to it anyway
+        }
+    }
+
+    private void trimFinishedJobs() {
+        int finishedJobCount = 0;
+        for (Job job : jobs.values()) {
+            if (job.state.isFinished()) {
+                finishedJobCount++;
+            }
+        }
+        Iterator<Job> iterator = jobs.values().iterator();
+        while (finishedJobCount > MAX_FINISHED_JOBS && iterator.hasNext()) {
+            if (iterator.next().state.isFinished()) {
+                iterator.remove();
+                finishedJobCount--;
+            }
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            while (true) {
+                Job job;
+                try {
+                    job = takeNextJob();
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                if (job == null) {
+                    return;
+                }
+                runJob(job);
+            }
+        }
+    }
+
+    private class Job implements ExportProgressListener {
+
+        private final int jobId;
+        private final ExportingConfiguration configuration;
+        private final String outputFilePath;
+        private final SegmentedExportOutput segmentedOutput;
+        private String writtenFilePath;
+        private final List<OnExportJobStatusListener> listeners = new ArrayList<>();
+        private final ExportProgressTracker progressTracker = new ExportProgressTracker(PROGRESS_INTERVAL_MILLIS);
+        private final long submitTimeNanos = System.nanoTime();
+
+        private ExportPriority priority;
+        private ExportJobState state;
+        private Thread worker;
+        private boolean isCancelled;
+        private boolean isPreempted;
+        private boolean isStarted;
+        private float progress;
+        private long remainingTimeMillis = ExportProgressTracker.UNKNOWN_TIME;
+        private String errorMessage;
+
+        Job(int jobId, ExportingConfiguration configuration, String outputFilePath,
+            SegmentedExportOutput segmentedOutput, ExportPriority priority) {
+            this.jobId = jobId;
+            this.configuration = configuration;
+            this.outputFilePath = outputFilePath;
+            this.segmentedOutput = segmentedOutput;
+            this.priority = priority;
+        }
+
+        @Override
+        public void onProgress(long renderedFrames, long totalFrames) {
+            if (!progressTracker.update(renderedFrames, totalFrames)) {
+                return;
+            }
+            List<OnExportJobStatusListener> listenersCopy;
+            ExportJobStatus status;
+            synchronized (lock) {
+                progress = progressTracker.getFraction();
+                remainingTimeMillis = progressTracker.getRemainingTimeMillis();
+                listenersCopy = new ArrayList<>(listeners);
+                status = createStatus();
+            }
+            for (OnExportJobStatusListener listener : listenersCopy) {
+                listener.onExportJobProgress(status);
+            }
+        }
+
+        /**
+         * Must be called with the lock held.
+         */
+        ExportJobStatus createStatus() {
+            return new ExportJobStatus(jobId, state, progress, remainingTimeMillis,
+                    writtenFilePath != null ? writtenFilePath : outputFilePath, errorMessage);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+/**
+ * Part of a segmented export that was flushed and can be read, uploaded or decoded on its own.
+ */
+public class ExportSegment {
+
+    private final int index;
+    private final String location;
+    private final long offset;
+    private final long size;
+    private final long startTimeMillis;
+    private final long durationMillis;
+
+    ExportSegment(int index, String location, long offset, long size, long startTimeMillis, long durationMillis) {
+        this.index = index;
+        this.location = location;
+        this.offset = offset;
+        this.size = size;
+        this.startTimeMillis = startTimeMillis;
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * @return position of the segment in the export, starting at 0
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return path of the segment file, or the location of the stream all segments are written to
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * @return byte offset of the segment at its location, 0 for segment files
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return time of the first frame of the segment, relative to the start of the export
+     */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+}
@@ -0,0 +1,31 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Renders an export configuration to a file.
+ */
+public interface Exporter {
+
+    /**
+     * Blocks until the whole output file is written. Must not be called on the main thread.
+     *
+     * @param outputFilePath   where the output should be written, implementations may store it elsewhere
+     * @param progressListener may be null
+     * @return path of the written file
+     * @throws InterruptedIOException when the thread was interrupted, the output is left incomplete
+     */
+    String export(ExportingConfiguration configuration, String outputFilePath,
+                  ExportProgressListener progressListener) throws IOException;
+
+    /**
+     * Blocks until the whole output is written as a sequence of ADTS segments. Segments are never
+     * cached, the output decides where they go and announces each one as soon as it is flushed.
+     *
+     * @param progressListener may be null
+     * @throws InterruptedIOException when the thread was interrupted, segments written so far are kept
+     */
+    void exportSegments(ExportingConfiguration configuration, SegmentedExportOutput output,
+                        ExportProgressListener progressListener) throws IOException;
+}
@@ -0,0 +1,109 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+public class ExportingConfiguration {
+
+    private final String backgroundAudioFilePath;
+    private final String vocalAudioFilePath;
+
+    private final float vocalTrackVolume;
+    private final float backgroundTrackVolume;
+
+    private final int recordingStartTimeMillis;
+    private final int startTimeMillis;
+    private final int durationMillis;
+    private final int fadeDurationMillis;
+
+    private final EncodingProfile encodingProfile;
+
+    /**
+     * @param recordingStartTimeMillis position in the background track at which the vocal starts
+     * @param startTimeMillis          playback time at which exported window starts
+     * @param durationMillis           window duration, zero or less exports until the end of the background track
+     * @param fadeDurationMillis       length of fade-in and fade-out applied at the window edges
+     * @param encodingProfile          output format
+     */
+    public ExportingConfiguration(String backgroundAudioFilePath, String vocalAudioFilePath,
+                                  float vocalTrackVolume, float backgroundTrackVolume,
+                                  int recordingStartTimeMillis, int startTimeMillis, int durationMillis,
+                                  int fadeDurationMillis, EncodingProfile encodingProfile) {
+        this.backgroundAudioFilePath = backgroundAudioFilePath;
+        this.vocalAudioFilePath = vocalAudioFilePath;
+        this.vocalTrackVolume = vocalTrackVolume;
+        this.backgroundTrackVolume = backgroundTrackVolume;
+        this.recordingStartTimeMillis = recordingStartTimeMillis;
+        this.startTimeMillis = startTimeMillis;
+        this.durationMillis = durationMillis;
+        this.fadeDurationMillis = fadeDurationMillis;
+        this.encodingProfile = encodingProfile;
+    }
+
+    public String getBackgroundAudioFilePath() {
+        return backgroundAudioFilePath;
+    }
+
+    public String getVocalAudioFilePath() {
+        return vocalAudioFilePath;
+    }
+
+    public float getVocalTrackVolume() {
+        return vocalTrackVolume;
+    }
+
+    public float getBackgroundTrackVolume() {
+        return backgroundTrackVolume;
+    }
+
+    public int getRecordingStartTimeMillis() {
+        return recordingStartTimeMillis;
+    }
+
+    public int getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    public int getDurationMillis() {
+        return durationMillis;
+    }
+
+    public int getFadeDurationMillis() {
+        return fadeDurationMillis;
+    }
+
+    public EncodingProfile getEncodingProfile() {
+        return encodingProfile;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ExportingConfiguration that = (ExportingConfiguration) o;
+        return Float.compare(that.vocalTrackVolume, vocalTrackVolume) == 0
+                && Float.compare(that.backgroundTrackVolume, backgroundTrackVolume) == 0
+                && recordingStartTimeMillis == that.recordingStartTimeMillis
+                && startTimeMillis == that.startTimeMillis
+                && durationMillis == that.durationMillis
+                && fadeDurationMillis == that.fadeDurationMillis
+                && backgroundAudioFilePath.equals(that.backgroundAudioFilePath)
+                && vocalAudioFilePath.equals(that.vocalAudioFilePath)
+                && encodingProfile.equals(that.encodingProfile);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = backgroundAudioFilePath.hashCode();
+        result = 31 * result + vocalAudioFilePath.hashCode();
+        result = 31 * result + Float.floatToIntBits(vocalTrackVolume);
+        result = 31 * result + Float.floatToIntBits(backgroundTrackVolume);
+        result = 31 * result + recordingStartTimeMillis;
+        result = 31 * result + startTimeMillis;
+        result = 31 * result + durationMillis;
+        result = 31 * result + fadeDurationMillis;
+        result = 31 * result + encodingProfile.hashCode();
+        return result;
+    }
+}
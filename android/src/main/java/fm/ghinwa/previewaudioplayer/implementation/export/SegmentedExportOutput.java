@@ -0,0 +1,68 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import fm.ghinwa.previewaudioplayer.implementation.audio.AdtsSegmentWriter;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnExportSegmentListener;
+
+/**
+ * Destination of a segmented export. Each segment is announced to the listener as soon as it is
+ * flushed, so it can be uploaded while the rest is still being encoded. Segments are written
+ * once; an output is used by a single export.
+ */
+public abstract class SegmentedExportOutput implements AdtsSegmentWriter {
+
+    public static final long DEFAULT_SEGMENT_DURATION_MILLIS = 5000;
+
+    private final long segmentDurationMillis;
+
+    private int jobId;
+    private OnExportSegmentListener onExportSegmentListener;
+
+    protected SegmentedExportOutput(long segmentDurationMillis) {
+        if (segmentDurationMillis <= 0) {
+            throw new IllegalArgumentException("Invalid segment duration: " + segmentDurationMillis);
+        }
+        this.segmentDurationMillis = segmentDurationMillis;
+    }
+
+    public long getSegmentDurationMillis() {
+        return segmentDurationMillis;
+    }
+
+    /**
+     * @return directory or stream location reported in the job status
+     */
+    public abstract String getLocation();
+
+    /**
+     * Connects the output to the job it is written by.
+     */
+    void attach(int jobId, OnExportSegmentListener onExportSegmentListener) {
+        this.jobId = jobId;
+        this.onExportSegmentListener = onExportSegmentListener;
+    }
+
+    /**
+     * Makes the segment durable.
+     *
+     * @return where the segment can be read, see {@link ExportSegment#getLocation()}
+     */
+    protected abstract String flushSegment(int index) throws IOException;
+
+    /**
+     * @return byte offset of the segment at its location
+     */
+    protected abstract long getSegmentOffset(int index, long size);
+
+    @Override
+    public final void endSegment(int index, long size, long startTimeUs, long durationUs) throws IOException {
+        String location = flushSegment(index);
+        if (onExportSegmentListener != null) {
+            onExportSegmentListener.onExportSegmentWritten(jobId, new ExportSegment(index, location,
+                    getSegmentOffset(index, size), size,
+                    TimeUnit.MICROSECONDS.toMillis(startTimeUs), TimeUnit.MICROSECONDS.toMillis(durationUs)));
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package fm.ghinwa.previewaudioplayer.implementation.listener;
+
+import fm.ghinwa.previewaudioplayer.implementation.export.ExportJobStatus;
+
+public interface OnExportJobStatusListener {
+
+    void onExportJobProgress(ExportJobStatus status);
+
+    /**
+     * Called once, when the job completed, failed or was cancelled.
+     */
+    void onExportJobFinished(ExportJobStatus status);
+}
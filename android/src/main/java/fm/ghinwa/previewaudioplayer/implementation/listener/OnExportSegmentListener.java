@@ -0,0 +1,11 @@
+package fm.ghinwa.previewaudioplayer.implementation.listener;
+
+import fm.ghinwa.previewaudioplayer.implementation.export.ExportSegment;
+
+public interface OnExportSegmentListener {
+
+    /**
+     * Called in order for every segment, before the job is reported finished.
+     */
+    void onExportSegmentWritten(int jobId, ExportSegment segment);
+}
@@ -1,8 +0,0 @@
-package fm.ghinwa.previewaudioplayer.implementation.listener;
-
-public interface OnFFmpegPrepareStatusListener {
-
-    void onFfmpegPrepareError(String message);
-
-    void onFfmpegPrepareCompleted();
-}
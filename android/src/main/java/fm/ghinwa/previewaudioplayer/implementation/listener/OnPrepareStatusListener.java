@@ -0,0 +1,8 @@
+package fm.ghinwa.previewaudioplayer.implementation.listener;
+
+public interface OnPrepareStatusListener {
+
+    void onPrepareError(String message);
+
+    void onPrepareCompleted();
+}
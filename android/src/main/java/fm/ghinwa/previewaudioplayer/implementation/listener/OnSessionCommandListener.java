@@ -0,0 +1,11 @@
+package fm.ghinwa.previewaudioplayer.implementation.listener;
+
+public interface OnSessionCommandListener {
+
+    void onCommandCompleted();
+
+    /**
+     * Called when a demoted session could not be prepared again to run the command.
+     */
+    void onCommandError(String message);
+}
@@ -0,0 +1,21 @@
+package fm.ghinwa.previewaudioplayer.implementation.listener;
+
+public interface OnSessionEventListener {
+
+    void onSessionProgressUpdate(int sessionId, int currentTimeMillis);
+
+    void onSessionPlaybackCompleted(int sessionId);
+
+    /**
+     * The looped preview window of the session started again.
+     *
+     * @param iteration 1 for the first repeat
+     */
+    void onSessionLoopIteration(int sessionId, int iteration);
+
+    /**
+     * The session released its decoders to make room for another one. It is prepared again
+     * transparently when it is played.
+     */
+    void onSessionDemoted(int sessionId);
+}
@@ -0,0 +1,10 @@
+package fm.ghinwa.previewaudioplayer.implementation.listener;
+
+import fm.ghinwa.previewaudioplayer.implementation.waveform.Waveform;
+
+public interface OnWaveformStatusListener {
+
+    void onWaveformError(String message);
+
+    void onWaveformCompleted(Waveform waveform);
+}
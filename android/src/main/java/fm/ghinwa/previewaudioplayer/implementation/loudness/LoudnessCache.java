@@ -0,0 +1,157 @@
+package fm.ghinwa.previewaudioplayer.implementation.loudness;
+
+import android.content.Context;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import fm.ghinwa.previewaudioplayer.implementation.util.FileUtils;
+import fm.ghinwa.previewaudioplayer.implementation.util.Logger;
+
+/**
+ * Integrated loudness of audio files measured while they were decoded for another purpose, kept
+ * in the cache directory under a key built from path, size and modification time. Each entry is
+ * a file holding one number, the least recently used ones are deleted above a fixed count.
+ */
+public class LoudnessCache {
+
+    private static final String TAG = LoudnessCache.class.getSimpleName();
+
+    private static final String CACHE_DIRECTORY_NAME = "loudness";
+    private static final String LOUDNESS_FILE_SUFFIX = ".lufs";
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+    private static final int MAX_ENTRIES = 1024;
+
+    private final Context context;
+    private final LinkedHashMap<String, Double> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private boolean isIndexLoaded;
+    private OnLoudnessMeasuredListener onLoudnessMeasuredListener;
+
+    public LoudnessCache(Context context) {
+        this.context = context;
+    }
+
+    public synchronized void setOnLoudnessMeasuredListener(OnLoudnessMeasuredListener onLoudnessMeasuredListener) {
+        this.onLoudnessMeasuredListener = onLoudnessMeasuredListener;
+    }
+
+    /**
+     * @return integrated loudness in LUFS or NaN when the file was not measured yet
+     */
+    public synchronized double getIntegratedLoudness(String path) {
+        try {
+            loadIndex();
+        } catch (IOException e) {
+            Logger.e(TAG, "Loudness cache unavailable: " + e.getMessage());
+            return Double.NaN;
+        }
+        Double loudness = entries.get(FileUtils.createFileCacheKey(path));
+        return loudness != null ? loudness : Double.NaN;
+    }
+
+    /**
+     * Stores a measurement and reports it to the listener on the calling thread.
+     */
+    public void put(String path, double integratedLoudness) {
+        OnLoudnessMeasuredListener listener;
+        synchronized (this) {
+            String key = FileUtils.createFileCacheKey(path);
+            try {
+                loadIndex();
+                writeLoudnessFile(getLoudnessFile(key), integratedLoudness);
+            } catch (IOException e) {
+                Logger.e(TAG, "Unable to store loudness of " + path + ": " + e.getMessage());
+            }
+            entries.put(key, integratedLoudness);
+            trimToSize();
+            listener = onLoudnessMeasuredListener;
+        }
+        if (listener != null) {
+            listener.onLoudnessMeasured(path, integratedLoudness);
+        }
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Double>> iterator = entries.entrySet().iterator();
+        while (entries.size() > MAX_ENTRIES && iterator.hasNext()) {
+            String key = iterator.next().getKey();
+            iterator.remove();
+            try {
+                getLoudnessFile(key).delete();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Picks up measurements of previous sessions, oldest first so they are evicted first.
+     */
+    private void loadIndex() throws IOException {
+        if (isIndexLoaded) {
+            return;
+        }
+        File[] files = FileUtils.getCacheDirectory(context, CACHE_DIRECTORY_NAME).listFiles();
+        if (files != null) {
+            Arrays.sort(files, new Comparator<File>() {
+                @Override
+                public int compare(File first, File second) {
+                    return Long.valueOf(first.lastModified()).compareTo(second.lastModified());
+                }
+            });
+            for (File file : files) {
+                String name = file.getName();
+                if (!name.endsWith(LOUDNESS_FILE_SUFFIX)) {
+                    file.delete();
+                    continue;
+                }
+                try {
+                    entries.put(name.substring(0, name.length() - LOUDNESS_FILE_SUFFIX.length()), readLoudnessFile(file));
+                } catch (IOException e) {
+                    Logger.e(TAG, "Discarding corrupted loudness file " + name + ": " + e.getMessage());
+                    file.delete();
+                }
+            }
+        }
+        isIndexLoaded = true;
+        trimToSize();
+    }
+
+    private File getLoudnessFile(String key) throws IOException {
+        return new File(FileUtils.getCacheDirectory(context, CACHE_DIRECTORY_NAME), key + LOUDNESS_FILE_SUFFIX);
+    }
+
+    private static double readLoudnessFile(File file) throws IOException {
+        DataInputStream inputStream = new DataInputStream(new FileInputStream(file));
+        try {
+            return inputStream.readDouble();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static void writeLoudnessFile(File file, double integratedLoudness) throws IOException {
+        File temporaryFile = new File(file.getPath() + TEMPORARY_FILE_SUFFIX);
+        DataOutputStream outputStream = new DataOutputStream(new FileOutputStream(temporaryFile));
+        try {
+            outputStream.writeDouble(integratedLoudness);
+            outputStream.close();
+            if (!temporaryFile.renameTo(file)) {
+                throw new IOException("Unable to store loudness file " + file.getPath());
+            }
+        } finally {
+            outputStream.close();
+            temporaryFile.delete();
+        }
+    }
+}
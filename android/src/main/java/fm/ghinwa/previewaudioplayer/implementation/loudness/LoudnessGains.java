@@ -0,0 +1,71 @@
+package fm.ghinwa.previewaudioplayer.implementation.loudness;
+
+/**
+ * Gains that bring a vocal and its background to a chosen loudness difference. Only the louder
+ * track is turned down, so the gains multiply the volumes set by the user without ever raising
+ * them above full scale.
+ */
+public class LoudnessGains {
+
+    public static final LoudnessGains UNITY = new LoudnessGains(1, 1, true);
+
+    /**
+     * Unity gains kept because a track was not measured yet, so its loudness cannot be matched.
+     */
+    public static final LoudnessGains NOT_MEASURED = new LoudnessGains(1, 1, false);
+
+    /**
+     * Larger differences come from near silent tracks, matching them would mute the other one.
+     */
+    static final double MAX_ATTENUATION_DB = 24;
+
+    private final float vocalGain;
+    private final float backgroundGain;
+    private final boolean isMeasured;
+
+    private LoudnessGains(float vocalGain, float backgroundGain, boolean isMeasured) {
+        this.vocalGain = vocalGain;
+        this.backgroundGain = backgroundGain;
+        this.isMeasured = isMeasured;
+    }
+
+    /**
+     * @param vocalLoudness       integrated loudness of the vocal in LUFS, NaN when not known
+     * @param backgroundLoudness  integrated loudness of the background in LUFS, NaN when not known
+     * @param vocalToBackgroundDb how much louder than the background the vocal should be
+     * @return {@link #NOT_MEASURED} unless both tracks were measured, unity gains when either is silent
+     */
+    public static LoudnessGains match(double vocalLoudness, double backgroundLoudness, double vocalToBackgroundDb) {
+        if (Double.isNaN(vocalLoudness) || Double.isNaN(backgroundLoudness)) {
+            return NOT_MEASURED;
+        }
+        if (Double.isInfinite(vocalLoudness) || Double.isInfinite(backgroundLoudness)) {
+            return UNITY;
+        }
+        double vocalGainDb = backgroundLoudness + vocalToBackgroundDb - vocalLoudness;
+        vocalGainDb = Math.max(-MAX_ATTENUATION_DB, Math.min(MAX_ATTENUATION_DB, vocalGainDb));
+        if (vocalGainDb >= 0) {
+            return new LoudnessGains(1, toLinear(-vocalGainDb), true);
+        }
+        return new LoudnessGains(toLinear(vocalGainDb), 1, true);
+    }
+
+    public float getVocalGain() {
+        return vocalGain;
+    }
+
+    public float getBackgroundGain() {
+        return backgroundGain;
+    }
+
+    /**
+     * @return false when the gains stay at unity only because a track was not measured yet
+     */
+    public boolean isMeasured() {
+        return isMeasured;
+    }
+
+    private static float toLinear(double gainDb) {
+        return (float) Math.pow(10, gainDb / 20);
+    }
+}
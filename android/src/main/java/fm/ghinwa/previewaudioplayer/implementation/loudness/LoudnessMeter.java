@@ -0,0 +1,149 @@
+package fm.ghinwa.previewaudioplayer.implementation.loudness;
+
+import java.util.Arrays;
+
+/**
+ * Integrated loudness of interleaved 16 bit PCM as defined by EBU R128 / ITU-R BS.1770: samples
+ * are K-weighted, mean square energy is taken over 400 ms blocks overlapping by 75 % and blocks
+ * below the absolute and the relative gate are left out. Frames are fed in chunks as they are
+ * decoded, so the measurement needs no pass of its own.
+ * A mono track is measured as dual mono, so it reads the same as the stereo track it was
+ * downmixed from.
+ */
+public class LoudnessMeter {
+
+    private static final double ABSOLUTE_GATE_LUFS = -70;
+    private static final double RELATIVE_GATE_LU = -10;
+    private static final double LOUDNESS_OFFSET = -0.691;
+    private static final int SUB_BLOCKS_PER_BLOCK = 4;
+    private static final int SUB_BLOCKS_PER_SECOND = 10;
+    private static final double FULL_SCALE = 32768.0;
+
+    private final int channelCount;
+    private final double channelWeight;
+    private final int subBlockFrames;
+
+    private final double shelfB0;
+    private final double shelfB1;
+    private final double shelfB2;
+    private final double shelfA1;
+    private final double shelfA2;
+    private final double highPassA1;
+    private final double highPassA2;
+    private final double[] filterState;
+
+    private final double[] subBlockEnergies = new double[SUB_BLOCKS_PER_BLOCK];
+    private int subBlockCount;
+    private double subBlockEnergy;
+    private int subBlockFrameCount;
+
+    private double[] blockEnergies = new double[64];
+    private int blockCount;
+
+    public LoudnessMeter(int sampleRate, int channelCount) {
+        this.channelCount = channelCount;
+        channelWeight = channelCount == 1 ? 2 : 1;
+        subBlockFrames = Math.max(1, sampleRate / SUB_BLOCKS_PER_SECOND);
+        filterState = new double[channelCount * 4];
+
+        double shelfK = Math.tan(Math.PI * 1681.974450955533 / sampleRate);
+        double shelfQ = 0.7071752369554196;
+        double shelfVh = Math.pow(10, 3.999843853973347 / 20);
+        double shelfVb = Math.pow(shelfVh, 0.4996667741545416);
+        double shelfA0 = 1 + shelfK / shelfQ + shelfK * shelfK;
+        shelfB0 = (shelfVh + shelfVb * shelfK / shelfQ + shelfK * shelfK) / shelfA0;
+        shelfB1 = 2 * (shelfK * shelfK - shelfVh) / shelfA0;
+        shelfB2 = (shelfVh - shelfVb * shelfK / shelfQ + shelfK * shelfK) / shelfA0;
+        shelfA1 = 2 * (shelfK * shelfK - 1) / shelfA0;
+        shelfA2 = (1 - shelfK / shelfQ + shelfK * shelfK) / shelfA0;
+
+        double highPassK = Math.tan(Math.PI * 38.13547087602444 / sampleRate);
+        double highPassQ = 0.5003270373238773;
+        double highPassA0 = 1 + highPassK / highPassQ + highPassK * highPassK;
+        highPassA1 = 2 * (highPassK * highPassK - 1) / highPassA0;
+        highPassA2 = (1 - highPassK / highPassQ + highPassK * highPassK) / highPassA0;
+    }
+
+    /**
+     * @param frames number of frames of interleaved samples to measure
+     */
+    public void add(short[] samples, int frames) {
+        for (int frame = 0; frame < frames; frame++) {
+            int offset = frame * channelCount;
+            double frameEnergy = 0;
+            for (int channel = 0; channel < channelCount; channel++) {
+                double weighted = filter(channel * 4, samples[offset + channel] / FULL_SCALE);
+                frameEnergy += weighted * weighted;
+            }
+            subBlockEnergy += frameEnergy * channelWeight;
+            if (++subBlockFrameCount == subBlockFrames) {
+                endSubBlock();
+            }
+        }
+    }
+
+    /**
+     * @return integrated loudness in LUFS, negative infinity when every block is below the absolute gate
+     */
+    public double getIntegratedLoudness() {
+        double absoluteGate = toEnergy(ABSOLUTE_GATE_LUFS);
+        double relativeGate = toEnergy(toLoudness(gatedMean(absoluteGate)) + RELATIVE_GATE_LU);
+        return toLoudness(gatedMean(Math.max(absoluteGate, relativeGate)));
+    }
+
+    /**
+     * Two biquads in transposed direct form II: the high shelf modelling the head, then the high
+     * pass of the revised low frequency B-curve, which has b = {1, -2, 1}.
+     */
+    private double filter(int state, double input) {
+        double shelved = shelfB0 * input + filterState[state];
+        filterState[state] = shelfB1 * input - shelfA1 * shelved + filterState[state + 1];
+        filterState[state + 1] = shelfB2 * input - shelfA2 * shelved;
+
+        double output = shelved + filterState[state + 2];
+        filterState[state + 2] = -2 * shelved - highPassA1 * output + filterState[state + 3];
+        filterState[state + 3] = shelved - highPassA2 * output;
+        return output;
+    }
+
+    private void endSubBlock() {
+        subBlockEnergies[subBlockCount % SUB_BLOCKS_PER_BLOCK] = subBlockEnergy / subBlockFrames;
+        subBlockCount++;
+        subBlockEnergy = 0;
+        subBlockFrameCount = 0;
+        if (subBlockCount < SUB_BLOCKS_PER_BLOCK) {
+            return;
+        }
+        double blockEnergy = 0;
+        for (double energy : subBlockEnergies) {
+            blockEnergy += energy;
+        }
+        if (blockCount == blockEnergies.length) {
+            blockEnergies = Arrays.copyOf(blockEnergies, blockEnergies.length * 2);
+        }
+        blockEnergies[blockCount++] = blockEnergy / SUB_BLOCKS_PER_BLOCK;
+    }
+
+    /**
+     * @return mean energy of the blocks above the gate, 0 when there are none
+     */
+    private double gatedMean(double gate) {
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < blockCount; i++) {
+            if (blockEnergies[i] > gate) {
+                sum += blockEnergies[i];
+                count++;
+            }
+        }
+        return count > 0 ? sum / count : 0;
+    }
+
+    private static double toLoudness(double energy) {
+        return LOUDNESS_OFFSET + 10 * Math.log10(energy);
+    }
+
+    private static double toEnergy(double loudness) {
+        return Math.pow(10, (loudness - LOUDNESS_OFFSET) / 10);
+    }
+}
@@ -0,0 +1,9 @@
+package fm.ghinwa.previewaudioplayer.implementation.loudness;
+
+public interface OnLoudnessMeasuredListener {
+
+    /**
+     * @param integratedLoudness in LUFS, negative infinity for a silent file
+     */
+    void onLoudnessMeasured(String path, double integratedLoudness);
+}
@@ -0,0 +1,92 @@
+package fm.ghinwa.previewaudioplayer.implementation.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of durations with power of two microsecond buckets, from 1 microsecond up to about a minute.
+ * Recording is a few arithmetic operations with no allocation; percentiles are reported as the
+ * upper bound of the bucket they fall into, clamped to the largest recorded value.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKET_COUNT = 27;
+    private static final long NANOS_PER_MICRO = 1000;
+
+    private final long[] bucketCounts = new long[BUCKET_COUNT];
+    private long count;
+    private long sumMicros;
+    private long minMicros = Long.MAX_VALUE;
+    private long maxMicros;
+
+    public synchronized void recordNanos(long durationNanos) {
+        long micros = Math.max(0, durationNanos / NANOS_PER_MICRO);
+        bucketCounts[bucketIndex(micros)]++;
+        count++;
+        sumMicros += micros;
+        minMicros = Math.min(minMicros, micros);
+        maxMicros = Math.max(maxMicros, micros);
+    }
+
+    public synchronized LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        System.arraycopy(bucketCounts, 0, copy.bucketCounts, 0, BUCKET_COUNT);
+        copy.count = count;
+        copy.sumMicros = sumMicros;
+        copy.minMicros = minMicros;
+        copy.maxMicros = maxMicros;
+        return copy;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(bucketCounts, 0);
+        count = 0;
+        sumMicros = 0;
+        minMicros = Long.MAX_VALUE;
+        maxMicros = 0;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getMinMicros() {
+        return count == 0 ? 0 : minMicros;
+    }
+
+    public synchronized long getMaxMicros() {
+        return maxMicros;
+    }
+
+    public synchronized double getMeanMicros() {
+        return count == 0 ? 0 : (double) sumMicros / count;
+    }
+
+    /**
+     * @param fraction percentile as a fraction, 0.5 for the median
+     */
+    public synchronized long getPercentileMicros(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += bucketCounts[i];
+            if (seen >= rank) {
+                return Math.max(getMinMicros(), Math.min(maxMicros, bucketUpperBound(i)));
+            }
+        }
+        return maxMicros;
+    }
+
+    /**
+     * Bucket i holds values up to 2^i - 1 microseconds, the last bucket everything above.
+     */
+    private static int bucketIndex(long micros) {
+        return Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    private static long bucketUpperBound(int index) {
+        return index == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << index) - 1;
+    }
+}
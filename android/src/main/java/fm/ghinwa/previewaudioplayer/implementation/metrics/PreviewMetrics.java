@@ -0,0 +1,93 @@
+package fm.ghinwa.previewaudioplayer.implementation.metrics;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Named latency histograms of player and export operations, shared by the player, the playback
+ * engines and the export scheduler. Histograms recorded for a single track are named
+ * {@code metric.track}, for example {@code seekLatency.background}. Recording looks histograms
+ * up without allocating, so it is safe to call on every tick and seek.
+ */
+public class PreviewMetrics {
+
+    public static final String PREPARE_TIME = "prepareTime";
+    public static final String SEEK_LATENCY = "seekLatency";
+    /**
+     * Time between starting the first and the last player.
+     */
+    public static final String START_SKEW = "startSkew";
+    /**
+     * Difference between the actual and the configured interval of progress checks.
+     */
+    public static final String TICK_JITTER = "tickJitter";
+    /**
+     * Time an export spent queued before it started rendering.
+     */
+    public static final String EXPORT_QUEUE_TIME = "exportQueueTime";
+    public static final String EXPORT_DURATION = "exportDuration";
+    /**
+     * Time spent estimating the vocal offset before a session is prepared.
+     */
+    public static final String ALIGNMENT_ANALYSIS = "alignmentAnalysis";
+
+    public static final String BACKGROUND_TRACK = "background";
+    public static final String ORIGINAL_VOCAL_TRACK = "originalVocal";
+    public static final String PROCESSED_VOCAL_TRACK = "processedVocal";
+    /**
+     * The software mixer seeks all tracks in one operation.
+     */
+    public static final String MIXED_OUTPUT = "mix";
+
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    private final Map<String, Map<String, LatencyHistogram>> trackHistograms = new HashMap<>();
+
+    public void recordNanos(String metric, long durationNanos) {
+        getHistogram(metric).recordNanos(durationNanos);
+    }
+
+    public void recordNanos(String metric, String track, long durationNanos) {
+        getHistogram(metric, track).recordNanos(durationNanos);
+    }
+
+    /**
+     * @return copies of all histograms recorded so far, in the order they were first recorded
+     */
+    public synchronized Map<String, LatencyHistogram> snapshot() {
+        Map<String, LatencyHistogram> snapshot = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().copy());
+        }
+        return snapshot;
+    }
+
+    public synchronized void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    private synchronized LatencyHistogram getHistogram(String metric, String track) {
+        Map<String, LatencyHistogram> histogramsByTrack = trackHistograms.get(metric);
+        if (histogramsByTrack == null) {
+            histogramsByTrack = new HashMap<>();
+            trackHistograms.put(metric, histogramsByTrack);
+        }
+        LatencyHistogram histogram = histogramsByTrack.get(track);
+        if (histogram == null) {
+            histogram = getHistogram(metric + '.' + track);
+            histogramsByTrack.put(track, histogram);
+        }
+        return histogram;
+    }
+
+    private synchronized LatencyHistogram getHistogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            histograms.put(name, histogram);
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,56 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+
+/**
+ * Drift of vocal players measured against the background player, in milliseconds.
+ * Positive drift means the vocal track is ahead of the background track.
+ */
+public class DriftStatistics {
+
+    private int sampleCount;
+    private int correctionCount;
+    private int lastDriftMillis;
+    private int maxAbsoluteDriftMillis;
+    private long absoluteDriftSumMillis;
+
+    synchronized void recordSample(int driftMillis) {
+        sampleCount++;
+        lastDriftMillis = driftMillis;
+        maxAbsoluteDriftMillis = Math.max(maxAbsoluteDriftMillis, Math.abs(driftMillis));
+        absoluteDriftSumMillis += Math.abs(driftMillis);
+    }
+
+    synchronized void recordCorrection() {
+        correctionCount++;
+    }
+
+    synchronized DriftStatistics copy() {
+        DriftStatistics copy = new DriftStatistics();
+        copy.sampleCount = sampleCount;
+        copy.correctionCount = correctionCount;
+        copy.lastDriftMillis = lastDriftMillis;
+        copy.maxAbsoluteDriftMillis = maxAbsoluteDriftMillis;
+        copy.absoluteDriftSumMillis = absoluteDriftSumMillis;
+        return copy;
+    }
+
+    public synchronized int getSampleCount() {
+        return sampleCount;
+    }
+
+    public synchronized int getCorrectionCount() {
+        return correctionCount;
+    }
+
+    public synchronized int getLastDriftMillis() {
+        return lastDriftMillis;
+    }
+
+    public synchronized int getMaxAbsoluteDriftMillis() {
+        return maxAbsoluteDriftMillis;
+    }
+
+    public synchronized float getMeanAbsoluteDriftMillis() {
+        return sampleCount == 0 ? 0 : (float) absoluteDriftSumMillis / sampleCount;
+    }
+}
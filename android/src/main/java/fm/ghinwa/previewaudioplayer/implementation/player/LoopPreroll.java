@@ -0,0 +1,120 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+
+/**
+ * Keeps the first frames of a loop, background and vocal separately and before gains are
+ * applied. They are captured the first time the loop start is rendered and replayed on every
+ * wrap, while the decoders seek past them in the background.
+ */
+class LoopPreroll {
+
+    private final int channelCount;
+    private final int capacityFrames;
+    private final short[] background;
+    private final short[] vocal;
+
+    private int capturedFrames;
+    private boolean isCapturing;
+    private boolean isCaptured;
+    private int replayedFrames;
+    private boolean isReplaying;
+
+    LoopPreroll(int capacityFrames, int channelCount) {
+        this.capacityFrames = capacityFrames;
+        this.channelCount = channelCount;
+        background = new short[capacityFrames * channelCount];
+        vocal = new short[capacityFrames * channelCount];
+    }
+
+    /**
+     * Starts capturing at the loop start unless the frames are already kept.
+     */
+    void startCapture() {
+        if (!isCaptured) {
+            capturedFrames = 0;
+            isCapturing = true;
+        }
+    }
+
+    boolean isCapturing() {
+        return isCapturing;
+    }
+
+    /**
+     * Drops a capture that did not complete, the kept frames of a completed one stay.
+     */
+    void cancelCapture() {
+        if (isCapturing) {
+            isCapturing = false;
+            capturedFrames = 0;
+        }
+    }
+
+    void capture(short[] backgroundChunk, short[] vocalChunk, int frames) {
+        if (!isCapturing) {
+            return;
+        }
+        int count = Math.min(frames, capacityFrames - capturedFrames);
+        System.arraycopy(backgroundChunk, 0, background, capturedFrames * channelCount, count * channelCount);
+        System.arraycopy(vocalChunk, 0, vocal, capturedFrames * channelCount, count * channelCount);
+        capturedFrames += count;
+        if (capturedFrames == capacityFrames) {
+            isCapturing = false;
+            isCaptured = true;
+        }
+    }
+
+    boolean isCaptured() {
+        return isCaptured;
+    }
+
+    /**
+     * @return number of frames that are replayed on wrap, the decoders continue after them
+     */
+    int getFrames() {
+        return capacityFrames;
+    }
+
+    void startReplay() {
+        replayedFrames = 0;
+        isReplaying = true;
+    }
+
+    boolean isReplaying() {
+        return isReplaying;
+    }
+
+    /**
+     * Copies the next kept frames into the chunks.
+     *
+     * @return number of frames copied
+     */
+    int replay(short[] backgroundChunk, short[] vocalChunk, int maxFrames) {
+        int count = Math.min(maxFrames, capacityFrames - replayedFrames);
+        System.arraycopy(background, replayedFrames * channelCount, backgroundChunk, 0, count * channelCount);
+        System.arraycopy(vocal, replayedFrames * channelCount, vocalChunk, 0, count * channelCount);
+        replayedFrames += count;
+        if (replayedFrames == capacityFrames) {
+            isReplaying = false;
+        }
+        return count;
+    }
+
+    void stopReplay() {
+        isReplaying = false;
+    }
+
+    /**
+     * Drops the kept frames, for example when the loop moved or the vocal track changed.
+     */
+    void invalidate() {
+        isCapturing = false;
+        isCaptured = false;
+        isReplaying = false;
+        capturedFrames = 0;
+    }
+
+    long getMemoryBytes() {
+        return 2L * background.length * 2;
+    }
+}
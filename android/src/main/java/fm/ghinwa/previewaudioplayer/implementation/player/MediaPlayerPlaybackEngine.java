@@ -0,0 +1,565 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+
+import android.media.MediaPlayer;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.io.IOException;
+
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnPrepareStatusListener;
+import fm.ghinwa.previewaudioplayer.implementation.metrics.PreviewMetrics;
+
+/**
+ * Plays each track with its own MediaPlayer. By default both vocal players run and the inactive
+ * one is muted; in active vocal only mode the inactive one is kept prepared but paused and is
+ * seeked to the current position and started when the vocal is switched.
+ * MediaPlayer cannot queue a wrap, so a loop is closed by a seek issued ahead of the loop end by
+ * the measured seek latency; the players keep running through it and land on the loop start
+ * about when the end would have been reached.
+ */
+class MediaPlayerPlaybackEngine implements PlaybackEngine, MediaPlayer.OnCompletionListener {
+
+    private static final long CROSSFADE_STEP_MILLIS = 20;
+    private static final int INITIAL_SWITCH_SEEK_LATENCY_MILLIS = 50;
+    private static final int INITIAL_LOOP_SEEK_LATENCY_MILLIS = 50;
+    private static final long LOOP_CHECK_INTERVAL_MILLIS = 250;
+
+    private SinglePreviewMediaPlayer originalVocalPlayer;
+    private SinglePreviewMediaPlayer processedVocalPlayer;
+    private SinglePreviewMediaPlayer backgroundTrackPlayer;
+
+    private SinglePreviewMediaPlayer[] mediaPlayers;
+    private PrepareAggregator prepareAggregator;
+    private PlayerSyncMonitor playerSyncMonitor;
+    private SeekCoalescer seekCoalescer;
+    private long[] seekStartTimeNanos;
+    private int driftThresholdMillis = PlayerSyncMonitor.DEFAULT_DRIFT_THRESHOLD_MILLIS;
+
+    private int recordingStartTimeMillis;
+
+    private float currentVocalVolume;
+    private float currentBackgroundTrackVolume;
+    private boolean isOriginalVocalUsed = true;
+    private boolean isActiveVocalOnly;
+    private int vocalCrossfadeMillis;
+
+    private volatile boolean isPrepared;
+    private volatile boolean isPlaying;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private SinglePreviewMediaPlayer crossfadeOutgoingPlayer;
+    private SinglePreviewMediaPlayer crossfadeIncomingPlayer;
+    private long crossfadeStartTimeMillis;
+    private int switchSeekLatencyMillis = INITIAL_SWITCH_SEEK_LATENCY_MILLIS;
+
+    private volatile int loopStartMillis;
+    private volatile int loopEndMillis;
+    private int loopSeekLatencyMillis = INITIAL_LOOP_SEEK_LATENCY_MILLIS;
+    private long loopSeekStartTimeMillis;
+    private OnLoopWrapListener onLoopWrapListener;
+
+    private final Runnable loopCheckRunnable = new Runnable() {
+        @Override
+        public void run() {
+            checkLoop();
+        }
+    };
+
+    private final OnSeekCompletionListener loopSeekListener = new OnSeekCompletionListener() {
+        @Override
+        public void onSeekCompleted() {
+            loopSeekLatencyMillis = (int) (SystemClock.uptimeMillis() - loopSeekStartTimeMillis);
+            if (onLoopWrapListener != null) {
+                onLoopWrapListener.onLoopWrap();
+            }
+            scheduleLoopCheck();
+        }
+
+        @Override
+        public void onSeekSuperseded() {
+            //a later seek moved the players, it schedules the next check
+        }
+    };
+
+    private final Runnable crossfadeStepRunnable = new Runnable() {
+        @Override
+        public void run() {
+            stepCrossfade();
+        }
+    };
+
+    private final PlayerExecuteCommand pauseCommand = new PlayerExecuteCommand() {
+        @Override
+        public void execute(SinglePreviewMediaPlayer mediaPlayer) {
+            mediaPlayer.pause();
+        }
+    };
+
+    private final PlayerExecuteCommand recycleCommand = new PlayerExecuteCommand() {
+        @Override
+        public void execute(SinglePreviewMediaPlayer mediaPlayer) {
+            mediaPlayerPool.recycle(mediaPlayer);
+        }
+    };
+
+    private final MediaPlayerPool mediaPlayerPool;
+    private final PreviewMetrics metrics;
+
+    private OnPlaybackCompletedListener onPlaybackCompletedListener;
+
+    MediaPlayerPlaybackEngine(MediaPlayerPool mediaPlayerPool, PreviewMetrics metrics) {
+        this.mediaPlayerPool = mediaPlayerPool;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void onCompletion(MediaPlayer mp) {
+        if (onPlaybackCompletedListener != null) {
+            onPlaybackCompletedListener.onPlaybackComplete();
+        }
+    }
+
+    @Override
+    public void prepare(String originalRecordingPath, String processedInputPath,
+                        String backgroundAudioFilePath, final int recordingStartTimeMillis,
+                        final OnPrepareStatusListener onPrepareStatusListener) throws IOException {
+        backgroundTrackPlayer = mediaPlayerPool.acquire();
+        originalVocalPlayer = mediaPlayerPool.acquire();
+        processedVocalPlayer = mediaPlayerPool.acquire();
+
+        backgroundTrackPlayer.setOnCompletionListener(this);
+
+        mediaPlayers = new SinglePreviewMediaPlayer[]{backgroundTrackPlayer, originalVocalPlayer, processedVocalPlayer};
+
+        this.recordingStartTimeMillis = recordingStartTimeMillis;
+
+        seekStartTimeNanos = new long[mediaPlayers.length];
+        seekCoalescer = new SeekCoalescer(mediaPlayers.length, new SeekCoalescer.SeekIssuer() {
+            @Override
+            public void issueSeek(int playerIndex, int playbackTimeMillis) {
+                seekStartTimeNanos[playerIndex] = System.nanoTime();
+                SinglePreviewMediaPlayer mediaPlayer = mediaPlayers[playerIndex];
+                mediaPlayer.seekTo(mediaPlayer == backgroundTrackPlayer
+                        ? recordingStartTimeMillis + playbackTimeMillis : playbackTimeMillis);
+            }
+        });
+        for (int i = 0; i < mediaPlayers.length; i++) {
+            mediaPlayers[i].addOnSeekCompletedListener(new CoalescedSeekListener(i));
+        }
+
+        playerSyncMonitor = new PlayerSyncMonitor(new PlayerSyncMonitor.FollowerSeeker() {
+            @Override
+            public boolean isSeeking() {
+                return seekCoalescer.isSeeking();
+            }
+
+            @Override
+            public boolean seekFollower(SinglePreviewMediaPlayer follower, int playbackTimeMillis) {
+                return seekCoalescer.requestPlayerSeek(indexOf(follower), playbackTimeMillis);
+            }
+        }, backgroundTrackPlayer, recordingStartTimeMillis, originalVocalPlayer, processedVocalPlayer);
+        playerSyncMonitor.setDriftThresholdMillis(driftThresholdMillis);
+
+        try {
+            backgroundTrackPlayer.setDataSource(backgroundAudioFilePath);
+            originalVocalPlayer.setDataSource(originalRecordingPath);
+            processedVocalPlayer.setDataSource(processedInputPath);
+        } catch (IOException e) {
+            release();
+            throw e;
+        }
+
+        prepareAggregator = new PrepareAggregator(mediaPlayers.length, new OnPrepareStatusListener() {
+            @Override
+            public void onPrepareError(String message) {
+                onPrepareStatusListener.onPrepareError(message);
+            }
+
+            @Override
+            public void onPrepareCompleted() {
+                isPrepared = true;
+                applyVolumes();
+                onPrepareStatusListener.onPrepareCompleted();
+            }
+        });
+        prepareMediaPlayer(backgroundTrackPlayer, "background track", recordingStartTimeMillis);
+        prepareMediaPlayer(originalVocalPlayer, "original vocal", 0);
+        prepareMediaPlayer(processedVocalPlayer, "processed vocal", 0);
+    }
+
+    @Override
+    public void start() {
+        isPlaying = true;
+        long startTimeNanos = System.nanoTime();
+        backgroundTrackPlayer.start();
+        activeVocalPlayer().start();
+        if (!isActiveVocalOnly) {
+            standbyVocalPlayer().start();
+        }
+        metrics.recordNanos(PreviewMetrics.START_SKEW, System.nanoTime() - startTimeNanos);
+        playerSyncMonitor.start();
+        scheduleLoopCheck();
+    }
+
+    @Override
+    public void pause() {
+        isPlaying = false;
+        handler.removeCallbacks(loopCheckRunnable);
+        finishCrossfade();
+        playerSyncMonitor.stop();
+        executeOnAllPlayers(pauseCommand);
+    }
+
+    /**
+     * Overlapping seeks are coalesced, see {@link SeekCoalescer}.
+     */
+    @Override
+    public void seekTo(int playbackTimeMillis, OnSeekCompletionListener onSeekCompletionListener) {
+        seekCoalescer.requestSeek(playbackTimeMillis, onSeekCompletionListener);
+        scheduleLoopCheck();
+    }
+
+    @Override
+    public int getCurrentPosition() {
+        return backgroundTrackPlayer.getCurrentPosition() - recordingStartTimeMillis;
+    }
+
+    /**
+     * MediaPlayer anchors its position to the audio its sink has played out, so the reported
+     * position is already the presented one and there is no latency left to subtract.
+     */
+    @Override
+    public int getOutputLatencyMillis() {
+        return 0;
+    }
+
+    @Override
+    public int getPlaybackDuration() {
+        return backgroundTrackPlayer.getDuration() - recordingStartTimeMillis;
+    }
+
+    @Override
+    public void setVolume(float vocalTrackVolume, float backgroundTrackVolume) {
+        currentVocalVolume = vocalTrackVolume;
+        currentBackgroundTrackVolume = backgroundTrackVolume;
+
+        if (isPrepared) {
+            applyVolumes();
+        }
+    }
+
+    /**
+     * When the inactive vocal player is not running, it is seeked ahead of the clock position by
+     * the expected seek latency and started when the seek completes, so it comes in aligned while
+     * the previous vocal keeps playing; remaining offset is corrected by the sync monitor. The
+     * clock is used because the decoder position of MediaPlayer advances in coarse steps.
+     */
+    @Override
+    public void setOriginalVocalUsed(boolean isOriginalVocalUsed, int playbackTimeMillis) {
+        if (this.isOriginalVocalUsed == isOriginalVocalUsed) {
+            return;
+        }
+        this.isOriginalVocalUsed = isOriginalVocalUsed;
+        if (!isPrepared) {
+            return;
+        }
+
+        finishCrossfade();
+        SinglePreviewMediaPlayer incomingPlayer = activeVocalPlayer();
+        SinglePreviewMediaPlayer outgoingPlayer = standbyVocalPlayer();
+        if (!isPlaying) {
+            applyVolumes();
+            if (isActiveVocalOnly) {
+                seekCoalescer.requestPlayerSeek(indexOf(incomingPlayer), Math.max(0, playbackTimeMillis));
+            }
+        } else if (incomingPlayer.isPlaying()) {
+            startCrossfade(outgoingPlayer, incomingPlayer);
+        } else {
+            bringInStandbyPlayer(incomingPlayer, outgoingPlayer, playbackTimeMillis);
+        }
+    }
+
+    @Override
+    public void setVocalSwitchMode(boolean isActiveVocalOnly, int crossfadeMillis) {
+        this.isActiveVocalOnly = isActiveVocalOnly;
+        this.vocalCrossfadeMillis = crossfadeMillis;
+        if (isPrepared && isPlaying && isActiveVocalOnly && crossfadeOutgoingPlayer == null) {
+            standbyVocalPlayer().pause();
+        }
+    }
+
+    @Override
+    public void setDriftThresholdMillis(int driftThresholdMillis) {
+        this.driftThresholdMillis = driftThresholdMillis;
+        if (playerSyncMonitor != null) {
+            playerSyncMonitor.setDriftThresholdMillis(driftThresholdMillis);
+        }
+    }
+
+    @Override
+    public DriftStatistics getDriftStatistics() {
+        return playerSyncMonitor != null ? playerSyncMonitor.getDriftStatistics() : new DriftStatistics();
+    }
+
+    @Override
+    public int getDecoderCount() {
+        return mediaPlayers.length;
+    }
+
+    /**
+     * MediaPlayer decodes in the media server process, nothing is buffered here.
+     */
+    @Override
+    public long getMemoryBytes() {
+        return 0;
+    }
+
+    @Override
+    public void setLoopRegion(int loopStartMillis, int loopEndMillis) {
+        this.loopStartMillis = loopStartMillis;
+        this.loopEndMillis = loopEndMillis;
+        scheduleLoopCheck();
+    }
+
+    @Override
+    public void setOnLoopWrapListener(OnLoopWrapListener onLoopWrapListener) {
+        this.onLoopWrapListener = onLoopWrapListener;
+    }
+
+    @Override
+    public void setOnPlaybackCompletedListener(OnPlaybackCompletedListener onPlaybackCompletedListener) {
+        this.onPlaybackCompletedListener = onPlaybackCompletedListener;
+    }
+
+    /**
+     * Players are returned to the pool, so the next prepare can reuse them.
+     */
+    @Override
+    public void release() {
+        isPlaying = false;
+        isPrepared = false;
+        handler.removeCallbacks(crossfadeStepRunnable);
+        handler.removeCallbacks(loopCheckRunnable);
+        if (prepareAggregator != null) {
+            prepareAggregator.cancel();
+        }
+        seekCoalescer.cancel();
+        playerSyncMonitor.stop();
+        executeOnAllPlayers(recycleCommand);
+    }
+
+    private String trackName(SinglePreviewMediaPlayer mediaPlayer) {
+        if (mediaPlayer == backgroundTrackPlayer) {
+            return PreviewMetrics.BACKGROUND_TRACK;
+        }
+        return mediaPlayer == originalVocalPlayer ? PreviewMetrics.ORIGINAL_VOCAL_TRACK : PreviewMetrics.PROCESSED_VOCAL_TRACK;
+    }
+
+    private int indexOf(SinglePreviewMediaPlayer mediaPlayer) {
+        for (int i = 0; i < mediaPlayers.length; i++) {
+            if (mediaPlayers[i] == mediaPlayer) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Not a player of this engine");
+    }
+
+    private SinglePreviewMediaPlayer activeVocalPlayer() {
+        return isOriginalVocalUsed ? originalVocalPlayer : processedVocalPlayer;
+    }
+
+    private SinglePreviewMediaPlayer standbyVocalPlayer() {
+        return isOriginalVocalUsed ? processedVocalPlayer : originalVocalPlayer;
+    }
+
+    /**
+     * Sets volumes of all players for the current vocal, the inactive vocal is muted.
+     */
+    private synchronized void applyVolumes() {
+        backgroundTrackPlayer.setVolume(currentBackgroundTrackVolume, currentBackgroundTrackVolume);
+        if (crossfadeOutgoingPlayer != null) {
+            return;
+        }
+        activeVocalPlayer().setVolume(currentVocalVolume, currentVocalVolume);
+        standbyVocalPlayer().setVolume(0, 0);
+    }
+
+    /**
+     * Checks again at most every {@link #LOOP_CHECK_INTERVAL_MILLIS}, so seeks and a changed
+     * region are picked up, and wraps once the end is closer than the seek latency.
+     */
+    private void scheduleLoopCheck() {
+        handler.removeCallbacks(loopCheckRunnable);
+        if (isPlaying && loopEndMillis > loopStartMillis) {
+            handler.post(loopCheckRunnable);
+        }
+    }
+
+    private void checkLoop() {
+        int loopStart = loopStartMillis;
+        int loopEnd = loopEndMillis;
+        if (!isPlaying || loopEnd <= loopStart) {
+            return;
+        }
+        int remainingMillis = loopEnd - getCurrentPosition();
+        if (remainingMillis <= loopSeekLatencyMillis) {
+            loopSeekStartTimeMillis = SystemClock.uptimeMillis();
+            seekCoalescer.requestSeek(loopStart, loopSeekListener);
+            return;
+        }
+        handler.postDelayed(loopCheckRunnable, Math.min(LOOP_CHECK_INTERVAL_MILLIS, remainingMillis - loopSeekLatencyMillis));
+    }
+
+    private void bringInStandbyPlayer(final SinglePreviewMediaPlayer incomingPlayer,
+                                      final SinglePreviewMediaPlayer outgoingPlayer, int playbackTimeMillis) {
+        final long seekStartTimeMillis = SystemClock.uptimeMillis();
+        incomingPlayer.setVolume(0, 0);
+        incomingPlayer.addOnSeekCompletedListener(new OnSinglePreviewPlayerSeekCompleteListener() {
+            @Override
+            public void onSeekComplete(SinglePreviewMediaPlayer mediaPlayer) {
+                mediaPlayer.removeListener(this);
+                switchSeekLatencyMillis = (int) (SystemClock.uptimeMillis() - seekStartTimeMillis);
+                if (!isPlaying || activeVocalPlayer() != incomingPlayer) {
+                    return;
+                }
+                incomingPlayer.start();
+                playerSyncMonitor.start();
+                startCrossfade(outgoingPlayer, incomingPlayer);
+            }
+        });
+        // Not issued while a requested seek is still moving this player, it then comes in at that target
+        seekCoalescer.requestPlayerSeek(indexOf(incomingPlayer), Math.max(0, playbackTimeMillis + switchSeekLatencyMillis));
+    }
+
+    private synchronized void startCrossfade(SinglePreviewMediaPlayer outgoingPlayer,
+                                             SinglePreviewMediaPlayer incomingPlayer) {
+        crossfadeOutgoingPlayer = outgoingPlayer;
+        crossfadeIncomingPlayer = incomingPlayer;
+        if (vocalCrossfadeMillis <= 0) {
+            finishCrossfade();
+            return;
+        }
+        crossfadeStartTimeMillis = SystemClock.uptimeMillis();
+        handler.post(crossfadeStepRunnable);
+    }
+
+    private synchronized void stepCrossfade() {
+        if (crossfadeOutgoingPlayer == null) {
+            return;
+        }
+        float progress = (float) (SystemClock.uptimeMillis() - crossfadeStartTimeMillis) / vocalCrossfadeMillis;
+        if (progress >= 1) {
+            finishCrossfade();
+            return;
+        }
+        float outgoingVolume = currentVocalVolume * (1 - progress);
+        float incomingVolume = currentVocalVolume * progress;
+        crossfadeOutgoingPlayer.setVolume(outgoingVolume, outgoingVolume);
+        crossfadeIncomingPlayer.setVolume(incomingVolume, incomingVolume);
+        handler.postDelayed(crossfadeStepRunnable, CROSSFADE_STEP_MILLIS);
+    }
+
+    private synchronized void finishCrossfade() {
+        if (crossfadeOutgoingPlayer == null) {
+            return;
+        }
+        handler.removeCallbacks(crossfadeStepRunnable);
+        if (isActiveVocalOnly && crossfadeOutgoingPlayer.isPlaying()) {
+            crossfadeOutgoingPlayer.pause();
+        }
+        crossfadeOutgoingPlayer = null;
+        crossfadeIncomingPlayer = null;
+        applyVolumes();
+    }
+
+    /**
+     * Prepares all players concurrently; the aggregator reports once the slowest one is ready.
+     */
+    private void prepareMediaPlayer(SinglePreviewMediaPlayer mediaPlayer, String name, int startTimeMillis) {
+        MediaPlayerPreparation preparation = new MediaPlayerPreparation(name, startTimeMillis);
+        mediaPlayer.setOnPreparedListener(preparation);
+        mediaPlayer.setOnErrorListener(preparation);
+        mediaPlayer.prepareAsync();
+    }
+
+    private void executeOnAllPlayers(PlayerExecuteCommand playerExecuteCommand) {
+        for (SinglePreviewMediaPlayer mediaPlayer : mediaPlayers) {
+            playerExecuteCommand.execute(mediaPlayer);
+        }
+    }
+
+    /**
+     * Forwards seek completions of one player to the coalescer. Completions of seeks issued
+     * during preparation arrive here too and are ignored because no coalesced seek is running.
+     */
+    private class CoalescedSeekListener implements OnSinglePreviewPlayerSeekCompleteListener {
+
+        private final int playerIndex;
+
+        CoalescedSeekListener(int playerIndex) {
+            this.playerIndex = playerIndex;
+        }
+
+        @Override
+        public void onSeekComplete(SinglePreviewMediaPlayer mediaPlayer) {
+            long completionTimeNanos = System.nanoTime();
+            if (seekCoalescer.onSeekComplete(playerIndex)) {
+                metrics.recordNanos(PreviewMetrics.SEEK_LATENCY, trackName(mediaPlayer),
+                        completionTimeNanos - seekStartTimeNanos[playerIndex]);
+            }
+        }
+    }
+
+    /**
+     * Makes sure that media player is fully initialized so calling play will have smallest
+     * delay possible: after preparing it is started and paused muted, then seeked to its start
+     * time. Player counts as ready once that seek completes.
+     */
+    private class MediaPlayerPreparation implements MediaPlayer.OnPreparedListener,
+            MediaPlayer.OnErrorListener, OnSinglePreviewPlayerSeekCompleteListener {
+
+        private final String name;
+        private final int startTimeMillis;
+        private final long prepareStartTimeNanos = System.nanoTime();
+
+        private boolean isReady;
+
+        MediaPlayerPreparation(String name, int startTimeMillis) {
+            this.name = name;
+            this.startTimeMillis = startTimeMillis;
+        }
+
+        @Override
+        public void onPrepared(MediaPlayer mediaPlayer) {
+            SinglePreviewMediaPlayer singlePreviewMediaPlayer = (SinglePreviewMediaPlayer) mediaPlayer;
+            singlePreviewMediaPlayer.setVolume(0, 0);
+            singlePreviewMediaPlayer.start();
+            singlePreviewMediaPlayer.pause();
+            singlePreviewMediaPlayer.addOnSeekCompletedListener(this);
+            singlePreviewMediaPlayer.seekTo(startTimeMillis);
+        }
+
+        @Override
+        public void onSeekComplete(SinglePreviewMediaPlayer mediaPlayer) {
+            mediaPlayer.removeListener(this);
+            isReady = true;
+            metrics.recordNanos(PreviewMetrics.PREPARE_TIME, trackName(mediaPlayer), System.nanoTime() - prepareStartTimeNanos);
+            prepareAggregator.onComponentReady();
+        }
+
+        /**
+         * Errors after prepare are not handled, so the player falls back to its completion listener as before.
+         */
+        @Override
+        public boolean onError(MediaPlayer mediaPlayer, int what, int extra) {
+            if (isReady) {
+                return false;
+            }
+            isReady = true;
+            prepareAggregator.onComponentError(name, "media player error " + what + ", " + extra);
+            return true;
+        }
+    }
+}
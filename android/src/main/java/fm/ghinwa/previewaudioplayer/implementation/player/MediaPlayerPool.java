@@ -0,0 +1,80 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayDeque;
+
+/**
+ * Keeps released {@link SinglePreviewMediaPlayer} instances in the Idle state, so a following
+ * prepare of any session can point them at new files instead of allocating new native players.
+ * At most maxIdlePlayers are kept; all of them are released after being unused for idleTimeoutMillis.
+ */
+public class MediaPlayerPool {
+
+    static final int DEFAULT_MAX_IDLE_PLAYERS = 3;
+    static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30000;
+
+    private final ArrayDeque<SinglePreviewMediaPlayer> idlePlayers = new ArrayDeque<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final int maxIdlePlayers;
+    private final long idleTimeoutMillis;
+
+    private final Runnable idleTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            clear();
+        }
+    };
+
+    public MediaPlayerPool() {
+        this(DEFAULT_MAX_IDLE_PLAYERS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    MediaPlayerPool(int maxIdlePlayers, long idleTimeoutMillis) {
+        this.maxIdlePlayers = maxIdlePlayers;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Returns a player in the Idle state.
+     */
+    synchronized SinglePreviewMediaPlayer acquire() {
+        SinglePreviewMediaPlayer mediaPlayer = idlePlayers.pollFirst();
+        if (idlePlayers.isEmpty()) {
+            handler.removeCallbacks(idleTimeoutRunnable);
+        }
+        return mediaPlayer != null ? mediaPlayer : new SinglePreviewMediaPlayer();
+    }
+
+    /**
+     * Resets the player and keeps it for reuse, or releases it when the pool is full.
+     * The player must not be used by the caller afterwards.
+     */
+    synchronized void recycle(SinglePreviewMediaPlayer mediaPlayer) {
+        if (idlePlayers.size() >= maxIdlePlayers) {
+            mediaPlayer.release();
+            return;
+        }
+        try {
+            mediaPlayer.resetForReuse();
+        } catch (IllegalStateException e) {
+            mediaPlayer.release();
+            return;
+        }
+        idlePlayers.addFirst(mediaPlayer);
+        handler.removeCallbacks(idleTimeoutRunnable);
+        handler.postDelayed(idleTimeoutRunnable, idleTimeoutMillis);
+    }
+
+    /**
+     * Releases all idle players.
+     */
+    public synchronized void clear() {
+        handler.removeCallbacks(idleTimeoutRunnable);
+        SinglePreviewMediaPlayer mediaPlayer;
+        while ((mediaPlayer = idlePlayers.pollFirst()) != null) {
+            mediaPlayer.release();
+        }
+    }
+}
@@ -0,0 +1,753 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import fm.ghinwa.previewaudioplayer.implementation.audio.PcmCache;
+import fm.ghinwa.previewaudioplayer.implementation.audio.PcmDecoder;
+import fm.ghinwa.previewaudioplayer.implementation.audio.PcmMixer;
+import fm.ghinwa.previewaudioplayer.implementation.audio.PcmSource;
+import fm.ghinwa.previewaudioplayer.implementation.audio.PcmTrackReader;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnPrepareStatusListener;
+import fm.ghinwa.previewaudioplayer.implementation.metrics.PreviewMetrics;
+
+/**
+ * Decodes background and active vocal track to PCM and mixes them into a single AudioTrack
+ * on a dedicated audio thread. Volumes are applied in the mix loop, so tracks can never drift
+ * apart and there is only one output session.
+ * The background track is read from the {@link PcmCache} when it was decoded before.
+ * Decoders are opened on the audio thread, so prepare does not block the caller.
+ * Only the selected vocal track is decoded; on switch the other one is seeked to the rendered
+ * position, so it comes in sample-aligned, optionally crossfaded.
+ * A loop is closed sample accurately in the render loop without flushing the AudioTrack. The
+ * first frames of the loop are kept from the first pass and written on wrap while the decoders
+ * seek past them on another thread, so the seek never leaves the output without data.
+ * Chunks are mixed under the render lock but written to the AudioTrack outside of it, so control
+ * calls never wait for the blocking write. A chunk that was being written while the output was
+ * flushed is flushed again by the audio thread before playback resumes.
+ */
+class MixingPlaybackEngine implements PlaybackEngine, Runnable {
+
+    private static final String THREAD_NAME = "PreviewMixingEngine";
+
+    private static final int OUTPUT_CHANNEL_COUNT = 2;
+    private static final int FRAMES_PER_CHUNK = 1024;
+    private static final int BYTES_PER_SAMPLE = 2;
+    private static final long DRAIN_POLL_MILLIS = 10;
+    private static final int PREROLL_FRAMES = 8 * FRAMES_PER_CHUNK;
+    private static final long NO_WRAP = -1;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition playStateChanged = lock.newCondition();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final PcmCache pcmCache;
+    private final PreviewMetrics metrics;
+
+    private PcmSource backgroundReader;
+    private PcmTrackReader originalVocalReader;
+    private PcmTrackReader processedVocalReader;
+    private volatile AudioTrack audioTrack;
+    private int audioTrackBufferSize;
+    private OutputTimestamp outputTimestamp;
+    private boolean isBackgroundCached;
+
+    private String originalRecordingPath;
+    private String processedInputPath;
+    private String backgroundAudioFilePath;
+    private OnPrepareStatusListener onPrepareStatusListener;
+
+    private short[] backgroundChunk;
+    private short[] vocalChunk;
+    private short[] crossfadeChunk;
+
+    private PcmSource crossfadeOutgoingReader;
+    private long crossfadeFrames;
+    private long crossfadeRenderedFrames;
+    private volatile int vocalCrossfadeMillis;
+
+    private int sampleRate;
+    private int recordingStartTimeMillis;
+
+    private volatile float currentVocalVolume;
+    private volatile float currentBackgroundTrackVolume;
+    private boolean isOriginalVocalUsed = true;
+
+    private volatile long basePositionFrames;
+    private volatile long basePlaybackHeadPosition;
+    private long renderedFrames;
+    private long flushPlaybackHeadPosition;
+    private long writtenFrames;
+
+    private volatile int loopStartMillis;
+    private volatile int loopEndMillis;
+    private LoopPreroll loopPreroll;
+    private ExecutorService prerollSeekExecutor;
+    private Future<?> prerollSeek;
+    private volatile long loopWrapPlaybackHeadPosition = NO_WRAP;
+    private volatile long loopWrapPositionFrames;
+    private OnLoopWrapListener onLoopWrapListener;
+
+    private final Runnable prerollSeekRunnable = new Runnable() {
+        @Override
+        public void run() {
+            long frames = millisToFrames(recordingStartTimeMillis + loopStartMillis) + loopPreroll.getFrames();
+            backgroundReader.seekTo(framesToUs(frames));
+            activeVocalReader().seekTo(vocalTimeUs(frames));
+        }
+    };
+
+    private final Runnable loopWrapRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (onLoopWrapListener != null && !isReleased) {
+                onLoopWrapListener.onLoopWrap();
+            }
+        }
+    };
+
+    private boolean isPlaying;
+    private boolean isDraining;
+    private boolean isWriting;
+    private boolean isOutputStale;
+    private volatile boolean isReleased;
+
+    private OnPlaybackCompletedListener onPlaybackCompletedListener;
+
+    /**
+     * @param pcmCache cache of decoded background tracks, may be null
+     */
+    MixingPlaybackEngine(PcmCache pcmCache, PreviewMetrics metrics) {
+        this.pcmCache = pcmCache;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void prepare(String originalRecordingPath, String processedInputPath,
+                        String backgroundAudioFilePath, int recordingStartTimeMillis,
+                        OnPrepareStatusListener onPrepareStatusListener) {
+        this.originalRecordingPath = originalRecordingPath;
+        this.processedInputPath = processedInputPath;
+        this.backgroundAudioFilePath = backgroundAudioFilePath;
+        this.recordingStartTimeMillis = recordingStartTimeMillis;
+        this.onPrepareStatusListener = onPrepareStatusListener;
+
+        new Thread(this, THREAD_NAME).start();
+    }
+
+    @Override
+    public void start() {
+        lock.lock();
+        try {
+            isPlaying = true;
+            if (audioTrack != null && !isOutputStale) {
+                audioTrack.play();
+            }
+            playStateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void pause() {
+        lock.lock();
+        try {
+            isPlaying = false;
+            if (audioTrack != null) {
+                audioTrack.pause();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Seeks synchronously under the render lock, so there is never a seek left to supersede.
+     * While a chunk is being written the output is left paused, the audio thread drops the rest
+     * of that chunk and resumes playback.
+     */
+    @Override
+    public void seekTo(int playbackTimeMillis, OnSeekCompletionListener onSeekCompletionListener) {
+        long seekStartTimeNanos = System.nanoTime();
+        lock.lock();
+        try {
+            if (audioTrack != null) {
+                audioTrack.pause();
+                audioTrack.flush();
+                seekReaders(playbackTimeMillis);
+                if (isWriting) {
+                    isOutputStale = true;
+                } else if (isPlaying) {
+                    audioTrack.play();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        metrics.recordNanos(PreviewMetrics.SEEK_LATENCY, PreviewMetrics.MIXED_OUTPUT, System.nanoTime() - seekStartTimeNanos);
+        onSeekCompletionListener.onSeekCompleted();
+    }
+
+    /**
+     * Once the head passes a wrap that was written but not yet reported, the position continues
+     * from the loop start.
+     */
+    @Override
+    public int getCurrentPosition() {
+        AudioTrack track = audioTrack;
+        if (track == null) {
+            return 0;
+        }
+        long playbackHeadPosition = track.getPlaybackHeadPosition();
+        long wrapPlaybackHeadPosition = loopWrapPlaybackHeadPosition;
+        long positionFrames;
+        if (wrapPlaybackHeadPosition != NO_WRAP && playbackHeadPosition >= wrapPlaybackHeadPosition) {
+            positionFrames = loopWrapPositionFrames + playbackHeadPosition - wrapPlaybackHeadPosition;
+        } else {
+            positionFrames = basePositionFrames + playbackHeadPosition - basePlaybackHeadPosition;
+        }
+        return framesToMillis(positionFrames) - recordingStartTimeMillis;
+    }
+
+    /**
+     * The head position counts frames handed to the audio system; the output timestamp tells which
+     * of them was presented. No latency is reported until the first timestamp arrives, nor before
+     * KitKat.
+     */
+    @Override
+    public int getOutputLatencyMillis() {
+        AudioTrack track = audioTrack;
+        OutputTimestamp timestamp = outputTimestamp;
+        if (track == null || timestamp == null) {
+            return 0;
+        }
+        long pendingFrames = timestamp.getPendingFrames(track, sampleRate);
+        return pendingFrames == OutputTimestamp.UNKNOWN ? 0 : framesToMillis(pendingFrames);
+    }
+
+    @Override
+    public int getPlaybackDuration() {
+        return (int) TimeUnit.MICROSECONDS.toMillis(backgroundReader.getDurationUs()) - recordingStartTimeMillis;
+    }
+
+    @Override
+    public void setVolume(float vocalTrackVolume, float backgroundTrackVolume) {
+        currentVocalVolume = vocalTrackVolume;
+        currentBackgroundTrackVolume = backgroundTrackVolume;
+    }
+
+    @Override
+    public void setOriginalVocalUsed(boolean isOriginalVocalUsed, int playbackTimeMillis) {
+        lock.lock();
+        try {
+            if (this.isOriginalVocalUsed == isOriginalVocalUsed) {
+                return;
+            }
+            if (backgroundReader != null) {
+                stopPrerollReplay();
+                loopPreroll.invalidate();
+            }
+            this.isOriginalVocalUsed = isOriginalVocalUsed;
+            if (backgroundReader != null) {
+                activeVocalReader().seekTo(vocalTimeUs(renderedFrames));
+                crossfadeOutgoingReader = null;
+                if (vocalCrossfadeMillis > 0 && isPlaying) {
+                    crossfadeOutgoingReader = isOriginalVocalUsed ? processedVocalReader : originalVocalReader;
+                    crossfadeFrames = millisToFrames(vocalCrossfadeMillis);
+                    crossfadeRenderedFrames = 0;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Only the active vocal is ever decoded here, so just the crossfade length is used.
+     */
+    @Override
+    public void setVocalSwitchMode(boolean isActiveVocalOnly, int crossfadeMillis) {
+        vocalCrossfadeMillis = crossfadeMillis;
+    }
+
+    @Override
+    public void setDriftThresholdMillis(int driftThresholdMillis) {
+        //no-op, tracks are mixed sample-aligned and cannot drift
+    }
+
+    /**
+     * Both vocal tracks are kept open, the background track needs no decoder when it is read
+     * from the cache.
+     */
+    @Override
+    public int getDecoderCount() {
+        return isBackgroundCached ? 2 : 3;
+    }
+
+    /**
+     * Mix buffers, loop pre-roll and the AudioTrack buffer, plus the mapped background track when
+     * it is read from the cache.
+     */
+    @Override
+    public long getMemoryBytes() {
+        lock.lock();
+        try {
+            if (backgroundReader == null) {
+                return 0;
+            }
+            long memoryBytes = 3L * FRAMES_PER_CHUNK * OUTPUT_CHANNEL_COUNT * BYTES_PER_SAMPLE + audioTrackBufferSize
+                    + loopPreroll.getMemoryBytes();
+            if (isBackgroundCached) {
+                memoryBytes += usToFrames(backgroundReader.getDurationUs()) * OUTPUT_CHANNEL_COUNT * BYTES_PER_SAMPLE;
+            }
+            return memoryBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public DriftStatistics getDriftStatistics() {
+        return new DriftStatistics();
+    }
+
+    /**
+     * Kept frames of the previous loop are dropped; the new loop start is captured the next time
+     * it is rendered.
+     */
+    @Override
+    public void setLoopRegion(int loopStartMillis, int loopEndMillis) {
+        lock.lock();
+        try {
+            if (this.loopStartMillis == loopStartMillis && this.loopEndMillis == loopEndMillis) {
+                return;
+            }
+            if (backgroundReader != null) {
+                stopPrerollReplay();
+                loopPreroll.invalidate();
+            }
+            this.loopStartMillis = loopStartMillis;
+            this.loopEndMillis = loopEndMillis;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setOnLoopWrapListener(OnLoopWrapListener onLoopWrapListener) {
+        this.onLoopWrapListener = onLoopWrapListener;
+    }
+
+    @Override
+    public void setOnPlaybackCompletedListener(OnPlaybackCompletedListener onPlaybackCompletedListener) {
+        this.onPlaybackCompletedListener = onPlaybackCompletedListener;
+    }
+
+    /**
+     * While a chunk is being written the output is flushed to unblock the write and released by
+     * the audio thread once it returns.
+     */
+    @Override
+    public void release() {
+        lock.lock();
+        try {
+            isReleased = true;
+            isPlaying = false;
+            playStateChanged.signalAll();
+            if (isWriting) {
+                audioTrack.pause();
+                audioTrack.flush();
+            } else {
+                releaseOutput();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        if (!openOutput()) {
+            return;
+        }
+        while (true) {
+            AudioTrack track;
+            int sampleCount;
+            lock.lock();
+            try {
+                while (!isPlaying && !isReleased) {
+                    playStateChanged.awaitUninterruptibly();
+                }
+                if (isReleased) {
+                    return;
+                }
+                if (isDraining) {
+                    drain();
+                    continue;
+                }
+                sampleCount = renderChunk();
+                if (sampleCount == 0) {
+                    continue;
+                }
+                track = audioTrack;
+                isWriting = true;
+            } finally {
+                lock.unlock();
+            }
+
+            track.write(backgroundChunk, 0, sampleCount);
+
+            lock.lock();
+            try {
+                isWriting = false;
+                if (isReleased) {
+                    releaseOutput();
+                    return;
+                }
+                if (isOutputStale) {
+                    discardStaleOutput();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Drops what was left of a chunk written after a seek flushed the output and resumes playback
+     * the seek held back. Must be called with the lock held.
+     */
+    private void discardStaleOutput() {
+        isOutputStale = false;
+        audioTrack.pause();
+        audioTrack.flush();
+        basePlaybackHeadPosition = audioTrack.getPlaybackHeadPosition();
+        flushPlaybackHeadPosition = basePlaybackHeadPosition;
+        if (isPlaying) {
+            audioTrack.play();
+        }
+    }
+
+    /**
+     * Mixes the next chunk into the background chunk, which is written to the output outside the lock.
+     *
+     * @return number of samples to write, 0 when the tracks ended
+     */
+    private int renderChunk() {
+        reportHeardLoopWrap();
+        int framesToRender = FRAMES_PER_CHUNK;
+        if (isLooping()) {
+            long loopStartFrames = millisToFrames(recordingStartTimeMillis + loopStartMillis);
+            long loopEndFrames = millisToFrames(recordingStartTimeMillis + loopEndMillis);
+            if (renderedFrames >= loopEndFrames) {
+                wrapLoop(loopStartFrames);
+            }
+            if (renderedFrames == loopStartFrames) {
+                loopPreroll.startCapture();
+            }
+            if (renderedFrames < loopEndFrames) {
+                framesToRender = (int) Math.min(FRAMES_PER_CHUNK, loopEndFrames - renderedFrames);
+            }
+        }
+
+        int backgroundFrames;
+        if (loopPreroll.isReplaying()) {
+            backgroundFrames = loopPreroll.replay(backgroundChunk, vocalChunk, framesToRender);
+            if (!loopPreroll.isReplaying()) {
+                awaitPrerollSeek();
+            }
+        } else {
+            backgroundFrames = backgroundReader.read(backgroundChunk, framesToRender);
+            if (backgroundFrames == PcmSource.END_OF_STREAM) {
+                isDraining = true;
+                return 0;
+            }
+            activeVocalReader().read(vocalChunk, backgroundFrames);
+            loopPreroll.capture(backgroundChunk, vocalChunk, backgroundFrames);
+        }
+        if (crossfadeOutgoingReader != null) {
+            crossfadeOutgoingReader.read(crossfadeChunk, backgroundFrames);
+            PcmMixer.crossfade(crossfadeChunk, vocalChunk, vocalChunk, OUTPUT_CHANNEL_COUNT, backgroundFrames,
+                    crossfadeRenderedFrames, crossfadeFrames);
+            crossfadeRenderedFrames += backgroundFrames;
+            if (crossfadeRenderedFrames >= crossfadeFrames) {
+                crossfadeOutgoingReader = null;
+            }
+        }
+
+        int sampleCount = backgroundFrames * OUTPUT_CHANNEL_COUNT;
+        PcmMixer.mix(backgroundChunk, currentBackgroundTrackVolume, vocalChunk, currentVocalVolume,
+                backgroundChunk, sampleCount);
+        renderedFrames += backgroundFrames;
+        writtenFrames += backgroundFrames;
+        return sampleCount;
+    }
+
+    private boolean isLooping() {
+        return loopEndMillis > loopStartMillis;
+    }
+
+    /**
+     * Continues rendering from the loop start without flushing the output. With the loop start
+     * kept, its frames are written while the decoders seek past them; otherwise the decoders seek
+     * right away and the loop start is captured on the way.
+     */
+    private void wrapLoop(long loopStartFrames) {
+        loopWrapPositionFrames = loopStartFrames;
+        loopWrapPlaybackHeadPosition = flushPlaybackHeadPosition + writtenFrames;
+        crossfadeOutgoingReader = null;
+        renderedFrames = loopStartFrames;
+        if (loopPreroll.isCaptured()) {
+            loopPreroll.startReplay();
+            prerollSeek = prerollSeekExecutor.submit(prerollSeekRunnable);
+        } else {
+            backgroundReader.seekTo(framesToUs(loopStartFrames));
+            activeVocalReader().seekTo(vocalTimeUs(loopStartFrames));
+        }
+    }
+
+    /**
+     * Moves the position base to the loop start once the wrap is audible and reports it.
+     */
+    private void reportHeardLoopWrap() {
+        long wrapPlaybackHeadPosition = loopWrapPlaybackHeadPosition;
+        if (wrapPlaybackHeadPosition == NO_WRAP || audioTrack.getPlaybackHeadPosition() < wrapPlaybackHeadPosition) {
+            return;
+        }
+        basePositionFrames = loopWrapPositionFrames;
+        basePlaybackHeadPosition = wrapPlaybackHeadPosition;
+        loopWrapPlaybackHeadPosition = NO_WRAP;
+        handler.post(loopWrapRunnable);
+    }
+
+    private void awaitPrerollSeek() {
+        if (prerollSeek == null) {
+            return;
+        }
+        boolean isInterrupted = false;
+        while (true) {
+            try {
+                prerollSeek.get();
+                break;
+            } catch (InterruptedException e) {
+                isInterrupted = true;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Loop pre-roll seek failed", e.getCause());
+            }
+        }
+        prerollSeek = null;
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops writing kept frames and moves the decoders to the frame being rendered, so readers can
+     * be used directly again. Must be called with the lock held.
+     */
+    private void stopPrerollReplay() {
+        awaitPrerollSeek();
+        if (loopPreroll.isReplaying()) {
+            loopPreroll.stopReplay();
+            backgroundReader.seekTo(framesToUs(renderedFrames));
+            activeVocalReader().seekTo(vocalTimeUs(renderedFrames));
+        }
+    }
+
+    private void drain() {
+        reportHeardLoopWrap();
+        long playedFrames = audioTrack.getPlaybackHeadPosition() - basePlaybackHeadPosition;
+        if (basePositionFrames + playedFrames < renderedFrames) {
+            try {
+                playStateChanged.await(DRAIN_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        isDraining = false;
+        isPlaying = false;
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (onPlaybackCompletedListener != null) {
+                    onPlaybackCompletedListener.onPlaybackComplete();
+                }
+            }
+        });
+    }
+
+    /**
+     * Opens decoders and AudioTrack and reports the prepare result.
+     *
+     * @return false when the engine should not start rendering
+     */
+    private boolean openOutput() {
+        lock.lock();
+        try {
+            if (isReleased) {
+                return false;
+            }
+            long openStartTimeNanos = System.nanoTime();
+            backgroundReader = openBackgroundReader(backgroundAudioFilePath);
+            sampleRate = backgroundReader.getOutputSampleRate();
+            openStartTimeNanos = recordPrepareTime(PreviewMetrics.BACKGROUND_TRACK, openStartTimeNanos);
+            originalVocalReader = new PcmTrackReader(originalRecordingPath, sampleRate, OUTPUT_CHANNEL_COUNT);
+            openStartTimeNanos = recordPrepareTime(PreviewMetrics.ORIGINAL_VOCAL_TRACK, openStartTimeNanos);
+            processedVocalReader = new PcmTrackReader(processedInputPath, sampleRate, OUTPUT_CHANNEL_COUNT);
+            recordPrepareTime(PreviewMetrics.PROCESSED_VOCAL_TRACK, openStartTimeNanos);
+
+            backgroundChunk = new short[FRAMES_PER_CHUNK * OUTPUT_CHANNEL_COUNT];
+            vocalChunk = new short[FRAMES_PER_CHUNK * OUTPUT_CHANNEL_COUNT];
+            crossfadeChunk = new short[FRAMES_PER_CHUNK * OUTPUT_CHANNEL_COUNT];
+            loopPreroll = new LoopPreroll(PREROLL_FRAMES, OUTPUT_CHANNEL_COUNT);
+            prerollSeekExecutor = Executors.newSingleThreadExecutor();
+
+            int minBufferSize = AudioTrack.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_OUT_STEREO,
+                    AudioFormat.ENCODING_PCM_16BIT);
+            audioTrackBufferSize = Math.max(minBufferSize, 2 * FRAMES_PER_CHUNK * OUTPUT_CHANNEL_COUNT * BYTES_PER_SAMPLE);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                outputTimestamp = new OutputTimestamp();
+            }
+            audioTrack = new AudioTrack(AudioManager.STREAM_MUSIC, sampleRate, AudioFormat.CHANNEL_OUT_STEREO,
+                    AudioFormat.ENCODING_PCM_16BIT, audioTrackBufferSize, AudioTrack.MODE_STREAM);
+
+            seekReaders(0);
+        } catch (final IOException | RuntimeException e) {
+            releaseOutput();
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!isReleased) {
+                        onPrepareStatusListener.onPrepareError("Prepare failed. " + e.getMessage());
+                    }
+                }
+            });
+            return false;
+        } finally {
+            lock.unlock();
+        }
+
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!isReleased) {
+                    onPrepareStatusListener.onPrepareCompleted();
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return time the measurement ended, so the next track can be measured from it
+     */
+    private long recordPrepareTime(String track, long startTimeNanos) {
+        long endTimeNanos = System.nanoTime();
+        metrics.recordNanos(PreviewMetrics.PREPARE_TIME, track, endTimeNanos - startTimeNanos);
+        return endTimeNanos;
+    }
+
+    /**
+     * Releases whatever was opened so far, must be called with the lock held.
+     */
+    private void releaseOutput() {
+        if (prerollSeekExecutor != null) {
+            awaitPrerollSeek();
+            prerollSeekExecutor.shutdown();
+            prerollSeekExecutor = null;
+        }
+        if (audioTrack != null) {
+            audioTrack.release();
+            audioTrack = null;
+        }
+        if (backgroundReader != null) {
+            backgroundReader.release();
+            backgroundReader = null;
+        }
+        if (originalVocalReader != null) {
+            originalVocalReader.release();
+            originalVocalReader = null;
+        }
+        if (processedVocalReader != null) {
+            processedVocalReader.release();
+            processedVocalReader = null;
+        }
+    }
+
+    private PcmSource openBackgroundReader(String backgroundAudioFilePath) throws IOException {
+        PcmSource cachedReader = pcmCache != null ? pcmCache.open(backgroundAudioFilePath) : null;
+        if (cachedReader != null && cachedReader.getOutputChannelCount() == OUTPUT_CHANNEL_COUNT) {
+            isBackgroundCached = true;
+            return cachedReader;
+        }
+        PcmDecoder backgroundDecoder = new PcmDecoder(backgroundAudioFilePath);
+        if (pcmCache != null) {
+            pcmCache.prefetch(backgroundAudioFilePath, backgroundDecoder.getSampleRate(), OUTPUT_CHANNEL_COUNT,
+                    backgroundDecoder.getDurationUs());
+        }
+        return new PcmTrackReader(backgroundDecoder, backgroundDecoder.getSampleRate(), OUTPUT_CHANNEL_COUNT);
+    }
+
+    /**
+     * Must be called with the lock held and the AudioTrack paused and flushed.
+     */
+    private void seekReaders(int playbackTimeMillis) {
+        awaitPrerollSeek();
+        loopPreroll.stopReplay();
+        loopPreroll.cancelCapture();
+        long backgroundFrames = millisToFrames(recordingStartTimeMillis + playbackTimeMillis);
+        backgroundReader.seekTo(framesToUs(backgroundFrames));
+        activeVocalReader().seekTo(vocalTimeUs(backgroundFrames));
+
+        crossfadeOutgoingReader = null;
+        renderedFrames = backgroundFrames;
+        basePositionFrames = backgroundFrames;
+        basePlaybackHeadPosition = audioTrack.getPlaybackHeadPosition();
+        flushPlaybackHeadPosition = basePlaybackHeadPosition;
+        writtenFrames = 0;
+        loopWrapPlaybackHeadPosition = NO_WRAP;
+        isDraining = false;
+    }
+
+    private PcmTrackReader activeVocalReader() {
+        return isOriginalVocalUsed ? originalVocalReader : processedVocalReader;
+    }
+
+    private long vocalTimeUs(long backgroundFrames) {
+        return framesToUs(backgroundFrames) - TimeUnit.MILLISECONDS.toMicros(recordingStartTimeMillis);
+    }
+
+    private long millisToFrames(long millis) {
+        return millis * sampleRate / 1000L;
+    }
+
+    private int framesToMillis(long frames) {
+        return (int) (frames * 1000L / sampleRate);
+    }
+
+    private long framesToUs(long frames) {
+        return frames * 1000000L / sampleRate;
+    }
+
+    private long usToFrames(long timeUs) {
+        return timeUs * sampleRate / 1000000L;
+    }
+}
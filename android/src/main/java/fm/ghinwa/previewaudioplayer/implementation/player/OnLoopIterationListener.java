@@ -0,0 +1,9 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+public interface OnLoopIterationListener {
+
+    /**
+     * @param iteration number of the iteration that just started, 1 for the first repeat
+     */
+    void onLoopIteration(int iteration);
+}
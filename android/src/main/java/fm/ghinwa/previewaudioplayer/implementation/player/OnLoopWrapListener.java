@@ -0,0 +1,9 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+interface OnLoopWrapListener {
+
+    /**
+     * Called once playback audibly continued from the loop start.
+     */
+    void onLoopWrap();
+}
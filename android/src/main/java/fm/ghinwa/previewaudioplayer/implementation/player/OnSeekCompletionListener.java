@@ -0,0 +1,16 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+
+public interface OnSeekCompletionListener {
+
+    /**
+     * Every track reached the requested position.
+     */
+    void onSeekCompleted();
+
+    /**
+     * A later seek was requested before this one finished; the tracks go to the later position
+     * and only its listener is told about completion.
+     */
+    void onSeekSuperseded();
+}
@@ -0,0 +1,31 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+
+import android.annotation.TargetApi;
+import android.media.AudioTimestamp;
+import android.media.AudioTrack;
+import android.os.Build;
+
+/**
+ * Reads output timestamps of an AudioTrack into a single reused {@link AudioTimestamp}.
+ * AudioTimestamp exists only since KitKat, so this class must not be created before.
+ */
+@TargetApi(Build.VERSION_CODES.KITKAT)
+class OutputTimestamp {
+
+    static final long UNKNOWN = -1;
+
+    private final AudioTimestamp audioTimestamp = new AudioTimestamp();
+
+    /**
+     * @return frames written to the track that were not presented yet, UNKNOWN until the track
+     * reports its first timestamp
+     */
+    synchronized long getPendingFrames(AudioTrack track, int sampleRate) {
+        if (!track.getTimestamp(audioTimestamp)) {
+            return UNKNOWN;
+        }
+        long elapsedFrames = (System.nanoTime() - audioTimestamp.nanoTime) * sampleRate / 1000000000L;
+        return Math.max(0, track.getPlaybackHeadPosition() - audioTimestamp.framePosition - elapsedFrames);
+    }
+}
@@ -0,0 +1,92 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Playback position extrapolated from the last position reported by the decoder.
+ * Anchors are published with a sequence counter, so reading the position never blocks and
+ * costs a few arithmetic operations instead of a call into the native player.
+ */
+class PlaybackClock {
+
+    private static final long DEFAULT_REANCHOR_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final long reanchorIntervalNanos;
+
+    private volatile int sequence;
+    private volatile int anchorPositionMillis;
+    private volatile long anchorTimeNanos;
+    private volatile boolean isRunning;
+    private volatile int startPositionMillis;
+
+    PlaybackClock() {
+        this(DEFAULT_REANCHOR_INTERVAL_NANOS);
+    }
+
+    PlaybackClock(long reanchorIntervalNanos) {
+        this.reanchorIntervalNanos = reanchorIntervalNanos;
+    }
+
+    /**
+     * Anchors the clock to the given decoder position. Called on start, pause and seek.
+     */
+    synchronized void anchor(int positionMillis, boolean isRunning) {
+        startPositionMillis = positionMillis;
+        publish(positionMillis, isRunning);
+    }
+
+    /**
+     * Re-anchors a running clock; ignored when the clock was paused in the meantime.
+     */
+    synchronized void reanchor(int positionMillis) {
+        if (isRunning) {
+            publish(positionMillis, true);
+        }
+    }
+
+    private void publish(int positionMillis, boolean isRunning) {
+        sequence++;
+        anchorPositionMillis = positionMillis;
+        anchorTimeNanos = nanoTime();
+        this.isRunning = isRunning;
+        sequence++;
+    }
+
+    boolean needsReanchor() {
+        return isRunning && nanoTime() - anchorTimeNanos >= reanchorIntervalNanos;
+    }
+
+    /**
+     * @return position of the last anchor that was not a re-anchor, where playback was started,
+     * paused or seeked to
+     */
+    int getStartPositionMillis() {
+        return startPositionMillis;
+    }
+
+    boolean isRunning() {
+        return isRunning;
+    }
+
+    int getPositionMillis() {
+        while (true) {
+            int startSequence = sequence;
+            if ((startSequence & 1) != 0) {
+                continue;
+            }
+            int positionMillis = anchorPositionMillis;
+            long timeNanos = anchorTimeNanos;
+            boolean running = isRunning;
+            if (startSequence == sequence) {
+                return running
+                        ? positionMillis + (int) TimeUnit.NANOSECONDS.toMillis(nanoTime() - timeNanos)
+                        : positionMillis;
+            }
+        }
+    }
+
+    long nanoTime() {
+        return System.nanoTime();
+    }
+}
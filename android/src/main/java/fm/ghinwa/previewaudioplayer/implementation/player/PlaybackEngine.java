@@ -0,0 +1,86 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+
+import java.io.IOException;
+
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnPrepareStatusListener;
+
+/**
+ * Plays background and vocal tracks together. All times are playback times in milliseconds,
+ * that is time in the vocal recording; the background track is offset by recording start time.
+ */
+interface PlaybackEngine {
+
+    /**
+     * Starts preparing the tracks without blocking. The listener is called once, when every
+     * track is ready or with an error describing all tracks that failed.
+     *
+     * @throws IOException when any of the files cannot be opened
+     */
+    void prepare(String originalRecordingPath, String processedInputPath,
+                 String backgroundAudioFilePath, int recordingStartTimeMillis,
+                 OnPrepareStatusListener onPrepareStatusListener) throws IOException;
+
+    void start();
+
+    void pause();
+
+    /**
+     * Moves all tracks to the position. When another seek is requested before this one finishes,
+     * the listener may be told it was superseded instead of being completed.
+     */
+    void seekTo(int playbackTimeMillis, OnSeekCompletionListener onSeekCompletionListener);
+
+    int getCurrentPosition();
+
+    /**
+     * @return how long it takes until audio at the current position is heard, 0 when unknown
+     */
+    int getOutputLatencyMillis();
+
+    int getPlaybackDuration();
+
+    void setVolume(float vocalTrackVolume, float backgroundTrackVolume);
+
+    /**
+     * @param playbackTimeMillis current position of the playback clock, engines that cannot
+     *                           switch at the decoded position align the incoming vocal to it
+     */
+    void setOriginalVocalUsed(boolean isOriginalVocalUsed, int playbackTimeMillis);
+
+    /**
+     * @param isActiveVocalOnly    whether only the selected vocal track is decoded, the other
+     *                             one is kept ready and brought in on switch
+     * @param crossfadeMillis      length of crossfade between vocal tracks on switch, 0 to switch at once
+     */
+    void setVocalSwitchMode(boolean isActiveVocalOnly, int crossfadeMillis);
+
+    /**
+     * Sets drift between background and vocal tracks above which engine corrects it.
+     */
+    void setDriftThresholdMillis(int driftThresholdMillis);
+
+    DriftStatistics getDriftStatistics();
+
+    /**
+     * @return number of decoders the prepared engine keeps open
+     */
+    int getDecoderCount();
+
+    /**
+     * @return bytes of decoded audio and buffers the prepared engine holds in this process
+     */
+    long getMemoryBytes();
+
+    /**
+     * Plays the region in a loop: when playback reaches the end it continues from the start
+     * without pausing. An end that is not after the start disables looping.
+     */
+    void setLoopRegion(int loopStartMillis, int loopEndMillis);
+
+    void setOnLoopWrapListener(OnLoopWrapListener onLoopWrapListener);
+
+    void setOnPlaybackCompletedListener(OnPlaybackCompletedListener onPlaybackCompletedListener);
+
+    void release();
+}
@@ -0,0 +1,13 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+
+public enum PlaybackEngineType {
+    /**
+     * Background and both vocal tracks are played by separate MediaPlayer instances.
+     */
+    MEDIA_PLAYER,
+    /**
+     * Background and active vocal track are decoded to PCM and mixed into a single AudioTrack.
+     */
+    SOFTWARE_MIXER
+}
@@ -1,23 +1,68 @@
 package fm.ghinwa.previewaudioplayer.implementation.player;
 
 
-import android.os.Handler;
-import android.os.Looper;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import fm.ghinwa.previewaudioplayer.implementation.metrics.PreviewMetrics;
 
 class PlayerProgressThread extends Thread {
 
-    private static final float UPDATES_PER_SECOND = 60;
-    private static final float UPDATE_TIME = 1000 / UPDATES_PER_SECOND;
+    private static final float DEFAULT_UPDATES_PER_SECOND = 60;
+    private static final int DEFAULT_MINIMUM_DELTA_MILLIS = 1;
+    private static final int NO_PROGRESS_SENT = Integer.MIN_VALUE;
 
     private final PreviewPlayer previewPlayer;
+    private final PreviewMetrics metrics;
     private final Object pauseLock = new Object();
-    private final Handler handler;
+    private final Object tickLock = new Object();
+    private final Executor mainThreadExecutor;
+
+    private final AtomicBoolean isProgressUpdatePending = new AtomicBoolean();
+    private final Runnable progressUpdateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isProgressUpdatePending.set(false);
+            previewPlayer.onProgressUpdate(latestPlaybackTimeMillis);
+        }
+    };
 
-    private volatile boolean isPaused = true;
+    private final Runnable playbackCompletedRunnable = new Runnable() {
+        @Override
+        public void run() {
+            previewPlayer.completePlayback();
+        }
+    };
 
-    PlayerProgressThread(PreviewPlayer previewPlayer) {
+    private volatile boolean isPaused = true;
+    private volatile float updateTime = 1000 / DEFAULT_UPDATES_PER_SECOND;
+    private volatile int minimumDeltaMillis = DEFAULT_MINIMUM_DELTA_MILLIS;
+    private volatile int latestPlaybackTimeMillis;
+    private int lastSentPlaybackTimeMillis = NO_PROGRESS_SENT;
+    private long lastTickTimeNanos;
+
+    /**
+     * @param mainThreadExecutor runs progress and completion notifications on the main thread
+     */
+    PlayerProgressThread(PreviewPlayer previewPlayer, PreviewMetrics metrics, Executor mainThreadExecutor) {
         this.previewPlayer = previewPlayer;
-        handler = new Handler(Looper.getMainLooper());
+        this.metrics = metrics;
+        this.mainThreadExecutor = mainThreadExecutor;
+    }
+
+    void setUpdatesPerSecond(float updatesPerSecond) {
+        if (updatesPerSecond <= 0) {
+            throw new IllegalArgumentException("Updates per second must be positive");
+        }
+        updateTime = 1000 / updatesPerSecond;
+    }
+
+    /**
+     * Progress is reported only when it changed by at least minimumDeltaMillis since the last
+     * reported value, so positions that did not move are never sent twice.
+     */
+    void setMinimumDeltaMillis(int minimumDeltaMillis) {
+        this.minimumDeltaMillis = Math.max(DEFAULT_MINIMUM_DELTA_MILLIS, minimumDeltaMillis);
     }
 
     void unPause() {
@@ -31,18 +76,32 @@ class PlayerProgressThread extends Thread {
         isPaused = true;
     }
 
+    /**
+     * Pauses and waits until a check that already started has finished, so the player can
+     * release its engine while the thread is not using it.
+     */
+    void pauseAndAwaitTick() {
+        isPaused = true;
+        synchronized (tickLock) {
+            // no check runs past this point until unPause()
+        }
+    }
+
     @Override
     public void run() {
         while (!isInterrupted()) {
 
+            boolean wasPaused = isPaused;
             handlePause();
 
             long startTime = System.currentTimeMillis();
 
-            runRepeatableJob();
+            if (!tick(wasPaused)) {
+                continue;
+            }
 
             long endTime = System.currentTimeMillis();
-            long deltaTime = (long) (UPDATE_TIME - (endTime - startTime));
+            long deltaTime = (long) (updateTime - (endTime - startTime));
 
             if (deltaTime > 0) {
                 try {
@@ -54,34 +113,66 @@ class PlayerProgressThread extends Thread {
         }
     }
 
-    private void runRepeatableJob() {
-        final int currentPlaybackTimeMillis = previewPlayer.getCurrentTimeMillis();
+    /**
+     * Runs one check unless the thread was paused or interrupted while waking up.
+     *
+     * @return false when the check was skipped
+     */
+    private boolean tick(boolean wasPaused) {
+        synchronized (tickLock) {
+            if (isPaused || isInterrupted()) {
+                return false;
+            }
+            recordTickJitter(wasPaused);
+            runRepeatableJob();
+            return true;
+        }
+    }
+
+    /**
+     * Records how far the interval since the previous check is from the configured one; the
+     * first check after a pause has no previous check to compare with.
+     */
+    void recordTickJitter(boolean wasPaused) {
+        long tickTimeNanos = System.nanoTime();
+        if (!wasPaused && lastTickTimeNanos != 0) {
+            long intervalNanos = tickTimeNanos - lastTickTimeNanos;
+            metrics.recordNanos(PreviewMetrics.TICK_JITTER, Math.abs(intervalNanos - (long) (updateTime * 1000000L)));
+        }
+        lastTickTimeNanos = tickTimeNanos;
+    }
+
+    void runRepeatableJob() {
+        final int currentPlaybackTimeMillis = previewPlayer.getPresentedTimeMillis();
 
         updateProgress(currentPlaybackTimeMillis);
 
-        boolean shouldFinishPreview = previewPlayer.isInPreviewMode() && currentPlaybackTimeMillis > previewPlayer.getPreviewEndTimeInMillis();
+        boolean shouldFinishPreview = previewPlayer.isInPreviewMode() && !previewPlayer.isLooping()
+                && currentPlaybackTimeMillis > previewPlayer.getPreviewEndTimeInMillis();
         if (shouldFinishPreview) {
             previewPlayer.stop();
             notifyPlaybackCompleted();
         }
     }
 
-    private void updateProgress(final int currentPlaybackTimeMillis) {
-        handler.post(new Runnable() {
-            @Override
-            public void run() {
-                previewPlayer.onProgressUpdate(currentPlaybackTimeMillis);
-            }
-        });
+    /**
+     * Coalesces updates, at most one update is queued on the main looper and it always delivers
+     * the latest position, so a busy main thread never receives a backlog.
+     */
+    private void updateProgress(int currentPlaybackTimeMillis) {
+        if (lastSentPlaybackTimeMillis != NO_PROGRESS_SENT
+                && Math.abs(currentPlaybackTimeMillis - lastSentPlaybackTimeMillis) < minimumDeltaMillis) {
+            return;
+        }
+        lastSentPlaybackTimeMillis = currentPlaybackTimeMillis;
+        latestPlaybackTimeMillis = currentPlaybackTimeMillis;
+        if (isProgressUpdatePending.compareAndSet(false, true)) {
+            mainThreadExecutor.execute(progressUpdateRunnable);
+        }
     }
 
     private void notifyPlaybackCompleted() {
-        handler.post(new Runnable() {
-            @Override
-            public void run() {
-                previewPlayer.completePlayback();
-            }
-        });
+        mainThreadExecutor.execute(playbackCompletedRunnable);
     }
 
     private void handlePause() {
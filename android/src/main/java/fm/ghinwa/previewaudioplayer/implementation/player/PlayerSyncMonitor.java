@@ -0,0 +1,144 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+
+import android.annotation.TargetApi;
+import android.media.PlaybackParams;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Periodically compares vocal players with the background player while playing and corrects
+ * drift exceeding the threshold. Small drift is corrected with a playback speed nudge where
+ * PlaybackParams are available, larger drift (or older platforms) with a seek of the vocal player.
+ * Paused followers (a standby vocal) are skipped, and so is every sample taken while a seek is in
+ * flight because positions are not settled yet.
+ */
+class PlayerSyncMonitor implements Runnable {
+
+    private static final long SAMPLE_INTERVAL_MILLIS = 1000;
+    static final int DEFAULT_DRIFT_THRESHOLD_MILLIS = 40;
+    private static final int MAX_NUDGED_DRIFT_MILLIS = 250;
+    private static final float SPEED_NUDGE = 0.02f;
+    private static final float NORMAL_SPEED = 1f;
+
+    /**
+     * Issues corrective seeks so they are coordinated with requested ones.
+     */
+    interface FollowerSeeker {
+
+        boolean isSeeking();
+
+        /**
+         * @return false when the follower is already seeking and the correction was not issued
+         */
+        boolean seekFollower(SinglePreviewMediaPlayer follower, int playbackTimeMillis);
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final FollowerSeeker followerSeeker;
+    private final SinglePreviewMediaPlayer masterPlayer;
+    private final int masterOffsetMillis;
+    private final SinglePreviewMediaPlayer[] followerPlayers;
+    private final boolean[] isFollowerNudged;
+    private final DriftStatistics driftStatistics = new DriftStatistics();
+
+    private volatile int driftThresholdMillis = DEFAULT_DRIFT_THRESHOLD_MILLIS;
+    private volatile boolean isRunning;
+
+    /**
+     * @param masterOffsetMillis position in the master track that corresponds to position 0 in followers
+     */
+    PlayerSyncMonitor(FollowerSeeker followerSeeker, SinglePreviewMediaPlayer masterPlayer, int masterOffsetMillis,
+                      SinglePreviewMediaPlayer... followerPlayers) {
+        this.followerSeeker = followerSeeker;
+        this.masterPlayer = masterPlayer;
+        this.masterOffsetMillis = masterOffsetMillis;
+        this.followerPlayers = followerPlayers;
+        isFollowerNudged = new boolean[followerPlayers.length];
+    }
+
+    void setDriftThresholdMillis(int driftThresholdMillis) {
+        this.driftThresholdMillis = driftThresholdMillis;
+    }
+
+    DriftStatistics getDriftStatistics() {
+        return driftStatistics.copy();
+    }
+
+    /**
+     * Must be called after players were started, and again when a paused follower is started.
+     * Speed of nudged players is restored here because changing PlaybackParams of a paused player
+     * would start it.
+     */
+    void start() {
+        for (int i = 0; i < followerPlayers.length; i++) {
+            if (isFollowerNudged[i] && followerPlayers[i].isPlaying()) {
+                setSpeed(followerPlayers[i], NORMAL_SPEED);
+                isFollowerNudged[i] = false;
+            }
+        }
+        if (!isRunning) {
+            isRunning = true;
+            handler.postDelayed(this, SAMPLE_INTERVAL_MILLIS);
+        }
+    }
+
+    void stop() {
+        isRunning = false;
+        handler.removeCallbacks(this);
+    }
+
+    @Override
+    public void run() {
+        if (!isRunning) {
+            return;
+        }
+        int masterPositionMillis = masterPlayer.getCurrentPosition() - masterOffsetMillis;
+        if (masterPositionMillis >= 0 && !followerSeeker.isSeeking()) {
+            for (int i = 0; i < followerPlayers.length; i++) {
+                synchronizeFollower(i, masterPositionMillis);
+            }
+        }
+        handler.postDelayed(this, SAMPLE_INTERVAL_MILLIS);
+    }
+
+    private void synchronizeFollower(int index, int masterPositionMillis) {
+        SinglePreviewMediaPlayer follower = followerPlayers[index];
+        if (!follower.isPlaying() || masterPositionMillis >= follower.getDuration()) {
+            return;
+        }
+        int driftMillis = follower.getCurrentPosition() - masterPositionMillis;
+        driftStatistics.recordSample(driftMillis);
+
+        int absoluteDriftMillis = Math.abs(driftMillis);
+        if (isFollowerNudged[index]) {
+            if (absoluteDriftMillis <= driftThresholdMillis / 2) {
+                setSpeed(follower, NORMAL_SPEED);
+                isFollowerNudged[index] = false;
+            }
+            return;
+        }
+        if (absoluteDriftMillis <= driftThresholdMillis) {
+            return;
+        }
+
+        if (isSpeedNudgeSupported() && absoluteDriftMillis <= MAX_NUDGED_DRIFT_MILLIS) {
+            setSpeed(follower, driftMillis > 0 ? NORMAL_SPEED - SPEED_NUDGE : NORMAL_SPEED + SPEED_NUDGE);
+            isFollowerNudged[index] = true;
+            driftStatistics.recordCorrection();
+        } else if (followerSeeker.seekFollower(follower, masterPositionMillis)) {
+            driftStatistics.recordCorrection();
+        }
+    }
+
+    private static boolean isSpeedNudgeSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    private static void setSpeed(SinglePreviewMediaPlayer player, float speed) {
+        PlaybackParams playbackParams = player.getPlaybackParams();
+        player.setPlaybackParams(playbackParams.setSpeed(speed));
+    }
+}
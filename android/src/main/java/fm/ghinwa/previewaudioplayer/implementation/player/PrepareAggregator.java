@@ -0,0 +1,58 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnPrepareStatusListener;
+
+/**
+ * Collects results of components prepared in parallel and reports a single result once every
+ * component has finished: completion when all of them are ready, otherwise one error listing
+ * every component that failed.
+ */
+class PrepareAggregator {
+
+    private final OnPrepareStatusListener onPrepareStatusListener;
+    private final StringBuilder errors = new StringBuilder();
+
+    private int pendingComponentCount;
+    private boolean isCancelled;
+
+    PrepareAggregator(int componentCount, OnPrepareStatusListener onPrepareStatusListener) {
+        this.pendingComponentCount = componentCount;
+        this.onPrepareStatusListener = onPrepareStatusListener;
+    }
+
+    void onComponentReady() {
+        onComponentFinished();
+    }
+
+    void onComponentError(String componentName, String message) {
+        synchronized (this) {
+            if (errors.length() > 0) {
+                errors.append("; ");
+            }
+            errors.append(componentName).append(": ").append(message);
+        }
+        onComponentFinished();
+    }
+
+    /**
+     * Suppresses the result, used when the prepared components are released before they are ready.
+     */
+    synchronized void cancel() {
+        isCancelled = true;
+    }
+
+    private void onComponentFinished() {
+        String errorMessage;
+        synchronized (this) {
+            if (isCancelled || pendingComponentCount == 0 || --pendingComponentCount > 0) {
+                return;
+            }
+            errorMessage = errors.length() > 0 ? errors.toString() : null;
+        }
+        if (errorMessage != null) {
+            onPrepareStatusListener.onPrepareError("Prepare failed. " + errorMessage);
+        } else {
+            onPrepareStatusListener.onPrepareCompleted();
+        }
+    }
+}
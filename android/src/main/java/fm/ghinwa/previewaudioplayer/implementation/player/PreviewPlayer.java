@@ -1,31 +1,60 @@
 package fm.ghinwa.previewaudioplayer.implementation.player;
 
 
-import android.media.MediaPlayer;
+import android.os.Handler;
+import android.os.Looper;
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
-import fm.ghinwa.previewaudioplayer.implementation.util.Logger;
+import fm.ghinwa.previewaudioplayer.implementation.audio.PcmCache;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnPrepareStatusListener;
+import fm.ghinwa.previewaudioplayer.implementation.loudness.LoudnessGains;
+import fm.ghinwa.previewaudioplayer.implementation.metrics.PreviewMetrics;
 import fm.ghinwa.previewaudioplayer.implementation.util.TimeUnitConverterUtil;
 
-public class PreviewPlayer implements MediaPlayer.OnCompletionListener {
-
-    private static final String TAG = PreviewPlayer.class.getSimpleName();
+public class PreviewPlayer implements OnPlaybackCompletedListener, OnLoopWrapListener {
 
     private static final TimeUnit DEFAULT_TIME_UNIT = TimeUnit.MILLISECONDS;
 
     private static final int MAX_VOLUME = 1;
 
-    private SinglePreviewMediaPlayer originalVocalPlayer;
-    private SinglePreviewMediaPlayer processedVocalPlayer;
-    private SinglePreviewMediaPlayer backgroundTrackPlayer;
+    /**
+     * Decoders any engine opens at most: background and both vocal tracks.
+     */
+    public static final int MAX_DECODER_COUNT = 3;
 
-    private SinglePreviewMediaPlayer[] mediaPlayers;
+    /**
+     * Shorter preview windows are not looped, they stop at their end as without loop mode.
+     */
+    public static final int MIN_LOOP_DURATION_MILLIS = 1000;
+
+    private static final OnSeekCompletionListener NO_OP_SEEK_COMPLETION_LISTENER = new OnSeekCompletionListener() {
+        @Override
+        public void onSeekCompleted() {
+            //no-op
+        }
+
+        @Override
+        public void onSeekSuperseded() {
+            //no-op
+        }
+    };
+
+    private PlaybackEngine playbackEngine;
+    private PlaybackEngineType playbackEngineType = PlaybackEngineType.MEDIA_PLAYER;
+    private PcmCache pcmCache;
 
     private final PlayerProgressThread progressThread;
+    private final PlaybackClock playbackClock;
+    private final MediaPlayerPool mediaPlayerPool;
+    private final PreviewMetrics metrics;
 
     private boolean isOriginalVocalUsed;
+    private boolean isActiveVocalOnly;
+    private int vocalCrossfadeInDefaultTimeUnit;
+    private int driftThresholdInDefaultTimeUnit = PlayerSyncMonitor.DEFAULT_DRIFT_THRESHOLD_MILLIS;
 
     private int recordingStartTimeInDefaultTimeUnit;
     private int previewStartTimeInDefaultTimeUnit;
@@ -34,73 +63,163 @@ public class PreviewPlayer implements MediaPlayer.OnCompletionListener {
 
     private float currentVocalVolume;
     private float currentBackgroundTrackVolume;
+    private LoudnessGains originalVocalLoudnessGains = LoudnessGains.UNITY;
+    private LoudnessGains processedVocalLoudnessGains = LoudnessGains.UNITY;
 
-    private boolean isPrepared = false;
+    private volatile boolean isPrepared = false;
+    private volatile boolean isOutputLatencyCompensated = true;
+    private volatile int outputLatencyInDefaultTimeUnit;
 
     private volatile boolean isInPreviewMode;
+    private volatile boolean isStartPending;
+    private final Object seekRequestPoolLock = new Object();
+    private SeekRequest seekRequestPool;
+    private volatile boolean isPendingStartInPreviewMode;
+    private boolean isPreviewLoopEnabled;
+    private volatile int loopStartInDefaultTimeUnit;
+    private volatile int loopEndInDefaultTimeUnit;
+    private int loopIteration;
     private ProgressUpdateListener progressUpdateListener;
     private OnPlaybackCompletedListener onPlaybackCompletedListener;
+    private OnLoopIterationListener onLoopIterationListener;
+
+    /**
+     * @param mediaPlayerPool native players released by any session, reused by following prepare calls
+     */
+    public PreviewPlayer(PreviewMetrics metrics, MediaPlayerPool mediaPlayerPool) {
+        this(metrics, mediaPlayerPool, new PlaybackClock(), new Executor() {
+            private final Handler handler = new Handler(Looper.getMainLooper());
 
-    public PreviewPlayer() {
+            @Override
+            public void execute(Runnable runnable) {
+                handler.post(runnable);
+            }
+        });
+    }
+
+    PreviewPlayer(PreviewMetrics metrics, MediaPlayerPool mediaPlayerPool, PlaybackClock playbackClock,
+                  Executor mainThreadExecutor) {
+        this.metrics = metrics;
+        this.mediaPlayerPool = mediaPlayerPool;
+        this.playbackClock = playbackClock;
         currentVocalVolume = MAX_VOLUME;
         currentBackgroundTrackVolume = MAX_VOLUME;
         isOriginalVocalUsed = true;
 
-        progressThread = new PlayerProgressThread(this);
+        progressThread = new PlayerProgressThread(this, metrics, mainThreadExecutor);
         progressThread.start();
     }
 
     @Override
-    public void onCompletion(MediaPlayer mp) {
+    public void onPlaybackComplete() {
         completePlayback();
     }
 
+    /**
+     * The engine reports a wrap once it is audible, the clock is moved back to the loop start.
+     */
+    @Override
+    public void onLoopWrap() {
+        if (playbackEngine == null || !isLooping()) {
+            return;
+        }
+        playbackClock.anchor(playbackEngine.getCurrentPosition(), playbackClock.isRunning());
+        loopIteration++;
+        if (onLoopIterationListener != null) {
+            onLoopIterationListener.onLoopIteration(loopIteration);
+        }
+    }
+
+    /**
+     * Selects the engine used for playback. Takes effect on the next prepare call.
+     */
+    public void setPlaybackEngineType(PlaybackEngineType playbackEngineType) {
+        this.playbackEngineType = playbackEngineType;
+    }
+
+    /**
+     * Cache of decoded background tracks used by the {@link PlaybackEngineType#SOFTWARE_MIXER}
+     * engine, takes effect on the next prepare.
+     */
+    public void setPcmCache(PcmCache pcmCache) {
+        this.pcmCache = pcmCache;
+    }
+
     public void setPlaybackCompletedListener(OnPlaybackCompletedListener onPlaybackCompletedListener) {
         this.onPlaybackCompletedListener = onPlaybackCompletedListener;
     }
 
     void completePlayback() {
-        stop();
+        if (playbackEngine != null) {
+            stop();
+        }
         if (onPlaybackCompletedListener != null) {
             onPlaybackCompletedListener.onPlaybackComplete();
         }
     }
 
+    /**
+     * Starts preparing the tracks without blocking; the listener is called once all of them
+     * are ready or when any of them fails.
+     */
     public void prepare(String originalRecordingPath, String processedInputPath,
-                        String backgroundAudioFilePathString, float recordingStartTime, TimeUnit sourceTimeUnit) throws IOException {
-        if (isPrepared) {
+                        String backgroundAudioFilePathString, float recordingStartTime, TimeUnit sourceTimeUnit,
+                        final OnPrepareStatusListener onPrepareStatusListener) throws IOException {
+        if (playbackEngine != null) {
             release();
         }
 
-        backgroundTrackPlayer = new SinglePreviewMediaPlayer();
-        originalVocalPlayer = new SinglePreviewMediaPlayer();
-        processedVocalPlayer = new SinglePreviewMediaPlayer();
-
-        backgroundTrackPlayer.setOnCompletionListener(this);
-
-        mediaPlayers = new SinglePreviewMediaPlayer[]{backgroundTrackPlayer, originalVocalPlayer, processedVocalPlayer};
-
-        backgroundTrackPlayer.setDataSource(backgroundAudioFilePathString);
-        originalVocalPlayer.setDataSource(originalRecordingPath);
-        processedVocalPlayer.setDataSource(processedInputPath);
-
         recordingStartTimeInDefaultTimeUnit = toDefaultTimeUnit(recordingStartTime, sourceTimeUnit);
 
-        initMediaPlayers();
+        final PlaybackEngine preparingEngine = createPlaybackEngine();
+        playbackEngine = preparingEngine;
+        preparingEngine.setOnPlaybackCompletedListener(this);
+        preparingEngine.setOnLoopWrapListener(this);
+        preparingEngine.setVolume(getEffectiveVocalVolume(), getEffectiveBackgroundTrackVolume());
+        preparingEngine.setOriginalVocalUsed(isOriginalVocalUsed, 0);
+        preparingEngine.setVocalSwitchMode(isActiveVocalOnly, vocalCrossfadeInDefaultTimeUnit);
+        preparingEngine.setDriftThresholdMillis(driftThresholdInDefaultTimeUnit);
+        try {
+            prepareEngine(preparingEngine, originalRecordingPath, processedInputPath, backgroundAudioFilePathString,
+                    onPrepareStatusListener);
+        } catch (IOException e) {
+            playbackEngine = null;
+            throw e;
+        }
+    }
+
+    private void prepareEngine(final PlaybackEngine preparingEngine, String originalRecordingPath,
+                               String processedInputPath, String backgroundAudioFilePathString,
+                               final OnPrepareStatusListener onPrepareStatusListener) throws IOException {
+        preparingEngine.prepare(originalRecordingPath, processedInputPath, backgroundAudioFilePathString,
+                recordingStartTimeInDefaultTimeUnit, new OnPrepareStatusListener() {
+                    @Override
+                    public void onPrepareError(String message) {
+                        if (playbackEngine != preparingEngine) {
+                            return;
+                        }
+                        release();
+                        onPrepareStatusListener.onPrepareError(message);
+                    }
 
-        isPrepared = true;
+                    @Override
+                    public void onPrepareCompleted() {
+                        if (playbackEngine != preparingEngine) {
+                            return;
+                        }
+                        playbackClock.anchor(0, false);
+                        isPrepared = true;
+                        onPrepareStatusListener.onPrepareCompleted();
+                    }
+                });
     }
 
     public void play(final OnCompletionListener onCompletionListener) {
         if (getCurrentTimeMillis() != 0) {
             playAt(0, DEFAULT_TIME_UNIT, onCompletionListener);
         } else {
-            executeOnAllPlayers(new PlayerExecuteCommand() {
-                @Override
-                public void execute(SinglePreviewMediaPlayer mediaPlayer) {
-                    mediaPlayer.start();
-                }
-            });
+            applyLoopRegion(false);
+            startPlayback();
             isInPreviewMode = false;
             onCompletionListener.onComplete();
         }
@@ -108,21 +227,7 @@ public class PreviewPlayer implements MediaPlayer.OnCompletionListener {
     }
 
     public void playAt(float time, TimeUnit sourceTimeUnit, final OnCompletionListener onCompletionListener) {
-        final int timeInDefaultPlayerUnit = toDefaultTimeUnit(time, sourceTimeUnit);
-        seekTo(timeInDefaultPlayerUnit, new OnCompletionListener() {
-            @Override
-            public void onComplete() {
-                executeOnAllPlayers(new PlayerExecuteCommand() {
-                    @Override
-                    public void execute(SinglePreviewMediaPlayer mediaPlayer) {
-                        mediaPlayer.start();
-                    }
-                });
-                isInPreviewMode = false;
-                onCompletionListener.onComplete();
-            }
-        });
-        progressThread.unPause();
+        seekAndStart(toDefaultTimeUnit(time, sourceTimeUnit), false, onCompletionListener);
     }
 
     /**
@@ -137,60 +242,47 @@ public class PreviewPlayer implements MediaPlayer.OnCompletionListener {
         if (isInPreviewMode) {
             isInPreviewMode = false;
         }
-        seekTo(0, new OnCompletionListener() {
-            @Override
-            public void onComplete() {
-                //no-op
-            }
-        });
+        applyLoopRegion(false);
+        seekTo(0, NO_OP_SEEK_COMPLETION_LISTENER);
     }
 
     public void pause() {
-        executeOnAllPlayers(new PlayerExecuteCommand() {
-            @Override
-            public void execute(SinglePreviewMediaPlayer mediaPlayer) {
-                mediaPlayer.pause();
-            }
-        });
+        isStartPending = false;
+        playbackEngine.pause();
+        playbackClock.anchor(playbackEngine.getCurrentPosition(), false);
         progressThread.pause();
     }
 
     public void unPause(final OnCompletionListener onCompletionListener) {
-        seekTo(getCurrentTimeMillis(), new OnCompletionListener() {
-            @Override
-            public void onComplete() {
-                executeOnAllPlayers(new PlayerExecuteCommand() {
-                    @Override
-                    public void execute(SinglePreviewMediaPlayer mediaPlayer) {
-                        mediaPlayer.start();
-                    }
-                });
-                onCompletionListener.onComplete();
-            }
-        });
-        progressThread.unPause();
+        seekAndStart(getCurrentTimeMillis(), isInPreviewMode, onCompletionListener);
     }
 
     public void playPreview(final OnCompletionListener onCompletionListener) {
-        seekTo(previewStartTimeInDefaultTimeUnit, new OnCompletionListener() {
-            @Override
-            public void onComplete() {
-                executeOnAllPlayers(new PlayerExecuteCommand() {
-                    @Override
-                    public void execute(SinglePreviewMediaPlayer mediaPlayer) {
-                        mediaPlayer.start();
-                    }
-                });
-                isInPreviewMode = true;
-                onCompletionListener.onComplete();
-            }
-        });
-        progressThread.unPause();
+        loopIteration = 0;
+        seekAndStart(previewStartTimeInDefaultTimeUnit, true, onCompletionListener);
+    }
+
+    /**
+     * In loop mode the preview window repeats until paused or stopped instead of stopping at its
+     * end. The wrap is scheduled in the engine, see {@link PlaybackEngine#setLoopRegion}.
+     */
+    public void setPreviewLoopEnabled(boolean isPreviewLoopEnabled) {
+        this.isPreviewLoopEnabled = isPreviewLoopEnabled;
+        updateLoopRegion();
+    }
+
+    public boolean isPreviewLoopEnabled() {
+        return isPreviewLoopEnabled;
+    }
+
+    public void setOnLoopIterationListener(OnLoopIterationListener onLoopIterationListener) {
+        this.onLoopIterationListener = onLoopIterationListener;
     }
 
     public void setPreviewStartTime(float time, TimeUnit sourceTimeUnit) {
         previewStartTimeInDefaultTimeUnit = toDefaultTimeUnit(time, sourceTimeUnit);
         previewEndTimeInDefaultTimeUnit = previewStartTimeInDefaultTimeUnit + previewDurationInDefaultTimeUnit;
+        updateLoopRegion();
     }
 
     public float getPreviewStartTime(TimeUnit resultTimeUnit) {
@@ -200,28 +292,84 @@ public class PreviewPlayer implements MediaPlayer.OnCompletionListener {
     public void setPreviewDuration(float duration, TimeUnit sourceUnit) {
         previewDurationInDefaultTimeUnit = toDefaultTimeUnit(duration, sourceUnit);
         previewEndTimeInDefaultTimeUnit = previewStartTimeInDefaultTimeUnit + previewDurationInDefaultTimeUnit;
+        updateLoopRegion();
     }
 
     public float getPreviewDuration(TimeUnit resultUnit) {
         return TimeUnitConverterUtil.toResultTimeUnitFloat(previewDurationInDefaultTimeUnit, DEFAULT_TIME_UNIT, resultUnit);
     }
 
+    public float getRecordingStartTime(TimeUnit resultUnit) {
+        return TimeUnitConverterUtil.toResultTimeUnitFloat(recordingStartTimeInDefaultTimeUnit, DEFAULT_TIME_UNIT, resultUnit);
+    }
+
     public float getPlaybackDuration(TimeUnit resultUnit) {
-        int playbackDurationInDefaultUnit = backgroundTrackPlayer.getDuration() - recordingStartTimeInDefaultTimeUnit;
+        int playbackDurationInDefaultUnit = playbackEngine.getPlaybackDuration();
         return TimeUnitConverterUtil.toResultTimeUnitFloat(playbackDurationInDefaultUnit, DEFAULT_TIME_UNIT, resultUnit);
     }
 
-    public void seekTo(float time, TimeUnit sourceTimeUnit, OnCompletionListener onCompletionListener) {
+    /**
+     * Seeks requested while a previous one is still running are coalesced: the tracks go straight
+     * to the latest position and listeners of the skipped seeks are told they were superseded.
+     */
+    public void seekTo(float time, TimeUnit sourceTimeUnit, OnSeekCompletionListener onSeekCompletionListener) {
         int timeInDefaultPlayerUnit = (int) TimeUnitConverterUtil.toResultTimeUnitLong(time, sourceTimeUnit, DEFAULT_TIME_UNIT);
-        seekTo(timeInDefaultPlayerUnit, onCompletionListener);
+        seekTo(timeInDefaultPlayerUnit, onSeekCompletionListener);
     }
 
+    /**
+     * Reads the interpolated playback clock. The decoder position is queried only when the clock
+     * anchor gets stale. While looping, a clock that ran past the loop end before the wrap was
+     * reported is folded back into the loop.
+     */
     int getCurrentTimeMillis() {
-        return backgroundTrackPlayer.getCurrentPosition() - recordingStartTimeInDefaultTimeUnit;
+        if (playbackClock.needsReanchor()) {
+            playbackClock.reanchor(playbackEngine.getCurrentPosition());
+            outputLatencyInDefaultTimeUnit = playbackEngine.getOutputLatencyMillis();
+        }
+        int positionMillis = playbackClock.getPositionMillis();
+        int loopStart = loopStartInDefaultTimeUnit;
+        int loopEnd = loopEndInDefaultTimeUnit;
+        if (loopEnd > loopStart && positionMillis >= loopEnd) {
+            positionMillis = loopStart + (positionMillis - loopStart) % (loopEnd - loopStart);
+        }
+        return positionMillis;
+    }
+
+    /**
+     * Position the listener hears: while playing, the decoder position minus the output latency,
+     * but never before the position playback was started or seeked from. Equal to the decoder
+     * position when compensation is turned off.
+     */
+    int getPresentedTimeMillis() {
+        int positionMillis = getCurrentTimeMillis();
+        if (!isOutputLatencyCompensated || !playbackClock.isRunning()) {
+            return positionMillis;
+        }
+        return Math.max(playbackClock.getStartPositionMillis(), positionMillis - outputLatencyInDefaultTimeUnit);
     }
 
     public float getCurrentTime(TimeUnit sourceTimeUnit) {
-        return TimeUnitConverterUtil.toResultTimeUnitFloat(getCurrentTimeMillis(), DEFAULT_TIME_UNIT, sourceTimeUnit);
+        return TimeUnitConverterUtil.toResultTimeUnitFloat(getPresentedTimeMillis(), DEFAULT_TIME_UNIT, sourceTimeUnit);
+    }
+
+    /**
+     * Selects whether current time and progress updates report the presented position (default)
+     * or the raw decoder position.
+     */
+    public void setOutputLatencyCompensated(boolean isOutputLatencyCompensated) {
+        this.isOutputLatencyCompensated = isOutputLatencyCompensated;
+    }
+
+    public boolean isOutputLatencyCompensated() {
+        return isOutputLatencyCompensated;
+    }
+
+    /**
+     * @return output latency measured when the playback clock was last anchored
+     */
+    public float getOutputLatency(TimeUnit resultUnit) {
+        return TimeUnitConverterUtil.toResultTimeUnitFloat(outputLatencyInDefaultTimeUnit, DEFAULT_TIME_UNIT, resultUnit);
     }
 
     int getPreviewEndTimeInMillis() {
@@ -231,26 +379,96 @@ public class PreviewPlayer implements MediaPlayer.OnCompletionListener {
     public void setVolume(float vocalAudioTrackVolume, float backgroundTrackVolume) {
         currentVocalVolume = vocalAudioTrackVolume;
         currentBackgroundTrackVolume = backgroundTrackVolume;
+        applyVolume();
+    }
 
-        backgroundTrackPlayer.setVolume(currentBackgroundTrackVolume, currentBackgroundTrackVolume);
-        if (isOriginalVocalUsed) {
-            originalVocalPlayer.setVolume(currentVocalVolume, currentVocalVolume);
-        } else {
-            processedVocalPlayer.setVolume(currentVocalVolume, currentVocalVolume);
-        }
+    /**
+     * Sets gains that match loudness of the tracks, applied on top of the volumes for the vocal
+     * track in use. Unity gains leave the volumes as set.
+     */
+    public void setLoudnessGains(LoudnessGains originalVocalLoudnessGains, LoudnessGains processedVocalLoudnessGains) {
+        this.originalVocalLoudnessGains = originalVocalLoudnessGains;
+        this.processedVocalLoudnessGains = processedVocalLoudnessGains;
+        applyVolume();
     }
 
     public void switchToOriginalVocalTrack() {
         isOriginalVocalUsed = true;
-        originalVocalPlayer.setVolume(currentVocalVolume, currentVocalVolume);
-        processedVocalPlayer.setVolume(0, 0);
+        if (playbackEngine != null) {
+            playbackEngine.setOriginalVocalUsed(true, getCurrentTimeMillis());
+        }
+        applyVolume();
     }
 
 
     public void switchToProcessedVocalTrack() {
         isOriginalVocalUsed = false;
-        originalVocalPlayer.setVolume(0, 0);
-        processedVocalPlayer.setVolume(currentVocalVolume, currentVocalVolume);
+        if (playbackEngine != null) {
+            playbackEngine.setOriginalVocalUsed(false, getCurrentTimeMillis());
+        }
+        applyVolume();
+    }
+
+    private void applyVolume() {
+        if (playbackEngine != null) {
+            playbackEngine.setVolume(getEffectiveVocalVolume(), getEffectiveBackgroundTrackVolume());
+        }
+    }
+
+    /**
+     * Selects whether the inactive vocal track keeps being decoded (muted) or is kept paused and
+     * brought in on switch, and how long the crossfade between vocal tracks takes.
+     */
+    public void setVocalSwitchMode(boolean isActiveVocalOnly, float crossfadeDuration, TimeUnit sourceTimeUnit) {
+        this.isActiveVocalOnly = isActiveVocalOnly;
+        vocalCrossfadeInDefaultTimeUnit = toDefaultTimeUnit(crossfadeDuration, sourceTimeUnit);
+        if (playbackEngine != null) {
+            playbackEngine.setVocalSwitchMode(isActiveVocalOnly, vocalCrossfadeInDefaultTimeUnit);
+        }
+    }
+
+    /**
+     * Configures how often progress is polled and the minimal position change that is reported.
+     */
+    public void setProgressUpdateRate(float updatesPerSecond, float minimumDelta, TimeUnit sourceTimeUnit) {
+        progressThread.setUpdatesPerSecond(updatesPerSecond);
+        progressThread.setMinimumDeltaMillis(toDefaultTimeUnit(minimumDelta, sourceTimeUnit));
+    }
+
+    /**
+     * Sets drift between background and vocal tracks above which playback is resynchronised.
+     */
+    public void setDriftThreshold(float threshold, TimeUnit sourceTimeUnit) {
+        driftThresholdInDefaultTimeUnit = toDefaultTimeUnit(threshold, sourceTimeUnit);
+        if (playbackEngine != null) {
+            playbackEngine.setDriftThresholdMillis(driftThresholdInDefaultTimeUnit);
+        }
+    }
+
+    public DriftStatistics getDriftStatistics() {
+        return playbackEngine != null ? playbackEngine.getDriftStatistics() : new DriftStatistics();
+    }
+
+    /**
+     * @return decoders held by the prepared engine, {@link #MAX_DECODER_COUNT} while preparing
+     * and 0 when released
+     */
+    public int getDecoderCount() {
+        if (playbackEngine == null) {
+            return 0;
+        }
+        return isPrepared ? playbackEngine.getDecoderCount() : MAX_DECODER_COUNT;
+    }
+
+    public long getMemoryBytes() {
+        return isPrepared ? playbackEngine.getMemoryBytes() : 0;
+    }
+
+    /**
+     * @return whether playback is running or about to start once a seek completes
+     */
+    public boolean isPlaying() {
+        return playbackClock.isRunning() || isStartPending;
     }
 
     public void setProgressUpdateListener(ProgressUpdateListener progressUpdateListener) {
@@ -276,81 +494,174 @@ public class PreviewPlayer implements MediaPlayer.OnCompletionListener {
         return currentBackgroundTrackVolume;
     }
 
+    /**
+     * @return vocal volume with the loudness gain of the vocal track in use applied, as it is played
+     */
+    public float getEffectiveVocalVolume() {
+        return currentVocalVolume * getLoudnessGains().getVocalGain();
+    }
+
+    public float getEffectiveBackgroundTrackVolume() {
+        return currentBackgroundTrackVolume * getLoudnessGains().getBackgroundGain();
+    }
+
+    public LoudnessGains getLoudnessGains() {
+        return isOriginalVocalUsed ? originalVocalLoudnessGains : processedVocalLoudnessGains;
+    }
+
+    /**
+     * Releases the engine once a running progress check has finished. The clock is stopped at
+     * the last position, so the current time can still be read until the next prepare.
+     */
     public void release() {
-        progressThread.pause();
-        executeOnAllPlayers(new PlayerExecuteCommand() {
-            @Override
-            public void execute(SinglePreviewMediaPlayer mediaPlayer) {
-                mediaPlayer.release();
-            }
-        });
+        progressThread.pauseAndAwaitTick();
+        playbackClock.anchor(playbackClock.getPositionMillis(), false);
+        if (playbackEngine != null) {
+            playbackEngine.release();
+            playbackEngine = null;
+        }
+        isStartPending = false;
         isPrepared = false;
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        if (isPrepared) {
-            release();
-            Logger.e(TAG, "PreviewPlayer.release() was not called!");
-        }
-        super.finalize();
+    /**
+     * Releases the player and stops its progress thread.
+     */
+    public void destroy() {
+        release();
+        progressThread.interrupt();
     }
 
     boolean isInPreviewMode() {
         return isInPreviewMode;
     }
 
-    private void initMediaPlayers() throws IOException {
-        initMediaPlayer(backgroundTrackPlayer, recordingStartTimeInDefaultTimeUnit, currentBackgroundTrackVolume);
-        initMediaPlayer(originalVocalPlayer, 0, isOriginalVocalUsed ? currentVocalVolume : 0);
-        initMediaPlayer(processedVocalPlayer, 0, isOriginalVocalUsed ? 0 : currentVocalVolume);
+    /**
+     * @return whether the engine repeats the preview window, so it must not be stopped at its end
+     */
+    boolean isLooping() {
+        return loopEndInDefaultTimeUnit > loopStartInDefaultTimeUnit;
+    }
+
+    private void updateLoopRegion() {
+        if (playbackEngine != null) {
+            applyLoopRegion(isStartPending ? isPendingStartInPreviewMode : isInPreviewMode);
+        }
     }
 
     /**
-     * Method will make sure that media player is fully initialized so calling play will have smallest
-     * delay possible.
+     * Loops the preview window when loop mode is on and playback is in preview mode.
      */
-    private void initMediaPlayer(MediaPlayer mediaPlayer, int startTimeInDefaultTimeUnit, float volume) throws IOException {
-        mediaPlayer.prepare();
-        mediaPlayer.setVolume(0, 0);
-        mediaPlayer.start();
-        mediaPlayer.pause();
-        mediaPlayer.seekTo(startTimeInDefaultTimeUnit);
-        mediaPlayer.setVolume(volume, volume);
+    private void applyLoopRegion(boolean isPreviewMode) {
+        boolean isLooping = isPreviewMode && isPreviewLoopEnabled
+                && previewDurationInDefaultTimeUnit >= MIN_LOOP_DURATION_MILLIS;
+        loopStartInDefaultTimeUnit = previewStartTimeInDefaultTimeUnit;
+        loopEndInDefaultTimeUnit = isLooping ? previewEndTimeInDefaultTimeUnit : previewStartTimeInDefaultTimeUnit;
+        playbackEngine.setLoopRegion(loopStartInDefaultTimeUnit, loopEndInDefaultTimeUnit);
     }
 
-    private void seekTo(int timeInPlayerUnit, final OnCompletionListener onCompletionListener) {
+    /**
+     * A pending start survives when its seek is superseded, playback then starts once the latest
+     * seek completes. The listener is resolved right away in that case.
+     */
+    private void seekAndStart(int timeInPlayerUnit, boolean isPreviewMode,
+                              final OnCompletionListener onCompletionListener) {
+        isStartPending = true;
+        isPendingStartInPreviewMode = isPreviewMode;
+        applyLoopRegion(isPreviewMode);
+        seekTo(timeInPlayerUnit, new OnSeekCompletionListener() {
+            @Override
+            public void onSeekCompleted() {
+                onCompletionListener.onComplete();
+            }
+
+            @Override
+            public void onSeekSuperseded() {
+                onCompletionListener.onComplete();
+            }
+        });
+        progressThread.unPause();
+    }
 
-        OnSinglePreviewPlayerSeekCompleteListener listener = new OnSinglePreviewPlayerSeekCompleteListener() {
+    private void seekTo(int timeInPlayerUnit, OnSeekCompletionListener onSeekCompletionListener) {
+        playbackEngine.seekTo(timeInPlayerUnit, obtainSeekRequest(onSeekCompletionListener));
+    }
 
-            private int mediaPlayersCount = mediaPlayers.length;
+    private void onSeekCompleted() {
+        playbackClock.anchor(playbackEngine.getCurrentPosition(), playbackClock.isRunning());
+        if (isStartPending) {
+            isStartPending = false;
+            startPlayback();
+            isInPreviewMode = isPendingStartInPreviewMode;
+        }
+    }
 
-            @Override
-            public void onSeekComplete(SinglePreviewMediaPlayer mp) {
-                mediaPlayersCount--;
-                if (mediaPlayersCount == 0) {
-                    onCompletionListener.onComplete();
-                }
-                mp.removeListener(this);
+    private SeekRequest obtainSeekRequest(OnSeekCompletionListener onSeekCompletionListener) {
+        SeekRequest seekRequest;
+        synchronized (seekRequestPoolLock) {
+            seekRequest = seekRequestPool;
+            if (seekRequest != null) {
+                seekRequestPool = seekRequest.next;
+                seekRequest.next = null;
             }
-        };
+        }
+        if (seekRequest == null) {
+            seekRequest = new SeekRequest();
+        }
+        seekRequest.onSeekCompletionListener = onSeekCompletionListener;
+        return seekRequest;
+    }
 
-        backgroundTrackPlayer.addOnSeekCompletedListener(listener);
-        originalVocalPlayer.addOnSeekCompletedListener(listener);
-        processedVocalPlayer.addOnSeekCompletedListener(listener);
+    private void recycle(SeekRequest seekRequest) {
+        seekRequest.onSeekCompletionListener = null;
+        synchronized (seekRequestPoolLock) {
+            seekRequest.next = seekRequestPool;
+            seekRequestPool = seekRequest;
+        }
+    }
 
-        backgroundTrackPlayer.seekTo(recordingStartTimeInDefaultTimeUnit + timeInPlayerUnit);
-        originalVocalPlayer.seekTo(timeInPlayerUnit);
-        processedVocalPlayer.seekTo(timeInPlayerUnit);
+    private void startPlayback() {
+        playbackEngine.start();
+        playbackClock.anchor(playbackEngine.getCurrentPosition(), true);
+        outputLatencyInDefaultTimeUnit = playbackEngine.getOutputLatencyMillis();
     }
 
-    private void executeOnAllPlayers(PlayerExecuteCommand playerExecuteCommand) {
-        for (SinglePreviewMediaPlayer mediaPlayer : mediaPlayers) {
-            playerExecuteCommand.execute(mediaPlayer);
+    PlaybackEngine createPlaybackEngine() {
+        switch (playbackEngineType) {
+            case SOFTWARE_MIXER:
+                return new MixingPlaybackEngine(pcmCache, metrics);
+            case MEDIA_PLAYER:
+            default:
+                return new MediaPlayerPlaybackEngine(mediaPlayerPool, metrics);
         }
     }
 
     private int toDefaultTimeUnit(float time, TimeUnit sourceTimeUnit) {
         return (int) TimeUnitConverterUtil.toResultTimeUnitLong(time, sourceTimeUnit, DEFAULT_TIME_UNIT);
     }
+
+    /**
+     * Re-anchors the clock before passing the result on to the caller's listener. Each request is
+     * resolved exactly once and then returned to the pool, so scrubbing does not allocate.
+     */
+    private class SeekRequest implements OnSeekCompletionListener {
+
+        private OnSeekCompletionListener onSeekCompletionListener;
+        private SeekRequest next;
+
+        @Override
+        public void onSeekCompleted() {
+            OnSeekCompletionListener listener = onSeekCompletionListener;
+            recycle(this);
+            PreviewPlayer.this.onSeekCompleted();
+            listener.onSeekCompleted();
+        }
+
+        @Override
+        public void onSeekSuperseded() {
+            OnSeekCompletionListener listener = onSeekCompletionListener;
+            recycle(this);
+            listener.onSeekSuperseded();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,139 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+/**
+ * Keeps at most one native seek in flight per player. A seek requested while a player is still
+ * seeking is remembered as that player's pending target and issued when the running seek
+ * completes; a newer request replaces the pending target, so a player always moves straight to
+ * the latest position instead of working through every intermediate one. The previous request
+ * is reported as superseded right away and the latest one completes once every player is idle.
+ * <p>
+ * Single player seeks correcting drift go through here as well, so a request arriving while one
+ * of them is running waits for it instead of having its completion taken for the requested one.
+ * <p>
+ * Listeners and seek issuing happen outside the lock, the issuer may complete synchronously.
+ */
+class SeekCoalescer {
+
+    private static final int NO_TARGET = -1;
+    private static final int MAX_PLAYER_COUNT = Integer.SIZE;
+
+    interface SeekIssuer {
+        void issueSeek(int playerIndex, int playbackTimeMillis);
+    }
+
+    private final SeekIssuer seekIssuer;
+    private final boolean[] isSeeking;
+    private final int[] pendingTargets;
+
+    private OnSeekCompletionListener currentListener;
+
+    SeekCoalescer(int playerCount, SeekIssuer seekIssuer) {
+        if (playerCount > MAX_PLAYER_COUNT) {
+            throw new IllegalArgumentException("At most " + MAX_PLAYER_COUNT + " players are supported");
+        }
+        this.seekIssuer = seekIssuer;
+        isSeeking = new boolean[playerCount];
+        pendingTargets = new int[playerCount];
+        for (int i = 0; i < playerCount; i++) {
+            pendingTargets[i] = NO_TARGET;
+        }
+    }
+
+    void requestSeek(int playbackTimeMillis, OnSeekCompletionListener listener) {
+        OnSeekCompletionListener supersededListener;
+        int issuedPlayers = 0;
+        synchronized (this) {
+            supersededListener = currentListener;
+            currentListener = listener;
+            for (int i = 0; i < isSeeking.length; i++) {
+                if (isSeeking[i]) {
+                    pendingTargets[i] = playbackTimeMillis;
+                } else {
+                    isSeeking[i] = true;
+                    issuedPlayers |= 1 << i;
+                }
+            }
+        }
+        if (supersededListener != null) {
+            supersededListener.onSeekSuperseded();
+        }
+        for (int i = 0; i < isSeeking.length; i++) {
+            if ((issuedPlayers & 1 << i) != 0) {
+                seekIssuer.issueSeek(i, playbackTimeMillis);
+            }
+        }
+    }
+
+    /**
+     * Seeks only the given player, without a listener. Nothing is issued while that player is
+     * still seeking because its pending target is newer than this correction.
+     *
+     * @return whether the seek was issued
+     */
+    boolean requestPlayerSeek(int playerIndex, int playbackTimeMillis) {
+        synchronized (this) {
+            if (isSeeking[playerIndex]) {
+                return false;
+            }
+            isSeeking[playerIndex] = true;
+        }
+        seekIssuer.issueSeek(playerIndex, playbackTimeMillis);
+        return true;
+    }
+
+    synchronized boolean isSeeking() {
+        return !isIdle();
+    }
+
+    /**
+     * Must be called whenever the player finishes a seek. Completions of seeks that were not
+     * issued by this coalescer are ignored while the player is not seeking.
+     *
+     * @return whether the completion belonged to a seek issued here
+     */
+    boolean onSeekComplete(int playerIndex) {
+        int nextTarget = NO_TARGET;
+        OnSeekCompletionListener completedListener = null;
+        synchronized (this) {
+            if (!isSeeking[playerIndex]) {
+                return false;
+            }
+            if (pendingTargets[playerIndex] != NO_TARGET) {
+                nextTarget = pendingTargets[playerIndex];
+                pendingTargets[playerIndex] = NO_TARGET;
+            } else {
+                isSeeking[playerIndex] = false;
+                if (isIdle()) {
+                    completedListener = currentListener;
+                    currentListener = null;
+                }
+            }
+        }
+        if (nextTarget != NO_TARGET) {
+            seekIssuer.issueSeek(playerIndex, nextTarget);
+        } else if (completedListener != null) {
+            completedListener.onSeekCompleted();
+        }
+        return true;
+    }
+
+    /**
+     * Forgets pending targets and the current request without notifying it, used on release.
+     */
+    synchronized void cancel() {
+        for (int i = 0; i < isSeeking.length; i++) {
+            isSeeking[i] = false;
+            pendingTargets[i] = NO_TARGET;
+        }
+        currentListener = null;
+    }
+
+    private boolean isIdle() {
+        for (boolean isPlayerSeeking : isSeeking) {
+            if (isPlayerSeeking) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
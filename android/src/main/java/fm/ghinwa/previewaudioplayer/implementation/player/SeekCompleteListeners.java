@@ -0,0 +1,46 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+import java.util.Arrays;
+
+/**
+ * Seek completion listeners of one player. The array is copied on every change and never
+ * modified in place, so notifying iterates it without taking a copy while listeners add or
+ * remove themselves.
+ */
+class SeekCompleteListeners {
+
+    private static final OnSinglePreviewPlayerSeekCompleteListener[] NO_LISTENERS =
+            new OnSinglePreviewPlayerSeekCompleteListener[0];
+
+    private volatile OnSinglePreviewPlayerSeekCompleteListener[] listeners = NO_LISTENERS;
+
+    synchronized void add(OnSinglePreviewPlayerSeekCompleteListener listener) {
+        OnSinglePreviewPlayerSeekCompleteListener[] addedListeners = Arrays.copyOf(listeners, listeners.length + 1);
+        addedListeners[addedListeners.length - 1] = listener;
+        listeners = addedListeners;
+    }
+
+    synchronized void remove(OnSinglePreviewPlayerSeekCompleteListener listener) {
+        OnSinglePreviewPlayerSeekCompleteListener[] currentListeners = listeners;
+        for (int i = 0; i < currentListeners.length; i++) {
+            if (currentListeners[i] == listener) {
+                OnSinglePreviewPlayerSeekCompleteListener[] remainingListeners =
+                        new OnSinglePreviewPlayerSeekCompleteListener[currentListeners.length - 1];
+                System.arraycopy(currentListeners, 0, remainingListeners, 0, i);
+                System.arraycopy(currentListeners, i + 1, remainingListeners, i, currentListeners.length - i - 1);
+                listeners = remainingListeners;
+                return;
+            }
+        }
+    }
+
+    void clear() {
+        listeners = NO_LISTENERS;
+    }
+
+    void notifySeekComplete(SinglePreviewMediaPlayer mediaPlayer) {
+        for (OnSinglePreviewPlayerSeekCompleteListener listener : listeners) {
+            listener.onSeekComplete(mediaPlayer);
+        }
+    }
+}
@@ -2,21 +2,17 @@ package fm.ghinwa.previewaudioplayer.implementation.player;
 
 import android.media.MediaPlayer;
 
-import java.util.ArrayList;
-import java.util.List;
-
 
 class SinglePreviewMediaPlayer extends MediaPlayer {
 
-    private List<OnSinglePreviewPlayerSeekCompleteListener> onSeekCompleteListeners;
+    private final SeekCompleteListeners onSeekCompleteListeners = new SeekCompleteListeners();
 
     SinglePreviewMediaPlayer() {
         super();
-        onSeekCompleteListeners = new ArrayList<>();
         super.setOnSeekCompleteListener(new MediaPlayer.OnSeekCompleteListener() {
             @Override
             public void onSeekComplete(MediaPlayer mp) {
-                notifySeekCompleteListeners();
+                onSeekCompleteListeners.notifySeekComplete(SinglePreviewMediaPlayer.this);
             }
         });
     }
@@ -34,16 +30,20 @@ class SinglePreviewMediaPlayer extends MediaPlayer {
         throw new UnsupportedOperationException("Unsupported operation use add listener instead.");
     }
 
+    /**
+     * Returns the player to the Idle state with no listeners, so it can be given new data source.
+     */
+    void resetForReuse() {
+        reset();
+        onSeekCompleteListeners.clear();
+        setOnCompletionListener(null);
+        setOnPreparedListener(null);
+        setOnErrorListener(null);
+    }
+
     @Override
     public void release() {
         super.release();
         onSeekCompleteListeners.clear();
     }
-
-    private void notifySeekCompleteListeners() {
-        List<OnSinglePreviewPlayerSeekCompleteListener> listenersCopy = new ArrayList<>(onSeekCompleteListeners);
-        for (OnSinglePreviewPlayerSeekCompleteListener listener : listenersCopy) {
-            listener.onSeekComplete(this);
-        }
-    }
 }
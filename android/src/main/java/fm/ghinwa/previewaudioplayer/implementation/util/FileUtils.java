@@ -11,17 +11,52 @@ public final class FileUtils {
 
     public static final String FILENAME_MIXED_PREFIX = "mixed";
 
-    private static final String AAC_FORMAT_SUFFIX = ".aac";
+    private static final String EXPORT_CACHE_DIRECTORY_NAME = "exports";
 
     private FileUtils() {
         throw new AssertionError();
     }
 
-    public static String createNewFilePathForFileIfNull(Context context, String prefixForNullPath) throws IOException {
+    /**
+     * Returns a directory with the given name inside the application cache directory, creating it if needed.
+     */
+    public static File getCacheDirectory(Context context, String name) throws IOException {
+        File directory = new File(context.getCacheDir(), name);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create cache directory " + directory.getPath());
+        }
+        return directory;
+    }
+
+    /**
+     * Returns the directory finished exports are kept in. Exports are handed to the user, so they go
+     * next to other exported files when external storage is available.
+     */
+    public static File getExportCacheDirectory(Context context) {
+        File parent = null;
+        if (Environment.getExternalStorageState().equals(Environment.MEDIA_MOUNTED)) {
+            parent = context.getExternalFilesDir(Environment.DIRECTORY_MUSIC);
+        }
+        if (parent == null) {
+            parent = context.getFilesDir();
+        }
+        return new File(parent, EXPORT_CACHE_DIRECTORY_NAME);
+    }
+
+    /**
+     * Returns a cache key that changes whenever the file at the given path is replaced or modified.
+     */
+    public static String createFileCacheKey(String path) {
+        File file = new File(path);
+        return HashUtils.sha1Hex(file.getAbsolutePath() + '|' + file.length() + '|' + file.lastModified());
+    }
+
+    public static String createNewFilePathForFileIfNull(Context context, String prefixForNullPath, String suffix)
+            throws IOException {
         if (Environment.getExternalStorageState().equals(Environment.MEDIA_MOUNTED)) {
             String filename = prefixForNullPath + TimeUnit.SECONDS.toSeconds(System.currentTimeMillis());
             return context.getExternalFilesDir(Environment.DIRECTORY_MUSIC).getPath()
-                    + File.separatorChar + filename + AAC_FORMAT_SUFFIX;
+                    + File.separatorChar + filename + suffix;
         } else {
             throw new IOException("External storage not found.");
         }
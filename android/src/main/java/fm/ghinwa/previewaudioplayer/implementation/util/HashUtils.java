@@ -0,0 +1,37 @@
+package fm.ghinwa.previewaudioplayer.implementation.util;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public final class HashUtils {
+
+    private static final String SHA_1 = "SHA-1";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private HashUtils() {
+        throw new AssertionError();
+    }
+
+    public static String sha1Hex(String value) {
+        return toHex(newSha1Digest().digest(value.getBytes(UTF_8)));
+    }
+
+    public static MessageDigest newSha1Digest() {
+        try {
+            return MessageDigest.getInstance(SHA_1);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,116 @@
+package fm.ghinwa.previewaudioplayer.implementation.waveform;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Read-only view of a multi-resolution min/max peak file. Level 0 holds one peak per
+ * baseFramesPerPeak frames, every next level covers twice as many frames per peak.
+ * <p>
+ * File layout (big endian): magic, version, sample rate, base frames per peak, level count,
+ * peak count of each level, then peaks of each level as (min, max) pairs of 16 bit samples.
+ */
+public class PeakPyramid {
+
+    static final int MAGIC = 0x5041504B;
+    static final int VERSION = 1;
+
+    private static final int HEADER_INTS = 5;
+    private static final int BYTES_PER_INT = 4;
+    private static final int BYTES_PER_PEAK = 4;
+    private static final float SAMPLE_SCALE = 1f / 32768;
+
+    private final ByteBuffer buffer;
+    private final int sampleRate;
+    private final int baseFramesPerPeak;
+    private final int[] levelPeakCounts;
+    private final int[] levelOffsets;
+
+    private PeakPyramid(ByteBuffer buffer, int sampleRate, int baseFramesPerPeak, int[] levelPeakCounts, int[] levelOffsets) {
+        this.buffer = buffer;
+        this.sampleRate = sampleRate;
+        this.baseFramesPerPeak = baseFramesPerPeak;
+        this.levelPeakCounts = levelPeakCounts;
+        this.levelOffsets = levelOffsets;
+    }
+
+    public static PeakPyramid wrap(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_INTS * BYTES_PER_INT
+                || buffer.getInt(0) != MAGIC || buffer.getInt(BYTES_PER_INT) != VERSION) {
+            throw new IOException("Invalid peak file");
+        }
+        int sampleRate = buffer.getInt(2 * BYTES_PER_INT);
+        int baseFramesPerPeak = buffer.getInt(3 * BYTES_PER_INT);
+        int levelCount = buffer.getInt(4 * BYTES_PER_INT);
+        if (sampleRate <= 0 || baseFramesPerPeak <= 0 || levelCount <= 0) {
+            throw new IOException("Invalid peak file");
+        }
+
+        int[] levelPeakCounts = new int[levelCount];
+        int[] levelOffsets = new int[levelCount];
+        int offset = (HEADER_INTS + levelCount) * BYTES_PER_INT;
+        for (int level = 0; level < levelCount; level++) {
+            levelPeakCounts[level] = buffer.getInt((HEADER_INTS + level) * BYTES_PER_INT);
+            levelOffsets[level] = offset;
+            offset += levelPeakCounts[level] * BYTES_PER_PEAK;
+        }
+        if (offset != buffer.capacity()) {
+            throw new IOException("Truncated peak file");
+        }
+        return new PeakPyramid(buffer, sampleRate, baseFramesPerPeak, levelPeakCounts, levelOffsets);
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Number of frames covered by the pyramid, rounded up to whole base peaks.
+     */
+    public long getFrameCount() {
+        return (long) levelPeakCounts[0] * baseFramesPerPeak;
+    }
+
+    /**
+     * Aggregates peaks of frames in [startFrame, endFrame) into pixelCount pixels, reading from
+     * the coarsest level that still has at least one peak per pixel.
+     */
+    public Waveform getWaveform(long startFrame, long endFrame, int pixelCount) {
+        float[] minimums = new float[pixelCount];
+        float[] maximums = new float[pixelCount];
+        if (pixelCount <= 0 || endFrame <= startFrame) {
+            return new Waveform(minimums, maximums);
+        }
+
+        double framesPerPixel = (double) (endFrame - startFrame) / pixelCount;
+        int level = 0;
+        while (level + 1 < levelPeakCounts.length && framesPerPeak(level + 1) <= framesPerPixel) {
+            level++;
+        }
+        long framesPerPeak = framesPerPeak(level);
+        int peakCount = levelPeakCounts[level];
+        int levelOffset = levelOffsets[level];
+
+        for (int pixel = 0; pixel < pixelCount; pixel++) {
+            long pixelStartFrame = startFrame + (long) (pixel * framesPerPixel);
+            long pixelEndFrame = startFrame + (long) ((pixel + 1) * framesPerPixel);
+            int firstPeak = (int) Math.min(peakCount, pixelStartFrame / framesPerPeak);
+            int lastPeak = (int) Math.min(peakCount, Math.max(firstPeak + 1, (pixelEndFrame + framesPerPeak - 1) / framesPerPeak));
+
+            int minimum = 0;
+            int maximum = 0;
+            for (int peak = firstPeak; peak < lastPeak; peak++) {
+                int peakOffset = levelOffset + peak * BYTES_PER_PEAK;
+                minimum = Math.min(minimum, buffer.getShort(peakOffset));
+                maximum = Math.max(maximum, buffer.getShort(peakOffset + 2));
+            }
+            minimums[pixel] = minimum * SAMPLE_SCALE;
+            maximums[pixel] = maximum * SAMPLE_SCALE;
+        }
+        return new Waveform(minimums, maximums);
+    }
+
+    private long framesPerPeak(int level) {
+        return (long) baseFramesPerPeak << level;
+    }
+}
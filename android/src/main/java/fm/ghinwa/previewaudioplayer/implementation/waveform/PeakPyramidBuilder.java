@@ -0,0 +1,111 @@
+package fm.ghinwa.previewaudioplayer.implementation.waveform;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Accumulates min/max peaks of a mono stream and writes them as a {@link PeakPyramid} file.
+ * Every level above the base one merges pairs of peaks of the level below.
+ */
+public class PeakPyramidBuilder {
+
+    private final int sampleRate;
+    private final int baseFramesPerPeak;
+
+    private short[] basePeaks = new short[1024];
+    private int basePeakCount;
+
+    private short currentMinimum = Short.MAX_VALUE;
+    private short currentMaximum = Short.MIN_VALUE;
+    private int currentFrames;
+
+    public PeakPyramidBuilder(int sampleRate, int baseFramesPerPeak) {
+        this.sampleRate = sampleRate;
+        this.baseFramesPerPeak = baseFramesPerPeak;
+    }
+
+    public void addFrames(short[] monoSamples, int frameCount) {
+        for (int i = 0; i < frameCount; i++) {
+            short sample = monoSamples[i];
+            if (sample < currentMinimum) {
+                currentMinimum = sample;
+            }
+            if (sample > currentMaximum) {
+                currentMaximum = sample;
+            }
+            if (++currentFrames == baseFramesPerPeak) {
+                flushPeak();
+            }
+        }
+    }
+
+    public void writeTo(File file) throws IOException {
+        if (currentFrames > 0) {
+            flushPeak();
+        }
+
+        short[][] levels = buildLevels();
+        DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            outputStream.writeInt(PeakPyramid.MAGIC);
+            outputStream.writeInt(PeakPyramid.VERSION);
+            outputStream.writeInt(sampleRate);
+            outputStream.writeInt(baseFramesPerPeak);
+            outputStream.writeInt(levels.length);
+            for (short[] level : levels) {
+                outputStream.writeInt(level.length / 2);
+            }
+            for (short[] level : levels) {
+                for (short value : level) {
+                    outputStream.writeShort(value);
+                }
+            }
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private void flushPeak() {
+        if (basePeaks.length < 2 * basePeakCount + 2) {
+            basePeaks = Arrays.copyOf(basePeaks, basePeaks.length * 2);
+        }
+        basePeaks[2 * basePeakCount] = currentMinimum;
+        basePeaks[2 * basePeakCount + 1] = currentMaximum;
+        basePeakCount++;
+
+        currentMinimum = Short.MAX_VALUE;
+        currentMaximum = Short.MIN_VALUE;
+        currentFrames = 0;
+    }
+
+    private short[][] buildLevels() {
+        int levelCount = 1;
+        for (int count = basePeakCount; count > 1; count = (count + 1) / 2) {
+            levelCount++;
+        }
+
+        short[][] levels = new short[levelCount][];
+        levels[0] = Arrays.copyOf(basePeaks, 2 * basePeakCount);
+        for (int level = 1; level < levelCount; level++) {
+            short[] below = levels[level - 1];
+            int belowCount = below.length / 2;
+            short[] current = new short[2 * ((belowCount + 1) / 2)];
+            for (int peak = 0; peak < belowCount; peak += 2) {
+                short minimum = below[2 * peak];
+                short maximum = below[2 * peak + 1];
+                if (peak + 1 < belowCount) {
+                    minimum = (short) Math.min(minimum, below[2 * peak + 2]);
+                    maximum = (short) Math.max(maximum, below[2 * peak + 3]);
+                }
+                current[peak] = minimum;
+                current[peak + 1] = maximum;
+            }
+            levels[level] = current;
+        }
+        return levels;
+    }
+}
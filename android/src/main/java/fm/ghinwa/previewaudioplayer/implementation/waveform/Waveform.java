@@ -0,0 +1,27 @@
+package fm.ghinwa.previewaudioplayer.implementation.waveform;
+
+/**
+ * Minimum and maximum sample value for each pixel of a waveform, normalised to [-1, 1].
+ */
+public class Waveform {
+
+    private final float[] minimums;
+    private final float[] maximums;
+
+    public Waveform(float[] minimums, float[] maximums) {
+        this.minimums = minimums;
+        this.maximums = maximums;
+    }
+
+    public int getPixelCount() {
+        return minimums.length;
+    }
+
+    public float[] getMinimums() {
+        return minimums;
+    }
+
+    public float[] getMaximums() {
+        return maximums;
+    }
+}
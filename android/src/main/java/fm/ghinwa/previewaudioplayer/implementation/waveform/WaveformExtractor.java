@@ -0,0 +1,112 @@
+package fm.ghinwa.previewaudioplayer.implementation.waveform;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import fm.ghinwa.previewaudioplayer.implementation.audio.PcmDecoder;
+import fm.ghinwa.previewaudioplayer.implementation.audio.PcmTrackReader;
+import fm.ghinwa.previewaudioplayer.implementation.loudness.LoudnessCache;
+import fm.ghinwa.previewaudioplayer.implementation.loudness.LoudnessMeter;
+import fm.ghinwa.previewaudioplayer.implementation.util.FileUtils;
+import fm.ghinwa.previewaudioplayer.implementation.util.Logger;
+
+/**
+ * Computes waveforms of audio files. Each file is decoded once into a {@link PeakPyramid}
+ * stored in the cache directory under a key built from path, size and modification time;
+ * later requests are served from the memory mapped peak file. The loudness of the file is
+ * measured while it is decoded and stored in the {@link LoudnessCache}.
+ * Blocking, must not be called on the main or JS thread.
+ */
+public class WaveformExtractor {
+
+    private static final String TAG = WaveformExtractor.class.getSimpleName();
+
+    private static final String CACHE_DIRECTORY_NAME = "waveforms";
+    private static final String PEAK_FILE_SUFFIX = ".peaks";
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private static final int BASE_FRAMES_PER_PEAK = 256;
+    private static final int FRAMES_PER_CHUNK = 4096;
+    private static final int MONO = 1;
+
+    private final Context context;
+    private final LoudnessCache loudnessCache;
+
+    public WaveformExtractor(Context context, LoudnessCache loudnessCache) {
+        this.context = context;
+        this.loudnessCache = loudnessCache;
+    }
+
+    /**
+     * @param endTimeMillis end of the range, zero or less for the end of the track
+     */
+    public Waveform getWaveform(String path, long startTimeMillis, long endTimeMillis, int pixelCount) throws IOException {
+        PeakPyramid peakPyramid = loadPeakPyramid(path);
+        long startFrame = Math.max(0, millisToFrames(startTimeMillis, peakPyramid.getSampleRate()));
+        long endFrame = endTimeMillis > 0
+                ? millisToFrames(endTimeMillis, peakPyramid.getSampleRate())
+                : peakPyramid.getFrameCount();
+        return peakPyramid.getWaveform(startFrame, endFrame, pixelCount);
+    }
+
+    private synchronized PeakPyramid loadPeakPyramid(String path) throws IOException {
+        File peakFile = new File(FileUtils.getCacheDirectory(context, CACHE_DIRECTORY_NAME),
+                FileUtils.createFileCacheKey(path) + PEAK_FILE_SUFFIX);
+        if (peakFile.exists()) {
+            try {
+                return mapPeakFile(peakFile);
+            } catch (IOException e) {
+                Logger.e(TAG, "Discarding corrupted peak file " + peakFile.getName() + ": " + e.getMessage());
+                peakFile.delete();
+            }
+        }
+        computePeakFile(path, peakFile);
+        return mapPeakFile(peakFile);
+    }
+
+    private void computePeakFile(String path, File peakFile) throws IOException {
+        PcmDecoder decoder = new PcmDecoder(path);
+        PcmTrackReader reader = new PcmTrackReader(decoder, decoder.getSampleRate(), MONO);
+        File temporaryFile = new File(peakFile.getPath() + TEMPORARY_FILE_SUFFIX);
+        try {
+            PeakPyramidBuilder builder = new PeakPyramidBuilder(reader.getOutputSampleRate(), BASE_FRAMES_PER_PEAK);
+            LoudnessMeter loudnessMeter = new LoudnessMeter(reader.getOutputSampleRate(), MONO);
+            short[] chunk = new short[FRAMES_PER_CHUNK];
+            int frames;
+            while ((frames = reader.read(chunk, FRAMES_PER_CHUNK)) != PcmTrackReader.END_OF_STREAM) {
+                builder.addFrames(chunk, frames);
+                loudnessMeter.add(chunk, frames);
+            }
+            builder.writeTo(temporaryFile);
+            if (!temporaryFile.renameTo(peakFile)) {
+                throw new IOException("Unable to store peak file " + peakFile.getPath());
+            }
+            loudnessCache.put(path, loudnessMeter.getIntegratedLoudness());
+        } catch (RuntimeException e) {
+            throw new IOException("Error while decoding " + path, e);
+        } finally {
+            temporaryFile.delete();
+            reader.release();
+        }
+    }
+
+    private static PeakPyramid mapPeakFile(File peakFile) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(peakFile, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return PeakPyramid.wrap(buffer);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static long millisToFrames(long millis, int sampleRate) {
+        return millis * sampleRate / 1000L;
+    }
+}
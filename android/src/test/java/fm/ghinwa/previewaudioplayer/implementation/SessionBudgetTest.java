@@ -0,0 +1,95 @@
+package fm.ghinwa.previewaudioplayer.implementation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SessionBudgetTest {
+
+    private final SessionBudget budget = new SessionBudget();
+
+    @Before
+    public void setUp() {
+        budget.setLimits(6, 1000);
+    }
+
+    @Test
+    public void testNothingDemotedWithinBudget() {
+        List<FakeConsumer> consumers = Collections.singletonList(new FakeConsumer("a", 3, 100, false));
+
+        assertTrue(budget.selectForDemotion(consumers, 3, 100).isEmpty());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedDemotedFirst() {
+        FakeConsumer oldest = new FakeConsumer("oldest", 3, 0, false);
+        FakeConsumer newest = new FakeConsumer("newest", 3, 0, false);
+
+        assertEquals("[oldest]", budget.selectForDemotion(Arrays.asList(oldest, newest), 3, 0).toString());
+    }
+
+    @Test
+    public void testPlayingSessionsDemotedLast() {
+        FakeConsumer playing = new FakeConsumer("playing", 3, 0, true);
+        FakeConsumer idle = new FakeConsumer("idle", 3, 0, false);
+
+        assertEquals("[idle]", budget.selectForDemotion(Arrays.asList(playing, idle), 3, 0).toString());
+        assertEquals("[idle, playing]", budget.selectForDemotion(Arrays.asList(playing, idle), 6, 0).toString());
+    }
+
+    @Test
+    public void testMemoryLimit() {
+        FakeConsumer first = new FakeConsumer("first", 2, 600, false);
+        FakeConsumer second = new FakeConsumer("second", 2, 300, false);
+
+        assertEquals("[first]", budget.selectForDemotion(Arrays.asList(first, second), 2, 400).toString());
+    }
+
+    @Test
+    public void testRequesterOverBudgetAloneDemotesEverything() {
+        FakeConsumer consumer = new FakeConsumer("a", 1, 0, false);
+
+        assertEquals("[a]", budget.selectForDemotion(Collections.singletonList(consumer), 10, 0).toString());
+    }
+
+    private static class FakeConsumer implements SessionBudget.Consumer {
+
+        private final String name;
+        private final int decoderCount;
+        private final long memoryBytes;
+        private final boolean isPlaying;
+
+        FakeConsumer(String name, int decoderCount, long memoryBytes, boolean isPlaying) {
+            this.name = name;
+            this.decoderCount = decoderCount;
+            this.memoryBytes = memoryBytes;
+            this.isPlaying = isPlaying;
+        }
+
+        @Override
+        public int getDecoderCount() {
+            return decoderCount;
+        }
+
+        @Override
+        public long getMemoryBytes() {
+            return memoryBytes;
+        }
+
+        @Override
+        public boolean isPlaying() {
+            return isPlaying;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package fm.ghinwa.previewaudioplayer.implementation.analysis;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CrossCorrelatorTest {
+
+    private static final int MAX_LAG = 20;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testCorrelate_findsShiftInSingleBlock() throws Exception {
+        double[] searched = randomSignal(300 + 2 * MAX_LAG);
+        double[] signal = shift(searched, 300, 7);
+
+        double[] correlation = new CrossCorrelator(executor).correlate(signal, searched, MAX_LAG);
+
+        assertEquals(7 + MAX_LAG, peakIndex(correlation));
+    }
+
+    @Test
+    public void testCorrelate_blocksSumToSingleBlockResult() throws Exception {
+        double[] searched = randomSignal(1000 + 2 * MAX_LAG);
+        double[] signal = shift(searched, 1000, -12);
+
+        double[] whole = new CrossCorrelator(executor).correlate(signal, searched, MAX_LAG);
+        double[] blocked = new CrossCorrelator(executor, 128).correlate(signal, searched, MAX_LAG);
+
+        assertEquals(-12 + MAX_LAG, peakIndex(blocked));
+        for (int i = 0; i < whole.length; i++) {
+            assertEquals(whole[i], blocked[i], 1e-6);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCorrelate_rejectsShortSearchedSignal() throws Exception {
+        new CrossCorrelator(executor).correlate(new double[100], new double[100 + MAX_LAG], MAX_LAG);
+    }
+
+    @Test
+    public void testToEstimate_interpolatesBetweenHops() {
+        double[] correlation = new double[2 * MAX_LAG + 1];
+        correlation[MAX_LAG - 4] = 10;
+        correlation[MAX_LAG - 3] = 10;
+
+        AlignmentEstimate estimate = AlignmentAnalyzer.toEstimate(correlation, MAX_LAG);
+
+        assertEquals(-3.5 * AlignmentAnalyzer.HOP_FRAMES * 1000 / AlignmentAnalyzer.ENVELOPE_SAMPLE_RATE,
+                estimate.getOffsetMillis(), 1);
+        assertTrue(estimate.getConfidence() > 0);
+    }
+
+    @Test
+    public void testToEstimate_flatCorrelationIsNotReliable() {
+        AlignmentEstimate estimate = AlignmentAnalyzer.toEstimate(new double[2 * MAX_LAG + 1], MAX_LAG);
+
+        assertFalse(estimate.isReliable());
+    }
+
+    /**
+     * @return signal[i] = searched[i + lag + MAX_LAG]
+     */
+    private static double[] shift(double[] searched, int length, int lag) {
+        double[] signal = new double[length];
+        System.arraycopy(searched, lag + MAX_LAG, signal, 0, length);
+        return signal;
+    }
+
+    private static double[] randomSignal(int length) {
+        Random random = new Random(42);
+        double[] signal = new double[length];
+        for (int i = 0; i < length; i++) {
+            signal[i] = random.nextGaussian();
+        }
+        return signal;
+    }
+
+    private static int peakIndex(double[] values) {
+        int peak = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[peak]) {
+                peak = i;
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,48 @@
+package fm.ghinwa.previewaudioplayer.implementation.analysis;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OnsetEnvelopeTest {
+
+    @Test
+    public void testAdd_peaksWhereEnergyRises() {
+        OnsetEnvelope envelope = new OnsetEnvelope(4, 1);
+        envelope.add(new short[8], 8);
+        envelope.add(new short[]{1000, -1000, 1000, -1000, 1000, -1000}, 6);
+        envelope.add(new short[]{1000, -1000, 0, 0, 0, 0}, 6);
+
+        double[] values = envelope.toArray();
+
+        assertEquals(5, envelope.getLength());
+        assertEquals(5, values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (i != 2) {
+                assertTrue(values[2] > values[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testToArray_removesMean() {
+        OnsetEnvelope envelope = new OnsetEnvelope(2, 2);
+        envelope.add(new short[]{0, 0, 100, 100, 0, 0, 3000, 3000, 5, 5}, 10);
+
+        double sum = 0;
+        for (double value : envelope.toArray()) {
+            sum += value;
+        }
+
+        assertEquals(0, sum, 1e-9);
+    }
+
+    @Test
+    public void testToArray_dropsIncompleteHop() {
+        OnsetEnvelope envelope = new OnsetEnvelope(4, 4);
+        envelope.add(new short[6], 6);
+
+        assertEquals(1, envelope.toArray().length);
+    }
+}
@@ -0,0 +1,27 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdtsHeaderTest {
+
+    @Test
+    public void testWrite_stereo44100() {
+        byte[] header = new byte[AdtsHeader.LENGTH];
+
+        AdtsHeader.write(header, 371, 44100, 2);
+
+        assertArrayEquals(new byte[]{
+                (byte) 0xFF, (byte) 0xF1, (byte) 0x50, (byte) 0x80, (byte) 0x2F, (byte) 0x5F, (byte) 0xFC
+        }, header);
+    }
+
+    @Test
+    public void testIsSampleRateSupported() {
+        assertTrue(AdtsHeader.isSampleRateSupported(48000));
+        assertFalse(AdtsHeader.isSampleRateSupported(44000));
+    }
+}
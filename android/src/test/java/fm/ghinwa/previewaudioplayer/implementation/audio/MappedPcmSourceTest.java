@@ -0,0 +1,42 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+import org.junit.Test;
+
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MappedPcmSourceTest {
+
+    private static final int SAMPLE_RATE = 1000;
+
+    private final MappedPcmSource source = new MappedPcmSource(
+            ShortBuffer.wrap(new short[]{1, -1, 2, -2, 3, -3}), SAMPLE_RATE, 2);
+
+    @Test
+    public void testRead_padsEndWithSilence() {
+        short[] destination = new short[8];
+
+        int frames = source.read(destination, 4);
+
+        assertEquals(3, frames);
+        assertArrayEquals(new short[]{1, -1, 2, -2, 3, -3, 0, 0}, destination);
+        assertEquals(PcmSource.END_OF_STREAM, source.read(destination, 4));
+    }
+
+    @Test
+    public void testSeekTo_negativeTimeReturnsLeadingSilence() {
+        short[] destination = new short[6];
+
+        source.seekTo(-2000);
+        source.read(destination, 3);
+
+        assertArrayEquals(new short[]{0, 0, 0, 0, 1, -1}, destination);
+    }
+
+    @Test
+    public void testGetDurationUs() {
+        assertEquals(3000, source.getDurationUs());
+    }
+}
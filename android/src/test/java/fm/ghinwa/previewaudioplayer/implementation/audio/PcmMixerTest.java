@@ -0,0 +1,69 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class PcmMixerTest {
+
+    @Test
+    public void testMix_appliesGains() {
+        short[] background = {1000, -1000, 400};
+        short[] vocal = {200, 200, -400};
+        short[] output = new short[3];
+
+        PcmMixer.mix(background, 0.5f, vocal, 1f, output, 3);
+
+        assertArrayEquals(new short[]{700, -300, -200}, output);
+    }
+
+    @Test
+    public void testMix_clipsToShortRange() {
+        short[] background = {Short.MAX_VALUE, Short.MIN_VALUE};
+        short[] vocal = {Short.MAX_VALUE, Short.MIN_VALUE};
+        short[] output = new short[2];
+
+        PcmMixer.mix(background, 1f, vocal, 1f, output, 2);
+
+        assertArrayEquals(new short[]{Short.MAX_VALUE, Short.MIN_VALUE}, output);
+    }
+
+    @Test
+    public void testMixMonoVocal_addsVocalToEveryChannel() {
+        short[] background = {1000, -1000, 400, 200};
+        short[] vocal = {200, -400};
+
+        PcmMixer.mixMonoVocal(background, 0.5f, vocal, 1f, background, 2, 2);
+
+        assertArrayEquals(new short[]{700, -300, -200, -300}, background);
+    }
+
+    @Test
+    public void testApplyFades_rampsInAndOut() {
+        short[] samples = {1000, 1000, 1000, 1000, 1000, 1000, 1000, 1000};
+
+        PcmMixer.applyFades(samples, 1, 8, 0, 8, 4);
+
+        assertArrayEquals(new short[]{0, 250, 500, 750, 1000, 750, 500, 250}, samples);
+    }
+
+    @Test
+    public void testApplyFades_skipsChunksOutsideFadeRegions() {
+        short[] samples = {1000, 1000};
+
+        PcmMixer.applyFades(samples, 2, 1, 10, 0, 4);
+
+        assertArrayEquals(new short[]{1000, 1000}, samples);
+    }
+
+    @Test
+    public void testCrossfade_rampsFromOutgoingToIncoming() {
+        short[] from = {1000, 1000, 1000, 1000, 1000};
+        short[] to = {-1000, -1000, -1000, -1000, -1000};
+        short[] output = new short[5];
+
+        PcmMixer.crossfade(from, to, output, 1, 5, 0, 4);
+
+        assertArrayEquals(new short[]{1000, 500, 0, -500, -1000}, output);
+    }
+}
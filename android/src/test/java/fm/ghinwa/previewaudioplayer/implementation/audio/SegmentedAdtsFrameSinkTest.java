@@ -0,0 +1,92 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+import android.media.MediaCodec;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedAdtsFrameSinkTest {
+
+    private static final int FRAME_SIZE = 10;
+
+    private final RecordingSegmentWriter writer = new RecordingSegmentWriter();
+
+    @Test
+    public void testWriteFrame_splitsIntoSegmentsOfWholeFrames() throws IOException {
+        SegmentedAdtsFrameSink sink = new SegmentedAdtsFrameSink(writer, 44100, 2, 47);
+
+        for (int i = 0; i < 5; i++) {
+            writeFrame(sink);
+        }
+        sink.finish();
+        sink.release();
+
+        assertEquals("[0:34@0, 1:34@46439, 2:17@92879]", writer.segments.toString());
+        assertTrue(writer.isReleased);
+    }
+
+    @Test
+    public void testEverySegmentStartsWithAdtsHeader() throws IOException {
+        SegmentedAdtsFrameSink sink = new SegmentedAdtsFrameSink(writer, 44100, 2, 47);
+
+        for (int i = 0; i < 3; i++) {
+            writeFrame(sink);
+        }
+        sink.finish();
+
+        for (ByteArrayOutputStream stream : writer.streams) {
+            byte[] bytes = stream.toByteArray();
+            assertEquals((byte) 0xFF, bytes[0]);
+            assertEquals((byte) 0xF1, bytes[1]);
+        }
+    }
+
+    @Test
+    public void testFinish_withoutFramesWritesNoSegment() throws IOException {
+        SegmentedAdtsFrameSink sink = new SegmentedAdtsFrameSink(writer, 44100, 2, 47);
+
+        sink.finish();
+
+        assertTrue(writer.segments.isEmpty());
+    }
+
+    private static void writeFrame(SegmentedAdtsFrameSink sink) throws IOException {
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        info.set(0, FRAME_SIZE, 0, 0);
+        sink.writeFrame(ByteBuffer.allocate(FRAME_SIZE), info);
+    }
+
+    private static class RecordingSegmentWriter implements AdtsSegmentWriter {
+
+        private final List<String> segments = new ArrayList<>();
+        private final List<ByteArrayOutputStream> streams = new ArrayList<>();
+        private boolean isReleased;
+
+        @Override
+        public OutputStream beginSegment(int index) {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            streams.add(stream);
+            return stream;
+        }
+
+        @Override
+        public void endSegment(int index, long size, long startTimeUs, long durationUs) {
+            assertEquals(size, streams.get(index).size());
+            segments.add(index + ":" + size + "@" + startTimeUs);
+        }
+
+        @Override
+        public void release() {
+            isReleased = true;
+        }
+    }
+}
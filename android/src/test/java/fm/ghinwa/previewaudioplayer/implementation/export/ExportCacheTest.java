@@ -0,0 +1,156 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ExportCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ExportCache exportCache;
+    private File backgroundFile;
+    private File vocalFile;
+
+    @Before
+    public void setUp() throws IOException {
+        exportCache = new ExportCache(new File(temporaryFolder.getRoot(), "exports"));
+        backgroundFile = writeFile("background.m4a", new byte[]{1, 2, 3});
+        vocalFile = writeFile("vocal.m4a", new byte[]{4, 5, 6});
+    }
+
+    @Test
+    public void testCreateKey_isStableForSameInputs() throws IOException {
+        assertEquals(exportCache.createKey(createConfiguration(1f, EncodingProfile.DEFAULT)),
+                exportCache.createKey(createConfiguration(1f, EncodingProfile.DEFAULT)));
+    }
+
+    @Test
+    public void testCreateKey_changesWithSettings() throws IOException {
+        String key = exportCache.createKey(createConfiguration(1f, EncodingProfile.DEFAULT));
+
+        assertNotEquals(key, exportCache.createKey(createConfiguration(0.5f, EncodingProfile.DEFAULT)));
+        assertNotEquals(key, exportCache.createKey(
+                createConfiguration(1f, EncodingProfile.DEFAULT.withChannelCount(1))));
+    }
+
+    @Test
+    public void testCreateKey_endsWithContainerSuffix() throws IOException {
+        assertTrue(exportCache.createKey(createConfiguration(1f, EncodingProfile.DEFAULT)).endsWith(".aac"));
+        assertTrue(exportCache.createKey(createConfiguration(1f, EncodingProfile.ARCHIVE_HIGH)).endsWith(".m4a"));
+    }
+
+    @Test
+    public void testCreateKey_changesWithContent() throws IOException {
+        String key = exportCache.createKey(createConfiguration(1f, EncodingProfile.DEFAULT));
+
+        writeFile("vocal.m4a", new byte[]{4, 5, 7, 8});
+
+        assertNotEquals(key, exportCache.createKey(createConfiguration(1f, EncodingProfile.DEFAULT)));
+    }
+
+    @Test
+    public void testCopyTo_copiesStoredEntry() throws IOException {
+        File outputFile = new File(temporaryFolder.getRoot(), "output.aac");
+        assertFalse(exportCache.copyTo("key", outputFile));
+
+        put("key", 10);
+
+        assertTrue(exportCache.copyTo("key", outputFile));
+        assertEquals(10, outputFile.length());
+    }
+
+    @Test
+    public void testGet_dropsTruncatedEntry() throws IOException {
+        File cachedFile = put("key", 10);
+        RandomAccessFile file = new RandomAccessFile(cachedFile, "rw");
+        try {
+            file.setLength(5);
+        } finally {
+            file.close();
+        }
+
+        assertNull(exportCache.get("key"));
+        assertEquals(false, cachedFile.exists());
+    }
+
+    @Test
+    public void testPut_removesLeastRecentlyUsedEntries() throws IOException {
+        exportCache.setMaxSizeBytes(25);
+        put("first", 10);
+        put("second", 10);
+        assertNotNull(exportCache.get("first"));
+
+        put("third", 10);
+
+        assertNotNull(exportCache.get("first"));
+        assertNull(exportCache.get("second"));
+        assertNotNull(exportCache.get("third"));
+    }
+
+    @Test
+    public void testPut_keepsEntryBeingStored() throws IOException {
+        exportCache.setMaxSizeBytes(15);
+        put("first", 10);
+
+        put("second", 10);
+
+        assertNull(exportCache.get("first"));
+        assertNotNull(exportCache.get("second"));
+    }
+
+    @Test
+    public void testPut_skipsExportOverBudget() throws IOException {
+        exportCache.setMaxSizeBytes(5);
+        File finishedFile = writeFile("finished.aac", new byte[10]);
+
+        assertFalse(exportCache.put("key", finishedFile));
+
+        assertNull(exportCache.get("key"));
+        assertEquals(10, finishedFile.length());
+    }
+
+    private File put(String key, int length) throws IOException {
+        File finishedFile = new File(temporaryFolder.getRoot(), key + ".finished");
+        FileOutputStream outputStream = new FileOutputStream(finishedFile);
+        try {
+            for (int i = 0; i < length; i++) {
+                outputStream.write(i);
+            }
+        } finally {
+            outputStream.close();
+        }
+        assertTrue(exportCache.put(key, finishedFile));
+        return exportCache.get(key);
+    }
+
+    private ExportingConfiguration createConfiguration(float vocalTrackVolume, EncodingProfile encodingProfile) {
+        return new ExportingConfiguration(backgroundFile.getPath(), vocalFile.getPath(),
+                vocalTrackVolume, 1f, 0, 0, 30000, 500, encodingProfile);
+    }
+
+    private File writeFile(String name, byte[] content) throws IOException {
+        File file = new File(temporaryFolder.getRoot(), name);
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(content);
+        } finally {
+            outputStream.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,58 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExportProgressTrackerTest {
+
+    private static class ManualExportProgressTracker extends ExportProgressTracker {
+
+        private long timeMillis;
+
+        ManualExportProgressTracker(long minimumIntervalMillis) {
+            super(minimumIntervalMillis);
+        }
+
+        @Override
+        protected long uptimeMillis() {
+            return timeMillis;
+        }
+    }
+
+    private final ManualExportProgressTracker tracker = new ManualExportProgressTracker(250);
+
+    @Test
+    public void testUpdate_estimatesRemainingTimeFromAverageSpeed() {
+        tracker.start();
+        tracker.timeMillis = 1000;
+
+        assertTrue(tracker.update(250, 1000));
+        assertEquals(0.25f, tracker.getFraction(), 0.0001f);
+        assertEquals(3000, tracker.getRemainingTimeMillis());
+    }
+
+    @Test
+    public void testUpdate_throttlesReports() {
+        tracker.start();
+        tracker.timeMillis = 300;
+        assertTrue(tracker.update(100, 1000));
+
+        tracker.timeMillis = 400;
+        assertFalse(tracker.update(200, 1000));
+
+        tracker.timeMillis = 550;
+        assertTrue(tracker.update(300, 1000));
+    }
+
+    @Test
+    public void testUpdate_unknownTotalHasNoEstimate() {
+        tracker.start();
+        tracker.timeMillis = 1000;
+
+        assertTrue(tracker.update(500, 0));
+        assertEquals(ExportProgressTracker.UNKNOWN_TIME, tracker.getRemainingTimeMillis());
+    }
+}
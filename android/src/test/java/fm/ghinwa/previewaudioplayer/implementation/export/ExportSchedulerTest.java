@@ -0,0 +1,221 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnExportJobStatusListener;
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnExportSegmentListener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExportSchedulerTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final FakeExporter exporter = new FakeExporter();
+    private final ExportScheduler scheduler = new ExportScheduler(exporter, 1);
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testSubmit_mergesIdenticalRequests() throws InterruptedException {
+        exporter.blockUntilInterrupted("blocking");
+        scheduler.submit(configuration("blocking"), "blocking.aac", ExportPriority.USER_FACING, new FinishListener());
+        FinishListener firstListener = new FinishListener();
+        FinishListener secondListener = new FinishListener();
+
+        int firstJobId = scheduler.submit(configuration("song"), "first.aac", ExportPriority.USER_FACING, firstListener);
+        int secondJobId = scheduler.submit(configuration("song"), "second.aac", ExportPriority.USER_FACING, secondListener);
+        exporter.unblock();
+
+        assertEquals(firstJobId, secondJobId);
+        assertEquals("first.aac", firstListener.awaitStatus().getOutputFilePath());
+        assertEquals(ExportJobState.COMPLETED, secondListener.awaitStatus().getState());
+        assertEquals(1, Collections.frequency(exporter.getExportedPaths(), "song"));
+    }
+
+    @Test
+    public void testCancel_queuedJobNeverRuns() throws InterruptedException {
+        exporter.blockUntilInterrupted("blocking");
+        FinishListener blockingListener = new FinishListener();
+        scheduler.submit(configuration("blocking"), "blocking.aac", ExportPriority.USER_FACING, blockingListener);
+        FinishListener listener = new FinishListener();
+        int jobId = scheduler.submit(configuration("song"), "song.aac", ExportPriority.USER_FACING, listener);
+
+        assertTrue(scheduler.cancel(jobId));
+        exporter.unblock();
+
+        assertEquals(ExportJobState.CANCELLED, listener.awaitStatus().getState());
+        assertEquals(ExportJobState.COMPLETED, blockingListener.awaitStatus().getState());
+        assertEquals(ExportJobState.CANCELLED, scheduler.getStatus(jobId).getState());
+        assertTrue(!exporter.getExportedPaths().contains("song"));
+    }
+
+    @Test
+    public void testSubmit_userFacingJobPreemptsBackgroundJob() throws InterruptedException {
+        exporter.blockUntilInterrupted("pre-render");
+        FinishListener backgroundListener = new FinishListener();
+        scheduler.submit(configuration("pre-render"), "pre-render.aac", ExportPriority.BACKGROUND, backgroundListener);
+        exporter.awaitStarted();
+
+        FinishListener userListener = new FinishListener();
+        scheduler.submit(configuration("song"), "song.aac", ExportPriority.USER_FACING, userListener);
+
+        assertEquals(ExportJobState.COMPLETED, userListener.awaitStatus().getState());
+        assertEquals(ExportJobState.COMPLETED, backgroundListener.awaitStatus().getState());
+        assertEquals(3, exporter.getExportedPaths().size());
+        assertEquals("song", exporter.getExportedPaths().get(1));
+        assertEquals("pre-render", exporter.getExportedPaths().get(2));
+    }
+
+    @Test
+    public void testSubmitSegmented_neitherMergedNorPreempted() throws InterruptedException {
+        exporter.blockUntilInterrupted("song");
+        FakeSegmentedOutput output = new FakeSegmentedOutput();
+        final List<Integer> segmentJobIds = Collections.synchronizedList(new ArrayList<Integer>());
+        FinishListener segmentedListener = new FinishListener();
+        int segmentedJobId = scheduler.submitSegmented(configuration("song"), output, ExportPriority.BACKGROUND,
+                new OnExportSegmentListener() {
+                    @Override
+                    public void onExportSegmentWritten(int jobId, ExportSegment segment) {
+                        segmentJobIds.add(jobId);
+                    }
+                }, segmentedListener);
+        exporter.awaitStarted();
+
+        FinishListener userListener = new FinishListener();
+        int userJobId = scheduler.submit(configuration("song"), "song.aac", ExportPriority.USER_FACING, userListener);
+        exporter.unblock();
+
+        assertTrue(segmentedJobId != userJobId);
+        assertEquals(ExportJobState.COMPLETED, segmentedListener.awaitStatus().getState());
+        assertEquals("segments", segmentedListener.awaitStatus().getOutputFilePath());
+        assertEquals(ExportJobState.COMPLETED, userListener.awaitStatus().getState());
+        assertEquals(Collections.singletonList(segmentedJobId), segmentJobIds);
+        assertTrue(output.isReleased);
+    }
+
+    private static ExportingConfiguration configuration(String path) {
+        return new ExportingConfiguration(path, "vocal", 1f, 1f, 0, 0, 0, 0, EncodingProfile.DEFAULT);
+    }
+
+    /**
+     * The first export of the blocking path waits until it is interrupted or unblocked.
+     */
+    private static class FakeExporter implements Exporter {
+
+        private final List<String> exportedPaths = Collections.synchronizedList(new ArrayList<String>());
+        private final CountDownLatch startedLatch = new CountDownLatch(1);
+        private final CountDownLatch unblockLatch = new CountDownLatch(1);
+        private volatile String blockingPath;
+
+        void blockUntilInterrupted(String path) {
+            blockingPath = path;
+        }
+
+        void unblock() {
+            unblockLatch.countDown();
+        }
+
+        void awaitStarted() throws InterruptedException {
+            assertTrue(startedLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+
+        List<String> getExportedPaths() {
+            return new ArrayList<>(exportedPaths);
+        }
+
+        @Override
+        public String export(ExportingConfiguration configuration, String outputFilePath,
+                             ExportProgressListener progressListener) throws InterruptedIOException {
+            String path = configuration.getBackgroundAudioFilePath();
+            exportedPaths.add(path);
+            if (path.equals(blockingPath)) {
+                blockingPath = null;
+                startedLatch.countDown();
+                try {
+                    unblockLatch.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("Export cancelled");
+                }
+            }
+            return outputFilePath;
+        }
+
+        @Override
+        public void exportSegments(ExportingConfiguration configuration, SegmentedExportOutput output,
+                                   ExportProgressListener progressListener) throws IOException {
+            export(configuration, output.getLocation(), progressListener);
+            output.beginSegment(0);
+            output.endSegment(0, 0, 0, 0);
+        }
+    }
+
+    private static class FakeSegmentedOutput extends SegmentedExportOutput {
+
+        private volatile boolean isReleased;
+
+        FakeSegmentedOutput() {
+            super(DEFAULT_SEGMENT_DURATION_MILLIS);
+        }
+
+        @Override
+        public String getLocation() {
+            return "segments";
+        }
+
+        @Override
+        public OutputStream beginSegment(int index) {
+            return null;
+        }
+
+        @Override
+        protected String flushSegment(int index) {
+            return getLocation();
+        }
+
+        @Override
+        protected long getSegmentOffset(int index, long size) {
+            return 0;
+        }
+
+        @Override
+        public void release() {
+            isReleased = true;
+        }
+    }
+
+    private static class FinishListener implements OnExportJobStatusListener {
+
+        private final CountDownLatch finishedLatch = new CountDownLatch(1);
+        private volatile ExportJobStatus status;
+
+        @Override
+        public void onExportJobProgress(ExportJobStatus status) {
+        }
+
+        @Override
+        public void onExportJobFinished(ExportJobStatus status) {
+            this.status = status;
+            finishedLatch.countDown();
+        }
+
+        ExportJobStatus awaitStatus() throws InterruptedException {
+            assertTrue(finishedLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            return status;
+        }
+    }
+}
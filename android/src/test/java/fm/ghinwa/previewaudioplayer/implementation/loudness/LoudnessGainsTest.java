@@ -0,0 +1,52 @@
+package fm.ghinwa.previewaudioplayer.implementation.loudness;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LoudnessGainsTest {
+
+    @Test
+    public void testMatch_turnsDownLouderBackground() {
+        LoudnessGains gains = LoudnessGains.match(-20, -14, 0);
+
+        assertEquals(1, gains.getVocalGain(), 1e-6);
+        assertEquals(0.5012, gains.getBackgroundGain(), 1e-3);
+    }
+
+    @Test
+    public void testMatch_turnsDownLouderVocalKeepingRequestedDifference() {
+        LoudnessGains gains = LoudnessGains.match(-10, -20, 3);
+
+        assertEquals(0.4467, gains.getVocalGain(), 1e-3);
+        assertEquals(1, gains.getBackgroundGain(), 1e-6);
+    }
+
+    @Test
+    public void testMatch_limitsAttenuation() {
+        LoudnessGains gains = LoudnessGains.match(-60, -10, 0);
+
+        assertEquals(Math.pow(10, -LoudnessGains.MAX_ATTENUATION_DB / 20), gains.getBackgroundGain(), 1e-6);
+    }
+
+    @Test
+    public void testMatch_unknownTrackIsNotMeasured() {
+        LoudnessGains gains = LoudnessGains.match(Double.NaN, -14, 0);
+
+        assertSame(LoudnessGains.NOT_MEASURED, gains);
+        assertFalse(gains.isMeasured());
+        assertEquals(1, gains.getVocalGain(), 1e-6);
+        assertEquals(1, gains.getBackgroundGain(), 1e-6);
+    }
+
+    @Test
+    public void testMatch_silentTrackKeepsUnity() {
+        LoudnessGains gains = LoudnessGains.match(-14, Double.NEGATIVE_INFINITY, 0);
+
+        assertSame(LoudnessGains.UNITY, gains);
+        assertTrue(gains.isMeasured());
+    }
+}
@@ -0,0 +1,63 @@
+package fm.ghinwa.previewaudioplayer.implementation.loudness;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoudnessMeterTest {
+
+    private static final int SAMPLE_RATE = 48000;
+    private static final int FRAMES_PER_CHUNK = 1000;
+
+    @Test
+    public void testStereoSineAtMinus23DbfsReadsMinus23Lufs() {
+        LoudnessMeter meter = new LoudnessMeter(SAMPLE_RATE, 2);
+
+        addSine(meter, 2, -23, 5);
+
+        assertEquals(-23, meter.getIntegratedLoudness(), 0.1);
+    }
+
+    @Test
+    public void testMonoReadsAsDualMono() {
+        LoudnessMeter meter = new LoudnessMeter(SAMPLE_RATE, 1);
+
+        addSine(meter, 1, -23, 5);
+
+        assertEquals(-23, meter.getIntegratedLoudness(), 0.1);
+    }
+
+    @Test
+    public void testQuietPartBelowRelativeGateIsIgnored() {
+        LoudnessMeter meter = new LoudnessMeter(SAMPLE_RATE, 2);
+
+        addSine(meter, 2, -20, 5);
+        addSine(meter, 2, -40, 5);
+
+        assertEquals(-20, meter.getIntegratedLoudness(), 0.2);
+    }
+
+    @Test
+    public void testSilenceIsNegativeInfinity() {
+        LoudnessMeter meter = new LoudnessMeter(SAMPLE_RATE, 2);
+
+        meter.add(new short[FRAMES_PER_CHUNK * 2], FRAMES_PER_CHUNK);
+
+        assertTrue(Double.isInfinite(meter.getIntegratedLoudness()));
+    }
+
+    private static void addSine(LoudnessMeter meter, int channelCount, double peakDbfs, int seconds) {
+        double amplitude = Math.pow(10, peakDbfs / 20) * 32767;
+        short[] chunk = new short[FRAMES_PER_CHUNK * channelCount];
+        for (int start = 0; start < SAMPLE_RATE * seconds; start += FRAMES_PER_CHUNK) {
+            for (int frame = 0; frame < FRAMES_PER_CHUNK; frame++) {
+                short sample = (short) Math.round(amplitude * Math.sin(2 * Math.PI * 1000 * (start + frame) / SAMPLE_RATE));
+                for (int channel = 0; channel < channelCount; channel++) {
+                    chunk[frame * channelCount + channel] = sample;
+                }
+            }
+            meter.add(chunk, FRAMES_PER_CHUNK);
+        }
+    }
+}
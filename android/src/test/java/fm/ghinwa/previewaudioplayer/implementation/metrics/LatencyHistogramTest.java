@@ -0,0 +1,55 @@
+package fm.ghinwa.previewaudioplayer.implementation.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void testRecordNanos_tracksCountMeanMinAndMax() {
+        histogram.recordNanos(2 * NANOS_PER_MILLI);
+        histogram.recordNanos(4 * NANOS_PER_MILLI);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(3000, histogram.getMeanMicros(), 0);
+        assertEquals(2000, histogram.getMinMicros());
+        assertEquals(4000, histogram.getMaxMicros());
+    }
+
+    @Test
+    public void testGetPercentileMicros_returnsBucketBoundClampedToRecordedRange() {
+        for (int i = 0; i < 90; i++) {
+            histogram.recordNanos(NANOS_PER_MILLI);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.recordNanos(100 * NANOS_PER_MILLI);
+        }
+
+        assertEquals(1023, histogram.getPercentileMicros(0.5));
+        assertEquals(1023, histogram.getPercentileMicros(0.9));
+        assertEquals(100000, histogram.getPercentileMicros(0.99));
+    }
+
+    @Test
+    public void testGetPercentileMicros_emptyHistogram() {
+        assertEquals(0, histogram.getPercentileMicros(0.5));
+        assertEquals(0, histogram.getMinMicros());
+    }
+
+    @Test
+    public void testCopy_isIndependentOfLaterRecords() {
+        histogram.recordNanos(NANOS_PER_MILLI);
+
+        LatencyHistogram copy = histogram.copy();
+        histogram.recordNanos(NANOS_PER_MILLI);
+        histogram.reset();
+
+        assertEquals(1, copy.getCount());
+        assertEquals(0, histogram.getCount());
+    }
+}
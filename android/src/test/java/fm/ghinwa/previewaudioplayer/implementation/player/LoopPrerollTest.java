@@ -0,0 +1,68 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LoopPrerollTest {
+
+    private final LoopPreroll preroll = new LoopPreroll(4, 2);
+
+    @Test
+    public void testCaptureAcrossChunksAndReplay() {
+        preroll.startCapture();
+        preroll.capture(new short[]{1, 2, 3, 4, 5, 6}, new short[]{-1, -2, -3, -4, -5, -6}, 3);
+        assertTrue(preroll.isCapturing());
+        preroll.capture(new short[]{7, 8, 9, 10}, new short[]{-7, -8, -9, -10}, 2);
+
+        assertFalse(preroll.isCapturing());
+        assertTrue(preroll.isCaptured());
+
+        short[] background = new short[6];
+        short[] vocal = new short[6];
+        preroll.startReplay();
+        assertEquals(3, preroll.replay(background, vocal, 3));
+        assertArrayEquals(new short[]{1, 2, 3, 4, 5, 6}, background);
+        assertArrayEquals(new short[]{-1, -2, -3, -4, -5, -6}, vocal);
+        assertTrue(preroll.isReplaying());
+
+        assertEquals(1, preroll.replay(background, vocal, 3));
+        assertEquals(7, background[0]);
+        assertEquals(8, background[1]);
+        assertFalse(preroll.isReplaying());
+    }
+
+    @Test
+    public void testCancelledCaptureIsNotKept() {
+        preroll.startCapture();
+        preroll.capture(new short[]{1, 2}, new short[]{1, 2}, 1);
+        preroll.cancelCapture();
+
+        assertFalse(preroll.isCapturing());
+        assertFalse(preroll.isCaptured());
+    }
+
+    @Test
+    public void testCompletedCaptureSurvivesRestart() {
+        preroll.startCapture();
+        preroll.capture(new short[8], new short[8], 4);
+        preroll.startCapture();
+
+        assertFalse(preroll.isCapturing());
+        assertTrue(preroll.isCaptured());
+    }
+
+    @Test
+    public void testInvalidateDropsKeptFrames() {
+        preroll.startCapture();
+        preroll.capture(new short[8], new short[8], 4);
+        preroll.startReplay();
+        preroll.invalidate();
+
+        assertFalse(preroll.isCaptured());
+        assertFalse(preroll.isReplaying());
+    }
+}
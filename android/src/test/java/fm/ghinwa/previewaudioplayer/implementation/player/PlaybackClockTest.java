@@ -0,0 +1,84 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PlaybackClockTest {
+
+    private static class ManualPlaybackClock extends PlaybackClock {
+
+        private long nanoTime;
+
+        ManualPlaybackClock() {
+            super(TimeUnit.MILLISECONDS.toNanos(500));
+        }
+
+        void advanceMillis(long millis) {
+            nanoTime += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+
+        @Override
+        long nanoTime() {
+            return nanoTime;
+        }
+    }
+
+    @Test
+    public void testGetPositionMillis_extrapolatesWhileRunning() {
+        ManualPlaybackClock clock = new ManualPlaybackClock();
+        clock.anchor(1000, true);
+
+        clock.advanceMillis(250);
+
+        assertEquals(1250, clock.getPositionMillis());
+    }
+
+    @Test
+    public void testGetPositionMillis_holdsWhilePaused() {
+        ManualPlaybackClock clock = new ManualPlaybackClock();
+        clock.anchor(1000, false);
+
+        clock.advanceMillis(250);
+
+        assertEquals(1000, clock.getPositionMillis());
+    }
+
+    @Test
+    public void testGetStartPositionMillis_keptOnReanchor() {
+        ManualPlaybackClock clock = new ManualPlaybackClock();
+        clock.anchor(1000, true);
+
+        clock.advanceMillis(500);
+        clock.reanchor(1510);
+
+        assertEquals(1000, clock.getStartPositionMillis());
+        assertEquals(1510, clock.getPositionMillis());
+    }
+
+    @Test
+    public void testNeedsReanchor_afterInterval() {
+        ManualPlaybackClock clock = new ManualPlaybackClock();
+        clock.anchor(0, true);
+
+        clock.advanceMillis(499);
+        assertFalse(clock.needsReanchor());
+
+        clock.advanceMillis(1);
+        assertTrue(clock.needsReanchor());
+    }
+
+    @Test
+    public void testReanchor_ignoredWhenPaused() {
+        ManualPlaybackClock clock = new ManualPlaybackClock();
+        clock.anchor(1000, false);
+
+        clock.reanchor(2000);
+
+        assertEquals(1000, clock.getPositionMillis());
+    }
+}
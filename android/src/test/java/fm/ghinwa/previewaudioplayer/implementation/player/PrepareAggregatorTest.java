@@ -0,0 +1,68 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+import org.junit.Test;
+
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnPrepareStatusListener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PrepareAggregatorTest {
+
+    private final RecordingListener listener = new RecordingListener();
+
+    @Test
+    public void testCompletesOnlyAfterAllComponents() {
+        PrepareAggregator aggregator = new PrepareAggregator(3, listener);
+
+        aggregator.onComponentReady();
+        aggregator.onComponentReady();
+        assertEquals(0, listener.completedCount);
+
+        aggregator.onComponentReady();
+        assertEquals(1, listener.completedCount);
+        assertNull(listener.errorMessage);
+    }
+
+    @Test
+    public void testReportsAllErrorsOnce() {
+        PrepareAggregator aggregator = new PrepareAggregator(3, listener);
+
+        aggregator.onComponentError("background track", "missing");
+        aggregator.onComponentReady();
+        aggregator.onComponentError("original vocal", "corrupted");
+
+        assertEquals(0, listener.completedCount);
+        assertEquals(1, listener.errorCount);
+        assertEquals("Prepare failed. background track: missing; original vocal: corrupted", listener.errorMessage);
+    }
+
+    @Test
+    public void testCancelSuppressesResult() {
+        PrepareAggregator aggregator = new PrepareAggregator(1, listener);
+
+        aggregator.cancel();
+        aggregator.onComponentReady();
+
+        assertEquals(0, listener.completedCount);
+        assertEquals(0, listener.errorCount);
+    }
+
+    private static class RecordingListener implements OnPrepareStatusListener {
+
+        private int completedCount;
+        private int errorCount;
+        private String errorMessage;
+
+        @Override
+        public void onPrepareError(String message) {
+            errorCount++;
+            errorMessage = message;
+        }
+
+        @Override
+        public void onPrepareCompleted() {
+            completedCount++;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SeekCoalescerTest {
+
+    private final List<String> issuedSeeks = new ArrayList<>();
+    private final SeekCoalescer coalescer = new SeekCoalescer(2, new SeekCoalescer.SeekIssuer() {
+        @Override
+        public void issueSeek(int playerIndex, int playbackTimeMillis) {
+            issuedSeeks.add(playerIndex + "@" + playbackTimeMillis);
+        }
+    });
+
+    @Test
+    public void testCompletesAfterAllPlayers() {
+        RecordingListener listener = new RecordingListener();
+
+        coalescer.requestSeek(100, listener);
+        assertEquals("[0@100, 1@100]", issuedSeeks.toString());
+
+        coalescer.onSeekComplete(0);
+        assertEquals(0, listener.completedCount);
+
+        coalescer.onSeekComplete(1);
+        assertEquals(1, listener.completedCount);
+        assertEquals(0, listener.supersededCount);
+    }
+
+    @Test
+    public void testOverlappingSeeksGoToLatestTarget() {
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        RecordingListener third = new RecordingListener();
+
+        coalescer.requestSeek(100, first);
+        coalescer.requestSeek(200, second);
+        coalescer.requestSeek(300, third);
+
+        assertEquals(1, first.supersededCount);
+        assertEquals(1, second.supersededCount);
+        assertEquals("[0@100, 1@100]", issuedSeeks.toString());
+
+        coalescer.onSeekComplete(0);
+        coalescer.onSeekComplete(1);
+        assertEquals("[0@100, 1@100, 0@300, 1@300]", issuedSeeks.toString());
+        assertEquals(0, third.completedCount);
+
+        coalescer.onSeekComplete(1);
+        coalescer.onSeekComplete(0);
+        assertEquals(1, third.completedCount);
+        assertEquals(0, first.completedCount);
+        assertEquals(0, second.completedCount);
+    }
+
+    @Test
+    public void testIdlePlayerSeeksImmediately() {
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+
+        coalescer.requestSeek(100, first);
+        coalescer.onSeekComplete(0);
+        coalescer.requestSeek(200, second);
+
+        assertEquals("[0@100, 1@100, 0@200]", issuedSeeks.toString());
+
+        coalescer.onSeekComplete(1);
+        assertEquals("[0@100, 1@100, 0@200, 1@200]", issuedSeeks.toString());
+        coalescer.onSeekComplete(0);
+        coalescer.onSeekComplete(1);
+        assertEquals(1, second.completedCount);
+    }
+
+    @Test
+    public void testIgnoresForeignCompletions() {
+        assertFalse(coalescer.onSeekComplete(0));
+
+        RecordingListener listener = new RecordingListener();
+        coalescer.requestSeek(100, listener);
+        assertTrue(coalescer.onSeekComplete(0));
+        assertFalse(coalescer.onSeekComplete(0));
+        assertEquals(0, listener.completedCount);
+    }
+
+    @Test
+    public void testCancelDropsRequest() {
+        RecordingListener listener = new RecordingListener();
+
+        coalescer.requestSeek(100, listener);
+        coalescer.cancel();
+        coalescer.onSeekComplete(0);
+        coalescer.onSeekComplete(1);
+
+        assertEquals(0, listener.completedCount);
+        assertEquals(0, listener.supersededCount);
+    }
+
+    @Test
+    public void testRequestWaitsForPlayerSeek() {
+        assertTrue(coalescer.requestPlayerSeek(1, 50));
+        assertFalse(coalescer.requestPlayerSeek(1, 60));
+        assertTrue(coalescer.isSeeking());
+
+        RecordingListener listener = new RecordingListener();
+        coalescer.requestSeek(100, listener);
+        assertEquals("[1@50, 0@100]", issuedSeeks.toString());
+
+        coalescer.onSeekComplete(0);
+        coalescer.onSeekComplete(1);
+        assertEquals("[1@50, 0@100, 1@100]", issuedSeeks.toString());
+        assertEquals(0, listener.completedCount);
+
+        coalescer.onSeekComplete(1);
+        assertEquals(1, listener.completedCount);
+        assertFalse(coalescer.isSeeking());
+    }
+
+    private static class RecordingListener implements OnSeekCompletionListener {
+
+        private int completedCount;
+        private int supersededCount;
+
+        @Override
+        public void onSeekCompleted() {
+            completedCount++;
+        }
+
+        @Override
+        public void onSeekSuperseded() {
+            supersededCount++;
+        }
+    }
+}
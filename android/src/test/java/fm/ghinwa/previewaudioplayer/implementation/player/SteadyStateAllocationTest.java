@@ -0,0 +1,279 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import fm.ghinwa.previewaudioplayer.implementation.listener.OnPrepareStatusListener;
+import fm.ghinwa.previewaudioplayer.implementation.metrics.PreviewMetrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Counts bytes allocated by the current thread while running the progress tick and the seek path
+ * of a {@link PreviewPlayer} on a stubbed engine many times; after warm up none of them may
+ * allocate. The latency reads of the real engines are not covered, they need native players.
+ * Escape analysis would hide allocations that ART performs, so the test only runs
+ * when it is disabled for the test JVM, see build.gradle.
+ */
+public class SteadyStateAllocationTest {
+
+    private static final int WARM_UP_RUNS = 1000;
+    private static final int WARM_UP_ITERATIONS_PER_RUN = 100;
+    private static final int MEASURED_ITERATIONS = 100000;
+    private static final int MAX_OUTPUT_LATENCY_MILLIS = 40;
+
+    private static final Executor INLINE_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private final PreviewMetrics metrics = new PreviewMetrics();
+    private final StubPlaybackEngine playbackEngine = new StubPlaybackEngine();
+    private final PreviewPlayer previewPlayer = new PreviewPlayer(metrics, null, new PlaybackClock(0), INLINE_EXECUTOR) {
+        @Override
+        PlaybackEngine createPlaybackEngine() {
+            return playbackEngine;
+        }
+    };
+
+    private com.sun.management.ThreadMXBean threadMXBean;
+
+    @Before
+    public void setUp() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        HotSpotDiagnosticMXBean diagnosticBean = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        assumeTrue("false".equals(diagnosticBean.getVMOption("DoEscapeAnalysis").getValue()));
+        // Loaded as on a device, where seeks complete with a real player instead of null
+        assertNotNull(SinglePreviewMediaPlayer.class);
+
+        previewPlayer.prepare("original", "processed", "background", 0, TimeUnit.MILLISECONDS,
+                new OnPrepareStatusListener() {
+                    @Override
+                    public void onPrepareError(String message) {
+                        throw new AssertionError(message);
+                    }
+
+                    @Override
+                    public void onPrepareCompleted() {
+                        //no-op
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() {
+        previewPlayer.destroy();
+    }
+
+    @Test
+    public void testProgressTickDoesNotAllocate() {
+        final PlayerProgressThread progressThread = new PlayerProgressThread(previewPlayer, metrics, INLINE_EXECUTOR);
+        previewPlayer.setProgressUpdateListener(new ProgressUpdateListener() {
+            @Override
+            public void onPlayerProgressUpdate(int currentProgressMillis) {
+                //no-op
+            }
+        });
+        previewPlayer.play(new OnCompletionListener() {
+            @Override
+            public void onComplete() {
+                //no-op
+            }
+        });
+
+        assertEquals(0, measureAllocatedBytes(new Runnable() {
+            @Override
+            public void run() {
+                playbackEngine.positionMillis++;
+                playbackEngine.outputLatencyMillis = playbackEngine.positionMillis % MAX_OUTPUT_LATENCY_MILLIS;
+                progressThread.recordTickJitter(false);
+                progressThread.runRepeatableJob();
+            }
+        }));
+        // The clock re-anchors on every tick, so the latency was refreshed from the engine each time
+        assertEquals(playbackEngine.outputLatencyMillis, previewPlayer.getOutputLatency(TimeUnit.MILLISECONDS), 0);
+    }
+
+    @Test
+    public void testCoalescedSeekDoesNotAllocate() {
+        final OnSeekCompletionListener listener = new OnSeekCompletionListener() {
+            @Override
+            public void onSeekCompleted() {
+                //no-op
+            }
+
+            @Override
+            public void onSeekSuperseded() {
+                //no-op
+            }
+        };
+
+        assertEquals(0, measureAllocatedBytes(new Runnable() {
+            private int positionMillis;
+
+            @Override
+            public void run() {
+                previewPlayer.seekTo(positionMillis++, TimeUnit.MILLISECONDS, listener);
+                previewPlayer.seekTo(positionMillis++, TimeUnit.MILLISECONDS, listener);
+                playbackEngine.seekCompleteListeners.notifySeekComplete(null);
+                playbackEngine.seekCompleteListeners.notifySeekComplete(null);
+            }
+        }));
+    }
+
+    /**
+     * Warms up in short runs of the same loop that is measured, so the measured run uses code
+     * compiled for entering and leaving it. A loop that is compiled while it runs is
+     * deoptimized when it exits, which allocates on the test thread.
+     */
+    private long measureAllocatedBytes(Runnable iteration) {
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            run(iteration, WARM_UP_ITERATIONS_PER_RUN);
+        }
+        long threadId = Thread.currentThread().getId();
+        long measurementOverhead = -threadMXBean.getThreadAllocatedBytes(threadId)
+                + threadMXBean.getThreadAllocatedBytes(threadId);
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        run(iteration, MEASURED_ITERATIONS);
+        return threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore - measurementOverhead;
+    }
+
+    private static void run(Runnable iteration, int iterationCount) {
+        for (int i = 0; i < iterationCount; i++) {
+            iteration.run();
+        }
+    }
+
+    /**
+     * Completes prepare at once and seeks through a {@link SeekCoalescer} whose seeks complete
+     * when the test notifies the listeners, as a native player would.
+     */
+    private static class StubPlaybackEngine implements PlaybackEngine {
+
+        private final SeekCompleteListeners seekCompleteListeners = new SeekCompleteListeners();
+        private final SeekCoalescer seekCoalescer = new SeekCoalescer(1, new SeekCoalescer.SeekIssuer() {
+            @Override
+            public void issueSeek(int playerIndex, int playbackTimeMillis) {
+                positionMillis = playbackTimeMillis;
+            }
+        });
+
+        private int positionMillis;
+        private int outputLatencyMillis;
+
+        StubPlaybackEngine() {
+            seekCompleteListeners.add(new OnSinglePreviewPlayerSeekCompleteListener() {
+                @Override
+                public void onSeekComplete(SinglePreviewMediaPlayer mediaPlayer) {
+                    seekCoalescer.onSeekComplete(0);
+                }
+            });
+        }
+
+        @Override
+        public void prepare(String originalRecordingPath, String processedInputPath, String backgroundAudioFilePath,
+                            int recordingStartTimeMillis, OnPrepareStatusListener onPrepareStatusListener) {
+            onPrepareStatusListener.onPrepareCompleted();
+        }
+
+        @Override
+        public void start() {
+            //no-op
+        }
+
+        @Override
+        public void pause() {
+            //no-op
+        }
+
+        @Override
+        public void seekTo(int playbackTimeMillis, OnSeekCompletionListener onSeekCompletionListener) {
+            seekCoalescer.requestSeek(playbackTimeMillis, onSeekCompletionListener);
+        }
+
+        @Override
+        public int getCurrentPosition() {
+            return positionMillis;
+        }
+
+        @Override
+        public int getOutputLatencyMillis() {
+            return outputLatencyMillis;
+        }
+
+        @Override
+        public int getPlaybackDuration() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void setVolume(float vocalTrackVolume, float backgroundTrackVolume) {
+            //no-op
+        }
+
+        @Override
+        public void setOriginalVocalUsed(boolean isOriginalVocalUsed, int playbackTimeMillis) {
+            //no-op
+        }
+
+        @Override
+        public void setVocalSwitchMode(boolean isActiveVocalOnly, int crossfadeMillis) {
+            //no-op
+        }
+
+        @Override
+        public void setDriftThresholdMillis(int driftThresholdMillis) {
+            //no-op
+        }
+
+        @Override
+        public DriftStatistics getDriftStatistics() {
+            return new DriftStatistics();
+        }
+
+        @Override
+        public int getDecoderCount() {
+            return 0;
+        }
+
+        @Override
+        public long getMemoryBytes() {
+            return 0;
+        }
+
+        @Override
+        public void setLoopRegion(int loopStartMillis, int loopEndMillis) {
+            //no-op
+        }
+
+        @Override
+        public void setOnLoopWrapListener(OnLoopWrapListener onLoopWrapListener) {
+            //no-op
+        }
+
+        @Override
+        public void setOnPlaybackCompletedListener(OnPlaybackCompletedListener onPlaybackCompletedListener) {
+            //no-op
+        }
+
+        @Override
+        public void release() {
+            seekCoalescer.cancel();
+        }
+    }
+}
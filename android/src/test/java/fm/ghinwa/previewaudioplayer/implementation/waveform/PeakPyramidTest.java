@@ -0,0 +1,65 @@
+package fm.ghinwa.previewaudioplayer.implementation.waveform;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+public class PeakPyramidTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testGetWaveform_aggregatesPeaksPerPixel() throws IOException {
+        PeakPyramid peakPyramid = buildPyramid(new short[]{100, -200, 300, -400, 16384, -16384, 0, 0}, 2);
+
+        Waveform waveform = peakPyramid.getWaveform(0, 8, 2);
+
+        assertEquals(2, waveform.getPixelCount());
+        assertEquals(-400 / 32768f, waveform.getMinimums()[0], 0);
+        assertEquals(300 / 32768f, waveform.getMaximums()[0], 0);
+        assertEquals(-0.5f, waveform.getMinimums()[1], 0);
+        assertEquals(0.5f, waveform.getMaximums()[1], 0);
+    }
+
+    @Test
+    public void testGetWaveform_usesBaseLevelForFineResolution() throws IOException {
+        PeakPyramid peakPyramid = buildPyramid(new short[]{100, -200, 300, -400}, 2);
+
+        Waveform waveform = peakPyramid.getWaveform(2, 4, 1);
+
+        assertEquals(-400 / 32768f, waveform.getMinimums()[0], 0);
+        assertEquals(300 / 32768f, waveform.getMaximums()[0], 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrap_rejectsTruncatedFile() throws IOException {
+        File file = writePyramid(new short[]{1, 2, 3, 4}, 1);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(file.length() - 2);
+        randomAccessFile.close();
+
+        PeakPyramid.wrap(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+    }
+
+    private PeakPyramid buildPyramid(short[] samples, int framesPerPeak) throws IOException {
+        File file = writePyramid(samples, framesPerPeak);
+        return PeakPyramid.wrap(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+    }
+
+    private File writePyramid(short[] samples, int framesPerPeak) throws IOException {
+        PeakPyramidBuilder builder = new PeakPyramidBuilder(44100, framesPerPeak);
+        builder.addFrames(samples, samples.length);
+        File file = temporaryFolder.newFile();
+        builder.writeTo(file);
+        return file;
+    }
+}
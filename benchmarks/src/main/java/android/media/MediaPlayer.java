@@ -0,0 +1,58 @@
+package android.media;
+
+/**
+ * Stand-in for the platform player with just the surface the benchmarked classes use. Seeks
+ * complete synchronously, so a benchmark measures the Java side of seek handling only.
+ */
+public class MediaPlayer {
+
+    private OnSeekCompleteListener onSeekCompleteListener;
+    private int positionMillis;
+
+    public interface OnSeekCompleteListener {
+        void onSeekComplete(MediaPlayer mp);
+    }
+
+    public interface OnCompletionListener {
+        void onCompletion(MediaPlayer mp);
+    }
+
+    public interface OnPreparedListener {
+        void onPrepared(MediaPlayer mp);
+    }
+
+    public interface OnErrorListener {
+        boolean onError(MediaPlayer mp, int what, int extra);
+    }
+
+    public void setOnSeekCompleteListener(OnSeekCompleteListener listener) {
+        onSeekCompleteListener = listener;
+    }
+
+    public void setOnCompletionListener(OnCompletionListener listener) {
+    }
+
+    public void setOnPreparedListener(OnPreparedListener listener) {
+    }
+
+    public void setOnErrorListener(OnErrorListener listener) {
+    }
+
+    public void seekTo(int msec) {
+        positionMillis = msec;
+        if (onSeekCompleteListener != null) {
+            onSeekCompleteListener.onSeekComplete(this);
+        }
+    }
+
+    public int getCurrentPosition() {
+        return positionMillis;
+    }
+
+    public void reset() {
+        positionMillis = 0;
+    }
+
+    public void release() {
+    }
+}
@@ -0,0 +1,66 @@
+package fm.ghinwa.previewaudioplayer.implementation.audio;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mixing kernels on one chunk of the size used by the exporter and the software mixer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PcmMixerBenchmark {
+
+    private static final int FRAMES = 1024;
+    private static final int CHANNEL_COUNT = 2;
+
+    private final short[] background = new short[FRAMES * CHANNEL_COUNT];
+    private final short[] vocal = new short[FRAMES * CHANNEL_COUNT];
+    private final short[] monoVocal = new short[FRAMES];
+    private final short[] output = new short[FRAMES * CHANNEL_COUNT];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < background.length; i++) {
+            background[i] = (short) random.nextInt();
+            vocal[i] = (short) random.nextInt();
+        }
+        for (int i = 0; i < monoVocal.length; i++) {
+            monoVocal[i] = (short) random.nextInt();
+        }
+    }
+
+    @Benchmark
+    public short[] mix() {
+        PcmMixer.mix(background, 0.8f, vocal, 1f, output, FRAMES * CHANNEL_COUNT);
+        return output;
+    }
+
+    @Benchmark
+    public short[] mixMonoVocal() {
+        PcmMixer.mixMonoVocal(background, 0.8f, monoVocal, 1f, output, CHANNEL_COUNT, FRAMES);
+        return output;
+    }
+
+    @Benchmark
+    public short[] applyFades() {
+        System.arraycopy(background, 0, output, 0, output.length);
+        PcmMixer.applyFades(output, CHANNEL_COUNT, FRAMES, 0, FRAMES * 8, FRAMES * 2);
+        return output;
+    }
+
+    @Benchmark
+    public short[] crossfade() {
+        PcmMixer.crossfade(background, vocal, output, CHANNEL_COUNT, FRAMES, FRAMES, FRAMES * 4);
+        return output;
+    }
+}
@@ -0,0 +1,83 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work done for each export request before any audio is touched: building the configuration
+ * from a profile, looking for an identical running job and computing the export cache key with
+ * input hashes already known.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ExportConfigurationBenchmark {
+
+    private File directory;
+    private String backgroundPath;
+    private String vocalPath;
+    private ExportCache exportCache;
+    private ExportingConfiguration configuration;
+    private final Map<ExportingConfiguration, Integer> activeJobs = new HashMap<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = File.createTempFile("export-benchmark", "");
+        directory.delete();
+        directory.mkdirs();
+        backgroundPath = writeFile("background.m4a", 1024 * 1024).getPath();
+        vocalPath = writeFile("vocal.m4a", 256 * 1024).getPath();
+        exportCache = new ExportCache(new File(directory, "exports"));
+        configuration = createConfiguration();
+        activeJobs.put(configuration, 1);
+        exportCache.createKey(configuration);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public ExportingConfiguration createConfiguration() {
+        EncodingProfile profile = EncodingProfile.SHARE_SMALL.withBitRate(64000);
+        return new ExportingConfiguration(backgroundPath, vocalPath, 0.8f, 1f, 1500, 30000, 30000, 500, profile);
+    }
+
+    @Benchmark
+    public Integer findActiveJob() {
+        return activeJobs.get(createConfiguration());
+    }
+
+    @Benchmark
+    public String createCacheKey() throws IOException {
+        return exportCache.createKey(configuration);
+    }
+
+    private File writeFile(String name, int length) throws IOException {
+        File file = new File(directory, name);
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(new byte[length]);
+        } finally {
+            outputStream.close();
+        }
+        return file;
+    }
+}
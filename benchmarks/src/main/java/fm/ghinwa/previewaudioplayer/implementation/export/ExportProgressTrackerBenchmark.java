@@ -0,0 +1,38 @@
+package fm.ghinwa.previewaudioplayer.implementation.export;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Progress update done after every exported chunk; nearly all calls are rate limited.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ExportProgressTrackerBenchmark {
+
+    private static final long TOTAL_FRAMES = 44100L * 60 * 5;
+    private static final int FRAMES_PER_CHUNK = 1024;
+
+    private ExportProgressTracker tracker;
+    private long renderedFrames;
+
+    @Setup
+    public void setUp() {
+        tracker = new ExportProgressTracker(250);
+        tracker.start();
+    }
+
+    @Benchmark
+    public boolean chunkRendered() {
+        renderedFrames = (renderedFrames + FRAMES_PER_CHUNK) % TOTAL_FRAMES;
+        return tracker.update(renderedFrames, TOTAL_FRAMES);
+    }
+}
@@ -0,0 +1,42 @@
+package fm.ghinwa.previewaudioplayer.implementation.loudness;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loudness measurement of one stereo chunk of the size the decoded audio cache writes, the cost
+ * it adds to decoding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LoudnessMeterBenchmark {
+
+    private static final int FRAMES = 4096;
+    private static final int CHANNEL_COUNT = 2;
+
+    private final short[] chunk = new short[FRAMES * CHANNEL_COUNT];
+    private final LoudnessMeter loudnessMeter = new LoudnessMeter(44100, CHANNEL_COUNT);
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (short) random.nextInt();
+        }
+    }
+
+    @Benchmark
+    public LoudnessMeter add() {
+        loudnessMeter.add(chunk, FRAMES);
+        return loudnessMeter;
+    }
+}
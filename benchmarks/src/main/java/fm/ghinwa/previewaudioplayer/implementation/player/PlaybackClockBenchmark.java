@@ -0,0 +1,52 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Position reads done by the progress thread on every tick, alone and while another thread
+ * re-anchors the clock as seeks and decoder position updates do.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlaybackClockBenchmark {
+
+    private PlaybackClock clock;
+    private int positionMillis;
+
+    @Setup
+    public void setUp() {
+        clock = new PlaybackClock();
+        clock.anchor(1000, true);
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    public int tick() {
+        return clock.needsReanchor() ? -1 : clock.getPositionMillis();
+    }
+
+    @Benchmark
+    @Group("reanchored")
+    @GroupThreads(1)
+    public int tickWhileReanchored() {
+        return clock.getPositionMillis();
+    }
+
+    @Benchmark
+    @Group("reanchored")
+    @GroupThreads(1)
+    public void reanchor() {
+        clock.reanchor(positionMillis++);
+    }
+}
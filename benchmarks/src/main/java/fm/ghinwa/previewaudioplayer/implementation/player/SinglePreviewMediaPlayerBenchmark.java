@@ -0,0 +1,64 @@
+package fm.ghinwa.previewaudioplayer.implementation.player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Seek fan-out over the background and both vocal players and the seek complete listener
+ * notification of each player. The platform player is a stand-in that completes seeks at once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SinglePreviewMediaPlayerBenchmark {
+
+    private static final int PLAYER_COUNT = 3;
+
+    @Param({"1", "4"})
+    public int listenersPerPlayer;
+
+    private final SinglePreviewMediaPlayer[] players = new SinglePreviewMediaPlayer[PLAYER_COUNT];
+    private int seekPositionMillis;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        for (int i = 0; i < PLAYER_COUNT; i++) {
+            players[i] = new SinglePreviewMediaPlayer();
+            for (int j = 0; j < listenersPerPlayer; j++) {
+                players[i].addOnSeekCompletedListener(new OnSinglePreviewPlayerSeekCompleteListener() {
+                    @Override
+                    public void onSeekComplete(SinglePreviewMediaPlayer singlePreviewMediaPlayer) {
+                        SinglePreviewMediaPlayerBenchmark.this.blackhole.consume(singlePreviewMediaPlayer);
+                    }
+                });
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (SinglePreviewMediaPlayer player : players) {
+            player.release();
+        }
+    }
+
+    @Benchmark
+    public void seekAllPlayers() {
+        seekPositionMillis = (seekPositionMillis + 40) % 60000;
+        for (SinglePreviewMediaPlayer player : players) {
+            player.seekTo(seekPositionMillis);
+        }
+    }
+}
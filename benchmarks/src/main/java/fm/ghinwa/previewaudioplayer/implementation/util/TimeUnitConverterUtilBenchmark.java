@@ -0,0 +1,32 @@
+package fm.ghinwa.previewaudioplayer.implementation.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversions done for every call from JS and every progress event sent to JS.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimeUnitConverterUtilBenchmark {
+
+    private float jsTimeSeconds = 12.345f;
+    private long playbackTimeMillis = 12345;
+
+    @Benchmark
+    public long secondsToMillis() {
+        return TimeUnitConverterUtil.toResultTimeUnitLong(jsTimeSeconds, TimeUnit.SECONDS, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    public float millisToSeconds() {
+        return TimeUnitConverterUtil.toResultTimeUnitFloat(playbackTimeMillis, TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
+    }
+}
@@ -26,33 +26,140 @@ class PreviewAudioPlayer {
     */
 
   /**
-   * Prepares audio player for playback using provided paths to the vocal audio file and background audio file.s
+   * Creates a preview session and prepares it for playback using provided paths to the vocal audio file and
+   * background audio file. Every other playback method takes the returned session id.
    * @param {string} originalVocalAudioFilePath Path to audio file that contains the original vocal recording.
    * @param {string} processedVocalAudioFilePath Path to audio file that contains the processed vocal recording.
    * @param {string} backgroundAudioFilePath Path to audio file that contains background track.
    * @param {string} recordingStartTime The position in the background track time when recording started
-   * @param {callbackWithOptionalError} callback Callback called when method finishes. If an error occurs,
-   *                                   an error is passed as an argument of the callback, null otherwise.
+   * @param {(error: any, sessionId: number) => void} callback Callback called when method finishes. If an error
+   *                                   occurs, an error is passed as the first argument of the callback, otherwise
+   *                                   the id of the new session is passed as the second one.
    * @returns {undefined}
    */
-  prepare(originalVocalAudioFilePath: string, processedVocalAudioFilePath: string, backgroundAudioFilePath: string, recordingStartTime: number, callback: (error: any) => void) {
+  prepare(originalVocalAudioFilePath: string, processedVocalAudioFilePath: string, backgroundAudioFilePath: string, recordingStartTime: number, callback: (error: any, sessionId: number) => void) {
     NativePreviewController.prepare(
       originalVocalAudioFilePath, processedVocalAudioFilePath, backgroundAudioFilePath,
-      recordingStartTime, (error) => {
+      recordingStartTime, (error, sessionId) => {
         if (!callback) { return }
-        callback(error)
+        callback(error, sessionId)
       })
   }
 
+  /**
+   * Releases the session, its id is not valid afterwards.
+   * @param {number} sessionId id passed to the `prepare` callback
+   * @param {callbackWithOptionalError} callback Callback called when method finishes.
+   * @returns {undefined}
+   */
+  release(sessionId: number, callback: (error: any) => void) {
+    NativePreviewController.release(sessionId, callback || (() => {}))
+  }
+
+  /**
+   * Sets how many decoders and megabytes of decoded audio all sessions may hold together. When a session is
+   * prepared or played over the budget, least recently used sessions are demoted: they keep their position and
+   * settings, release their decoders and are prepared again when played. See `setSessionDemotedSubscription`.
+   * @param {number} maxDecoders maximum number of decoders, 6 by default
+   * @param {number} memoryMegabytes maximum decoded audio memory in megabytes, 64 by default
+   * @param {callbackWithOptionalError} callback Callback called when method finishes.
+   * @returns {undefined}
+   */
+  setSessionBudget(maxDecoders: number, memoryMegabytes: number, callback: (error: any) => void) {
+    NativePreviewController.setSessionBudget(maxDecoders, memoryMegabytes, callback || (() => {}))
+  }
+
+  /**
+   * Selects playback engine used by subsequent `prepare` calls.
+   * @param {string} playbackEngine Either 'mediaPlayer' (default) or 'softwareMixer'. Software mixer decodes
+   *                                background and active vocal track and mixes them into a single output.
+   * @param {callbackWithOptionalError} callback Callback called when method finishes. If an error occurs,
+   *                                   an error is passed as an argument of the callback, null otherwise.
+   * @returns {undefined}
+   */
+  setPlaybackEngine(playbackEngine: string, callback: (error: any) => void) {
+    NativePreviewController.setPlaybackEngine(playbackEngine, (error) => {
+      if (callback) {
+        callback(error)
+      }
+    })
+  }
+
+  /**
+   * Enables matching volumes of vocal and background to their measured loudness, for playback and export. Loudness
+   * is measured while a track is decoded for the decoded audio cache of the software mixer or for `getWaveform`, so
+   * the gains apply from then on; volumes set with `setVolume` are multiplied by them. The default 'mediaPlayer'
+   * engine measures nothing, call `getWaveform` for the tracks and check `measured` in `getLoudnessGains`.
+   * @param {boolean} enabled Whether volumes are matched.
+   * @param {number} vocalToBackground How many decibels louder than the background the vocal should be, 0 for equal loudness.
+   * @param {() => void} callback Callback called when method finishes.
+   * @returns {undefined}
+   */
+  setLoudnessNormalization(enabled: boolean, vocalToBackground: number, callback: () => void) {
+    NativePreviewController.setLoudnessNormalization(enabled, vocalToBackground, callback || (() => {}))
+  }
+
+  /**
+   * Enables estimating how far the vocal is shifted against the background, for example by input latency of the
+   * recording device, before sessions are prepared. A reliable offset is added to the recording start time for
+   * playback and export. Applies to the following `prepare` calls.
+   * @param {boolean} enabled Whether the offset is estimated.
+   * @param {number} maxOffset Largest offset in seconds searched for in both directions, 0.5 is a good default.
+   * @param {() => void} callback Callback called when method finishes.
+   * @returns {undefined}
+   */
+  setAutomaticAlignment(enabled: boolean, maxOffset: number, callback: () => void) {
+    NativePreviewController.setAutomaticAlignment(enabled, maxOffset, callback || (() => {}))
+  }
+
+  /**
+   * Selects which position `getCurrentTime` and progress events report.
+   * @param {string} timeReporting Either 'presented' (default), the position being heard with the measured output
+   *                               latency subtracted, or 'decoder', the raw position of the decoders.
+   * @param {callbackWithOptionalError} callback Callback called when method finishes. If an error occurs,
+   *                                   an error is passed as an argument of the callback, null otherwise.
+   * @returns {undefined}
+   */
+  setTimeReporting(timeReporting: string, callback: (error: any) => void) {
+    NativePreviewController.setTimeReporting(timeReporting, (error) => {
+      if (callback) {
+        callback(error)
+      }
+    })
+  }
+
+  /**
+   * Sets disk budget for decoded background tracks. Tracks decoded by the software mixer are kept
+   * between `prepare` calls, least recently used ones are removed first.
+   * @param {number} megabytes maximum cache size in megabytes
+   * @param {() => void} callback Callback called when method finishes.
+   * @returns {undefined}
+   */
+  setDecodedAudioCacheSize(megabytes: number, callback: () => void) {
+    NativePreviewController.setDecodedAudioCacheSize(megabytes, callback || (() => {}))
+  }
+
+  /**
+   * Sets disk budget for finished exports. Exporting the same files with the same settings again
+   * returns the kept file, least recently used exports are removed first.
+   * @param {number} megabytes maximum cache size in megabytes
+   * @param {() => void} callback Callback called when method finishes.
+   * @returns {undefined}
+   */
+  setExportCacheSize(megabytes: number, callback: () => void) {
+    NativePreviewController.setExportCacheSize(megabytes, callback || (() => {}))
+  }
+
 
   /**
    * Starts preview at specified time using file paths provided in `prepare` method call.
+   * @param {number} sessionId id passed to the `prepare` callback
    * @param {number} startTime time when preview playing should start
    * @param {callbackWithOptionalError} callback callback called when method finishes
    * @returns {undefined}
    */
-  playAt(startTime: number, callback: (error: any) => void) {
-    NativePreviewController.playAt(startTime, (error) => {
+  playAt(sessionId: number, startTime: number, callback: (error: any) => void) {
+    NativePreviewController.playAt(sessionId, startTime, (error) => {
       if (callback) {
         callback(error)
       }
@@ -60,12 +167,14 @@ class PreviewAudioPlayer {
   }
 
   /**
-   * Starts preview using file paths provided in `prepare` method call.
+   * Starts preview using file paths provided in `prepare` method call. A demoted session is prepared again
+   * first and continues from the position it had.
+   * @param {number} sessionId id passed to the `prepare` callback
    * @param {callbackWithOptionalError} callback callback called when method finishes
    * @returns {undefined}
    */
-  play(callback: (error: any) => void) {
-    NativePreviewController.play((error) => {
+  play(sessionId: number, callback: (error: any) => void) {
+    NativePreviewController.play(sessionId, (error) => {
       if (callback) {
         callback(error)
       }
@@ -74,25 +183,27 @@ class PreviewAudioPlayer {
 
   /**
    * Pauses preview.
-   * @param {emptyCallback} callback callback called when method finishes
+   * @param {number} sessionId id passed to the `prepare` callback
+   * @param {callbackWithOptionalError} callback callback called when method finishes
    * @returns {undefined}
    */
-  pause(callback: () => void) {
-    NativePreviewController.pause(() => {
+  pause(sessionId: number, callback: (error: any) => void) {
+    NativePreviewController.pause(sessionId, (error) => {
       if (callback) {
-        callback()
+        callback(error)
       }
     })
   }
 
   /**
    * Unpauses preview.
+   * @param {number} sessionId id passed to the `prepare` callback
    * @param {callbackWithOptionalError} callback Callback called when method finishes. If an error occurs,
    *                                             an error is passed as an argument of the callback, null otherwise.
    * @returns {undefined}
    */
-  unpause(callback: (error: any) => void) {
-    NativePreviewController.unPause((error) => {
+  unpause(sessionId: number, callback: (error: any) => void) {
+    NativePreviewController.unPause(sessionId, (error) => {
       if (callback) {
         callback(error)
       }
@@ -101,32 +212,134 @@ class PreviewAudioPlayer {
 
   /**
    * Stops preview.
-   * @param {emptyCallback} callback callback called when method finishes
+   * @param {number} sessionId id passed to the `prepare` callback
+   * @param {callbackWithOptionalError} callback callback called when method finishes
    * @returns {undefined}
    */
-  stop(callback: () => void) {
-    NativePreviewController.stop(() => {
+  stop(sessionId: number, callback: (error: any) => void) {
+    NativePreviewController.stop(sessionId, (error) => {
       if (callback) {
-        callback()
+        callback(error)
       }
     })
   }
 
   /**
-   * Exports audio to file.
+   * Exports preview window set with `setPreviewAt` to file. When preview duration is not set, audio is exported
+   * from preview start time until the end of background track.
+   * @param {number} sessionId id passed to the `prepare` callback
    * @param  {callbackWithOptionalError} callback Callback called when method finished. If an error occurs,
    *                                              an error is passed as an argument of the callback, null otherwise.
    *                                              If there is no error second argument of callback contains path at which output file is stored.
+   * @param {Object} encodingProfile Optional output format: `preset` ('share-small', 'archive-high' or 'fast-draft')
+   *                                 and/or custom `sampleRate`, `channelCount` (1 or 2), `bitRate` (bits per second)
+   *                                 and `container` ('adts' or 'mp4', mp4 requires Android 4.3) overriding the preset.
+   *                                 Stereo 64 kbps AAC at the source sample rate when omitted.
    * @returns {undefined}
    */
-  export(callback: (error: any, outputFilePath: string) => void) {
-    NativePreviewController.export((error, outputFilePath) => {
+  export(sessionId: number, callback: (error: any, outputFilePath: string) => void, encodingProfile: ?Object) {
+    NativePreviewController.export(sessionId, encodingProfile || null, (error, outputFilePath) => {
       if (callback) {
         callback(error, outputFilePath)
       }
     })
   }
 
+  /**
+   * Schedules export of the preview window and returns its job id right away. Identical exports that are still
+   * queued or running are merged and share one job id. Completion is reported through
+   * `setExportFinishedSubscription`.
+   * @param {number} sessionId id passed to the `prepare` callback
+   * @param {string} priority Either 'userFacing' or 'background'. Background exports run after, and are interrupted
+   *                          by, user facing ones.
+   * @param {(error: any, jobId: number) => void} callback Callback called with the job id.
+   * @param {Object} encodingProfile Optional output format, same as in `export`.
+   * @returns {undefined}
+   */
+  startExport(sessionId: number, priority: string, callback: (error: any, jobId: number) => void, encodingProfile: ?Object) {
+    NativePreviewController.startExport(sessionId, priority, encodingProfile || null, (error, jobId) => {
+      if (callback) {
+        callback(error, jobId)
+      }
+    })
+  }
+
+  /**
+   * Schedules export of the preview window as a sequence of independently decodable ADTS segments and returns its
+   * job id right away. Each segment is announced through `setExportSegmentSubscription` as soon as it is flushed, so
+   * it can be uploaded while the rest is still encoded. Completion is reported through
+   * `setExportFinishedSubscription`. Segmented exports are not cached and not merged with other exports.
+   * @param {number} sessionId id passed to the `prepare` callback
+   * @param {string} priority Either 'userFacing' or 'background'.
+   * @param {(error: any, jobId: number) => void} callback Callback called with the job id.
+   * @param {Object} encodingProfile Optional output format, same as in `export`; the container is always ADTS.
+   * @param {Object} output Optional object with `directory` segment files are written to, or `uri` of a content or
+   *                        file URI all segments are streamed to one after another, and `segmentDuration` in
+   *                        seconds (default 5). Without directory and uri a new directory next to other exports
+   *                        is used.
+   * @returns {undefined}
+   */
+  startSegmentedExport(sessionId: number, priority: string, callback: (error: any, jobId: number) => void,
+                       encodingProfile: ?Object, output: ?Object) {
+    NativePreviewController.startSegmentedExport(sessionId, priority, encodingProfile || null, output || null,
+    (error, jobId) => {
+      if (callback) {
+        callback(error, jobId)
+      }
+    })
+  }
+
+  /**
+   * Gets status of an export job.
+   * @param {number} jobId id returned by `startExport`
+   * @param {(error: any, status: Object) => void} callback Callback called with an object containing `jobId`, `state`
+   *                                                       ('queued', 'running', 'completed', 'failed' or
+   *                                                       'cancelled'), `progress`, `remainingTime`,
+   *                                                       `outputFilePath` and `error`.
+   * @returns {undefined}
+   */
+  getExportStatus(jobId: number, callback: (error: any, status: Object) => void) {
+    NativePreviewController.getExportStatus(jobId, callback)
+  }
+
+  /**
+   * Cancels a single export job.
+   * @param {number} jobId id returned by `startExport`
+   * @param {callbackWithOptionalError} callback Callback called when method finishes.
+   * @returns {undefined}
+   */
+  cancelExportJob(jobId: number, callback: (error: any) => void) {
+    NativePreviewController.cancelExportJob(jobId, callback || (() => {}))
+  }
+
+  /**
+   * Cancels running and queued exports. Their `export` callbacks receive an error and partial output files are deleted.
+   * @param {() => void} callback Callback called when method finishes.
+   * @returns {undefined}
+   */
+  cancelExport(callback: () => void) {
+    NativePreviewController.cancelExport(callback || (() => {}))
+  }
+
+
+  /**
+   * Computes waveform of an audio file. The file is decoded only once, later calls are served from the peak cache.
+   * @param  {path: string} path:                   Path to the audio file.
+   * @param  {startTime: number} startTime:         Start of the time range.
+   * @param  {endTime: number} endTime:             End of the time range, 0 for the end of the track.
+   * @param  {pixelCount: number} pixelCount:       Number of values to compute.
+   * @param  {(error: any, waveform: Object) => void} callback: Callback called when method finishes. If there is no error
+   *                                                second argument contains `minimums` and `maximums` arrays
+   *                                                with values in range [-1, 1].
+   */
+  getWaveform(path: string, startTime: number, endTime: number, pixelCount: number,
+    callback: (error: any, waveform: Object) => void) {
+    NativePreviewController.getWaveform(path, startTime, endTime, pixelCount, (error, waveform) => {
+      if (callback) {
+        callback(error, waveform)
+      }
+    })
+  }
 
   /**
    * Plays preview starting from specified time in vocal audio file and background audio file.
@@ -135,8 +348,8 @@ class PreviewAudioPlayer {
    * @param  {(error: any) => void} callback:              Callback called when method finishes. If an error occurs,
    *                                                       an error is passed as an argument of the callback, null otherwise.
    */
-  playPreview(callback: (error: any) => void) {
-    NativePreviewController.playPreview((error) => {
+  playPreview(sessionId: number, callback: (error: any) => void) {
+    NativePreviewController.playPreview(sessionId, (error) => {
       if (callback) {
         callback(error)
       }
@@ -146,12 +359,12 @@ class PreviewAudioPlayer {
   /**
    * Sets preview start time.
    * @param  {previewStartTime: number} previewStartTime:  Time at which preview should start.
-   * @param  {() => void} callback:                        Callback called when method finishes.
+   * @param  {(error: any) => void} callback:              Callback called when method finishes.
    */
-  setPreviewStartTime(previewStartTime: number, callback: () => void) {
-    NativePreviewController.setPreviewStartTime(previewStartTime, () => {
+  setPreviewStartTime(sessionId: number, previewStartTime: number, callback: (error: any) => void) {
+    NativePreviewController.setPreviewStartTime(sessionId, previewStartTime, (error) => {
       if (callback) {
-        callback()
+        callback(error)
       }
     })
   }
@@ -160,91 +373,154 @@ class PreviewAudioPlayer {
    * Sets preview start time and duration.
    * @param  {previewTime: number} previewTime:            Time at which preview should start.
    * @param  {duration: number} duration:                  Preview duration
-   * @param  {() => void} callback:                        Callback called when method finishes.
+   * @param  {(error: any) => void} callback:              Callback called when method finishes.
    */
-  setPreviewAt(previewTime: number, previewDuration: number, callback: () => void) {
-    NativePreviewController.setPreviewAt(previewTime, previewDuration, () => {
+  setPreviewAt(sessionId: number, previewTime: number, previewDuration: number, callback: (error: any) => void) {
+    NativePreviewController.setPreviewAt(sessionId, previewTime, previewDuration, (error) => {
       if (callback) {
-        callback()
+        callback(error)
+      }
+    })
+  }
+
+  /**
+   * Enables loop mode for the preview window. `playPreview` then repeats the window seamlessly until paused or
+   * stopped instead of stopping at its end; each repeat is reported through `setLoopIterationSubscription`.
+   * Windows shorter than one second are not looped.
+   * @param  {sessionId: number} sessionId:               Id passed to the `prepare` callback.
+   * @param  {enabled: boolean} enabled:                  Whether the preview window is looped.
+   * @param  {(error: any) => void} callback:              Callback called when method finishes.
+   */
+  setPreviewLoop(sessionId: number, enabled: boolean, callback: (error: any) => void) {
+    NativePreviewController.setPreviewLoop(sessionId, enabled, callback || (() => {}))
+  }
+
+  /**
+   * Sets length of fade-in and fade-out applied to the edges of exported preview.
+   * @param  {fadeDuration: number} fadeDuration:          Fade duration, 0 disables fades.
+   * @param  {(error: any) => void} callback:              Callback called when method finishes.
+   */
+  setExportFadeDuration(sessionId: number, fadeDuration: number, callback: (error: any) => void) {
+    NativePreviewController.setExportFadeDuration(sessionId, fadeDuration, (error) => {
+      if (callback) {
+        callback(error)
       }
     })
   }
 
   /**
    * Gets preview start time.
-   * @param  {(previewStartTime: number) => void}  callback: Callback called when method finishes. First argument of
-   *                                                         this callback is a preview start time.
+   * @param  {(error: any, previewStartTime: number) => void}  callback: Callback called when method finishes. Second
+   *                                                                     argument of this callback is a preview start time.
    */
-  getPreviewStartTime(callback: (previewStartTime: number) => void) {
-    NativePreviewController.getPreviewStartTime((previewStartTime) => {
+  getPreviewStartTime(sessionId: number, callback: (error: any, previewStartTime: number) => void) {
+    NativePreviewController.getPreviewStartTime(sessionId, (error, previewStartTime) => {
       if (callback) {
-        callback(previewStartTime)
+        callback(error, previewStartTime)
       }
     })
   }
 
   /**
    * Gets preview duration.
-   * @param  {(previewDuration: number) => void}  Callback called when method finishes. Current preview duration
-   *                                              is passed as first argument of this callback.
+   * @param  {(error: any, previewDuration: number) => void}  Callback called when method finishes. Current preview
+   *                                                          duration is passed as second argument of this callback.
    */
-  getPreviewDuration(callback: (previewDuration: number) => void) {
-    NativePreviewController.getPreviewDuration((previewDuration) => {
+  getPreviewDuration(sessionId: number, callback: (error: any, previewDuration: number) => void) {
+    NativePreviewController.getPreviewDuration(sessionId, (error, previewDuration) => {
       if (callback) {
-        callback(previewDuration)
+        callback(error, previewDuration)
       }
     })
   }
 
   /**
    * Gets audio duration.
-   * @param  {(duration: number) => void}  Callback called when method finishes. Current duration
-   *                                       is passed as first argument of this callback.
+   * @param  {(error: any, duration: number) => void}  Callback called when method finishes. Current duration
+   *                                                   is passed as second argument of this callback.
    */
-  getPlaybackDuration(callback: (duration: number) => void) {
-    NativePreviewController.getPlaybackDuration((duration) => {
+  getPlaybackDuration(sessionId: number, callback: (error: any, duration: number) => void) {
+    NativePreviewController.getPlaybackDuration(sessionId, (error, duration) => {
       if (callback) {
-        callback(duration)
+        callback(error, duration)
       }
     })
   }
 
   /**
-   * Changes the current playback time to the new value
+   * Changes the current playback time to the new value. Seeks requested while a previous one is
+   * still running are coalesced, the player goes straight to the latest time.
    * @param  {time: number} time:                 The new value for the current playback time
-   * @param  {() => void} callback:               Callback called when method finishes.
+   * @param  {(error: any, status: string) => void} callback: Callback called when method finishes with status
+   *                                                          'completed', or 'superseded' right away when a
+   *                                                          later seek replaced this one.
    */
-  seekToTime(time: number, callback: () => void) {
-    NativePreviewController.seekToTime(time, () => {
+  seekToTime(sessionId: number, time: number, callback: (error: any, status: string) => void) {
+    NativePreviewController.seekToTime(sessionId, time, (error, status) => {
       if (callback) {
-        callback()
+        callback(error, status)
       }
     })
   }
 
 
   /**
-   *  Gets current playback time.
+   *  Gets current playback time, the position it was demoted at for a demoted session. By default this is the
+   *  position being heard, see `setTimeReporting`.
+   */
+   getCurrentTime(sessionId: number, callback: (error: any, currentTime: number) => void) {
+     NativePreviewController.getCurrentTime(sessionId, callback)
+   }
+
+  /**
+   *  Gets output latency in seconds measured for a playing session, 0 when it is not known.
+   */
+   getOutputLatency(sessionId: number, callback: (error: any, outputLatency: number) => void) {
+     NativePreviewController.getOutputLatency(sessionId, callback)
+   }
+
+  /**
+   *  Gets offset in seconds added to the recording start time by automatic alignment, 0 when none was applied.
    */
-   getCurrentTime(callback: (number) => void) {
-     NativePreviewController.getCurrentTime(callback)
+   getAlignmentOffset(sessionId: number, callback: (error: any, alignmentOffset: number) => void) {
+     NativePreviewController.getAlignmentOffset(sessionId, callback)
    }
 
    /**
     * Sets volumes of vocal and background audio tracks.
     * @param  {vocalAudioTrackVolume: number}   vocalAudioTrackVolume:            Vocal audio track volume to set. Accepts value from 0 to 1.
     * @param  {backgroundAudioTrackVolume: number}   backgroundAudioTrackVolume:  Background audio track volume to set. Accepts value from 0 to 1.
-    * @param  {() => void}  callback:                                             Callback called when method finishes.
+    * @param  {(error: any) => void}  callback:                                    Callback called when method finishes.
     */
-   setVolume(vocalAudioTrackVolume: number, backgroundAudioTrackVolume: number, callback: () => void) {
-     NativePreviewController.setVolume(vocalAudioTrackVolume, backgroundAudioTrackVolume, () => {
+   setVolume(sessionId: number, vocalAudioTrackVolume: number, backgroundAudioTrackVolume: number, callback: (error: any) => void) {
+     NativePreviewController.setVolume(sessionId, vocalAudioTrackVolume, backgroundAudioTrackVolume, (error) => {
        if (callback) {
-         callback()
+         callback(error)
        }
      })
    }
 
-   setAudioPlaybackProgressUpdateSubscription(callback: (currentTime: number) => void) {
+   /**
+    * Configures playback progress events.
+    * @param  {updatesPerSecond: number} updatesPerSecond:  How many times per second progress is checked (60 by default).
+    * @param  {minimumDelta: number} minimumDelta:          Minimal change of current time (in seconds) that is reported.
+    * @param  {(error: any) => void} callback:              Callback called when method finishes. If an error occurs,
+    *                                                       an error is passed as an argument of the callback, null otherwise.
+    */
+   setProgressUpdateRate(updatesPerSecond: number, minimumDelta: number, callback: (error: any) => void) {
+     NativePreviewController.setProgressUpdateRate(updatesPerSecond, minimumDelta, (error) => {
+       if (callback) {
+         callback(error)
+       }
+     })
+   }
+
+   /**
+    * Subscribes to playback progress of all sessions.
+    * @param  {(currentTime: number, sessionId: number) => void} callback:  Callback called with the current time
+    *                                                                      and the id of the playing session.
+    */
+   setAudioPlaybackProgressUpdateSubscription(callback: (currentTime: number, sessionId: number) => void) {
      if (this.audioPlaybackProgressUpdateSubscription) {
        this.audioPlaybackProgressUpdateSubscription.remove();
      }
@@ -255,12 +531,17 @@ class PreviewAudioPlayer {
      this.audioPlaybackProgressUpdateSubscription = DeviceEventEmitter.addListener('previewAudioPlayerPlaybackProgressUpdate',
      (data) => {
        if (callback) {
-         callback(data.currentTime);
+         callback(data.currentTime, data.sessionId);
        }
      })
    }
 
-   setAudioPlaybackFinishedSubscription(callback: (finished: bool) => void) {
+   /**
+    * Subscribes to the end of playback of all sessions.
+    * @param  {(finished: bool, sessionId: number) => void} callback:  Callback called with the id of the session
+    *                                                                 that finished playing.
+    */
+   setAudioPlaybackFinishedSubscription(callback: (finished: bool, sessionId: number) => void) {
      if (this.audioPlaybackFinishedSubscription) {
        this.audioPlaybackFinishedSubscription.remove();
      }
@@ -271,7 +552,116 @@ class PreviewAudioPlayer {
      this.audioPlaybackFinishedSubscription = DeviceEventEmitter.addListener('previewAudioPlayerPlaybackFinished',
      (data) => {
        if (callback) {
-         callback(true);
+         callback(true, data.sessionId);
+       }
+     })
+   }
+
+   /**
+    * Subscribes to repeats of looped preview windows, see `setPreviewLoop`.
+    * @param  {(iteration: number, sessionId: number) => void} callback:  Callback called with the number of the
+    *                                                                    repeat that started (1 for the first) and
+    *                                                                    the id of the session.
+    */
+   setLoopIterationSubscription(callback: (iteration: number, sessionId: number) => void) {
+     if (this.loopIterationSubscription) {
+       this.loopIterationSubscription.remove();
+     }
+     if (!callback) {
+       return
+     }
+
+     this.loopIterationSubscription = DeviceEventEmitter.addListener('previewAudioPlayerLoopIteration',
+     (data) => {
+       if (callback) {
+         callback(data.iteration, data.sessionId);
+       }
+     })
+   }
+
+   /**
+    * Subscribes to demotion of sessions over the budget set with `setSessionBudget`. A demoted session keeps its
+    * id, position and settings and is prepared again when played.
+    * @param  {(sessionId: number) => void} callback:  Callback called with the id of the demoted session.
+    */
+   setSessionDemotedSubscription(callback: (sessionId: number) => void) {
+     if (this.sessionDemotedSubscription) {
+       this.sessionDemotedSubscription.remove();
+     }
+     if (!callback) {
+       return
+     }
+
+     this.sessionDemotedSubscription = DeviceEventEmitter.addListener('previewAudioPlayerSessionDemoted',
+     (data) => {
+       if (callback) {
+         callback(data.sessionId);
+       }
+     })
+   }
+
+   /**
+    * Subscribes to export progress, reported a few times per second while exporting.
+    * @param  {(progress: number, remainingTime: number, jobId: number) => void} callback:  Callback called with
+    *                                                                       fraction of export done, estimated
+    *                                                                       remaining time in seconds (-1 when
+    *                                                                       unknown) and export job id.
+    */
+   setExportProgressSubscription(callback: (progress: number, remainingTime: number, jobId: number) => void) {
+     if (this.exportProgressSubscription) {
+       this.exportProgressSubscription.remove();
+     }
+     if (!callback) {
+       return
+     }
+
+     this.exportProgressSubscription = DeviceEventEmitter.addListener('previewAudioPlayerExportProgress',
+     (data) => {
+       if (callback) {
+         callback(data.progress, data.remainingTime, data.jobId);
+       }
+     })
+   }
+
+   /**
+    * Subscribes to completion of exports started with `startExport`.
+    * @param  {(status: Object) => void} callback:  Callback called with the same object as `getExportStatus`.
+    */
+   setExportFinishedSubscription(callback: (status: Object) => void) {
+     if (this.exportFinishedSubscription) {
+       this.exportFinishedSubscription.remove();
+     }
+     if (!callback) {
+       return
+     }
+
+     this.exportFinishedSubscription = DeviceEventEmitter.addListener('previewAudioPlayerExportFinished',
+     (data) => {
+       if (callback) {
+         callback(data);
+       }
+     })
+   }
+
+   /**
+    * Subscribes to segments of exports started with `startSegmentedExport`.
+    * @param  {(segment: Object) => void} callback:  Callback called in order for every segment with an object
+    *                                               containing `jobId`, `index`, `path`, `offset` and `size` (byte
+    *                                               range of the segment at path, offset is 0 for segment files),
+    *                                               `startTime` and `duration`.
+    */
+   setExportSegmentSubscription(callback: (segment: Object) => void) {
+     if (this.exportSegmentSubscription) {
+       this.exportSegmentSubscription.remove();
+     }
+     if (!callback) {
+       return
+     }
+
+     this.exportSegmentSubscription = DeviceEventEmitter.addListener('previewAudioPlayerExportSegment',
+     (data) => {
+       if (callback) {
+         callback(data);
        }
      })
    }
@@ -280,17 +670,121 @@ class PreviewAudioPlayer {
      if (this.audioPlaybackProgressUpdateSubscription) {
        this.audioPlaybackProgressUpdateSubscription.remove();
      }
+     if (this.exportProgressSubscription) {
+       this.exportProgressSubscription.remove();
+     }
+     if (this.exportFinishedSubscription) {
+       this.exportFinishedSubscription.remove();
+     }
+     if (this.exportSegmentSubscription) {
+       this.exportSegmentSubscription.remove();
+     }
      if (this.audioPlaybackFinishedSubscription) {
        this.audioPlaybackFinishedSubscription.remove();
      }
+     if (this.sessionDemotedSubscription) {
+       this.sessionDemotedSubscription.remove();
+     }
+     if (this.loopIterationSubscription) {
+       this.loopIterationSubscription.remove();
+     }
+     if (this.metricsSubscription) {
+       this.metricsSubscription.remove();
+       NativePreviewController.setMetricsEventInterval(0, () => {})
+     }
+   }
+
+   /**
+    * Sets drift between vocal and background tracks above which playback is resynchronised.
+    * @param  {threshold: number} threshold:  Drift threshold in seconds.
+    * @param  {(error: any) => void} callback: Callback called when method finishes.
+    */
+   setDriftThreshold(sessionId: number, threshold: number, callback: (error: any) => void) {
+     NativePreviewController.setDriftThreshold(sessionId, threshold, callback || (() => {}))
+   }
+
+   /**
+    * Gets gains applied on top of the volumes to match loudness of the vocal track in use and the background.
+    * @param  {(error: any, gains: Object) => void} callback:  Callback called with an object containing linear
+    *                                                          `vocal` and `background` gains, both 1 when not matched,
+    *                                                          and `measured`, false while the vocal in use or the
+    *                                                          background was not measured yet.
+    */
+   getLoudnessGains(sessionId: number, callback: (error: any, gains: Object) => void) {
+     NativePreviewController.getLoudnessGains(sessionId, callback)
+   }
+
+   /**
+    * Gets drift statistics measured during playback.
+    * @param  {(error: any, statistics: Object) => void} callback:  Callback called with an object containing
+    *                                                               `sampleCount`, `correctionCount`, `lastDrift`,
+    *                                                               `maxDrift` and `meanDrift` (drift values in seconds).
+    */
+   getSyncStatistics(sessionId: number, callback: (error: any, statistics: Object) => void) {
+     NativePreviewController.getSyncStatistics(sessionId, callback)
+   }
+
+   /**
+    * Gets timing histograms of prepare, seek, start, progress checks and exports.
+    * @param  {(error: any, metrics: Object) => void} callback:  Callback called with an object keyed by metric name
+    *                                                            as second argument, per track metrics are suffixed
+    *                                                            with the track (e.g. `seekLatency.background`).
+    *                                                            Each value contains `count`, `mean`, `min`, `max`,
+    *                                                            `p50`, `p90` and `p99` (times in seconds).
+    */
+   getMetrics(callback: (error: any, metrics: Object) => void) {
+     NativePreviewController.getMetrics(callback)
+   }
+
+   /**
+    * Clears recorded metrics.
+    * @param  {() => void} callback:  Callback called when method finishes.
+    */
+   resetMetrics(callback: () => void) {
+     NativePreviewController.resetMetrics(callback || (() => {}))
+   }
+
+   /**
+    * Subscribes to metrics sent periodically, pass no callback to stop.
+    * @param  {interval: number} interval:           Interval between events in seconds.
+    * @param  {(metrics: Object) => void} callback:  Callback called with the same object as `getMetrics`.
+    */
+   setMetricsSubscription(interval: number, callback: (metrics: Object) => void) {
+     if (this.metricsSubscription) {
+       this.metricsSubscription.remove();
+       this.metricsSubscription = null;
+     }
+     if (!callback) {
+       NativePreviewController.setMetricsEventInterval(0, () => {})
+       return
+     }
+
+     this.metricsSubscription = DeviceEventEmitter.addListener('previewAudioPlayerMetrics',
+     (data) => {
+       if (callback) {
+         callback(data);
+       }
+     })
+     NativePreviewController.setMetricsEventInterval(interval, () => {})
+   }
+
+   /**
+    * Configures switching between original and processed vocal tracks.
+    * @param  {activeVocalOnly: boolean} activeVocalOnly:      Decode only the selected vocal track, the other one is
+    *                                                         kept paused and brought in when switched to.
+    * @param  {crossfadeDuration: number} crossfadeDuration:  Crossfade length in seconds, 0 switches at once.
+    * @param  {(error: any) => void} callback:                Callback called when method finishes.
+    */
+   setVocalSwitchMode(sessionId: number, activeVocalOnly: boolean, crossfadeDuration: number, callback: (error: any) => void) {
+     NativePreviewController.setVocalSwitchMode(sessionId, activeVocalOnly, crossfadeDuration, callback || (() => {}))
    }
 
-   switchToOriginalVocalTrack(callback: () => void) {
-     NativePreviewController.switchToOriginalVocalTrack(callback || (() => {}))
+   switchToOriginalVocalTrack(sessionId: number, callback: (error: any) => void) {
+     NativePreviewController.switchToOriginalVocalTrack(sessionId, callback || (() => {}))
    }
 
-   switchToProcessedVocalTrack(callback: () => void) {
-     NativePreviewController.switchToProcessedVocalTrack(callback || (() => {}))
+   switchToProcessedVocalTrack(sessionId: number, callback: (error: any) => void) {
+     NativePreviewController.switchToProcessedVocalTrack(sessionId, callback || (() => {}))
    }
 }
 
@@ -8,6 +8,12 @@ import { NativeModules, DeviceEventEmitter } from 'react-native';
 import { SHOULD_MIX_AUDIO_LOCALLY } from '../../app/constants/Settings'
 const NativePreviewController = NativeModules.PAPPreviewController;
 
+/**
+ * iOS keeps a single native player, so there is one implicit session. Methods take the session id and report
+ * values as `(error, value)` like on Android, the id itself is ignored.
+ */
+const IMPLICIT_SESSION_ID = 1;
+
 /**
  * Component allowing to perform and export preview of specified audio file.
  */
@@ -20,13 +26,25 @@ const NativePreviewController = NativeModules.PAPPreviewController;
     * @param  {processedVocalAudioFilePath: string}  processedVocalAudioFilePath:      Path to audio file that contains the processed vocal recording.
     * @param  {backgroundAudioFilePath: string}      backgroundAudioFilePath:          Path to audio file that contains background track.
     * @param  {recordingStartTime: string}           recordingStartTime:               The position in the background track time when recording started
-    * @param  {(error: any) => void}                 callback:                         Callback called when method finishes. If an error occurs,
-    *                                                                                  an error is passed as an argument of the callback, null otherwise.
+    * @param  {(error: any, sessionId: number) => void} callback:                     Callback called when method finishes. If an error occurs,
+    *                                                                                  an error is passed as the first argument of the callback, otherwise
+    *                                                                                  the session id is passed as the second one.
     */
-   prepare: function(originalVocalAudioFilePath: string, processedVocalAudioFilePath: string, backgroundAudioFilePath: string, recordingStartTime: number, callback: (error: any) => void) {
+   prepare: function(originalVocalAudioFilePath: string, processedVocalAudioFilePath: string, backgroundAudioFilePath: string, recordingStartTime: number, callback: (error: any, sessionId: number) => void) {
      NativePreviewController.prepare(originalVocalAudioFilePath, processedVocalAudioFilePath, backgroundAudioFilePath, recordingStartTime, SHOULD_MIX_AUDIO_LOCALLY, (error) => {
        if (callback) {
-         callback(error)
+         callback(error, error ? null : IMPLICIT_SESSION_ID)
+       }
+     })
+   },
+
+   /**
+    * Releases the session. The native player is only stopped, it is prepared again by the next `prepare` call.
+    */
+   release: function(sessionId: number, callback: (error: any) => void) {
+     NativePreviewController.stop(() => {
+       if (callback) {
+         callback(null)
        }
      })
    },
@@ -34,7 +52,7 @@ const NativePreviewController = NativeModules.PAPPreviewController;
    /**
     * Starts preview at specified time using file paths provided in `prepare` method call.
     */
-   playAt: function(startTime: number, callback: (error: any) => void) {
+   playAt: function(sessionId: number, startTime: number, callback: (error: any) => void) {
      NativePreviewController.playAt(startTime, (error) => {
        if (callback) {
          callback(error)
@@ -45,7 +63,7 @@ const NativePreviewController = NativeModules.PAPPreviewController;
    /**
     * Starts preview using file paths provided in `prepare` method call.
     */
-   play: function(callback: (error: any) => void) {
+   play: function(sessionId: number, callback: (error: any) => void) {
      NativePreviewController.play((error) => {
        if (callback) {
          callback(error)
@@ -56,10 +74,10 @@ const NativePreviewController = NativeModules.PAPPreviewController;
    /**
     * Pauses preview.
     */
-   pause: function(callback: () => void) {
+   pause: function(sessionId: number, callback: (error: any) => void) {
      NativePreviewController.pause(() => {
        if (callback) {
-         callback()
+         callback(null)
        }
      })
    },
@@ -69,7 +87,7 @@ const NativePreviewController = NativeModules.PAPPreviewController;
     * @param  {(error: any) => void}  error: Callback called when method finishes. If an error occurs,
     *                                        an error is passed as an argument of the callback, null otherwise.
     */
-   unpause: function(callback: (error: any) => void) {
+   unpause: function(sessionId: number, callback: (error: any) => void) {
      NativePreviewController.unpause((error) => {
        if (callback) {
          callback(error)
@@ -80,10 +98,10 @@ const NativePreviewController = NativeModules.PAPPreviewController;
    /**
     * Stops preview.
     */
-   stop: function(callback: () => void) {
+   stop: function(sessionId: number, callback: (error: any) => void) {
      NativePreviewController.stop(() => {
        if (callback) {
-         callback()
+         callback(null)
        }
      })
    },
@@ -94,7 +112,7 @@ const NativePreviewController = NativeModules.PAPPreviewController;
     *                                                                  an error is passed as an argument of the callback, null otherwise. If there is
     *                                                                  no error second argument of callback contains path at which output file is stored.
     */
-   export: function(callback: (error: any, outputFilePath: string) => void) {
+   export: function(sessionId: number, callback: (error: any, outputFilePath: string) => void) {
      NativePreviewController.export(SHOULD_MIX_AUDIO_LOCALLY, (error, outputFilePath) => {
        if (callback) {
          callback(error, outputFilePath)
@@ -109,7 +127,7 @@ const NativePreviewController = NativeModules.PAPPreviewController;
     *                                                                   an error is passed as an argument of the callback, null otherwise. If there is
     *                                                                   no error second argument of callback contains path at which output file is stored.
     */
-   exportToFileAtURL: function(outputFilePath: string, callback: (error: any, outputFilePath: string) => void) {
+   exportToFileAtURL: function(sessionId: number, outputFilePath: string, callback: (error: any, outputFilePath: string) => void) {
      NativePreviewController.exportToFileAtURL(SHOULD_MIX_AUDIO_LOCALLY, (error, outputFilePath) => {
        if (callback) {
          callback(error, outputFilePath)
@@ -123,7 +141,7 @@ const NativePreviewController = NativeModules.PAPPreviewController;
     *                                                                   an error is passed as an argument of the callback, null otherwise. If there is
     *                                                                   no error second argument of callback contains path at which output file is stored.
     */
-   exportPreview: function(callback: (error: any, outputFilePath: string) => void) {
+   exportPreview: function(sessionId: number, callback: (error: any, outputFilePath: string) => void) {
      NativePreviewController.exportPreview(SHOULD_MIX_AUDIO_LOCALLY, (error, outputFilePath) => {
        if (callback) {
          callback(error, outputFilePath)
@@ -138,7 +156,7 @@ const NativePreviewController = NativeModules.PAPPreviewController;
     *                                                                     an error is passed as an argument of the callback, null otherwise. If there is
     *                                                                     no error second argument of callback contains path at which output file is stored.
     */
-   exportPreviewToFileAtPath: function(outputFilePath: string, callback: (error: any, outputFilePath: string) => void) {
+   exportPreviewToFileAtPath: function(sessionId: number, outputFilePath: string, callback: (error: any, outputFilePath: string) => void) {
      NativePreviewController.exportPreviewToFileAtURL(outputFilePath, (error, outputFilePath) => {
        if (callback) {
          callback(error, outputFilePath)
@@ -153,7 +171,7 @@ const NativePreviewController = NativeModules.PAPPreviewController;
     * @param  {(error: any) => void} callback:              Callback called when method finishes. If an error occurs,
     *                                                       an error is passed as an argument of the callback, null otherwise.
     */
-   playPreview: function(callback: (error: any) => void) {
+   playPreview: function(sessionId: number, callback: (error: any) => void) {
      NativePreviewController.playPreview((error) => {
        if (callback) {
          callback(error)
@@ -164,12 +182,12 @@ const NativePreviewController = NativeModules.PAPPreviewController;
    /**
     * Sets preview start time.
     * @param  {previewStartTime: number} previewStartTime:  Time at which preview should start.
-    * @param  {() => void} callback:                        Callback called when method finishes.
+    * @param  {(error: any) => void} callback:              Callback called when method finishes.
     */
-   setPreviewStartTime: function(previewStartTime: number, callback: () => void) {
+   setPreviewStartTime: function(sessionId: number, previewStartTime: number, callback: (error: any) => void) {
      NativePreviewController.setPreviewStartTime(previewStartTime, () => {
        if (callback) {
-         callback()
+         callback(null)
        }
      })
    },
@@ -178,51 +196,51 @@ const NativePreviewController = NativeModules.PAPPreviewController;
     * Sets preview start time and duration.
     * @param  {previewTime: number} previewTime:            Time at which preview should start.
     * @param  {duration: number} duration:                  Preview duration
-    * @param  {() => void} callback:                        Callback called when method finishes.
+    * @param  {(error: any) => void} callback:              Callback called when method finishes.
     */
-   setPreviewAt: function(previewTime: number, previewDuration: number, callback: () => void) {
+   setPreviewAt: function(sessionId: number, previewTime: number, previewDuration: number, callback: (error: any) => void) {
      NativePreviewController.setPreviewAt(previewTime, previewDuration, () => {
        if (callback) {
-         callback()
+         callback(null)
        }
      })
    },
 
    /**
     * Gets preview start time.
-    * @param  {(previewStartTime: number) => void}  callback: Callback called when method finishes. First argument of
-    *                                                         this callback is a preview start time.
+    * @param  {(error: any, previewStartTime: number) => void}  callback: Callback called when method finishes. Second
+    *                                                                     argument of this callback is a preview start time.
     */
-   getPreviewStartTime: function(callback: (previewStartTime: number) => void) {
+   getPreviewStartTime: function(sessionId: number, callback: (error: any, previewStartTime: number) => void) {
      NativePreviewController.getPreviewStartTime((previewStartTime) => {
        if (callback) {
-         callback(previewStartTime)
+         callback(null, previewStartTime)
        }
      })
    },
 
    /**
     * Gets preview duration.
-    * @param  {(previewDuration: number) => void}  Callback called when method finishes. Current preview duration
-    *                                              is passed as first argument of this callback.
+    * @param  {(error: any, previewDuration: number) => void}  Callback called when method finishes. Current preview
+    *                                                          duration is passed as second argument of this callback.
     */
-   getPreviewDuration: function(callback: (previewDuration: number) => void) {
+   getPreviewDuration: function(sessionId: number, callback: (error: any, previewDuration: number) => void) {
      NativePreviewController.getPreviewDuration((previewDuration) => {
        if (callback) {
-         callback(previewDuration)
+         callback(null, previewDuration)
        }
      })
    },
 
    /**
     * Gets audio duration.
-    * @param  {(duration: number) => void}  Callback called when method finishes. Current duration
-    *                                       is passed as first argument of this callback.
+    * @param  {(error: any, duration: number) => void}  Callback called when method finishes. Current duration
+    *                                                   is passed as second argument of this callback.
     */
-   getPlaybackDuration: function(callback: (duration: number) => void) {
+   getPlaybackDuration: function(sessionId: number, callback: (error: any, duration: number) => void) {
      NativePreviewController.getPlaybackDuration((duration) => {
        if (callback) {
-         callback(duration)
+         callback(null, duration)
        }
      })
    },
@@ -230,12 +248,13 @@ const NativePreviewController = NativeModules.PAPPreviewController;
    /**
     * Changes the current playback time to the new value
     * @param  {time: number} time:                 The new value for the current playback time
-    * @param  {() => void} callback:               Callback called when method finishes.
+    * @param  {(error: any, status: string) => void} callback: Callback called when method finishes with status
+    *                                                          'completed', seeks are not coalesced on iOS.
     */
-   seekToTime: function(time: number, callback: () => void) {
+   seekToTime: function(sessionId: number, time: number, callback: (error: any, status: string) => void) {
      NativePreviewController.seekToTime(time, () => {
        if (callback) {
-         callback()
+         callback(null, 'completed')
        }
      })
    },
@@ -243,12 +262,12 @@ const NativePreviewController = NativeModules.PAPPreviewController;
    /**
     * Changes the current playback time by the specified time offset.
     * @param  {timeOffset: number} timeOffset:     The offset by which the current playback time will be changed
-    * @param  {() => void} callback:               Callback called when method finishes.
+    * @param  {(error: any) => void} callback:     Callback called when method finishes.
     */
-   seekByTimeOffset: function(timeOffset: number, callback: () => void) {
+   seekByTimeOffset: function(sessionId: number, timeOffset: number, callback: (error: any) => void) {
      NativePreviewController.seekByTimeOffset(timeOffset, () => {
        if (callback) {
-         callback()
+         callback(null)
        }
      })
    },
@@ -256,25 +275,29 @@ const NativePreviewController = NativeModules.PAPPreviewController;
 /**
  *  Gets current playback time.
  */
-   getCurrentTime: function(callback: (number) => void) {
-    NativePreviewController.getCurrentTime(callback)
+   getCurrentTime: function(sessionId: number, callback: (error: any, currentTime: number) => void) {
+    NativePreviewController.getCurrentTime((currentTime) => {
+      if (callback) {
+        callback(null, currentTime)
+      }
+    })
    },
 
    /**
     * Sets volumes of vocal and background audio tracks.
     * @param  {vocalAudioTrackVolume: number}   vocalAudioTrackVolume:            Vocal audio track volume to set. Accepts value from 0 to 1.
     * @param  {backgroundAudioTrackVolume: number}   backgroundAudioTrackVolume:  Background audio track volume to set. Accepts value from 0 to 1.
-    * @param  {() => void}  callback:                                             Callback called when method finishes.
+    * @param  {(error: any) => void}  callback:                                    Callback called when method finishes.
     */
-   setVolume: function(vocalAudioTrackVolume: number, backgroundAudioTrackVolume: number, callback: () => void) {
+   setVolume: function(sessionId: number, vocalAudioTrackVolume: number, backgroundAudioTrackVolume: number, callback: (error: any) => void) {
      NativePreviewController.setVolume(vocalAudioTrackVolume, backgroundAudioTrackVolume, () => {
        if (callback) {
-         callback()
+         callback(null)
        }
      })
    },
 
-   setAudioPlaybackProgressUpdateSubscription: function(callback: (currentTime: number) => void) {
+   setAudioPlaybackProgressUpdateSubscription: function(callback: (currentTime: number, sessionId: number) => void) {
      if (this.audioPlaybackProgressUpdateSubscription) {
        this.audioPlaybackProgressUpdateSubscription.remove();
      }
@@ -285,12 +308,12 @@ const NativePreviewController = NativeModules.PAPPreviewController;
      this.audioPlaybackProgressUpdateSubscription = DeviceEventEmitter.addListener('previewAudioPlayerPlaybackProgressUpdate',
      (data) => {
        if (callback) {
-         callback(data.currentTime);
+         callback(data.currentTime, IMPLICIT_SESSION_ID);
        }
      })
    },
 
-   setAudioPlaybackFinishedSubscription: function(callback: (finished: bool) => void) {
+   setAudioPlaybackFinishedSubscription: function(callback: (finished: bool, sessionId: number) => void) {
      if (this.audioPlaybackFinishedSubscription) {
        this.audioPlaybackFinishedSubscription.remove();
      }
@@ -301,7 +324,7 @@ const NativePreviewController = NativeModules.PAPPreviewController;
      this.audioPlaybackFinishedSubscription = DeviceEventEmitter.addListener('previewAudioPlayerPlaybackFinished',
      (data) => {
        if (callback) {
-         callback(data.finished);
+         callback(data.finished, IMPLICIT_SESSION_ID);
        }
      })
    },
@@ -315,16 +338,20 @@ const NativePreviewController = NativeModules.PAPPreviewController;
      }
    },
 
-   switchToOriginalVocalTrack: function (callback: () => void) {
+   switchToOriginalVocalTrack: function (sessionId: number, callback: (error: any) => void) {
      NativePreviewController.switchToOriginalVocalTrack(callback || (() => {}))
    },
 
-   switchToProcessedVocalTrack: function (callback: () => void) {
+   switchToProcessedVocalTrack: function (sessionId: number, callback: (error: any) => void) {
      NativePreviewController.switchToProcessedVocalTrack(callback || (() => {}))
    },
 
-   getSelectedVocalTrackPath: function (callback: (vocalTrackPath: string) => void) {
-     NativePreviewController.getSelectedVocalTrackPath(callback || (() => {}))
+   getSelectedVocalTrackPath: function (sessionId: number, callback: (error: any, vocalTrackPath: string) => void) {
+     NativePreviewController.getSelectedVocalTrackPath((vocalTrackPath) => {
+       if (callback) {
+         callback(null, vocalTrackPath)
+       }
+     })
    }
  }
 